@@ -21,7 +21,9 @@ import static com.google.common.base.Preconditions.checkArgument;
 import com.google.cloud.FieldSelector;
 import com.google.cloud.FieldSelector.Helper;
 import com.google.cloud.Page;
+import com.google.cloud.PageImpl;
 import com.google.cloud.Service;
+import com.google.cloud.WriteBehindChannel;
 import com.google.cloud.bigquery.spi.BigQueryRpc;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
@@ -533,6 +535,9 @@ public interface BigQuery extends Service<BigQueryOptions> {
    * {@link #getDataset(String, DatasetOption...)} or
    * {@link #getDataset(DatasetId, DatasetOption...)}.
    *
+   * <p>Use {@link PageImpl#iterateAll(Page, int)} to fetch the next pages in the background while
+   * the values of a page are traversed.
+   *
    * <p>Example of listing datasets, specifying the page size.
    * <pre> {@code
    * Page<Dataset> datasets = bigquery.listDatasets(DatasetListOption.pageSize(100));
@@ -554,6 +559,9 @@ public interface BigQuery extends Service<BigQueryOptions> {
    * {@link #getDataset(String, DatasetOption...)} or
    * {@link #getDataset(DatasetId, DatasetOption...)}.
    *
+   * <p>Use {@link PageImpl#iterateAll(Page, int)} to fetch the next pages in the background while
+   * the values of a page are traversed.
+   *
    * <p>Example of listing datasets in a project, specifying the page size.
    * <pre> {@code
    * String projectId = "my_project_id";
@@ -721,6 +729,9 @@ public interface BigQuery extends Service<BigQueryOptions> {
    * {@link #getTable(TableId, TableOption...)} or
    * {@link #getTable(String, String, TableOption...)}.
    *
+   * <p>Use {@link PageImpl#iterateAll(Page, int)} to fetch the next pages in the background while
+   * the values of a page are traversed.
+   *
    * <p>Example of listing the tables in a dataset, specifying the page size.
    * <pre> {@code
    * String datasetName = "my_dataset_name";
@@ -743,6 +754,9 @@ public interface BigQuery extends Service<BigQueryOptions> {
    * {@link #getTable(TableId, TableOption...)} or
    * {@link #getTable(String, String, TableOption...)}.
    *
+   * <p>Use {@link PageImpl#iterateAll(Page, int)} to fetch the next pages in the background while
+   * the values of a page are traversed.
+   *
    * <p>Example of listing the tables in a dataset.
    * <pre> {@code
    * String projectId = "my_project_id";
@@ -867,6 +881,9 @@ public interface BigQuery extends Service<BigQueryOptions> {
   /**
    * Lists the jobs.
    *
+   * <p>Use {@link PageImpl#iterateAll(Page, int)} to fetch the next pages in the background while
+   * the values of a page are traversed.
+   *
    * <p>Example of listing jobs, specifying the page size.
    * <pre> {@code
    * Page<Job> jobs = bigquery.listJobs(JobListOption.pageSize(100));
@@ -986,6 +1003,10 @@ public interface BigQuery extends Service<BigQueryOptions> {
    * Returns a channel to write data to be inserted into a BigQuery table. Data format and other
    * options can be configured using the {@link WriteChannelConfiguration} parameter.
    *
+   * <p>By default each chunk is uploaded by the thread that fills it. The returned channel is a
+   * {@link WriteBehindChannel}, use {@link WriteBehindChannel#writeBehind(int)} to upload full
+   * chunks in the background while the next ones are being written.
+   *
    * <p>Example of creating a channel with which to write to a table.
    * <pre> {@code
    * String datasetName = "my_dataset_name";
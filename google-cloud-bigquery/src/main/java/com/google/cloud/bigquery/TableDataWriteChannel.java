@@ -19,6 +19,7 @@ package com.google.cloud.bigquery;
 import static com.google.cloud.RetryHelper.runWithRetries;
 import static java.util.concurrent.Executors.callable;
 
+import com.google.cloud.BaseWriteBehindChannel;
 import com.google.cloud.BaseWriteChannel;
 import com.google.cloud.RestorableState;
 import com.google.cloud.RetryHelper;
@@ -29,7 +30,8 @@ import java.util.concurrent.Callable;
 /**
  * WriteChannel implementation to stream data into a BigQuery table.
  */
-class TableDataWriteChannel extends BaseWriteChannel<BigQueryOptions, WriteChannelConfiguration> {
+class TableDataWriteChannel
+    extends BaseWriteBehindChannel<BigQueryOptions, WriteChannelConfiguration> {
 
   TableDataWriteChannel(BigQueryOptions options,
       WriteChannelConfiguration writeChannelConfiguration) {
@@ -42,12 +44,13 @@ class TableDataWriteChannel extends BaseWriteChannel<BigQueryOptions, WriteChann
   }
 
   @Override
-  protected void flushBuffer(final int length, final boolean last) {
+  protected void flushBuffer(final byte[] buffer, final int position, final int length,
+      final boolean last) {
     try {
       runWithRetries(callable(new Runnable() {
         @Override
         public void run() {
-          options().rpc().write(uploadId(), buffer(), 0, position(), length, last);
+          options().rpc().write(uploadId(), buffer, 0, position, length, last);
         }
       }), options().retryParams(), BigQueryImpl.EXCEPTION_HANDLER, options().clock());
     } catch (RetryHelper.RetryHelperException e) {
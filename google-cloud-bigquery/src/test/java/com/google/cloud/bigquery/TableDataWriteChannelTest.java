@@ -30,10 +30,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import com.google.cloud.BufferPool;
 import com.google.cloud.RestorableState;
 import com.google.cloud.WriteChannel;
 import com.google.cloud.bigquery.spi.BigQueryRpc;
 import com.google.cloud.bigquery.spi.BigQueryRpcFactory;
+import com.google.common.collect.ImmutableList;
 
 import org.easymock.Capture;
 import org.easymock.CaptureType;
@@ -249,6 +251,37 @@ public class TableDataWriteChannelTest {
     assertEquals(expectedWriterState, restoredWriter.capture());
   }
 
+  @Test
+  public void testWriteBehind() throws IOException {
+    options = options.toBuilder().bufferPool(BufferPool.noPooling()).build();
+    expect(bigqueryRpcMock.open(LOAD_CONFIGURATION.toPb())).andReturn(UPLOAD_ID);
+    Capture<byte[]> capturedBuffer = Capture.newInstance(CaptureType.ALL);
+    Capture<Long> capturedPosition = Capture.newInstance(CaptureType.ALL);
+    bigqueryRpcMock.write(eq(UPLOAD_ID), capture(capturedBuffer), eq(0),
+        captureLong(capturedPosition), eq(DEFAULT_CHUNK_SIZE), eq(false));
+    expectLastCall().times(3);
+    bigqueryRpcMock.write(eq(UPLOAD_ID), capture(capturedBuffer), eq(0),
+        eq(3L * DEFAULT_CHUNK_SIZE), eq(42), eq(true));
+    replay(bigqueryRpcMock);
+    ByteBuffer buffer1 = randomBuffer(DEFAULT_CHUNK_SIZE);
+    ByteBuffer buffer2 = randomBuffer(DEFAULT_CHUNK_SIZE);
+    ByteBuffer buffer3 = randomBuffer(DEFAULT_CHUNK_SIZE);
+    ByteBuffer buffer4 = randomBuffer(42);
+    writer = new TableDataWriteChannel(options, LOAD_CONFIGURATION);
+    writer.writeBehind(2);
+    assertEquals(DEFAULT_CHUNK_SIZE, writer.write(buffer1));
+    assertEquals(DEFAULT_CHUNK_SIZE, writer.write(buffer2));
+    assertEquals(DEFAULT_CHUNK_SIZE, writer.write(buffer3));
+    assertEquals(42, writer.write(buffer4));
+    writer.close();
+    assertArrayEquals(buffer1.array(), capturedBuffer.getValues().get(0));
+    assertArrayEquals(buffer2.array(), capturedBuffer.getValues().get(1));
+    assertArrayEquals(buffer3.array(), capturedBuffer.getValues().get(2));
+    assertArrayEquals(buffer4.array(), Arrays.copyOf(capturedBuffer.getValues().get(3), 42));
+    assertEquals(ImmutableList.of(0L, (long) DEFAULT_CHUNK_SIZE, 2L * DEFAULT_CHUNK_SIZE),
+        capturedPosition.getValues());
+  }
+
   @Test
   public void testStateEquals() {
     expect(bigqueryRpcMock.open(LOAD_CONFIGURATION.toPb())).andReturn(UPLOAD_ID).times(2);
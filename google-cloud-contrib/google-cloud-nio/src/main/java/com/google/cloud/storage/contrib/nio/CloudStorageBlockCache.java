@@ -0,0 +1,360 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Cache of object data blocks, shared by the read channels of file systems with equal
+ * configurations. Blocks are identified by bucket, object name, generation and block index, so
+ * that a cached block is never returned for a different version of an object.
+ *
+ * <p>Recently used blocks are kept in memory, up to
+ * {@link CloudStorageConfiguration#blockCacheMemorySize()} bytes. Blocks evicted from memory are
+ * moved to a memory-mapped local file of {@link CloudStorageConfiguration#blockCacheDiskSize()}
+ * bytes, if configured, from which the least recently used blocks are evicted in turn. Blocks read
+ * from disk are moved back to memory.
+ */
+@ThreadSafe
+final class CloudStorageBlockCache implements Closeable {
+
+  private final int blockSize;
+  private final Cache<BlockKey, byte[]> memory;
+  @Nullable private final DiskTier disk;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong loadExceptionCount = new AtomicLong();
+  private final AtomicLong totalLoadTime = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  /**
+   * Identifies a block of an object.
+   */
+  static final class BlockKey {
+
+    private final String bucket;
+    private final String name;
+    private final long generation;
+    private final long index;
+
+    BlockKey(String bucket, String name, long generation, long index) {
+      this.bucket = bucket;
+      this.name = name;
+      this.generation = generation;
+      this.index = index;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof BlockKey)) {
+        return false;
+      }
+      BlockKey key = (BlockKey) other;
+      return index == key.index
+          && generation == key.generation
+          && name.equals(key.name)
+          && bucket.equals(key.bucket);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(bucket, name, generation, index);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("bucket", bucket)
+          .add("name", name)
+          .add("generation", generation)
+          .add("index", index)
+          .toString();
+    }
+  }
+
+  private CloudStorageBlockCache(int blockSize, long memorySize, @Nullable DiskTier disk) {
+    this.blockSize = blockSize;
+    this.disk = disk;
+    // a single segment, so that the whole memory budget is available to every block
+    this.memory = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumWeight(memorySize)
+        .weigher(new Weigher<BlockKey, byte[]>() {
+          @Override
+          public int weigh(BlockKey key, byte[] block) {
+            return block.length;
+          }
+        })
+        .removalListener(new RemovalListener<BlockKey, byte[]>() {
+          @Override
+          public void onRemoval(RemovalNotification<BlockKey, byte[]> notification) {
+            if (notification.wasEvicted()) {
+              spill(notification.getKey(), notification.getValue());
+            }
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Creates a block cache for {@code config}, or returns {@code null} if {@code config} does not
+   * enable caching.
+   *
+   * @throws IOException if the disk cache file can not be created
+   */
+  @Nullable
+  static CloudStorageBlockCache create(CloudStorageConfiguration config) throws IOException {
+    if (!config.blockCacheEnabled()) {
+      return null;
+    }
+    int blockSize = config.blockSize();
+    checkArgument(blockSize > 0, "blockSize must be positive to cache blocks: %s", blockSize);
+    DiskTier disk = null;
+    long diskSlots = config.blockCacheDiskSize() / blockSize;
+    if (diskSlots > 0) {
+      Path directory = config.blockCacheDirectory() != null
+          ? Paths.get(config.blockCacheDirectory())
+          : Paths.get(System.getProperty("java.io.tmpdir"));
+      disk = new DiskTier(directory, blockSize, diskSlots);
+    }
+    return new CloudStorageBlockCache(blockSize, config.blockCacheMemorySize(), disk);
+  }
+
+  /**
+   * Returns the size of the cached blocks.
+   */
+  int blockSize() {
+    return blockSize;
+  }
+
+  /**
+   * Returns the block identified by {@code key}, calling {@code loader} to read it from Cloud
+   * Storage if it is not cached. Concurrent requests for a block that is not cached wait for a
+   * single load.
+   */
+  byte[] get(final BlockKey key, final Callable<byte[]> loader) throws IOException {
+    byte[] block = memory.getIfPresent(key);
+    if (block != null) {
+      hitCount.incrementAndGet();
+      return block;
+    }
+    final boolean[] loaded = new boolean[1];
+    try {
+      block = memory.get(key, new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws Exception {
+          loaded[0] = true;
+          byte[] block = disk != null ? disk.take(key) : null;
+          if (block != null) {
+            hitCount.incrementAndGet();
+            return block;
+          }
+          missCount.incrementAndGet();
+          long start = System.nanoTime();
+          try {
+            return loader.call();
+          } catch (Exception ex) {
+            loadExceptionCount.incrementAndGet();
+            throw ex;
+          } finally {
+            totalLoadTime.addAndGet(System.nanoTime() - start);
+          }
+        }
+      });
+    } catch (ExecutionException | UncheckedExecutionException | ExecutionError ex) {
+      Throwables.propagateIfInstanceOf(ex.getCause(), IOException.class);
+      throw Throwables.propagate(ex.getCause());
+    }
+    if (!loaded[0]) {
+      // loaded by a concurrent request
+      hitCount.incrementAndGet();
+    }
+    return block;
+  }
+
+  private void spill(BlockKey key, byte[] block) {
+    if (disk == null || block.length > blockSize) {
+      evictionCount.incrementAndGet();
+      return;
+    }
+    evictionCount.addAndGet(disk.put(key, block));
+  }
+
+  /**
+   * Returns statistics of this cache. Blocks found on disk count as hits, and blocks evicted from
+   * memory only count as evicted if they could not be moved to disk.
+   */
+  CacheStats stats() {
+    long misses = missCount.get();
+    long failures = loadExceptionCount.get();
+    return new CacheStats(hitCount.get(), misses, misses - failures, failures,
+        totalLoadTime.get(), evictionCount.get());
+  }
+
+  /**
+   * Discards all cached blocks and deletes the disk cache file.
+   */
+  @Override
+  public void close() throws IOException {
+    memory.invalidateAll();
+    if (disk != null) {
+      disk.close();
+    }
+  }
+
+  /**
+   * Blocks cached in a memory-mapped file, divided in {@code blockSize} slots. The file is mapped
+   * in regions of at most {@link Integer#MAX_VALUE} bytes.
+   */
+  private static final class DiskTier implements Closeable {
+
+    private final int blockSize;
+    private final int slotsPerRegion;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    @GuardedBy("this")
+    private final LinkedHashMap<BlockKey, Slot> slots = new LinkedHashMap<>(16, 0.75f, true);
+    @GuardedBy("this")
+    private final Deque<Long> freeSlots = new ArrayDeque<>();
+    @GuardedBy("this")
+    private boolean closed;
+
+    private static final class Slot {
+
+      private final long index;
+      private final int length;
+
+      Slot(long index, int length) {
+        this.index = index;
+        this.length = length;
+      }
+    }
+
+    DiskTier(Path directory, int blockSize, long slotCount) throws IOException {
+      this.blockSize = blockSize;
+      this.slotsPerRegion = Integer.MAX_VALUE / blockSize;
+      Path file = Files.createTempFile(directory, "gcs-block-cache", ".tmp");
+      this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+          StandardOpenOption.DELETE_ON_CLOSE);
+      int regionCount = (int) ((slotCount + slotsPerRegion - 1) / slotsPerRegion);
+      this.regions = new MappedByteBuffer[regionCount];
+      for (int i = 0; i < regionCount; i++) {
+        long regionSlots = Math.min(slotsPerRegion, slotCount - (long) i * slotsPerRegion);
+        regions[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+            (long) i * slotsPerRegion * blockSize, regionSlots * blockSize);
+      }
+      for (long i = 0; i < slotCount; i++) {
+        freeSlots.add(i);
+      }
+    }
+
+    private ByteBuffer slotBuffer(long index, int length) {
+      ByteBuffer region = regions[(int) (index / slotsPerRegion)].duplicate();
+      int offset = (int) (index % slotsPerRegion) * blockSize;
+      region.limit(offset + length).position(offset);
+      return region;
+    }
+
+    /**
+     * Removes and returns the block identified by {@code key}, or returns {@code null} if it is
+     * not cached. Blocks are moved back to memory when read, so that no block takes space in both
+     * tiers.
+     */
+    @Nullable
+    synchronized byte[] take(BlockKey key) {
+      Slot slot = slots.remove(key);
+      if (slot == null) {
+        return null;
+      }
+      byte[] block = new byte[slot.length];
+      slotBuffer(slot.index, slot.length).get(block);
+      freeSlots.add(slot.index);
+      return block;
+    }
+
+    /**
+     * Stores {@code block}, evicting the least recently used block if there is no free slot.
+     * Returns the number of evicted blocks.
+     */
+    synchronized int put(BlockKey key, byte[] block) {
+      if (closed) {
+        // channels opened before the cache was closed can still evict blocks from memory
+        return 1;
+      }
+      Slot slot = slots.get(key);
+      if (slot != null) {
+        return 0;
+      }
+      int evicted = 0;
+      Long index = freeSlots.poll();
+      if (index == null) {
+        Iterator<Map.Entry<BlockKey, Slot>> eldest = slots.entrySet().iterator();
+        index = eldest.next().getValue().index;
+        eldest.remove();
+        evicted = 1;
+      }
+      slotBuffer(index, block.length).put(block);
+      slots.put(key, new Slot(index, block.length));
+      return evicted;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      closed = true;
+      slots.clear();
+      freeSlots.clear();
+      channel.close();
+    }
+  }
+}
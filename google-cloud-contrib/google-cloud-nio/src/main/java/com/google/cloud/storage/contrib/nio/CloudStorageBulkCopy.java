@@ -0,0 +1,505 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.cloud.RestorableState;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.CopyWriter;
+import com.google.cloud.storage.ParallelListing;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Copies or moves all the objects under a directory to another directory, possibly in another
+ * bucket. Objects are copied with server-side rewrites, many of them concurrently, so that their
+ * contents never go through the client.
+ *
+ * <p>Large objects may take many rewrite calls to be copied. The progress of every rewrite is
+ * recorded, and {@link #checkpoint()} returns a serializable snapshot of the objects that were
+ * copied and of the rewrites in progress. A copy built with {@link Builder#resumeFrom(Checkpoint)}
+ * skips the objects that were copied and continues the rewrites in progress, rather than starting
+ * them again.
+ *
+ * <p>Example of moving a directory to another bucket, saving a checkpoint as objects are copied:
+ * <pre> {@code
+ * CloudStorageBulkCopy move = CloudStorageBulkCopy.builder(
+ *         Paths.get(URI.create("gs://bucket/logs/")),
+ *         Paths.get(URI.create("gs://archive/logs/")))
+ *     .deleteSource(true)
+ *     .parallelism(32)
+ *     .megabytesRewrittenPerCall(1024L)
+ *     .progressListener(new CloudStorageBulkCopy.ProgressListener() {
+ *       public void onProgress(CloudStorageBulkCopy copy) {
+ *         save(copy.checkpoint());
+ *       }
+ *     })
+ *     .build();
+ * move.run();
+ * }</pre>
+ *
+ * <p>Objects created under the source directory while the copy runs may or may not be copied.
+ */
+@ThreadSafe
+public final class CloudStorageBulkCopy {
+
+  static final int DEFAULT_PARALLELISM = 16;
+
+  private final Storage storage;
+  private final CloudStorageFileSystemProvider sourceProvider;
+  private final CloudStorageFileSystemProvider targetProvider;
+  private final String sourceBucket;
+  private final String sourcePrefix;
+  private final String targetBucket;
+  private final String targetPrefix;
+  private final boolean deleteSource;
+  private final boolean replaceExisting;
+  private final int parallelism;
+  @Nullable private final Long megabytesRewrittenPerCall;
+  @Nullable private final ProgressListener listener;
+  private final Set<String> copied =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final Map<String, RestorableState<CopyWriter>> rewrites = new ConcurrentHashMap<>();
+  private final AtomicLong objectsListed = new AtomicLong();
+  private final AtomicLong bytesListed = new AtomicLong();
+  private final AtomicLong bytesCopied = new AtomicLong();
+  private final AtomicBoolean started = new AtomicBoolean();
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  /**
+   * Receives the progress of a copy. Listeners are called by the threads that copy objects, after
+   * every rewrite call and after every object is copied, and should return quickly.
+   */
+  public interface ProgressListener {
+
+    /**
+     * Called when {@code copy} made progress.
+     */
+    void onProgress(CloudStorageBulkCopy copy);
+  }
+
+  /**
+   * The state of a copy, from which another copy of the same directories can be resumed.
+   *
+   * @see CloudStorageBulkCopy#checkpoint()
+   * @see Builder#resumeFrom(Checkpoint)
+   */
+  public static final class Checkpoint implements Serializable {
+
+    private static final long serialVersionUID = 3418342566107398214L;
+
+    private final String source;
+    private final String target;
+    private final ImmutableSet<String> copied;
+    private final ImmutableMap<String, RestorableState<CopyWriter>> rewrites;
+    private final long bytesCopied;
+
+    private Checkpoint(String source, String target, ImmutableSet<String> copied,
+        ImmutableMap<String, RestorableState<CopyWriter>> rewrites, long bytesCopied) {
+      this.source = source;
+      this.target = target;
+      this.copied = copied;
+      this.rewrites = rewrites;
+      this.bytesCopied = bytesCopied;
+    }
+
+    /**
+     * Returns the number of objects that were completely copied.
+     */
+    public long objectsCopied() {
+      return copied.size();
+    }
+
+    /**
+     * Returns the number of bytes that were copied, including the bytes of the rewrites in
+     * progress.
+     */
+    public long bytesCopied() {
+      return bytesCopied;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("source", source)
+          .add("target", target)
+          .add("objectsCopied", objectsCopied())
+          .add("rewritesInProgress", rewrites.size())
+          .add("bytesCopied", bytesCopied)
+          .toString();
+    }
+  }
+
+  /**
+   * Builder for {@link CloudStorageBulkCopy}.
+   */
+  public static final class Builder {
+
+    private final CloudStoragePath source;
+    private final CloudStoragePath target;
+    private boolean deleteSource;
+    private boolean replaceExisting;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private Long megabytesRewrittenPerCall;
+    private ProgressListener listener;
+    private Checkpoint checkpoint;
+
+    private Builder(CloudStoragePath source, CloudStoragePath target) {
+      this.source = source;
+      this.target = target;
+    }
+
+    /**
+     * Sets whether every source object is deleted once it has been copied, that is whether the
+     * directory is moved rather than copied. The default is {@code false}.
+     */
+    public Builder deleteSource(boolean value) {
+      deleteSource = value;
+      return this;
+    }
+
+    /**
+     * Sets whether existing target objects are replaced. When {@code false}, the default, the
+     * copy fails if a target object exists.
+     */
+    public Builder replaceExisting(boolean value) {
+      replaceExisting = value;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of objects that are copied concurrently. The default is
+     * {@value CloudStorageBulkCopy#DEFAULT_PARALLELISM}.
+     */
+    public Builder parallelism(int value) {
+      checkArgument(value > 0, "parallelism must be positive: %s", value);
+      parallelism = value;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of megabytes rewritten by every rewrite call. By default the limit
+     * is chosen by the service. Rewrites within the same location and storage class always take a
+     * single call.
+     */
+    public Builder megabytesRewrittenPerCall(Long value) {
+      checkArgument(value == null || value > 0,
+          "megabytesRewrittenPerCall must be positive: %s", value);
+      megabytesRewrittenPerCall = value;
+      return this;
+    }
+
+    /**
+     * Sets the listener that receives the progress of the copy.
+     */
+    public Builder progressListener(ProgressListener value) {
+      listener = value;
+      return this;
+    }
+
+    /**
+     * Resumes the copy that returned {@code checkpoint}: objects that were copied are skipped, and
+     * rewrites in progress are continued.
+     *
+     * @throws IllegalArgumentException if {@code checkpoint} was returned by a copy of different
+     *     directories
+     */
+    public Builder resumeFrom(Checkpoint value) {
+      checkArgument(value.source.equals(uri(source)) && value.target.equals(uri(target)),
+          "Checkpoint of a copy from %s to %s", value.source, value.target);
+      checkpoint = value;
+      return this;
+    }
+
+    /**
+     * Creates a {@link CloudStorageBulkCopy} object.
+     */
+    public CloudStorageBulkCopy build() {
+      return new CloudStorageBulkCopy(this);
+    }
+  }
+
+  private CloudStorageBulkCopy(Builder builder) {
+    this.sourceProvider = builder.source.getFileSystem().provider();
+    this.targetProvider = builder.target.getFileSystem().provider();
+    this.storage = sourceProvider.storage();
+    this.sourceBucket = builder.source.bucket();
+    this.sourcePrefix = CloudStorageUtil.directoryPrefix(builder.source);
+    this.targetBucket = builder.target.bucket();
+    this.targetPrefix = CloudStorageUtil.directoryPrefix(builder.target);
+    checkArgument(!sourceBucket.equals(targetBucket) || !targetPrefix.startsWith(sourcePrefix),
+        "Can not copy %s to its own subdirectory %s", uri(builder.source), uri(builder.target));
+    this.deleteSource = builder.deleteSource;
+    this.replaceExisting = builder.replaceExisting;
+    this.parallelism = builder.parallelism;
+    this.megabytesRewrittenPerCall = builder.megabytesRewrittenPerCall;
+    this.listener = builder.listener;
+    if (builder.checkpoint != null) {
+      copied.addAll(builder.checkpoint.copied);
+      rewrites.putAll(builder.checkpoint.rewrites);
+      bytesCopied.set(builder.checkpoint.bytesCopied);
+    }
+  }
+
+  /**
+   * Returns a builder for a copy of all the objects under directory {@code source} to directory
+   * {@code target}. Both paths are treated as directories, whether or not they end with a slash.
+   *
+   * @throws ProviderMismatchException if a path is not a Cloud Storage path
+   */
+  public static Builder builder(Path source, Path target) {
+    return new Builder(CloudStorageUtil.checkPath(source), CloudStorageUtil.checkPath(target));
+  }
+
+  private static String uri(CloudStoragePath directory) {
+    return uri(directory.bucket(), CloudStorageUtil.directoryPrefix(directory));
+  }
+
+  /**
+   * Copies all the objects, blocking until they are copied.
+   *
+   * @throws IOException if an object could not be copied; objects copied by other threads in the
+   *     meantime are still recorded by {@link #checkpoint()}
+   * @throws FileAlreadyExistsException if a target object exists and existing objects are not
+   *     replaced
+   * @throws InterruptedIOException if the calling thread is interrupted
+   * @throws IllegalStateException if this copy was already run
+   */
+  public void run() throws IOException {
+    checkState(started.compareAndSet(false, true), "Copy was already run");
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("gcs-bulk-copy-%d").build());
+    // bounds the number of listed objects waiting to be copied
+    Semaphore pending = new Semaphore(2 * parallelism);
+    try {
+      try (ParallelListing listing = storage.parallelList(sourceBucket,
+          Storage.ParallelListOption.parallelism(parallelism),
+          Storage.ParallelListOption.listOptions(Storage.BlobListOption.prefix(sourcePrefix)))) {
+        while (failure.get() == null && listing.hasNext()) {
+          Blob blob = listing.next();
+          String name = blob.getName().substring(sourcePrefix.length());
+          if (copied.contains(name)) {
+            continue;
+          }
+          objectsListed.incrementAndGet();
+          bytesListed.addAndGet(MoreObjects.firstNonNull(blob.getSize(), 0L));
+          pending.acquire();
+          executor.execute(new CopyTask(name, blob, pending));
+        }
+      } catch (StorageException ex) {
+        failure.compareAndSet(null, ex);
+      }
+      pending.acquire(2 * parallelism);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      failure.compareAndSet(null, ex);
+      executor.shutdownNow();
+      throw new InterruptedIOException("Interrupted while copying " + sourcePrefix);
+    } finally {
+      executor.shutdown();
+    }
+    throwIfFailed();
+  }
+
+  private void throwIfFailed() throws IOException {
+    Throwable throwable = failure.get();
+    if (throwable == null) {
+      return;
+    }
+    if (throwable instanceof StorageException) {
+      throw CloudStorageFileSystemProvider.asIoException((StorageException) throwable);
+    }
+    Throwables.propagateIfPossible(throwable, IOException.class);
+    throw new IOException(throwable);
+  }
+
+  private final class CopyTask implements Runnable {
+
+    private final String name;
+    private final Blob source;
+    private final Semaphore pending;
+
+    CopyTask(String name, Blob source, Semaphore pending) {
+      this.name = name;
+      this.source = source;
+      this.pending = pending;
+    }
+
+    @Override
+    public void run() {
+      try {
+        if (failure.get() == null) {
+          copy();
+        }
+      } catch (RuntimeException | Error ex) {
+        failure.compareAndSet(null, ex);
+      } finally {
+        pending.release();
+      }
+    }
+
+    private void copy() {
+      BlobId targetId = BlobId.of(targetBucket, targetPrefix + name);
+      RestorableState<CopyWriter> state = rewrites.get(name);
+      CopyWriter writer;
+      if (state != null) {
+        writer = state.restore();
+      } else {
+        sourceProvider.invalidateAttributes(targetId);
+        targetProvider.invalidateAttributes(targetId);
+        writer = storage.copy(copyRequest(targetId));
+        bytesCopied.addAndGet(writer.getTotalBytesCopied());
+        rewrites.put(name, writer.capture());
+        notifyListener();
+      }
+      while (!writer.isDone()) {
+        if (failure.get() != null) {
+          return;
+        }
+        long before = writer.getTotalBytesCopied();
+        writer.copyChunk();
+        bytesCopied.addAndGet(writer.getTotalBytesCopied() - before);
+        rewrites.put(name, writer.capture());
+        notifyListener();
+      }
+      targetProvider.invalidateAttributes(targetId);
+      if (deleteSource) {
+        // only deletes the version that was copied
+        storage.delete(source.getBlobId());
+        sourceProvider.invalidateAttributes(source.getBlobId());
+      }
+      // recorded as copied before the rewrite is discarded, so that checkpoints never miss it
+      copied.add(name);
+      rewrites.remove(name);
+      notifyListener();
+    }
+
+    private Storage.CopyRequest copyRequest(BlobId targetId) {
+      Storage.CopyRequest.Builder builder = Storage.CopyRequest.newBuilder()
+          .setSource(source.getBlobId())
+          .setMegabytesCopiedPerChunk(megabytesRewrittenPerCall);
+      if (replaceExisting) {
+        // inherits all the attributes of the source object
+        return builder.setTarget(targetId).build();
+      }
+      BlobInfo target = BlobInfo.newBuilder(targetId)
+          .setContentType(source.getContentType())
+          .setCacheControl(source.getCacheControl())
+          .setContentEncoding(source.getContentEncoding())
+          .setContentDisposition(source.getContentDisposition())
+          .setContentLanguage(source.getContentLanguage())
+          .setMetadata(source.getMetadata())
+          .setAcl(source.getAcl())
+          .build();
+      return builder.setTarget(target, Storage.BlobTargetOption.doesNotExist()).build();
+    }
+  }
+
+  private void notifyListener() {
+    if (listener != null) {
+      listener.onProgress(this);
+    }
+  }
+
+  /**
+   * Returns a snapshot of the state of this copy, from which it can be resumed. Can be called at
+   * any time, including while the copy runs or after it failed.
+   */
+  public Checkpoint checkpoint() {
+    // objects are added to copied before their rewrite is removed, so read rewrites first
+    ImmutableMap<String, RestorableState<CopyWriter>> rewritesSnapshot =
+        ImmutableMap.copyOf(rewrites);
+    long bytes = bytesCopied.get();
+    return new Checkpoint(uri(sourceBucket, sourcePrefix), uri(targetBucket, targetPrefix),
+        ImmutableSet.copyOf(copied), rewritesSnapshot, bytes);
+  }
+
+  private static String uri(String bucket, String prefix) {
+    return String.format("gs://%s/%s", bucket, prefix);
+  }
+
+  /**
+   * Returns the number of source objects listed so far, excluding the objects skipped because they
+   * were copied before the copy was resumed.
+   */
+  public long objectsListed() {
+    return objectsListed.get();
+  }
+
+  /**
+   * Returns the total size of the source objects listed so far.
+   */
+  public long bytesListed() {
+    return bytesListed.get();
+  }
+
+  /**
+   * Returns the number of objects that were completely copied, including the objects copied
+   * before the copy was resumed.
+   */
+  public long objectsCopied() {
+    return copied.size();
+  }
+
+  /**
+   * Returns the number of bytes copied so far, including the bytes copied before the copy was
+   * resumed.
+   */
+  public long bytesCopied() {
+    return bytesCopied.get();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("source", uri(sourceBucket, sourcePrefix))
+        .add("target", uri(targetBucket, targetPrefix))
+        .add("deleteSource", deleteSource)
+        .add("objectsCopied", objectsCopied())
+        .add("bytesCopied", bytesCopied())
+        .toString();
+  }
+}
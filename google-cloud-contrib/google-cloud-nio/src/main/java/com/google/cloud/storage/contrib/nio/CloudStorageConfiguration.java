@@ -22,6 +22,8 @@ import com.google.auto.value.AutoValue;
 
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 /**
  * Configuration for {@link CloudStorageFileSystem} instances.
  */
@@ -59,6 +61,52 @@ public abstract class CloudStorageConfiguration {
    */
   public abstract int blockSize();
 
+  /**
+   * Returns the maximum number of bytes of object data cached in memory by read channels, or
+   * {@code 0} if blocks are not cached in memory. Data is cached in blocks of {@link #blockSize()}
+   * bytes, identified by bucket, object name and generation.
+   */
+  public abstract long blockCacheMemorySize();
+
+  /**
+   * Returns the maximum number of bytes of object data cached on local disk by read channels, or
+   * {@code 0} if blocks are not cached on disk. Blocks evicted from memory are moved to a
+   * memory-mapped file of this size.
+   */
+  public abstract long blockCacheDiskSize();
+
+  /**
+   * Returns the directory where the disk block cache file is created, or {@code null} to use the
+   * default temporary-file directory.
+   */
+  @Nullable
+  public abstract String blockCacheDirectory();
+
+  /**
+   * Returns the maximum number of object attributes cached by the file system provider, or
+   * {@code 0} if attributes are not cached.
+   */
+  public abstract long attributeCacheMaxSize();
+
+  /**
+   * Returns for how many milliseconds cached object attributes are used.
+   */
+  public abstract long attributeCacheTtlMillis();
+
+  /**
+   * Returns {@code true} if object attributes are cached.
+   */
+  boolean attributeCacheEnabled() {
+    return attributeCacheMaxSize() > 0 && attributeCacheTtlMillis() > 0;
+  }
+
+  /**
+   * Returns {@code true} if read channels cache the blocks they read.
+   */
+  boolean blockCacheEnabled() {
+    return blockCacheMemorySize() > 0 || blockCacheDiskSize() > 0;
+  }
+
   /**
    * Creates a new builder, initialized with the following settings:
    *
@@ -66,6 +114,8 @@ public abstract class CloudStorageConfiguration {
    * <li>Performing I/O on paths with extra slashes, e.g. {@code a//b} will throw an error.
    * <li>The prefix slash on absolute paths will be removed when converting to an object name.
    * <li>Pseudo-directories are enabled, so any path with a trailing slash is a fake directory.
+   * <li>Blocks read from objects are not cached.
+   * <li>Object attributes are not cached.
    * </ul>
    */
   public static Builder builder() {
@@ -82,6 +132,12 @@ public abstract class CloudStorageConfiguration {
     private boolean stripPrefixSlash = true;
     private boolean usePseudoDirectories = true;
     private int blockSize = CloudStorageFileSystem.BLOCK_SIZE_DEFAULT;
+    private long blockCacheMemorySize;
+    private long blockCacheDiskSize;
+    private String blockCacheDirectory;
+    private long attributeCacheMaxSize;
+    private long attributeCacheTtlMillis =
+        CloudStorageFileSystem.ATTRIBUTE_CACHE_TTL_MILLIS_DEFAULT;
 
     /**
      * Changes current working directory for new filesystem. This defaults to the root directory.
@@ -134,6 +190,75 @@ public abstract class CloudStorageConfiguration {
       return this;
     }
 
+    /**
+     * Sets the maximum number of bytes of object data that read channels cache in memory. File
+     * systems with equal configurations share the same cache, so that files opened many times are
+     * not downloaded again.
+     *
+     * <p>The default is {@code 0}, blocks are not cached in memory.
+     *
+     * @throws IllegalArgumentException if {@code value} is negative
+     */
+    public Builder blockCacheMemorySize(long value) {
+      checkArgument(value >= 0, "blockCacheMemorySize must not be negative: %s", value);
+      blockCacheMemorySize = value;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of bytes of object data that read channels cache on local disk.
+     * Blocks evicted from the memory cache are moved to a memory-mapped file of this size, which
+     * is deleted when the file is closed or the JVM exits.
+     *
+     * <p>The default is {@code 0}, blocks are not cached on disk.
+     *
+     * @throws IllegalArgumentException if {@code value} is negative
+     */
+    public Builder blockCacheDiskSize(long value) {
+      checkArgument(value >= 0, "blockCacheDiskSize must not be negative: %s", value);
+      blockCacheDiskSize = value;
+      return this;
+    }
+
+    /**
+     * Sets the directory where the disk block cache file is created. The default is the
+     * temporary-file directory of the JVM.
+     */
+    public Builder blockCacheDirectory(@Nullable String path) {
+      blockCacheDirectory = path;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of object attributes cached by the file system provider. Cached
+     * attributes serve {@code readAttributes}, {@code checkAccess} and the size lookup done when
+     * opening a file, and are also populated by directory listings. Writes, deletes, copies and
+     * moves done through the provider invalidate the attributes of the objects they change, but
+     * changes made by other clients are only seen when the cached attributes expire.
+     *
+     * <p>The default is {@code 0}, attributes are not cached.
+     *
+     * @throws IllegalArgumentException if {@code value} is negative
+     */
+    public Builder attributeCacheMaxSize(long value) {
+      checkArgument(value >= 0, "attributeCacheMaxSize must not be negative: %s", value);
+      attributeCacheMaxSize = value;
+      return this;
+    }
+
+    /**
+     * Sets for how many milliseconds cached object attributes are used.
+     *
+     * <p>The default is {@value CloudStorageFileSystem#ATTRIBUTE_CACHE_TTL_MILLIS_DEFAULT}.
+     *
+     * @throws IllegalArgumentException if {@code value} is negative
+     */
+    public Builder attributeCacheTtlMillis(long value) {
+      checkArgument(value >= 0, "attributeCacheTtlMillis must not be negative: %s", value);
+      attributeCacheTtlMillis = value;
+      return this;
+    }
+
     /**
      * Creates new instance without destroying builder.
      */
@@ -143,7 +268,12 @@ public abstract class CloudStorageConfiguration {
           permitEmptyPathComponents,
           stripPrefixSlash,
           usePseudoDirectories,
-          blockSize);
+          blockSize,
+          blockCacheMemorySize,
+          blockCacheDiskSize,
+          blockCacheDirectory,
+          attributeCacheMaxSize,
+          attributeCacheTtlMillis);
     }
 
     Builder() {}
@@ -168,6 +298,21 @@ public abstract class CloudStorageConfiguration {
         case "blockSize":
           builder.blockSize((Integer) entry.getValue());
           break;
+        case "blockCacheMemorySize":
+          builder.blockCacheMemorySize(((Number) entry.getValue()).longValue());
+          break;
+        case "blockCacheDiskSize":
+          builder.blockCacheDiskSize(((Number) entry.getValue()).longValue());
+          break;
+        case "blockCacheDirectory":
+          builder.blockCacheDirectory((String) entry.getValue());
+          break;
+        case "attributeCacheMaxSize":
+          builder.attributeCacheMaxSize(((Number) entry.getValue()).longValue());
+          break;
+        case "attributeCacheTtlMillis":
+          builder.attributeCacheTtlMillis(((Number) entry.getValue()).longValue());
+          break;
         default:
           throw new IllegalArgumentException(entry.getKey());
       }
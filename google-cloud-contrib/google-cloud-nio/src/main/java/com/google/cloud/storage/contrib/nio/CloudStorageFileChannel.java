@@ -0,0 +1,306 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Cloud Storage read-only file channel.
+ *
+ * <p>Positional reads, such as {@link #read(ByteBuffer, long)}, are served by independent ranged
+ * requests and do not share any state, so many threads can read a file concurrently. Reads that
+ * use the channel position are serialized. All reads see the generation of the object that
+ * existed when the channel was opened.
+ *
+ * <p>{@link #map(MapMode, long, long)} only supports {@link MapMode#READ_ONLY}: the requested
+ * region is downloaded to a temporary local file, which is then memory-mapped. The temporary file
+ * is deleted right away, its space is reclaimed once the mapped buffer is garbage collected.
+ *
+ * @see CloudStorageReadChannel
+ */
+@ThreadSafe
+final class CloudStorageFileChannel extends FileChannel {
+
+  private static final int TRANSFER_BUFFER_SIZE = 2 * 1024 * 1024;
+
+  private final Storage storage;
+  private final BlobId file;
+  private final long size;
+  private final int blockSize;
+  @GuardedBy("this")
+  private long position;
+
+  @CheckReturnValue
+  static CloudStorageFileChannel create(Storage gcsStorage, BlobId file, int blockSize)
+      throws IOException {
+    BlobInfo blobInfo = gcsStorage.get(file);
+    if (blobInfo == null) {
+      throw new NoSuchFileException(String.format("gs://%s/%s", file.getBucket(), file.getName()));
+    }
+    return create(gcsStorage, blobInfo, blockSize);
+  }
+
+  /**
+   * Creates a channel for the object described by {@code blobInfo}, whose size and generation
+   * were already fetched.
+   */
+  @CheckReturnValue
+  static CloudStorageFileChannel create(Storage gcsStorage, BlobInfo blobInfo, int blockSize) {
+    // pin the generation, so that all reads see the same object
+    BlobId pinned = BlobId.of(blobInfo.getBucket(), blobInfo.getName(), blobInfo.getGeneration());
+    return new CloudStorageFileChannel(gcsStorage, pinned, blobInfo.getSize(), blockSize);
+  }
+
+  private CloudStorageFileChannel(Storage storage, BlobId file, long size, int blockSize) {
+    this.storage = storage;
+    this.file = file;
+    this.size = size;
+    this.blockSize = blockSize > 0 ? blockSize : CloudStorageFileSystem.BLOCK_SIZE_DEFAULT;
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    synchronized (this) {
+      int amt = read(dst, position);
+      if (amt > 0) {
+        position += amt;
+      }
+      return amt;
+    }
+  }
+
+  @Override
+  public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+    checkArgument(offset >= 0 && length >= 0 && offset + length <= dsts.length);
+    synchronized (this) {
+      long total = 0;
+      for (int i = offset; i < offset + length; i++) {
+        if (!dsts[i].hasRemaining()) {
+          continue;
+        }
+        int amt = read(dsts[i]);
+        if (amt < 0) {
+          return total > 0 ? total : -1;
+        }
+        total += amt;
+        if (dsts[i].hasRemaining()) {
+          break;
+        }
+      }
+      return total;
+    }
+  }
+
+  /**
+   * Reads bytes starting at {@code position}, without changing the position of this channel. Every
+   * call is served by its own ranged request, and concurrent calls do not block each other.
+   */
+  @Override
+  public int read(ByteBuffer dst, long position) throws IOException {
+    checkArgument(position >= 0, "position must not be negative: %s", position);
+    checkOpen();
+    if (position >= size) {
+      return -1;
+    }
+    if (!dst.hasRemaining()) {
+      return 0;
+    }
+    int length = (int) Math.min(dst.remaining(), size - position);
+    int start = dst.position();
+    try (ReadChannel channel = storage.reader(file)) {
+      channel.chunkSize(length);
+      channel.seek(position);
+      int limit = dst.limit();
+      dst.limit(start + length);
+      try {
+        while (dst.hasRemaining() && channel.read(dst) >= 0) {
+          // keep reading until the range is complete or the object ends
+        }
+      } finally {
+        dst.limit(limit);
+      }
+    }
+    int amt = dst.position() - start;
+    return amt > 0 ? amt : -1;
+  }
+
+  @Override
+  public long position() throws IOException {
+    checkOpen();
+    synchronized (this) {
+      return position;
+    }
+  }
+
+  @Override
+  public FileChannel position(long newPosition) throws IOException {
+    checkArgument(newPosition >= 0, "position must not be negative: %s", newPosition);
+    checkOpen();
+    synchronized (this) {
+      position = newPosition;
+    }
+    return this;
+  }
+
+  @Override
+  public long size() throws IOException {
+    checkOpen();
+    return size;
+  }
+
+  @Override
+  public long transferTo(long position, long count, WritableByteChannel target)
+      throws IOException {
+    checkArgument(position >= 0 && count >= 0, "position and count must not be negative");
+    checkOpen();
+    long end = Math.min(size, position + count);
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(TRANSFER_BUFFER_SIZE,
+        Math.max(0, end - position)));
+    long transferred = 0;
+    while (position + transferred < end) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), end - position - transferred));
+      if (read(buffer, position + transferred) < 0) {
+        break;
+      }
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        transferred += target.write(buffer);
+      }
+    }
+    return transferred;
+  }
+
+  /**
+   * Maps a region of the object into memory. The region is downloaded to a temporary local file
+   * in blocks of the file system block size, which is then memory-mapped.
+   *
+   * @throws NonWritableChannelException if {@code mode} is not {@link MapMode#READ_ONLY}
+   */
+  @Override
+  public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+    if (mode != MapMode.READ_ONLY) {
+      throw new NonWritableChannelException();
+    }
+    checkArgument(position >= 0, "position must not be negative: %s", position);
+    checkArgument(size >= 0 && size <= Integer.MAX_VALUE, "invalid size: %s", size);
+    checkOpen();
+    Path spill = Files.createTempFile("gcs-map", ".tmp");
+    try (FileChannel local = FileChannel.open(spill, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+      ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(blockSize, Math.max(1, size)));
+      long copied = 0;
+      while (copied < size) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), size - copied));
+        if (read(buffer, position + copied) < 0) {
+          // past the end of the object, the rest of the region reads as zeros
+          break;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          copied += local.write(buffer, copied);
+        }
+      }
+      return local.map(MapMode.READ_ONLY, 0, size);
+    }
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public int write(ByteBuffer src, long position) throws IOException {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public FileChannel truncate(long size) throws IOException {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public long transferFrom(ReadableByteChannel src, long position, long count)
+      throws IOException {
+    throw new NonWritableChannelException();
+  }
+
+  /**
+   * Does nothing, as this channel can not write.
+   */
+  @Override
+  public void force(boolean metaData) throws IOException {
+    checkOpen();
+  }
+
+  /**
+   * Throws {@link UnsupportedOperationException} because Cloud Storage has no file locks.
+   */
+  @Override
+  public FileLock lock(long position, long size, boolean shared) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Throws {@link UnsupportedOperationException} because Cloud Storage has no file locks.
+   */
+  @Override
+  public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  protected void implCloseChannel() throws IOException {
+    // Every read uses its own request, there's nothing to release.
+  }
+
+  private void checkOpen() throws ClosedChannelException {
+    if (!isOpen()) {
+      throw new ClosedChannelException();
+    }
+  }
+}
@@ -20,20 +20,25 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.cloud.storage.StorageOptions;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableSet;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileStore;
 import java.nio.file.FileSystem;
+import java.nio.file.FileVisitor;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.nio.file.ProviderMismatchException;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.UserPrincipalLookupService;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nullable;
@@ -54,12 +59,14 @@ public final class CloudStorageFileSystem extends FileSystem {
   public static final String GCS_VIEW = "gcs";
   public static final String BASIC_VIEW = "basic";
   public static final int BLOCK_SIZE_DEFAULT = 2 * 1024 * 1024;
+  public static final long ATTRIBUTE_CACHE_TTL_MILLIS_DEFAULT = 10_000;
   public static final FileTime FILE_TIME_UNKNOWN = FileTime.fromMillis(0);
   public static final ImmutableSet<String> SUPPORTED_VIEWS = ImmutableSet.of(BASIC_VIEW, GCS_VIEW);
 
   private final CloudStorageFileSystemProvider provider;
   private final String bucket;
   private final CloudStorageConfiguration config;
+  private final AtomicBoolean closed = new AtomicBoolean();
 
   /**
    * Returns Google Cloud Storage {@link FileSystem} object for {@code bucket}.
@@ -99,8 +106,9 @@ public final class CloudStorageFileSystem extends FileSystem {
    *
    * <p>Google Cloud Storage file system objects are basically free. You can create as many as you
    * want, even if you have multiple instances for the same bucket. There's no actual system
-   * resources associated with this object. Therefore calling {@link #close()} on the returned value
-   * is optional.
+   * resources associated with this object, unless {@code config} enables the block cache.
+   * Therefore calling {@link #close()} on the returned value is only needed to release the block
+   * cache.
    *
    * <p><b>Note:</b> It is also possible to instantiate this class via Java's
    * {@code FileSystems.getFileSystem(URI.create("gs://bucket"))}. We discourage you
@@ -124,6 +132,7 @@ public final class CloudStorageFileSystem extends FileSystem {
     this.provider = provider;
     this.bucket = bucket;
     this.config = config;
+    provider.fileSystemOpened(config);
   }
 
   @Override
@@ -145,6 +154,60 @@ public final class CloudStorageFileSystem extends FileSystem {
     return config;
   }
 
+  /**
+   * Returns the statistics of the block cache used by the read channels of this file system. Hits
+   * are reads served from memory or local disk, misses are blocks downloaded from Cloud Storage,
+   * and evictions are blocks discarded from the cache. All counts are zero if
+   * {@link CloudStorageConfiguration#blockCacheMemorySize()} and
+   * {@link CloudStorageConfiguration#blockCacheDiskSize()} are both zero.
+   *
+   * <p>File systems of the same provider with equal configurations share their cache, and so
+   * their statistics.
+   */
+  public CacheStats blockCacheStats() {
+    return provider.blockCacheStats(config);
+  }
+
+  /**
+   * Returns the paths of all the objects under directory {@code dir}, at any depth, in no
+   * particular order. This is the equivalent of walking the directory, without returning the
+   * directories themselves.
+   *
+   * <p>Subdirectories of {@code dir} are listed concurrently, with at most {@code parallelism}
+   * list requests in flight, unless a single request can list the whole directory. Listing is
+   * paused while too many objects are waiting to be returned. The stream must be closed to stop
+   * listing if its iterator is not consumed to the end.
+   *
+   * @throws IOException if listing fails
+   * @throws IllegalArgumentException if {@code parallelism} is not positive
+   * @throws ProviderMismatchException if {@code dir} is not a Cloud Storage path
+   */
+  public DirectoryStream<Path> walk(Path dir, int parallelism) throws IOException {
+    return CloudStorageWalker.create(CloudStorageUtil.checkPath(dir), parallelism, false);
+  }
+
+  /**
+   * Walks the directory tree under {@code start}, listing its subdirectories concurrently like
+   * {@link #walk(Path, int)}. Objects and directories are visited in name order, with the same
+   * calls to {@code visitor} as {@link java.nio.file.Files#walkFileTree(Path, FileVisitor)}, except
+   * that {@link FileVisitor#visitFileFailed} is never called as listing returns the attributes of
+   * every object.
+   *
+   * @return {@code start}
+   * @throws IOException if listing fails, or if {@code visitor} throws it
+   * @throws IllegalArgumentException if {@code parallelism} is not positive
+   * @throws ProviderMismatchException if {@code start} is not a Cloud Storage path
+   */
+  public Path walkFileTree(Path start, int parallelism, FileVisitor<? super Path> visitor)
+      throws IOException {
+    checkNotNull(visitor);
+    try (CloudStorageWalker walker =
+        CloudStorageWalker.create(CloudStorageUtil.checkPath(start), parallelism, true)) {
+      walker.walk(start, visitor);
+    }
+    return start;
+  }
+
   /**
    * Converts Cloud Storage object name to a {@link Path} object.
    */
@@ -158,13 +221,18 @@ public final class CloudStorageFileSystem extends FileSystem {
   }
 
   /**
-   * Does nothing currently. This method <i>might</i> be updated in the future to close all channels
-   * associated with this file system object. However it's unlikely that even then, calling this
-   * method will become mandatory.
+   * Releases the block cache of this file system: when the last open file system of the same
+   * provider with an equal configuration is closed, the cache is discarded and its disk file
+   * deleted. Channels opened before are not closed. This method
+   * <i>might</i> be updated in the future to close all channels associated with this file system
+   * object. Calling this method is only needed if the configuration enables the block cache.
    */
   @Override
   public void close() throws IOException {
     // TODO(#809): Synchronously close all channels associated with this FileSystem instance.
+    if (closed.compareAndSet(false, true)) {
+      provider.fileSystemClosed(config);
+    }
   }
 
   /**
@@ -32,6 +32,9 @@ import com.google.cloud.storage.StorageOptions;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.primitives.Ints;
 
@@ -39,6 +42,7 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.AccessMode;
 import java.nio.file.AtomicMoveNotSupportedException;
@@ -67,8 +71,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Singleton;
 
@@ -87,6 +93,17 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
 
   private Storage storage;
   private StorageOptions storageOptions;
+  // block caches shared by the file systems of this provider with equal configurations
+  @GuardedBy("blockCaches")
+  private final Map<CloudStorageConfiguration, CloudStorageBlockCache> blockCaches =
+      new HashMap<>();
+  // number of open file systems of this provider for each configuration that enables caching
+  @GuardedBy("blockCaches")
+  private final Map<CloudStorageConfiguration, Integer> openFileSystems = new HashMap<>();
+  // attribute caches shared by the file systems of this provider with equal configurations
+  @GuardedBy("attributeCaches")
+  private final Map<CloudStorageConfiguration, Cache<BlobId, BlobInfo>> attributeCaches =
+      new HashMap<>();
 
   // used only when we create a new instance of CloudStorageFileSystemProvider.
   private static StorageOptions futureStorageOptions;
@@ -95,18 +112,26 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     private final Iterator<Blob> blobIterator;
     private final Filter<? super Path> filter;
     private final CloudStorageFileSystem fileSystem;
+    @Nullable private final Cache<BlobId, BlobInfo> attributeCache;
 
     LazyPathIterator(CloudStorageFileSystem fileSystem, Iterator<Blob> blobIterator,
-                     Filter<? super Path> filter) {
+                     Filter<? super Path> filter,
+                     @Nullable Cache<BlobId, BlobInfo> attributeCache) {
       this.blobIterator = blobIterator;
       this.filter = filter;
       this.fileSystem = fileSystem;
+      this.attributeCache = attributeCache;
     }
 
     @Override
     protected Path computeNext() {
       while (blobIterator.hasNext()) {
-        Path path = fileSystem.getPath(blobIterator.next().getName());
+        Blob blob = blobIterator.next();
+        if (attributeCache != null && !blob.isDirectory() && blob.getSize() != null) {
+          // listings return the same metadata as a get request
+          attributeCache.put(attributeKey(blob.getBlobId()), blob);
+        }
+        Path path = fileSystem.getPath(blob.getName());
         try {
           if (filter.accept(path)) {
             return path;
@@ -223,9 +248,41 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     }
   }
 
+  /**
+   * Returns a read-only {@link FileChannel} for an object. Positional reads, such as
+   * {@link FileChannel#read(java.nio.ByteBuffer, long)}, are served by independent ranged requests
+   * and can be issued concurrently by many threads. {@link FileChannel#map} supports
+   * {@link FileChannel.MapMode#READ_ONLY} only, by downloading the region to a memory-mapped
+   * temporary file. Writing is not supported yet.
+   */
+  @Override
+  public FileChannel newFileChannel(
+      Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+    checkNotNull(path);
+    initStorage();
+    CloudStorageUtil.checkNotNullArray(attrs);
+    checkReadOptions(options);
+    CloudStoragePath cloudPath = CloudStorageUtil.checkPath(path);
+    if (cloudPath.seemsLikeADirectoryAndUsePseudoDirectories()) {
+      throw new CloudStoragePseudoDirectoryException(cloudPath);
+    }
+    return CloudStorageFileChannel.create(storage, getExistingBlobInfo(cloudPath),
+        cloudPath.getFileSystem().config().blockSize());
+  }
+
   private SeekableByteChannel newReadChannel(Path path, Set<? extends OpenOption> options)
       throws IOException {
     initStorage();
+    checkReadOptions(options);
+    CloudStoragePath cloudPath = CloudStorageUtil.checkPath(path);
+    if (cloudPath.seemsLikeADirectoryAndUsePseudoDirectories()) {
+      throw new CloudStoragePseudoDirectoryException(cloudPath);
+    }
+    return CloudStorageReadChannel.create(storage, getExistingBlobInfo(cloudPath), 0,
+        blockCache(cloudPath.getFileSystem().config()));
+  }
+
+  private static void checkReadOptions(Set<? extends OpenOption> options) {
     for (OpenOption option : options) {
       if (option instanceof StandardOpenOption) {
         switch ((StandardOpenOption) option) {
@@ -251,17 +308,166 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
         throw new UnsupportedOperationException(option.toString());
       }
     }
-    CloudStoragePath cloudPath = CloudStorageUtil.checkPath(path);
-    if (cloudPath.seemsLikeADirectoryAndUsePseudoDirectories()) {
-      throw new CloudStoragePseudoDirectoryException(cloudPath);
+  }
+
+  /**
+   * Returns the block cache for file systems with configuration {@code config}, creating it if
+   * needed, or {@code null} if {@code config} does not enable caching or if all the file systems
+   * with configuration {@code config} are closed.
+   */
+  @Nullable
+  private CloudStorageBlockCache blockCache(CloudStorageConfiguration config) throws IOException {
+    if (!config.blockCacheEnabled()) {
+      return null;
+    }
+    synchronized (blockCaches) {
+      CloudStorageBlockCache cache = blockCaches.get(config);
+      if (cache == null && openFileSystems.containsKey(config)) {
+        cache = CloudStorageBlockCache.create(config);
+        blockCaches.put(config, cache);
+      }
+      return cache;
+    }
+  }
+
+  /**
+   * Returns the attribute cache for file systems with configuration {@code config}, creating it
+   * if needed, or {@code null} if {@code config} does not enable caching.
+   */
+  @Nullable
+  Cache<BlobId, BlobInfo> attributeCache(CloudStorageConfiguration config) {
+    if (!config.attributeCacheEnabled()) {
+      return null;
+    }
+    synchronized (attributeCaches) {
+      Cache<BlobId, BlobInfo> cache = attributeCaches.get(config);
+      if (cache == null) {
+        cache = CacheBuilder.newBuilder()
+            .maximumSize(config.attributeCacheMaxSize())
+            .expireAfterWrite(config.attributeCacheTtlMillis(), TimeUnit.MILLISECONDS)
+            .build();
+        attributeCaches.put(config, cache);
+      }
+      return cache;
+    }
+  }
+
+  /**
+   * Returns the attribute cache key of an object, which ignores the generation.
+   */
+  static BlobId attributeKey(BlobId blobId) {
+    return BlobId.of(blobId.getBucket(), blobId.getName());
+  }
+
+  /**
+   * Returns the metadata of the object at {@code path}, from the attribute cache if possible, or
+   * {@code null} if the object does not exist.
+   */
+  @Nullable
+  private BlobInfo getBlobInfo(CloudStoragePath path) {
+    Cache<BlobId, BlobInfo> cache = attributeCache(path.getFileSystem().config());
+    BlobId key = attributeKey(path.getBlobId());
+    if (cache != null) {
+      BlobInfo blobInfo = cache.getIfPresent(key);
+      if (blobInfo != null) {
+        return blobInfo;
+      }
+    }
+    BlobInfo blobInfo = storage.get(path.getBlobId());
+    // objects still being written have no size and are not cached
+    if (cache != null && blobInfo != null && blobInfo.getSize() != null) {
+      cache.put(key, blobInfo);
+    }
+    return blobInfo;
+  }
+
+  private BlobInfo getExistingBlobInfo(CloudStoragePath path) throws NoSuchFileException {
+    BlobInfo blobInfo = getBlobInfo(path);
+    if (blobInfo == null) {
+      BlobId blobId = path.getBlobId();
+      throw new NoSuchFileException(
+          String.format("gs://%s/%s", blobId.getBucket(), blobId.getName()));
+    }
+    return blobInfo;
+  }
+
+  /**
+   * Discards the cached attributes of the object at {@code path}, in all the attribute caches of
+   * this provider.
+   */
+  private void invalidateAttributes(CloudStoragePath path) {
+    invalidateAttributes(path.getBlobId());
+  }
+
+  /**
+   * Discards the cached attributes of object {@code blobId}, in all the attribute caches of this
+   * provider.
+   */
+  void invalidateAttributes(BlobId blobId) {
+    BlobId key = attributeKey(blobId);
+    synchronized (attributeCaches) {
+      for (Cache<BlobId, BlobInfo> cache : attributeCaches.values()) {
+        cache.invalidate(key);
+      }
+    }
+  }
+
+  /**
+   * Records that a file system with configuration {@code config} was opened.
+   */
+  void fileSystemOpened(CloudStorageConfiguration config) {
+    if (!config.blockCacheEnabled()) {
+      return;
+    }
+    synchronized (blockCaches) {
+      Integer count = openFileSystems.get(config);
+      openFileSystems.put(config, count == null ? 1 : count + 1);
+    }
+  }
+
+  /**
+   * Records that a file system with configuration {@code config} was closed. When the last file
+   * system with configuration {@code config} is closed, its block cache is closed and removed.
+   *
+   * @throws IOException if the block cache can not be closed
+   */
+  void fileSystemClosed(CloudStorageConfiguration config) throws IOException {
+    if (!config.blockCacheEnabled()) {
+      return;
+    }
+    CloudStorageBlockCache cache;
+    synchronized (blockCaches) {
+      Integer count = openFileSystems.get(config);
+      if (count == null) {
+        return;
+      }
+      if (count > 1) {
+        openFileSystems.put(config, count - 1);
+        return;
+      }
+      openFileSystems.remove(config);
+      cache = blockCaches.remove(config);
+    }
+    if (cache != null) {
+      cache.close();
+    }
+  }
+
+  /**
+   * Returns the statistics of the block cache for file systems with configuration
+   * {@code config}.
+   */
+  CacheStats blockCacheStats(CloudStorageConfiguration config) {
+    synchronized (blockCaches) {
+      CloudStorageBlockCache cache = blockCaches.get(config);
+      return cache != null ? cache.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
     }
-    return CloudStorageReadChannel.create(storage, cloudPath.getBlobId(), 0);
   }
 
   private SeekableByteChannel newWriteChannel(Path path, Set<? extends OpenOption> options)
       throws IOException {
     initStorage();
-    CloudStoragePath cloudPath = CloudStorageUtil.checkPath(path);
+    final CloudStoragePath cloudPath = CloudStorageUtil.checkPath(path);
     if (cloudPath.seemsLikeADirectoryAndUsePseudoDirectories()) {
       throw new CloudStoragePseudoDirectoryException(cloudPath);
     }
@@ -323,10 +529,17 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
       infoBuilder.setAcl(acls);
     }
 
+    invalidateAttributes(cloudPath);
     try {
       return new CloudStorageWriteChannel(
           storage.writer(infoBuilder.build(),
-              writeOptions.toArray(new Storage.BlobWriteOption[writeOptions.size()])));
+              writeOptions.toArray(new Storage.BlobWriteOption[writeOptions.size()])),
+          new Runnable() {
+            @Override
+            public void run() {
+              invalidateAttributes(cloudPath);
+            }
+          });
     } catch (StorageException oops) {
       throw asIoException(oops);
     }
@@ -353,6 +566,7 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     if (cloudPath.seemsLikeADirectoryAndUsePseudoDirectories()) {
       throw new CloudStoragePseudoDirectoryException(cloudPath);
     }
+    invalidateAttributes(cloudPath);
     return storage.delete(cloudPath.getBlobId());
   }
 
@@ -460,6 +674,7 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
       throw new CloudStoragePseudoDirectoryException(toPath);
     }
 
+    invalidateAttributes(toPath);
     try {
       if (wantCopyAttributes) {
         BlobInfo blobInfo = storage.get(fromPath.getBlobId());
@@ -494,6 +709,8 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
       copyWriter.getResult();
     } catch (StorageException oops) {
       throw asIoException(oops);
+    } finally {
+      invalidateAttributes(toPath);
     }
   }
 
@@ -528,6 +745,13 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     if (cloudPath.seemsLikeADirectoryAndUsePseudoDirectories()) {
       return;
     }
+    if (cloudPath.getFileSystem().config().attributeCacheEnabled()) {
+      // fetches all the attributes, so that they can be cached
+      if (getBlobInfo(cloudPath) == null) {
+        throw new NoSuchFileException(path.toString());
+      }
+      return;
+    }
     if (storage.get(cloudPath.getBlobId(), Storage.BlobGetOption.fields(Storage.BlobField.ID))
         == null) {
       throw new NoSuchFileException(path.toString());
@@ -549,7 +773,7 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
       A result = (A) new CloudStoragePseudoDirectoryAttributes(cloudPath);
       return result;
     }
-    BlobInfo blobInfo = storage.get(cloudPath.getBlobId());
+    BlobInfo blobInfo = getBlobInfo(cloudPath);
     // null size indicate a file that we haven't closed yet, so GCS treats it as not there yet.
     if (null == blobInfo || blobInfo.getSize() == null) {
       throw new NoSuchFileException(
@@ -599,13 +823,22 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     checkNotNull(filter);
     initStorage();
     String prefix = cloudPath.toString();
+    final Cache<BlobId, BlobInfo> attributeCache =
+        attributeCache(cloudPath.getFileSystem().config());
+    List<Storage.BlobListOption> listOptions = new ArrayList<>();
+    listOptions.add(Storage.BlobListOption.prefix(prefix));
+    listOptions.add(Storage.BlobListOption.currentDirectory());
+    if (attributeCache == null) {
+      // names are enough, unless the listed attributes are cached
+      listOptions.add(Storage.BlobListOption.fields());
+    }
     final Iterator<Blob> blobIterator = storage.list(cloudPath.bucket(),
-        Storage.BlobListOption.prefix(prefix), Storage.BlobListOption.currentDirectory(),
-        Storage.BlobListOption.fields()).iterateAll();
+        listOptions.toArray(new Storage.BlobListOption[listOptions.size()])).iterateAll();
     return new DirectoryStream<Path>() {
       @Override
       public Iterator<Path> iterator() {
-        return new LazyPathIterator(cloudPath.getFileSystem(), blobIterator, filter);
+        return new LazyPathIterator(cloudPath.getFileSystem(), blobIterator, filter,
+            attributeCache);
       }
 
       @Override
@@ -643,13 +876,21 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     return Objects.hash(storage);
   }
 
+  /**
+   * Returns the storage client used by this provider, creating it if needed.
+   */
+  Storage storage() {
+    initStorage();
+    return storage;
+  }
+
   @Override
   public String toString() {
     initStorage();
     return MoreObjects.toStringHelper(this).add("storage", storage).toString();
   }
 
-  private IOException asIoException(StorageException oops) {
+  static IOException asIoException(StorageException oops) {
     // RPC API can only throw StorageException, but CloudStorageFileSystemProvider
     // can only throw IOException. Square peg, round hole.
     // TODO(#810): Research if other codes should be translated similarly.
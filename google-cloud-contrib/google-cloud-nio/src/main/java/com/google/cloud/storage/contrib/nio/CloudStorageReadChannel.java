@@ -29,39 +29,81 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
 
 import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * Cloud Storage read channel.
  *
+ * <p>If a {@link CloudStorageBlockCache} is provided, data is read in blocks of the cache's block
+ * size, and blocks are served from the cache when possible. Objects without a generation are not
+ * cached.
+ *
  * @see CloudStorageWriteChannel
  */
 @ThreadSafe
 final class CloudStorageReadChannel implements SeekableByteChannel {
 
   private final ReadChannel channel;
+  @Nullable private final CloudStorageBlockCache cache;
+  private final BlobId blobId;
   private long position;
   private long size;
 
   @CheckReturnValue
-  @SuppressWarnings("resource")
   static CloudStorageReadChannel create(Storage gcsStorage, BlobId file, long position)
       throws IOException {
+    return create(gcsStorage, file, position, null);
+  }
+
+  @CheckReturnValue
+  static CloudStorageReadChannel create(Storage gcsStorage, BlobId file, long position,
+      @Nullable CloudStorageBlockCache cache) throws IOException {
     // XXX: Reading size and opening file should be atomic.
-    long size = fetchSize(gcsStorage, file);
+    return create(gcsStorage, file, fetchInfo(gcsStorage, file), position, cache);
+  }
+
+  /**
+   * Creates a channel for the object described by {@code blobInfo}, whose size and generation
+   * were already fetched.
+   */
+  @CheckReturnValue
+  static CloudStorageReadChannel create(Storage gcsStorage, BlobInfo blobInfo, long position,
+      @Nullable CloudStorageBlockCache cache) throws IOException {
+    return create(gcsStorage, BlobId.of(blobInfo.getBucket(), blobInfo.getName()), blobInfo,
+        position, cache);
+  }
+
+  @SuppressWarnings("resource")
+  private static CloudStorageReadChannel create(Storage gcsStorage, BlobId file,
+      BlobInfo blobInfo, long position, @Nullable CloudStorageBlockCache cache)
+      throws IOException {
+    long size = blobInfo.getSize();
+    if (cache != null && blobInfo.getGeneration() != null) {
+      // pin the generation, so that cached blocks and blocks read later belong to the same object
+      BlobId blobId = BlobId.of(file.getBucket(), file.getName(), blobInfo.getGeneration());
+      ReadChannel channel = gcsStorage.reader(blobId);
+      channel.chunkSize(cache.blockSize());
+      return new CloudStorageReadChannel(position, size, channel, cache, blobId);
+    }
     ReadChannel channel = gcsStorage.reader(file);
     if (position > 0) {
       channel.seek((int) position);
     }
-    return new CloudStorageReadChannel(position, size, channel);
+    return new CloudStorageReadChannel(position, size, channel, null, file);
   }
 
-  private CloudStorageReadChannel(long position, long size, ReadChannel channel) {
+  private CloudStorageReadChannel(long position, long size, ReadChannel channel,
+      @Nullable CloudStorageBlockCache cache, BlobId blobId) {
     this.position = position;
     this.size = size;
     this.channel = channel;
+    this.cache = cache;
+    this.blobId = blobId;
   }
 
   @Override
@@ -82,6 +124,9 @@ final class CloudStorageReadChannel implements SeekableByteChannel {
   public int read(ByteBuffer dst) throws IOException {
     synchronized (this) {
       checkOpen();
+      if (cache != null) {
+        return readCached(dst);
+      }
       int amt = channel.read(dst);
       if (amt > 0) {
         position += amt;
@@ -94,6 +139,45 @@ final class CloudStorageReadChannel implements SeekableByteChannel {
     }
   }
 
+  private int readCached(ByteBuffer dst) throws IOException {
+    if (position >= size) {
+      return -1;
+    }
+    if (!dst.hasRemaining()) {
+      return 0;
+    }
+    int blockSize = cache.blockSize();
+    long index = position / blockSize;
+    byte[] block = cache.get(
+        new CloudStorageBlockCache.BlockKey(
+            blobId.getBucket(), blobId.getName(), blobId.getGeneration(), index),
+        blockLoader(index * blockSize, (int) Math.min(blockSize, size - index * blockSize)));
+    int offset = (int) (position - index * blockSize);
+    if (offset >= block.length) {
+      // the object is shorter than its reported size
+      return -1;
+    }
+    int amt = Math.min(dst.remaining(), block.length - offset);
+    dst.put(block, offset, amt);
+    position += amt;
+    return amt;
+  }
+
+  private Callable<byte[]> blockLoader(final long start, final int length) {
+    return new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws IOException {
+        channel.seek(start);
+        ByteBuffer block = ByteBuffer.allocate(length);
+        while (block.hasRemaining() && channel.read(block) >= 0) {
+          // keep reading until the block is full or the object ends
+        }
+        return block.hasRemaining() ? Arrays.copyOf(block.array(), block.position())
+            : block.array();
+      }
+    };
+  }
+
   @Override
   public long size() throws IOException {
     synchronized (this) {
@@ -118,7 +202,9 @@ final class CloudStorageReadChannel implements SeekableByteChannel {
       if (newPosition == position) {
         return this;
       }
-      channel.seek(newPosition);
+      if (cache == null) {
+        channel.seek(newPosition);
+      }
       position = newPosition;
       return this;
     }
@@ -140,11 +226,11 @@ final class CloudStorageReadChannel implements SeekableByteChannel {
     }
   }
 
-  private static long fetchSize(Storage gcsStorage, BlobId file) throws IOException {
+  private static BlobInfo fetchInfo(Storage gcsStorage, BlobId file) throws IOException {
     BlobInfo blobInfo = gcsStorage.get(file);
     if (blobInfo == null) {
       throw new NoSuchFileException(String.format("gs://%s/%s", file.getBucket(), file.getName()));
     }
-    return blobInfo.getSize();
+    return blobInfo;
   }
 }
@@ -51,6 +51,18 @@ final class CloudStorageUtil {
     return (CloudStoragePath) path;
   }
 
+  /**
+   * Returns the object name prefix of the objects under {@code directory}, which is empty or ends
+   * with a slash, whether or not {@code directory} ends with a slash.
+   */
+  static String directoryPrefix(CloudStoragePath directory) {
+    String name = directory.toAbsolutePath().normalize().toString();
+    if (name.startsWith("/")) {
+      name = name.substring(1);
+    }
+    return name.isEmpty() || name.endsWith("/") ? name : name + "/";
+  }
+
   static URI stripPathFromUri(URI uri) {
     try {
       return new URI(
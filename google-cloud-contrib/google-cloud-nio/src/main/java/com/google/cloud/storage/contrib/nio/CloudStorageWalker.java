@@ -0,0 +1,257 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.cloud.Page;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.ParallelListing;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.common.cache.Cache;
+import com.google.common.collect.AbstractIterator;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import javax.annotation.Nullable;
+
+/**
+ * Lists all the objects under a directory, at any depth.
+ *
+ * <p>A first page of a flat listing of the directory is requested. If the whole directory fits in
+ * that page, no other request is needed. Otherwise the directory is listed again by
+ * {@link Storage#parallelList}, which lists its subdirectories concurrently with at most
+ * {@code parallelism} requests in flight. Listed objects are buffered in a bounded queue, so that
+ * listing waits for the caller to consume them.
+ *
+ * @see CloudStorageFileSystem#walk(Path, int)
+ * @see CloudStorageFileSystem#walkFileTree(Path, int, FileVisitor)
+ */
+final class CloudStorageWalker implements DirectoryStream<Path> {
+
+  // the maximum page size of a listing
+  static final int FLAT_LISTING_PAGE_SIZE = 1000;
+
+  private final CloudStorageFileSystem fileSystem;
+  private final String prefix;
+  private final Iterator<Blob> blobs;
+  @Nullable private final ParallelListing listing;
+  @Nullable private final Cache<BlobId, BlobInfo> attributeCache;
+  private boolean iterated;
+
+  private CloudStorageWalker(CloudStorageFileSystem fileSystem, String prefix,
+      Iterator<Blob> blobs, @Nullable ParallelListing listing) {
+    this.fileSystem = fileSystem;
+    this.prefix = prefix;
+    this.blobs = blobs;
+    this.listing = listing;
+    this.attributeCache = fileSystem.provider().attributeCache(fileSystem.config());
+  }
+
+  /**
+   * Starts listing the objects under {@code directory}. Objects are returned in name order if
+   * {@code ordered} is {@code true}, in any order otherwise.
+   */
+  static CloudStorageWalker create(CloudStoragePath directory, int parallelism, boolean ordered)
+      throws IOException {
+    return create(directory, parallelism, ordered, FLAT_LISTING_PAGE_SIZE);
+  }
+
+  static CloudStorageWalker create(CloudStoragePath directory, int parallelism, boolean ordered,
+      int flatPageSize) throws IOException {
+    checkArgument(parallelism > 0, "parallelism must be positive: %s", parallelism);
+    CloudStorageFileSystem fileSystem = directory.getFileSystem();
+    Storage storage = fileSystem.provider().storage();
+    String prefix = CloudStorageUtil.directoryPrefix(directory);
+    try {
+      if (parallelism == 1) {
+        Page<Blob> page = storage.list(fileSystem.bucket(), Storage.BlobListOption.prefix(prefix));
+        return new CloudStorageWalker(fileSystem, prefix, page.iterateAll(), null);
+      }
+      Page<Blob> page = storage.list(fileSystem.bucket(), Storage.BlobListOption.prefix(prefix),
+          Storage.BlobListOption.pageSize(flatPageSize));
+      if (page.nextPageCursor() == null) {
+        // flat listings are sorted by name
+        return new CloudStorageWalker(fileSystem, prefix, page.values().iterator(), null);
+      }
+      ParallelListing listing = ordered
+          ? storage.parallelList(fileSystem.bucket(),
+              Storage.ParallelListOption.parallelism(parallelism),
+              Storage.ParallelListOption.ordered(),
+              Storage.ParallelListOption.listOptions(Storage.BlobListOption.prefix(prefix)))
+          : storage.parallelList(fileSystem.bucket(),
+              Storage.ParallelListOption.parallelism(parallelism),
+              Storage.ParallelListOption.listOptions(Storage.BlobListOption.prefix(prefix)));
+      return new CloudStorageWalker(fileSystem, prefix, listing, listing);
+    } catch (StorageException oops) {
+      throw CloudStorageFileSystemProvider.asIoException(oops);
+    }
+  }
+
+  /**
+   * Returns the next listed object, or {@code null} if there are no more objects. Listed
+   * attributes are cached if the file system caches attributes.
+   */
+  @Nullable
+  private Blob nextBlob() throws IOException {
+    try {
+      while (blobs.hasNext()) {
+        Blob blob = blobs.next();
+        if (blob.isDirectory()) {
+          continue;
+        }
+        if (attributeCache != null && blob.getSize() != null) {
+          attributeCache.put(CloudStorageFileSystemProvider.attributeKey(blob.getBlobId()), blob);
+        }
+        return blob;
+      }
+      return null;
+    } catch (StorageException oops) {
+      throw CloudStorageFileSystemProvider.asIoException(oops);
+    }
+  }
+
+  /**
+   * Returns the paths of the listed objects. Objects whose name ends with a slash, that some tools
+   * create to mark directories, are not returned.
+   *
+   * @throws IllegalStateException if called more than once
+   */
+  @Override
+  public Iterator<Path> iterator() {
+    checkState(!iterated, "Iterator already obtained");
+    iterated = true;
+    return new AbstractIterator<Path>() {
+      @Override
+      protected Path computeNext() {
+        try {
+          for (Blob blob = nextBlob(); blob != null; blob = nextBlob()) {
+            if (!blob.getName().endsWith("/")) {
+              return fileSystem.getPath(blob.getName());
+            }
+          }
+        } catch (IOException ex) {
+          throw new DirectoryIteratorException(ex);
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  /**
+   * Visits the listed objects, which must be in name order, with {@code visitor}. Directories are
+   * derived from object names: as objects with the same prefix are listed together, every
+   * directory is visited before the first object under it and after the last one.
+   */
+  void walk(Path start, FileVisitor<? super Path> visitor) throws IOException {
+    FileVisitResult result =
+        visitor.preVisitDirectory(start, new CloudStoragePseudoDirectoryAttributes(
+            CloudStorageUtil.checkPath(start)));
+    if (result != FileVisitResult.CONTINUE) {
+      return;
+    }
+    // open directories, relative to prefix
+    Deque<String> directories = new ArrayDeque<>();
+    directories.push("");
+    // objects under this directory are not visited
+    String skipped = null;
+    for (Blob blob = nextBlob(); blob != null; blob = nextBlob()) {
+      String name = blob.getName().substring(prefix.length());
+      if (skipped != null && name.startsWith(skipped)) {
+        continue;
+      }
+      skipped = null;
+      while (!name.startsWith(directories.peek())) {
+        String directory = directories.pop();
+        result = visitor.postVisitDirectory(directoryPath(directory), null);
+        if (result == FileVisitResult.TERMINATE) {
+          return;
+        } else if (result == FileVisitResult.SKIP_SIBLINGS) {
+          skipped = directories.peek();
+        }
+      }
+      if (skipped != null && name.startsWith(skipped)) {
+        continue;
+      }
+      skipped = null;
+      int slash = name.indexOf('/', directories.peek().length());
+      while (slash >= 0 && skipped == null) {
+        String directory = name.substring(0, slash + 1);
+        Path path = directoryPath(directory);
+        result = visitor.preVisitDirectory(path,
+            new CloudStoragePseudoDirectoryAttributes(CloudStorageUtil.checkPath(path)));
+        switch (result) {
+          case TERMINATE:
+            return;
+          case SKIP_SUBTREE:
+            skipped = directory;
+            break;
+          case SKIP_SIBLINGS:
+            skipped = directories.peek();
+            break;
+          case CONTINUE:
+          default:
+            directories.push(directory);
+            slash = name.indexOf('/', slash + 1);
+        }
+      }
+      if (skipped != null || name.endsWith("/")) {
+        continue;
+      }
+      result = visitor.visitFile(fileSystem.getPath(blob.getName()),
+          new CloudStorageObjectAttributes(blob));
+      if (result == FileVisitResult.TERMINATE) {
+        return;
+      } else if (result == FileVisitResult.SKIP_SIBLINGS) {
+        skipped = directories.peek();
+      }
+    }
+    while (directories.size() > 1) {
+      if (visitor.postVisitDirectory(directoryPath(directories.pop()), null)
+          == FileVisitResult.TERMINATE) {
+        return;
+      }
+    }
+    visitor.postVisitDirectory(start, null);
+  }
+
+  private Path directoryPath(String directory) {
+    return fileSystem.getPath(prefix + directory);
+  }
+
+  /**
+   * Stops listing.
+   */
+  @Override
+  public void close() {
+    if (listing != null) {
+      listing.close();
+    }
+  }
+}
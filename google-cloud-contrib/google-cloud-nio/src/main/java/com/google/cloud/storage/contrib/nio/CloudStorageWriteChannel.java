@@ -24,6 +24,7 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.NonReadableChannelException;
 import java.nio.channels.SeekableByteChannel;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -37,11 +38,21 @@ import javax.annotation.concurrent.ThreadSafe;
 final class CloudStorageWriteChannel implements SeekableByteChannel {
 
   private final WriteChannel channel;
+  @Nullable private final Runnable closeListener;
+  private boolean closed;
   private long position;
   private long size;
 
   CloudStorageWriteChannel(WriteChannel channel) {
+    this(channel, null);
+  }
+
+  /**
+   * Creates a channel that runs {@code closeListener} once the object has been written.
+   */
+  CloudStorageWriteChannel(WriteChannel channel, @Nullable Runnable closeListener) {
     this.channel = channel;
+    this.closeListener = closeListener;
   }
 
   @Override
@@ -55,6 +66,10 @@ final class CloudStorageWriteChannel implements SeekableByteChannel {
   public void close() throws IOException {
     synchronized (this) {
       channel.close();
+      if (!closed && closeListener != null) {
+        closeListener.run();
+      }
+      closed = true;
     }
   }
 
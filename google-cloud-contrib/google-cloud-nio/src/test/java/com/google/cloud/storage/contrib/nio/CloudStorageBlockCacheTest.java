@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.cloud.storage.contrib.nio.CloudStorageBlockCache.BlockKey;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link CloudStorageBlockCache}.
+ */
+@RunWith(JUnit4.class)
+public class CloudStorageBlockCacheTest {
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final AtomicInteger loads = new AtomicInteger();
+  private CloudStorageBlockCache cache;
+
+  @After
+  public void after() throws IOException {
+    if (cache != null) {
+      cache.close();
+    }
+  }
+
+  private static BlockKey key(long index) {
+    return new BlockKey("bucket", "object", 1L, index);
+  }
+
+  private Callable<byte[]> loader(final int value) {
+    return new Callable<byte[]>() {
+      @Override
+      public byte[] call() {
+        loads.incrementAndGet();
+        byte[] block = new byte[10];
+        block[0] = (byte) value;
+        return block;
+      }
+    };
+  }
+
+  private CloudStorageBlockCache create(long memorySize, long diskSize) throws IOException {
+    return CloudStorageBlockCache.create(CloudStorageConfiguration.builder()
+        .blockSize(10)
+        .blockCacheMemorySize(memorySize)
+        .blockCacheDiskSize(diskSize)
+        .blockCacheDirectory(folder.getRoot().getPath())
+        .build());
+  }
+
+  @Test
+  public void testCreate_disabled() throws IOException {
+    assertThat(CloudStorageBlockCache.create(CloudStorageConfiguration.DEFAULT)).isNull();
+  }
+
+  @Test
+  public void testMemoryHit() throws IOException {
+    cache = create(100, 0);
+    assertThat(cache.get(key(0), loader(1))[0]).isEqualTo((byte) 1);
+    assertThat(cache.get(key(0), loader(2))[0]).isEqualTo((byte) 1);
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(cache.stats().hitCount()).isEqualTo(1);
+    assertThat(cache.stats().missCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testGenerationsAreDistinct() throws IOException {
+    cache = create(100, 0);
+    cache.get(new BlockKey("bucket", "object", 1L, 0), loader(1));
+    assertThat(cache.get(new BlockKey("bucket", "object", 2L, 0), loader(2))[0])
+        .isEqualTo((byte) 2);
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testMemoryEviction() throws IOException {
+    cache = create(20, 0);
+    for (int i = 0; i < 3; i++) {
+      cache.get(key(i), loader(i));
+    }
+    assertThat(cache.stats().evictionCount()).isEqualTo(1);
+    cache.get(key(0), loader(5));
+    assertThat(loads.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void testDiskTier() throws IOException {
+    cache = create(10, 20);
+    for (int i = 0; i < 3; i++) {
+      cache.get(key(i), loader(i));
+    }
+    // blocks 0 and 1 were moved to disk
+    assertThat(cache.stats().evictionCount()).isEqualTo(0);
+    assertThat(cache.get(key(0), loader(5))[0]).isEqualTo((byte) 0);
+    assertThat(cache.get(key(1), loader(5))[0]).isEqualTo((byte) 1);
+    assertThat(loads.get()).isEqualTo(3);
+    cache.get(key(3), loader(3));
+    cache.get(key(4), loader(4));
+    assertThat(cache.stats().evictionCount()).isAtLeast(1L);
+  }
+
+  @Test
+  public void testDiskTierOnly() throws IOException {
+    cache = create(0, 100);
+    cache.get(key(0), loader(7));
+    assertThat(cache.get(key(0), loader(8))[0]).isEqualTo((byte) 7);
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testLoadFailure() throws IOException {
+    cache = create(100, 0);
+    thrown.expect(IOException.class);
+    thrown.expectMessage("boom");
+    try {
+      cache.get(key(0), new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws IOException {
+          throw new IOException("boom");
+        }
+      });
+    } finally {
+      assertThat(cache.stats().loadExceptionCount()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testClose_deletesDiskFile() throws IOException {
+    cache = create(0, 100);
+    cache.get(key(0), loader(1));
+    cache.close();
+    cache = null;
+    assertThat(folder.getRoot().list()).isEmpty();
+  }
+
+  @Test
+  public void testGetAfterClose() throws IOException {
+    cache = create(10, 20);
+    cache.get(key(0), loader(0));
+    cache.close();
+    for (int i = 1; i < 4; i++) {
+      assertThat(cache.get(key(i), loader(i))[0]).isEqualTo((byte) i);
+    }
+    assertThat(cache.stats().evictionCount()).isEqualTo(2);
+    cache = null;
+  }
+}
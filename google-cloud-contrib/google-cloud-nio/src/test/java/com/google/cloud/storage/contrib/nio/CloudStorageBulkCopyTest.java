@@ -0,0 +1,230 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.cloud.storage.StorageOptions;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link CloudStorageBulkCopy}.
+ */
+@RunWith(JUnit4.class)
+public class CloudStorageBulkCopyTest {
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+
+  private static final int MEGABYTE = 1024 * 1024;
+  private static final String[] NAMES = {"a", "b/c", "b/d", "b/e/f", "g/h"};
+
+  private CloudStorageFileSystem source;
+  private CloudStorageFileSystem target;
+
+  @Before
+  public void before() throws IOException {
+    StorageOptions options = LocalStorageHelper.options();
+    CloudStorageConfiguration config = CloudStorageConfiguration.DEFAULT;
+    source = CloudStorageFileSystem.forBucket("bucket", config, options);
+    target = CloudStorageFileSystem.forBucket("archive", config, options);
+    for (String name : NAMES) {
+      Files.write(source.getPath("dir/" + name), name.getBytes(UTF_8));
+    }
+    Files.write(source.getPath("other"), "other".getBytes(UTF_8));
+  }
+
+  @After
+  public void after() throws IOException {
+    source.close();
+    target.close();
+  }
+
+  private static byte[] data(int size) {
+    byte[] data = new byte[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = (byte) i;
+    }
+    return data;
+  }
+
+  @Test
+  public void testCopy() throws IOException {
+    CloudStorageBulkCopy copy = CloudStorageBulkCopy.builder(source.getPath("dir"),
+        target.getPath("copy/")).parallelism(2).build();
+    copy.run();
+    for (String name : NAMES) {
+      assertThat(new String(Files.readAllBytes(target.getPath("copy/" + name)), UTF_8))
+          .isEqualTo(name);
+      assertThat(Files.exists(source.getPath("dir/" + name))).isTrue();
+    }
+    assertThat(Files.exists(target.getPath("copy/other"))).isFalse();
+    assertThat(copy.objectsListed()).isEqualTo(NAMES.length);
+    assertThat(copy.objectsCopied()).isEqualTo(NAMES.length);
+    assertThat(copy.bytesCopied()).isEqualTo(copy.bytesListed());
+  }
+
+  @Test
+  public void testMove() throws IOException {
+    CloudStorageBulkCopy.builder(source.getPath("dir/"), target.getPath("/"))
+        .deleteSource(true)
+        .build()
+        .run();
+    for (String name : NAMES) {
+      assertThat(new String(Files.readAllBytes(target.getPath(name)), UTF_8)).isEqualTo(name);
+      assertThat(Files.exists(source.getPath("dir/" + name))).isFalse();
+    }
+    assertThat(Files.exists(source.getPath("other"))).isTrue();
+  }
+
+  @Test
+  public void testCopy_targetExists() throws IOException {
+    Files.write(target.getPath("copy/b/c"), "existing".getBytes(UTF_8));
+    CloudStorageBulkCopy copy = CloudStorageBulkCopy.builder(source.getPath("dir/"),
+        target.getPath("copy/")).build();
+    try {
+      copy.run();
+      throw new AssertionError("expected FileAlreadyExistsException");
+    } catch (FileAlreadyExistsException expected) {
+      assertThat(new String(Files.readAllBytes(target.getPath("copy/b/c")), UTF_8))
+          .isEqualTo("existing");
+    }
+  }
+
+  @Test
+  public void testCopy_replaceExisting() throws IOException {
+    Files.write(target.getPath("copy/b/c"), "existing".getBytes(UTF_8));
+    CloudStorageBulkCopy.builder(source.getPath("dir/"), target.getPath("copy/"))
+        .replaceExisting(true)
+        .build()
+        .run();
+    assertThat(new String(Files.readAllBytes(target.getPath("copy/b/c")), UTF_8))
+        .isEqualTo("b/c");
+  }
+
+  @Test
+  public void testCopy_toSubdirectory_throwsIae() {
+    thrown.expect(IllegalArgumentException.class);
+    CloudStorageBulkCopy.builder(source.getPath("dir/"), source.getPath("dir/sub/")).build();
+  }
+
+  @Test
+  public void testCopy_runTwice_throwsIse() throws IOException {
+    CloudStorageBulkCopy copy = CloudStorageBulkCopy.builder(source.getPath("dir/"),
+        target.getPath("copy/")).build();
+    copy.run();
+    thrown.expect(IllegalStateException.class);
+    copy.run();
+  }
+
+  @Test
+  public void testProgress() throws IOException {
+    byte[] data = data(3 * MEGABYTE + 10);
+    Files.write(source.getPath("big/data"), data);
+    final AtomicInteger calls = new AtomicInteger();
+    CloudStorageBulkCopy copy = CloudStorageBulkCopy.builder(source.getPath("big/"),
+        target.getPath("big/"))
+        .megabytesRewrittenPerCall(1L)
+        .progressListener(new CloudStorageBulkCopy.ProgressListener() {
+          @Override
+          public void onProgress(CloudStorageBulkCopy copy) {
+            calls.incrementAndGet();
+          }
+        })
+        .build();
+    copy.run();
+    // four rewrite calls, and the object completion
+    assertThat(calls.get()).isEqualTo(5);
+    assertThat(copy.bytesCopied()).isEqualTo(data.length);
+    assertThat(Arrays.equals(Files.readAllBytes(target.getPath("big/data")), data)).isTrue();
+  }
+
+  @Test
+  public void testResumeFromCheckpoint() throws IOException {
+    byte[] data = data(3 * MEGABYTE);
+    Files.write(source.getPath("big/data"), data);
+    CloudStorageBulkCopy crashed = CloudStorageBulkCopy.builder(source.getPath("big/"),
+        target.getPath("big/"))
+        .megabytesRewrittenPerCall(1L)
+        .progressListener(new CloudStorageBulkCopy.ProgressListener() {
+          @Override
+          public void onProgress(CloudStorageBulkCopy copy) {
+            if (copy.bytesCopied() >= 2 * MEGABYTE) {
+              throw new IllegalStateException("crash");
+            }
+          }
+        })
+        .build();
+    try {
+      crashed.run();
+      throw new AssertionError("expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).isEqualTo("crash");
+    }
+    CloudStorageBulkCopy.Checkpoint checkpoint = crashed.checkpoint();
+    assertThat(checkpoint.objectsCopied()).isEqualTo(0L);
+    assertThat(checkpoint.bytesCopied()).isEqualTo(2L * MEGABYTE);
+    assertThat(Files.exists(target.getPath("big/data"))).isFalse();
+
+    final AtomicInteger calls = new AtomicInteger();
+    CloudStorageBulkCopy resumed = CloudStorageBulkCopy.builder(source.getPath("big/"),
+        target.getPath("big/"))
+        .megabytesRewrittenPerCall(1L)
+        .resumeFrom(checkpoint)
+        .progressListener(new CloudStorageBulkCopy.ProgressListener() {
+          @Override
+          public void onProgress(CloudStorageBulkCopy copy) {
+            calls.incrementAndGet();
+          }
+        })
+        .build();
+    resumed.run();
+    // a single rewrite call was left, and the object completion
+    assertThat(calls.get()).isEqualTo(2);
+    assertThat(resumed.bytesCopied()).isEqualTo(data.length);
+    assertThat(Arrays.equals(Files.readAllBytes(target.getPath("big/data")), data)).isTrue();
+
+    CloudStorageBulkCopy again = CloudStorageBulkCopy.builder(source.getPath("big/"),
+        target.getPath("big/")).resumeFrom(resumed.checkpoint()).build();
+    again.run();
+    assertThat(again.objectsListed()).isEqualTo(0L);
+    assertThat(again.objectsCopied()).isEqualTo(1L);
+  }
+
+  @Test
+  public void testResumeFrom_otherDirectories_throwsIae() throws IOException {
+    CloudStorageBulkCopy copy = CloudStorageBulkCopy.builder(source.getPath("dir/"),
+        target.getPath("copy/")).build();
+    copy.run();
+    thrown.expect(IllegalArgumentException.class);
+    CloudStorageBulkCopy.builder(source.getPath("dir/"), target.getPath("elsewhere/"))
+        .resumeFrom(copy.checkpoint());
+  }
+}
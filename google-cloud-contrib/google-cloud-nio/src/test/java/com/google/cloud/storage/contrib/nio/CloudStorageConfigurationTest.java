@@ -43,12 +43,22 @@ public class CloudStorageConfigurationTest {
             .stripPrefixSlash(false)
             .usePseudoDirectories(false)
             .blockSize(666)
+            .blockCacheMemorySize(1000)
+            .blockCacheDiskSize(2000)
+            .blockCacheDirectory("/tmp")
+            .attributeCacheMaxSize(10)
+            .attributeCacheTtlMillis(20)
             .build();
     assertThat(config.workingDirectory()).isEqualTo("/omg");
     assertThat(config.permitEmptyPathComponents()).isTrue();
     assertThat(config.stripPrefixSlash()).isFalse();
     assertThat(config.usePseudoDirectories()).isFalse();
     assertThat(config.blockSize()).isEqualTo(666);
+    assertThat(config.blockCacheMemorySize()).isEqualTo(1000L);
+    assertThat(config.blockCacheDiskSize()).isEqualTo(2000L);
+    assertThat(config.blockCacheDirectory()).isEqualTo("/tmp");
+    assertThat(config.attributeCacheMaxSize()).isEqualTo(10L);
+    assertThat(config.attributeCacheTtlMillis()).isEqualTo(20L);
   }
 
   @Test
@@ -61,12 +71,35 @@ public class CloudStorageConfigurationTest {
                 .put("stripPrefixSlash", false)
                 .put("usePseudoDirectories", false)
                 .put("blockSize", 666)
+                .put("blockCacheMemorySize", 1000)
+                .put("blockCacheDiskSize", 2000L)
+                .put("blockCacheDirectory", "/tmp")
+                .put("attributeCacheMaxSize", 10)
+                .put("attributeCacheTtlMillis", 20L)
                 .build());
     assertThat(config.workingDirectory()).isEqualTo("/omg");
     assertThat(config.permitEmptyPathComponents()).isTrue();
     assertThat(config.stripPrefixSlash()).isFalse();
     assertThat(config.usePseudoDirectories()).isFalse();
     assertThat(config.blockSize()).isEqualTo(666);
+    assertThat(config.blockCacheMemorySize()).isEqualTo(1000L);
+    assertThat(config.blockCacheDiskSize()).isEqualTo(2000L);
+    assertThat(config.blockCacheDirectory()).isEqualTo("/tmp");
+    assertThat(config.attributeCacheMaxSize()).isEqualTo(10L);
+    assertThat(config.attributeCacheTtlMillis()).isEqualTo(20L);
+  }
+
+  @Test
+  public void testBlockCacheDisabledByDefault() {
+    assertThat(CloudStorageConfiguration.DEFAULT.blockCacheEnabled()).isFalse();
+    assertThat(CloudStorageConfiguration.DEFAULT.blockCacheDirectory()).isNull();
+    assertThat(CloudStorageConfiguration.DEFAULT.attributeCacheEnabled()).isFalse();
+  }
+
+  @Test
+  public void testBlockCacheMemorySize_negative_throwsIae() {
+    thrown.expect(IllegalArgumentException.class);
+    CloudStorageConfiguration.builder().blockCacheMemorySize(-1);
   }
 
   @Test
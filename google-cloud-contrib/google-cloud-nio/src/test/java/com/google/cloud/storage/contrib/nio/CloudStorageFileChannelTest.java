@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Unit tests for {@link CloudStorageFileChannel}.
+ */
+@RunWith(JUnit4.class)
+public class CloudStorageFileChannelTest {
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+
+  private static final byte[] DATA = new byte[10_000];
+
+  static {
+    for (int i = 0; i < DATA.length; i++) {
+      DATA[i] = (byte) i;
+    }
+  }
+
+  private CloudStorageFileSystem fs;
+  private Path path;
+
+  @Before
+  public void before() throws IOException {
+    fs = CloudStorageFileSystem.forBucket("bucket",
+        CloudStorageConfiguration.builder().blockSize(1000).build(),
+        LocalStorageHelper.options());
+    path = fs.getPath("/data");
+    Files.write(path, DATA);
+  }
+
+  @After
+  public void after() throws IOException {
+    fs.close();
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      assertThat(channel.size()).isEqualTo((long) DATA.length);
+      ByteBuffer buffer = ByteBuffer.allocate(4000);
+      assertThat(channel.read(buffer)).isEqualTo(4000);
+      assertThat(channel.position()).isEqualTo(4000L);
+      buffer.clear();
+      channel.position(8000);
+      assertThat(channel.read(buffer)).isEqualTo(2000);
+      assertThat(Arrays.copyOf(buffer.array(), 2000))
+          .isEqualTo(Arrays.copyOfRange(DATA, 8000, DATA.length));
+      assertThat(channel.read(buffer)).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void testPositionalRead() throws IOException {
+    try (FileChannel channel = FileChannel.open(path)) {
+      ByteBuffer buffer = ByteBuffer.allocate(100);
+      assertThat(channel.read(buffer, 5000)).isEqualTo(100);
+      assertThat(buffer.array()).isEqualTo(Arrays.copyOfRange(DATA, 5000, 5100));
+      assertThat(channel.position()).isEqualTo(0L);
+      buffer.clear();
+      assertThat(channel.read(buffer, DATA.length)).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void testConcurrentPositionalReads() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try (final FileChannel channel = FileChannel.open(path)) {
+      List<Future<byte[]>> results = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        final int position = i * 500;
+        results.add(executor.submit(new Callable<byte[]>() {
+          @Override
+          public byte[] call() throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(500);
+            channel.read(buffer, position);
+            return buffer.array();
+          }
+        }));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        assertThat(results.get(i).get())
+            .isEqualTo(Arrays.copyOfRange(DATA, i * 500, i * 500 + 500));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testTransferTo() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (FileChannel channel = FileChannel.open(path)) {
+      assertThat(channel.transferTo(9000, 5000, Channels.newChannel(output))).isEqualTo(1000L);
+    }
+    assertThat(output.toByteArray()).isEqualTo(Arrays.copyOfRange(DATA, 9000, DATA.length));
+  }
+
+  @Test
+  public void testMap() throws IOException {
+    try (FileChannel channel = FileChannel.open(path)) {
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 1500, 3000);
+      byte[] bytes = new byte[3000];
+      mapped.get(bytes);
+      assertThat(bytes).isEqualTo(Arrays.copyOfRange(DATA, 1500, 4500));
+    }
+  }
+
+  @Test
+  public void testMap_readWrite_throws() throws IOException {
+    try (FileChannel channel = FileChannel.open(path)) {
+      thrown.expect(NonWritableChannelException.class);
+      channel.map(FileChannel.MapMode.READ_WRITE, 0, 10);
+    }
+  }
+
+  @Test
+  public void testWrite_throws() throws IOException {
+    try (FileChannel channel = FileChannel.open(path)) {
+      thrown.expect(NonWritableChannelException.class);
+      channel.write(ByteBuffer.allocate(1));
+    }
+  }
+
+  @Test
+  public void testOpen_writeOption_throws() throws IOException {
+    thrown.expect(IllegalArgumentException.class);
+    FileChannel.open(path, READ, WRITE);
+  }
+
+  @Test
+  public void testOpen_noSuchFile_throws() throws IOException {
+    thrown.expect(NoSuchFileException.class);
+    FileChannel.open(fs.getPath("/missing"));
+  }
+
+  @Test
+  public void testClosed_throws() throws IOException {
+    FileChannel channel = FileChannel.open(path);
+    channel.close();
+    thrown.expect(ClosedChannelException.class);
+    channel.read(ByteBuffer.allocate(1), 0);
+  }
+}
@@ -27,6 +27,7 @@ import static java.nio.file.StandardOpenOption.CREATE_NEW;
 import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
 import static java.nio.file.StandardOpenOption.WRITE;
 
+import com.google.cloud.storage.StorageOptions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.testing.NullPointerTester;
 
@@ -46,6 +47,7 @@ import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
@@ -644,6 +646,67 @@ public class CloudStorageFileSystemProviderTest {
     assertThat(path1.getFileSystem().provider()).isNotEqualTo(path3.getFileSystem().provider());
   }
 
+  @Test
+  public void testAttributeCache() throws IOException {
+    StorageOptions options = LocalStorageHelper.options();
+    CloudStorageConfiguration config =
+        CloudStorageConfiguration.builder().attributeCacheMaxSize(100).build();
+    // file systems created by forBucket have their own provider, and so their own cache
+    try (CloudStorageFileSystem cached = forBucket("bucket", config, options);
+        CloudStorageFileSystem other = forBucket("bucket", CloudStorageConfiguration.DEFAULT,
+            options)) {
+      Files.write(cached.getPath("wat"), SINGULARITY.getBytes(UTF_8));
+      assertThat(Files.size(cached.getPath("wat"))).isEqualTo(SINGULARITY.length());
+      // changes made by other clients are not seen until the cached attributes expire
+      Files.write(other.getPath("wat"), "longer string".getBytes(UTF_8));
+      assertThat(Files.size(cached.getPath("wat"))).isEqualTo(SINGULARITY.length());
+      Files.delete(other.getPath("wat"));
+      assertThat(Files.exists(cached.getPath("wat"))).isTrue();
+      // changes made through the provider invalidate the cached attributes
+      Files.write(cached.getPath("wat"), "longer string".getBytes(UTF_8));
+      assertThat(Files.size(cached.getPath("wat"))).isEqualTo("longer string".length());
+      Files.copy(other.getPath("wat"), cached.getPath("copy"));
+      assertThat(Files.size(cached.getPath("copy"))).isEqualTo("longer string".length());
+      Files.delete(cached.getPath("copy"));
+      assertThat(Files.exists(cached.getPath("copy"))).isFalse();
+    }
+  }
+
+  @Test
+  public void testAttributeCache_populatedByListing() throws IOException {
+    StorageOptions options = LocalStorageHelper.options();
+    CloudStorageConfiguration config =
+        CloudStorageConfiguration.builder().attributeCacheMaxSize(100).build();
+    try (CloudStorageFileSystem cached = forBucket("bucket", config, options);
+        CloudStorageFileSystem other = forBucket("bucket", CloudStorageConfiguration.DEFAULT,
+            options)) {
+      Files.write(other.getPath("dir/angel"), SINGULARITY.getBytes(UTF_8));
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(cached.getPath("dir/"))) {
+        assertThat(stream).containsExactly(cached.getPath("dir/angel"));
+      }
+      Files.delete(other.getPath("dir/angel"));
+      assertThat(Files.size(cached.getPath("dir/angel"))).isEqualTo(SINGULARITY.length());
+    }
+  }
+
+  @Test
+  public void testAttributeCache_expires() throws IOException, InterruptedException {
+    StorageOptions options = LocalStorageHelper.options();
+    CloudStorageConfiguration config = CloudStorageConfiguration.builder()
+        .attributeCacheMaxSize(100)
+        .attributeCacheTtlMillis(1)
+        .build();
+    try (CloudStorageFileSystem cached = forBucket("bucket", config, options);
+        CloudStorageFileSystem other = forBucket("bucket", CloudStorageConfiguration.DEFAULT,
+            options)) {
+      Files.write(cached.getPath("wat"), SINGULARITY.getBytes(UTF_8));
+      assertThat(Files.exists(cached.getPath("wat"))).isTrue();
+      Files.delete(other.getPath("wat"));
+      Thread.sleep(10);
+      assertThat(Files.exists(cached.getPath("wat"))).isFalse();
+    }
+  }
+
   private static CloudStorageConfiguration permitEmptyPathComponents(boolean value) {
     return CloudStorageConfiguration.builder().permitEmptyPathComponents(value).build();
   }
@@ -20,6 +20,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.cloud.storage.StorageOptions;
+import com.google.common.cache.CacheStats;
 import com.google.common.testing.EqualsTester;
 import com.google.common.testing.NullPointerTester;
 
@@ -159,4 +160,61 @@ public class CloudStorageFileSystemTest {
       assertThat(got).containsExactlyElementsIn(goodPaths);
     }
   }
+
+  @Test
+  public void testReadWithBlockCache() throws IOException {
+    CloudStorageConfiguration config = CloudStorageConfiguration.builder()
+        .blockSize(100)
+        .blockCacheMemorySize(1000)
+        .build();
+    try (CloudStorageFileSystem fs =
+        CloudStorageFileSystem.forBucket("bucket", config, LocalStorageHelper.options())) {
+      Path path = fs.getPath("/angel");
+      Files.write(path, ALONE.getBytes(UTF_8));
+      long blocks = (ALONE.getBytes(UTF_8).length + 99) / 100;
+      assertThat(new String(Files.readAllBytes(path), UTF_8)).isEqualTo(ALONE);
+      assertThat(fs.blockCacheStats().missCount()).isEqualTo(blocks);
+      assertThat(new String(Files.readAllBytes(path), UTF_8)).isEqualTo(ALONE);
+      CacheStats stats = fs.blockCacheStats();
+      assertThat(stats.missCount()).isEqualTo(blocks);
+      assertThat(stats.hitCount()).isAtLeast(blocks);
+      // a new generation of the object is not served from the cache
+      Files.write(path, "new version".getBytes(UTF_8));
+      assertThat(new String(Files.readAllBytes(path), UTF_8)).isEqualTo("new version");
+      assertThat(fs.blockCacheStats().missCount()).isEqualTo(blocks + 1);
+    }
+  }
+
+  @Test
+  public void testBlockCacheStats_disabled() throws IOException {
+    try (CloudStorageFileSystem fs = CloudStorageFileSystem.forBucket("bucket")) {
+      Files.write(fs.getPath("/angel"), ALONE.getBytes(UTF_8));
+      Files.readAllBytes(fs.getPath("/angel"));
+      assertThat(fs.blockCacheStats()).isEqualTo(new CacheStats(0, 0, 0, 0, 0, 0));
+    }
+  }
+
+  @Test
+  public void testCloseReleasesBlockCache() throws IOException {
+    CloudStorageConfiguration config = CloudStorageConfiguration.builder()
+        .blockSize(100)
+        .blockCacheMemorySize(1000)
+        .build();
+    CloudStorageFileSystem fs =
+        CloudStorageFileSystem.forBucket("bucket", config, LocalStorageHelper.options());
+    CloudStorageFileSystem other = new CloudStorageFileSystem(fs.provider(), "bucket", config);
+    Path path = fs.getPath("/angel");
+    Files.write(path, ALONE.getBytes(UTF_8));
+    Files.readAllBytes(path);
+    long misses = fs.blockCacheStats().missCount();
+    assertThat(misses).isGreaterThan(0L);
+    other.close();
+    other.close();
+    assertThat(fs.blockCacheStats().missCount()).isEqualTo(misses);
+    fs.close();
+    assertThat(fs.blockCacheStats()).isEqualTo(new CacheStats(0, 0, 0, 0, 0, 0));
+    // reads after the last file system is closed are not cached
+    assertThat(new String(Files.readAllBytes(path), UTF_8)).isEqualTo(ALONE);
+    assertThat(fs.blockCacheStats()).isEqualTo(new CacheStats(0, 0, 0, 0, 0, 0));
+  }
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link CloudStorageWalker}.
+ */
+@RunWith(JUnit4.class)
+public class CloudStorageWalkerTest {
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+
+  private static final List<String> FILES = ImmutableList.of(
+      "dir/a", "dir/b/c", "dir/b/d", "dir/b/e/f", "dir/g.txt", "dir/g/h");
+  private static final List<String> EVENTS = ImmutableList.of(
+      "pre dir/",
+      "file dir/a",
+      "pre dir/b/",
+      "file dir/b/c",
+      "file dir/b/d",
+      "pre dir/b/e/",
+      "file dir/b/e/f",
+      "post dir/b/e/",
+      "post dir/b/",
+      "file dir/g.txt",
+      "pre dir/g/",
+      "file dir/g/h",
+      "post dir/g/",
+      "post dir/");
+
+  private CloudStorageFileSystem fs;
+
+  @Before
+  public void before() throws IOException {
+    fs = CloudStorageFileSystem.forBucket("bucket", CloudStorageConfiguration.DEFAULT,
+        LocalStorageHelper.options());
+    for (String name : FILES) {
+      Files.write(fs.getPath(name), name.getBytes(UTF_8));
+    }
+    Files.write(fs.getPath("dirt"), "dirt".getBytes(UTF_8));
+    Files.write(fs.getPath("other/file"), "other".getBytes(UTF_8));
+  }
+
+  @After
+  public void after() throws IOException {
+    fs.close();
+  }
+
+  /**
+   * Records the visits, and returns {@code result} when visiting {@code path}.
+   */
+  private static class RecordingVisitor extends SimpleFileVisitor<Path> {
+
+    private final List<String> events = new ArrayList<>();
+    private final String path;
+    private final FileVisitResult result;
+
+    RecordingVisitor() {
+      this(null, FileVisitResult.CONTINUE);
+    }
+
+    RecordingVisitor(String path, FileVisitResult result) {
+      this.path = path;
+      this.result = result;
+    }
+
+    private FileVisitResult record(String event, Path visited) {
+      events.add(event + " " + visited);
+      return visited.toString().equals(path) ? result : FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+      assertThat(attrs.isDirectory()).isTrue();
+      return record("pre", dir);
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+      assertThat(attrs.isRegularFile()).isTrue();
+      assertThat(attrs.size()).isEqualTo((long) file.toString().length());
+      return record("file", file);
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+      return record("post", dir);
+    }
+  }
+
+  private static List<String> paths(DirectoryStream<Path> stream) throws IOException {
+    List<String> paths = new ArrayList<>();
+    try {
+      for (Path path : stream) {
+        paths.add(path.toString());
+      }
+    } finally {
+      stream.close();
+    }
+    return paths;
+  }
+
+  @Test
+  public void testWalk() throws IOException {
+    assertThat(paths(fs.walk(fs.getPath("dir"), 4))).containsExactlyElementsIn(FILES);
+  }
+
+  @Test
+  public void testWalk_sequential() throws IOException {
+    assertThat(paths(fs.walk(fs.getPath("dir/"), 1))).containsExactlyElementsIn(FILES).inOrder();
+  }
+
+  @Test
+  public void testWalk_parallelListing() throws IOException {
+    assertThat(paths(CloudStorageWalker.create(fs.getPath("dir/"), 4, false, 2)))
+        .containsExactlyElementsIn(FILES);
+  }
+
+  @Test
+  public void testWalk_orderedParallelListing() throws IOException {
+    assertThat(paths(CloudStorageWalker.create(fs.getPath("dir/"), 2, true, 2)))
+        .containsExactlyElementsIn(FILES).inOrder();
+  }
+
+  @Test
+  public void testWalk_emptyDirectory() throws IOException {
+    assertThat(paths(fs.walk(fs.getPath("nothing/"), 4))).isEmpty();
+  }
+
+  @Test
+  public void testWalk_nonPositiveParallelism_throwsIae() throws IOException {
+    thrown.expect(IllegalArgumentException.class);
+    fs.walk(fs.getPath("dir/"), 0);
+  }
+
+  @Test
+  public void testWalkFileTree() throws IOException {
+    RecordingVisitor visitor = new RecordingVisitor();
+    Path start = fs.getPath("dir/");
+    assertThat((Object) fs.walkFileTree(start, 4, visitor)).isSameAs(start);
+    assertThat(visitor.events).containsExactlyElementsIn(EVENTS).inOrder();
+  }
+
+  @Test
+  public void testWalkFileTree_parallelListing() throws IOException {
+    RecordingVisitor visitor = new RecordingVisitor();
+    try (CloudStorageWalker walker = CloudStorageWalker.create(fs.getPath("dir/"), 2, true, 2)) {
+      walker.walk(fs.getPath("dir/"), visitor);
+    }
+    assertThat(visitor.events).containsExactlyElementsIn(EVENTS).inOrder();
+  }
+
+  @Test
+  public void testWalkFileTree_skipSubtree() throws IOException {
+    RecordingVisitor visitor = new RecordingVisitor("dir/b/", FileVisitResult.SKIP_SUBTREE);
+    fs.walkFileTree(fs.getPath("dir/"), 4, visitor);
+    assertThat(visitor.events).containsExactly(
+        "pre dir/",
+        "file dir/a",
+        "pre dir/b/",
+        "file dir/g.txt",
+        "pre dir/g/",
+        "file dir/g/h",
+        "post dir/g/",
+        "post dir/").inOrder();
+  }
+
+  @Test
+  public void testWalkFileTree_skipSiblings() throws IOException {
+    RecordingVisitor visitor = new RecordingVisitor("dir/b/c", FileVisitResult.SKIP_SIBLINGS);
+    fs.walkFileTree(fs.getPath("dir/"), 4, visitor);
+    assertThat(visitor.events).containsExactly(
+        "pre dir/",
+        "file dir/a",
+        "pre dir/b/",
+        "file dir/b/c",
+        "post dir/b/",
+        "file dir/g.txt",
+        "pre dir/g/",
+        "file dir/g/h",
+        "post dir/g/",
+        "post dir/").inOrder();
+  }
+
+  @Test
+  public void testWalkFileTree_skipSiblingsOfDirectory() throws IOException {
+    RecordingVisitor visitor = new RecordingVisitor("dir/b/e/", FileVisitResult.SKIP_SIBLINGS);
+    fs.walkFileTree(fs.getPath("dir/"), 4, visitor);
+    assertThat(visitor.events).containsExactly(
+        "pre dir/",
+        "file dir/a",
+        "pre dir/b/",
+        "file dir/b/c",
+        "file dir/b/d",
+        "pre dir/b/e/",
+        "post dir/b/",
+        "file dir/g.txt",
+        "pre dir/g/",
+        "file dir/g/h",
+        "post dir/g/",
+        "post dir/").inOrder();
+  }
+
+  @Test
+  public void testWalkFileTree_terminate() throws IOException {
+    RecordingVisitor visitor = new RecordingVisitor("dir/b/d", FileVisitResult.TERMINATE);
+    fs.walkFileTree(fs.getPath("dir/"), 4, visitor);
+    assertThat(visitor.events).containsExactly(
+        "pre dir/",
+        "file dir/a",
+        "pre dir/b/",
+        "file dir/b/c",
+        "file dir/b/d").inOrder();
+  }
+}
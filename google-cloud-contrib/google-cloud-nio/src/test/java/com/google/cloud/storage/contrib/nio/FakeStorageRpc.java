@@ -22,8 +22,8 @@ import com.google.api.services.storage.model.ObjectAccessControl;
 import com.google.api.services.storage.model.StorageObject;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageException;
+import com.google.cloud.storage.spi.HashingStorageRpc;
 import com.google.cloud.storage.spi.RpcBatch;
-import com.google.cloud.storage.spi.StorageRpc;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -31,6 +31,8 @@ import java.math.BigInteger;
 import java.nio.file.FileAlreadyExistsException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,7 +42,8 @@ import javax.annotation.concurrent.NotThreadSafe;
 /**
  * A bare-bones in-memory implementation of Storage, meant for testing.
  *
- * <p>This class is <i>not</i> thread-safe. It's also (currently) limited in the following ways:
+ * <p>This class is <i>not</i> thread-safe, except for the object get, delete, list and rewrite
+ * methods used by concurrent copies. It's also (currently) limited in the following ways:
  * <ul>
  * <li>Supported
  *   <ul>
@@ -48,6 +51,7 @@ import javax.annotation.concurrent.NotThreadSafe;
  *   <li>object get
  *   <li>object delete
  *   <li>list the contents of a bucket
+ *   <li>rewrite, in chunks of {@code megabytesRewrittenPerCall}
  *   </ul>
  * <li>Unsupported
  *   <ul>
@@ -58,14 +62,13 @@ import javax.annotation.concurrent.NotThreadSafe;
  *   <li>generations
  *   <li>file attributes
  *   <li>patch
- *   <li>continueRewrite
  *   <li>createBatch
  *   <li>checksums, etags
  *   </ul>
  * </ul>
  */
 @NotThreadSafe
-class FakeStorageRpc implements StorageRpc {
+class FakeStorageRpc implements HashingStorageRpc {
 
   // fullname -> metadata
   Map<String, StorageObject> metadata = new HashMap<>();
@@ -75,6 +78,8 @@ class FakeStorageRpc implements StorageRpc {
   Map<String, byte[]> futureContents = new HashMap<>();
 
   private final boolean throwIfOption;
+  // generation of the next object created, so that every object version is distinct
+  private long nextGeneration = 1;
 
   /**
    * @param throwIfOption if true, we throw when given any option
@@ -99,6 +104,7 @@ class FakeStorageRpc implements StorageRpc {
       throws StorageException {
     potentiallyThrow(options);
     String key = fullname(object);
+    object.setGeneration(nextGeneration++);
     metadata.put(key, object);
     try {
       contents.put(key, com.google.common.io.ByteStreams.toByteArray(content));
@@ -115,10 +121,13 @@ class FakeStorageRpc implements StorageRpc {
   }
 
   @Override
-  public Tuple<String, Iterable<StorageObject>> list(String bucket, Map<Option, ?> options)
+  public synchronized Tuple<String, Iterable<StorageObject>> list(String bucket,
+      Map<Option, ?> options)
       throws StorageException {
     String delimiter = null;
     String preprefix = "";
+    int pageSize = Integer.MAX_VALUE;
+    int start = 0;
     for (Map.Entry<Option, ?> e : options.entrySet()) {
       switch (e.getKey()) {
         case PREFIX:
@@ -133,6 +142,12 @@ class FakeStorageRpc implements StorageRpc {
         case FIELDS:
           // ignore and return all the fields
           break;
+        case MAX_RESULTS:
+          pageSize = ((Number) e.getValue()).intValue();
+          break;
+        case PAGE_TOKEN:
+          start = Integer.parseInt((String) e.getValue());
+          break;
         default:
           throw new UnsupportedOperationException("Unknown option: " + e.getKey());
       }
@@ -151,9 +166,18 @@ class FakeStorageRpc implements StorageRpc {
       values.add(so);
     }
     values.addAll(folders.values());
+    // pages are in name order, as in the service
+    Collections.sort(values, new Comparator<StorageObject>() {
+      @Override
+      public int compare(StorageObject first, StorageObject second) {
+        return first.getName().compareTo(second.getName());
+      }
+    });
+    int end = (int) Math.min(values.size(), (long) start + pageSize);
     // null cursor to indicate there is no more data (empty string would cause us to be called again).
+    String cursor = end < values.size() ? Integer.toString(end) : null;
     // The type cast seems to be necessary to help Java's typesystem remember that collections are iterable.
-    return Tuple.of(null, (Iterable<StorageObject>) values);
+    return Tuple.of(cursor, (Iterable<StorageObject>) new ArrayList<>(values.subList(start, end)));
   }
 
   /**
@@ -169,7 +193,8 @@ class FakeStorageRpc implements StorageRpc {
    * Returns the requested storage object or {@code null} if not found.
    */
   @Override
-  public StorageObject get(StorageObject object, Map<Option, ?> options) throws StorageException {
+  public synchronized StorageObject get(StorageObject object, Map<Option, ?> options)
+      throws StorageException {
     // we allow the "ID" option because we need to, but then we give a whole answer anyways
     // because the caller won't mind the extra fields.
     if (throwIfOption && !options.isEmpty() && options.size() > 1
@@ -208,7 +233,8 @@ class FakeStorageRpc implements StorageRpc {
   }
 
   @Override
-  public boolean delete(StorageObject object, Map<Option, ?> options) throws StorageException {
+  public synchronized boolean delete(StorageObject object, Map<Option, ?> options)
+      throws StorageException {
     String key = fullname(object);
     contents.remove(key);
     return null != metadata.remove(key);
@@ -262,6 +288,14 @@ class FakeStorageRpc implements StorageRpc {
     return Tuple.of("etag-goes-here", ret);
   }
 
+  @Override
+  public Tuple<StorageObject, byte[]> readWithHashes(
+      StorageObject from, Map<Option, ?> options, long position, int bytes)
+      throws StorageException {
+    Tuple<String, byte[]> result = read(from, options, position, bytes);
+    return Tuple.of(new StorageObject().setEtag(result.x()), result.y());
+  }
+
   @Override
   public String open(StorageObject object, Map<Option, ?> options) throws StorageException {
     String key = fullname(object);
@@ -275,6 +309,7 @@ class FakeStorageRpc implements StorageRpc {
     if (mustNotExist && metadata.containsKey(key)) {
       throw new StorageException(new FileAlreadyExistsException(key));
     }
+    object.setGeneration(nextGeneration++);
     metadata.put(key, object);
 
     return fullname(object);
@@ -288,7 +323,7 @@ class FakeStorageRpc implements StorageRpc {
     if (futureContents.containsKey(uploadId)) {
       bytes = futureContents.get(uploadId);
       if (bytes.length < length + destOffset) {
-        bytes = new byte[(int) (length + destOffset)];
+        bytes = Arrays.copyOf(bytes, (int) (length + destOffset));
       }
     } else {
       bytes = new byte[(int) (length + destOffset)];
@@ -298,13 +333,24 @@ class FakeStorageRpc implements StorageRpc {
     if (last) {
       contents.put(uploadId, bytes);
       futureContents.remove(uploadId);
+      if (metadata.containsKey(uploadId)) {
+        metadata.get(uploadId).setSize(BigInteger.valueOf(bytes.length));
+      }
     } else {
       futureContents.put(uploadId, bytes);
     }
   }
 
   @Override
-  public RewriteResponse openRewrite(RewriteRequest rewriteRequest) throws StorageException {
+  public StorageObject writeWithResponse(String uploadId, byte[] toWrite, int toWriteOffset,
+      long destOffset, int length, boolean last) throws StorageException {
+    write(uploadId, toWrite, toWriteOffset, destOffset, length, last);
+    return last ? metadata.get(uploadId) : null;
+  }
+
+  @Override
+  public synchronized RewriteResponse openRewrite(RewriteRequest rewriteRequest)
+      throws StorageException {
     String sourceKey = fullname(rewriteRequest.source);
     // a little hackish, just good enough for the tests to work.
     if (!contents.containsKey(sourceKey)) {
@@ -324,18 +370,38 @@ class FakeStorageRpc implements StorageRpc {
     if (mustNotExist && contents.containsKey(destKey)) {
       throw new StorageException(new FileAlreadyExistsException(destKey));
     }
+    return rewrite(rewriteRequest, 0);
+  }
 
-    metadata.put(destKey, rewriteRequest.target);
-
+  /**
+   * Rewrites at most {@code megabytesRewrittenPerCall} of the source, starting at {@code offset}.
+   * The target is only written once the whole source was rewritten, and the rewrite token is the
+   * number of bytes rewritten so far.
+   */
+  private RewriteResponse rewrite(RewriteRequest rewriteRequest, long offset) {
+    String sourceKey = fullname(rewriteRequest.source);
     byte[] data = contents.get(sourceKey);
+    if (data == null) {
+      throw new StorageException(404, "File not found: " + sourceKey);
+    }
+    long end = data.length;
+    if (rewriteRequest.megabytesRewrittenPerCall != null) {
+      end = Math.min(end, offset + rewriteRequest.megabytesRewrittenPerCall * 1024 * 1024);
+    }
+    if (end < data.length) {
+      return new RewriteResponse(rewriteRequest, null, data.length, false, Long.toString(end), end);
+    }
+    String destKey = fullname(rewriteRequest.target);
+    metadata.put(destKey, rewriteRequest.target);
     contents.put(destKey, Arrays.copyOf(data, data.length));
     return new RewriteResponse(rewriteRequest, rewriteRequest.target, data.length, true,
         "rewriteToken goes here", data.length);
   }
 
   @Override
-  public RewriteResponse continueRewrite(RewriteResponse previousResponse) throws StorageException {
-    throw new UnsupportedOperationException();
+  public synchronized RewriteResponse continueRewrite(RewriteResponse previousResponse)
+      throws StorageException {
+    return rewrite(previousResponse.rewriteRequest, Long.parseLong(previousResponse.rewriteToken));
   }
 
   @Override
@@ -440,6 +506,8 @@ class FakeStorageRpc implements StorageRpc {
     fakeFolder.setName(folderName);
     fakeFolder.setBucket(so.getBucket());
     fakeFolder.setGeneration(so.getGeneration());
+    fakeFolder.set("isDirectory", true);
+    fakeFolder.setSize(BigInteger.ZERO);
     folders.put(folderName, fakeFolder);
     return true;
   }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud;
+
+import java.io.Serializable;
+
+/**
+ * Base implementation for a {@link WriteBehindChannel}. Chunks are always written through
+ * {@link #flushBuffer(byte[], int, int, boolean)}, both when they are written synchronously and
+ * when they are written in the background.
+ *
+ * @param <ServiceOptionsT> the service options used by the channel to issue RPC requests
+ * @param <EntityT> the entity this channel writes data to. Possibly with additional configuration
+ */
+public abstract class BaseWriteBehindChannel<
+    ServiceOptionsT extends ServiceOptions<?, ?, ServiceOptionsT>,
+    EntityT extends Serializable> extends BaseWriteChannel<ServiceOptionsT, EntityT>
+    implements WriteBehindChannel {
+
+  protected BaseWriteBehindChannel(ServiceOptionsT options, EntityT entity, String uploadId) {
+    super(options, entity, uploadId);
+  }
+
+  /**
+   * Writes {@code length} bytes of {@link #buffer()} to the {@link #uploadId()} URL, starting at
+   * {@link #position()}.
+   *
+   * @param length the number of bytes to write from {@link #buffer()}
+   * @param last if {@code true} the resumable session is closed
+   */
+  @Override
+  protected void flushBuffer(int length, boolean last) {
+    flushBuffer(buffer(), position(), length, last);
+  }
+
+  /**
+   * Writes {@code length} bytes of {@code buffer} to the {@link #uploadId()} URL, starting at
+   * {@code position}. This method may be called from a thread other than the one writing to the
+   * channel, implementations must not use {@link #buffer()} or {@link #position()}.
+   *
+   * @param buffer the chunk to write
+   * @param position the offset of the chunk in the uploaded entity
+   * @param length the number of bytes to write from {@code buffer}
+   * @param last if {@code true} the resumable session is closed
+   */
+  protected abstract void flushBuffer(byte[] buffer, int position, int length, boolean last);
+
+  /**
+   * @throws IllegalArgumentException if {@code writeBehind} is negative
+   */
+  @Override
+  public final void writeBehind(int writeBehind) {
+    writeBehindInternal(writeBehind);
+  }
+}
@@ -16,15 +16,28 @@
 
 package com.google.cloud;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.cloud.BaseWriteChannel.BaseState;
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Base implementation for a {@link WriteChannel}.
@@ -38,15 +51,24 @@ public abstract class BaseWriteChannel<
 
   private static final int MIN_CHUNK_SIZE = 256 * 1024;
   private static final int DEFAULT_CHUNK_SIZE = 8 * MIN_CHUNK_SIZE;
+  private static final ThreadFactory WRITE_BEHIND_THREAD_FACTORY = new ThreadFactoryBuilder()
+      .setDaemon(true)
+      .setNameFormat("write-behind-%d")
+      .build();
 
   private final ServiceOptionsT options;
   private final EntityT entity;
   private final String uploadId;
+  private final BufferPool bufferPool;
   private int position;
   private byte[] buffer = new byte[0];
   private int limit;
   private boolean isOpen = true;
   private int chunkSize = defaultChunkSize();
+  private int writeBehind;
+  private final Deque<Future<?>> pendingFlushes = new ArrayDeque<>();
+  private ThreadPoolExecutor flushExecutor;
+  private volatile Throwable flushError;
 
   protected int minChunkSize() {
     return MIN_CHUNK_SIZE;
@@ -92,30 +114,121 @@ public abstract class BaseWriteChannel<
     return chunkSize;
   }
 
+  protected int writeBehind() {
+    return writeBehind;
+  }
+
   @Override
   public final void chunkSize(int chunkSize) {
     chunkSize = (chunkSize / minChunkSize()) * minChunkSize();
     this.chunkSize = Math.max(minChunkSize(), chunkSize);
   }
 
+  /**
+   * Sets the number of chunks that can be written in the background, see
+   * {@link BaseWriteBehindChannel#writeBehind(int)}.
+   */
+  void writeBehindInternal(int writeBehind) {
+    checkArgument(writeBehind >= 0, "Write-behind must be >= 0");
+    this.writeBehind = writeBehind;
+  }
+
   protected BaseWriteChannel(ServiceOptionsT options, EntityT entity, String uploadId) {
     this.options = options;
     this.entity = entity;
     this.uploadId = uploadId;
+    this.bufferPool = options != null ? options.bufferPool() : BufferPool.defaultInstance();
   }
 
-  private void flush() {
+  private void flush() throws IOException {
     if (limit >= chunkSize) {
       final int length = limit - limit % minChunkSize();
+      if (writeBehind > 0) {
+        flushInBackground(length);
+        return;
+      }
+      awaitPendingFlushes();
       flushBuffer(length, false);
       position += length;
       limit -= length;
-      byte[] temp = new byte[chunkSize];
-      System.arraycopy(buffer, length, temp, 0, limit);
-      buffer = temp;
+      if (buffer.length == chunkSize) {
+        System.arraycopy(buffer, length, buffer, 0, limit);
+      } else {
+        byte[] temp = bufferPool.acquire(chunkSize);
+        System.arraycopy(buffer, length, temp, 0, limit);
+        bufferPool.release(buffer);
+        buffer = temp;
+      }
     }
   }
 
+  /**
+   * Hands the first {@code length} bytes of the buffer over to a background flush and continues
+   * with a new buffer, waiting for previous flushes if {@link #writeBehind} chunks are pending.
+   */
+  private void flushInBackground(final int length) throws IOException {
+    while (pendingFlushes.size() >= writeBehind) {
+      awaitFlush(pendingFlushes.poll());
+    }
+    throwIfFlushFailed();
+    final byte[] chunk = buffer;
+    final int chunkPosition = position;
+    if (flushExecutor == null) {
+      flushExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), WRITE_BEHIND_THREAD_FACTORY);
+      flushExecutor.allowCoreThreadTimeOut(true);
+    }
+    pendingFlushes.add(flushExecutor.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          // chunks after a failed one must not be written, the upload offset would be wrong
+          if (flushError == null) {
+            ((BaseWriteBehindChannel<?, ?>) BaseWriteChannel.this)
+                .flushBuffer(chunk, chunkPosition, length, false);
+          }
+        } catch (Throwable t) {
+          flushError = t;
+        } finally {
+          bufferPool.release(chunk);
+        }
+      }
+    }));
+    position += length;
+    limit -= length;
+    buffer = bufferPool.acquire(Math.max(chunkSize, limit));
+    System.arraycopy(chunk, length, buffer, 0, limit);
+  }
+
+  private static void awaitFlush(Future<?> flush) throws IOException {
+    try {
+      Uninterruptibles.getUninterruptibly(flush);
+    } catch (ExecutionException ex) {
+      // flush tasks record their failures in flushError
+      throw flushException(ex.getCause());
+    }
+  }
+
+  /**
+   * Waits for all background flushes to complete and throws the first error that occurred.
+   */
+  private void awaitPendingFlushes() throws IOException {
+    while (!pendingFlushes.isEmpty()) {
+      awaitFlush(pendingFlushes.poll());
+    }
+    throwIfFlushFailed();
+  }
+
+  private void throwIfFlushFailed() throws IOException {
+    if (flushError != null) {
+      throw flushException(flushError);
+    }
+  }
+
+  private static IOException flushException(Throwable error) {
+    return error instanceof IOException ? (IOException) error : new IOException(error);
+  }
+
   private void validateOpen() throws ClosedChannelException {
     if (!isOpen) {
       throw new ClosedChannelException();
@@ -125,12 +238,17 @@ public abstract class BaseWriteChannel<
   @Override
   public final int write(ByteBuffer byteBuffer) throws IOException {
     validateOpen();
+    throwIfFlushFailed();
     int toWrite = byteBuffer.remaining();
     int spaceInBuffer = buffer.length - limit;
     if (spaceInBuffer >= toWrite) {
       byteBuffer.get(buffer, limit, toWrite);
     } else {
-      buffer = Arrays.copyOf(buffer, Math.max(chunkSize, buffer.length + toWrite - spaceInBuffer));
+      byte[] temp =
+          bufferPool.acquire(Math.max(chunkSize, buffer.length + toWrite - spaceInBuffer));
+      System.arraycopy(buffer, 0, temp, 0, limit);
+      bufferPool.release(buffer);
+      buffer = temp;
       byteBuffer.get(buffer, limit, toWrite);
     }
     limit += toWrite;
@@ -146,10 +264,16 @@ public abstract class BaseWriteChannel<
   @Override
   public final void close() throws IOException {
     if (isOpen) {
+      awaitPendingFlushes();
       flushBuffer(limit, true);
       position += buffer.length;
       isOpen = false;
+      bufferPool.release(buffer);
       buffer = null;
+      if (flushExecutor != null) {
+        flushExecutor.shutdown();
+        flushExecutor = null;
+      }
     }
   }
 
@@ -162,7 +286,13 @@ public abstract class BaseWriteChannel<
   public RestorableState<WriteChannel> capture() {
     byte[] bufferToSave = null;
     if (isOpen) {
-      flush();
+      try {
+        flush();
+        awaitPendingFlushes();
+      } catch (IOException ex) {
+        // capture can not throw checked exceptions, background errors are rethrown as they are
+        throw Throwables.propagate(flushError != null ? flushError : ex);
+      }
       bufferToSave = Arrays.copyOf(buffer, limit);
     }
     return stateBuilder()
@@ -170,6 +300,7 @@ public abstract class BaseWriteChannel<
         .buffer(bufferToSave)
         .isOpen(isOpen)
         .chunkSize(chunkSize)
+        .writeBehind(writeBehind)
         .build();
   }
 
@@ -184,6 +315,9 @@ public abstract class BaseWriteChannel<
     this.position = state.position;
     this.isOpen = state.isOpen;
     this.chunkSize = state.chunkSize;
+    if (this instanceof BaseWriteBehindChannel) {
+      this.writeBehind = state.writeBehind;
+    }
   }
 
   protected abstract static class BaseState<
@@ -199,6 +333,7 @@ public abstract class BaseWriteChannel<
     protected final byte[] buffer;
     protected final boolean isOpen;
     protected final int chunkSize;
+    protected final int writeBehind;
 
     protected BaseState(Builder<ServiceOptionsT, EntityT> builder) {
       this.serviceOptions = builder.serviceOptions;
@@ -208,6 +343,7 @@ public abstract class BaseWriteChannel<
       this.buffer = builder.buffer;
       this.isOpen = builder.isOpen;
       this.chunkSize = builder.chunkSize;
+      this.writeBehind = builder.writeBehind;
     }
 
     /**
@@ -228,6 +364,7 @@ public abstract class BaseWriteChannel<
       private byte[] buffer;
       private boolean isOpen;
       private int chunkSize;
+      private int writeBehind;
 
       protected Builder(ServiceOptionsT options, EntityT entity, String uploadId) {
         this.serviceOptions = options;
@@ -255,13 +392,18 @@ public abstract class BaseWriteChannel<
         return this;
       }
 
+      public Builder<ServiceOptionsT, EntityT> writeBehind(int writeBehind) {
+        this.writeBehind = writeBehind;
+        return this;
+      }
+
       public abstract RestorableState<WriteChannel> build();
     }
 
     @Override
     public int hashCode() {
       return Objects.hash(serviceOptions, entity, uploadId, position, isOpen, chunkSize,
-          Arrays.hashCode(buffer));
+          writeBehind, Arrays.hashCode(buffer));
     }
 
     @Override
@@ -279,7 +421,8 @@ public abstract class BaseWriteChannel<
           && Objects.deepEquals(this.buffer, other.buffer)
           && this.position == other.position
           && this.isOpen == other.isOpen
-          && this.chunkSize == other.chunkSize;
+          && this.chunkSize == other.chunkSize
+          && this.writeBehind == other.writeBehind;
     }
 
     @Override
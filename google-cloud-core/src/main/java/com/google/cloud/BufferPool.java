@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.MapMaker;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A bounded pool of reusable byte arrays. Read and write channels use a buffer pool to hold chunks
+ * of data, so that streaming large objects does not allocate a new array for every chunk. Arrays
+ * returned by {@link #acquire(int)} have exactly the requested length, their content is undefined.
+ * Arrays handed back with {@link #release(byte[])} are kept for reuse as long as the total number
+ * of pooled bytes does not exceed {@link #maxPooledBytes()}, otherwise they are left to the garbage
+ * collector. Only arrays handed out by {@link #acquire(int)} are pooled, other arrays passed to
+ * {@link #release(byte[])} are ignored, so that arrays owned by someone else are never reused.
+ *
+ * <p>A buffer pool can be shared by several channels and is safe for concurrent use. The same pool
+ * is used by all channels created by a service, see {@link ServiceOptions#bufferPool()}. Buffer
+ * pools are compared by identity. Pooled arrays are not serialized, a deserialized pool is a new
+ * empty pool unless it is the {@link #defaultInstance()}.
+ */
+public final class BufferPool implements Serializable {
+
+  private static final long serialVersionUID = -2593327213522707338L;
+
+  /**
+   * Default number of bytes retained by a buffer pool.
+   */
+  public static final long DEFAULT_MAX_POOLED_BYTES = 16L * 1024 * 1024;
+
+  private static final BufferPool DEFAULT_INSTANCE =
+      new BufferPool(DEFAULT_MAX_POOLED_BYTES, true);
+
+  private final long maxPooledBytes;
+  private final boolean isDefault;
+  private transient Map<Integer, Deque<byte[]>> buffers;
+  private transient long pooledBytes;
+  // arrays handed out by acquire and not yet released, weak keys are compared by identity
+  private transient Set<byte[]> acquired;
+
+  private BufferPool(long maxPooledBytes, boolean isDefault) {
+    this.maxPooledBytes = maxPooledBytes;
+    this.isDefault = isDefault;
+    init();
+  }
+
+  private void init() {
+    buffers = new HashMap<>();
+    acquired = Collections.newSetFromMap(new MapMaker().weakKeys().<byte[], Boolean>makeMap());
+  }
+
+  /**
+   * Returns an array of {@code size} bytes. A pooled array is returned if available, otherwise a
+   * new array is allocated. The content of the returned array is undefined.
+   */
+  public byte[] acquire(int size) {
+    checkArgument(size >= 0, "Size must be >= 0");
+    if (size == 0 || maxPooledBytes < size) {
+      // the array could never be pooled, no need to track it
+      return new byte[size];
+    }
+    byte[] buffer = null;
+    synchronized (this) {
+      Deque<byte[]> pooled = buffers.get(size);
+      if (pooled != null && !pooled.isEmpty()) {
+        pooledBytes -= size;
+        buffer = pooled.pop();
+      }
+    }
+    if (buffer == null) {
+      buffer = new byte[size];
+    }
+    acquired.add(buffer);
+    return buffer;
+  }
+
+  /**
+   * Returns {@code buffer} to the pool. The caller must not use {@code buffer} after releasing it.
+   * The array is discarded if pooling it would exceed {@link #maxPooledBytes()}. Arrays that were
+   * not returned by {@link #acquire(int)}, or that were already released, are ignored.
+   */
+  public void release(byte[] buffer) {
+    if (buffer == null || !acquired.remove(buffer)) {
+      return;
+    }
+    synchronized (this) {
+      if (pooledBytes + buffer.length > maxPooledBytes) {
+        return;
+      }
+      Deque<byte[]> pooled = buffers.get(buffer.length);
+      if (pooled == null) {
+        pooled = new ArrayDeque<>();
+        buffers.put(buffer.length, pooled);
+      }
+      pooled.push(buffer);
+      pooledBytes += buffer.length;
+    }
+  }
+
+  /**
+   * Returns the maximum number of bytes retained by this pool.
+   */
+  public long maxPooledBytes() {
+    return maxPooledBytes;
+  }
+
+  /**
+   * Returns the number of bytes currently retained by this pool.
+   */
+  public synchronized long pooledBytes() {
+    return pooledBytes;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("maxPooledBytes", maxPooledBytes)
+        .add("pooledBytes", pooledBytes())
+        .toString();
+  }
+
+  private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+    input.defaultReadObject();
+    init();
+  }
+
+  private Object readResolve() throws ObjectStreamException {
+    return isDefault ? DEFAULT_INSTANCE : this;
+  }
+
+  /**
+   * Returns the default buffer pool. The default pool is shared by all services that are not
+   * configured with a different pool and retains up to {@link #DEFAULT_MAX_POOLED_BYTES} bytes.
+   */
+  public static BufferPool defaultInstance() {
+    return DEFAULT_INSTANCE;
+  }
+
+  /**
+   * Returns a buffer pool that never retains arrays. Every call to {@link #acquire(int)} allocates
+   * a new array.
+   */
+  public static BufferPool noPooling() {
+    return new BufferPool(0, false);
+  }
+
+  /**
+   * Returns a new buffer pool that retains up to {@code maxPooledBytes} bytes.
+   *
+   * @throws IllegalArgumentException if {@code maxPooledBytes} is negative
+   */
+  public static BufferPool of(long maxPooledBytes) {
+    checkArgument(maxPooledBytes >= 0, "Max pooled bytes must be >= 0");
+    return new BufferPool(maxPooledBytes, false);
+  }
+}
@@ -240,7 +240,11 @@ public final class ExceptionHandler implements Serializable {
     return nonRetriableExceptions;
   }
 
-  boolean shouldRetry(Exception ex) {
+  /**
+   * Returns {@code true} if an operation that failed with {@code ex} should be retried, according
+   * to the interceptors and the retriable and non-retriable exceptions of this handler.
+   */
+  public boolean shouldRetry(Exception ex) {
     for (Interceptor interceptor : interceptors) {
       Interceptor.RetryResult retryResult = checkNotNull(interceptor.beforeEval(ex));
       if (retryResult != Interceptor.RetryResult.CONTINUE_EVALUATION) {
@@ -16,14 +16,28 @@
 
 package com.google.cloud;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Base implementation for Google Cloud paginated results.
@@ -70,6 +84,117 @@ public class PageImpl<T> implements Page<T>, Serializable {
     }
   }
 
+  /**
+   * An iterator that fetches up to {@code prefetchDepth} pages ahead of the page being traversed.
+   * A page is requested as soon as the previous page is available: when its future completes, if
+   * the future is a {@link ListenableFuture}, and otherwise the next time the iterator is used.
+   */
+  static class PrefetchingPageIterator<T> extends AbstractIterator<T> {
+
+    private final int prefetchDepth;
+    private final Deque<Future<? extends Page<T>>> nextPages = new ArrayDeque<>();
+    private Iterator<T> currentPageIterator;
+    private Page<T> currentPage;
+    private boolean lastRequested;
+
+    PrefetchingPageIterator(Page<T> currentPage, int prefetchDepth) {
+      this.currentPageIterator = currentPage.values().iterator();
+      this.currentPage = currentPage;
+      this.prefetchDepth = prefetchDepth;
+      prefetch();
+    }
+
+    @Override
+    protected T computeNext() {
+      while (!currentPageIterator.hasNext()) {
+        Future<? extends Page<T>> nextPage;
+        synchronized (this) {
+          nextPage = nextPages.peekFirst();
+        }
+        Page<T> page = nextPage == null ? null : getPage(nextPage);
+        if (page == null) {
+          return endOfData();
+        }
+        synchronized (this) {
+          nextPages.removeFirst();
+          currentPage = page;
+        }
+        currentPageIterator = page.values().iterator();
+      }
+      prefetch();
+      return currentPageIterator.next();
+    }
+
+    /**
+     * Requests the next pages, until {@code prefetchDepth} pages are requested or the last
+     * requested page is not available yet.
+     */
+    private synchronized void prefetch() {
+      while (!lastRequested && nextPages.size() < prefetchDepth) {
+        Page<T> lastPage = currentPage;
+        if (!nextPages.isEmpty()) {
+          Future<? extends Page<T>> lastFuture = nextPages.peekLast();
+          if (!lastFuture.isDone()) {
+            return;
+          }
+          try {
+            lastPage = Uninterruptibles.getUninterruptibly(lastFuture);
+          } catch (ExecutionException | RuntimeException ex) {
+            // the error is thrown when the page is reached
+            lastPage = null;
+          }
+        }
+        if (lastPage == null || lastPage.nextPageCursor() == null) {
+          lastRequested = true;
+          return;
+        }
+        Future<? extends Page<T>> nextPage = fetchNextPage(lastPage);
+        nextPages.addLast(nextPage);
+        if (nextPage instanceof ListenableFuture) {
+          ((ListenableFuture<?>) nextPage).addListener(new Runnable() {
+            @Override
+            public void run() {
+              prefetch();
+            }
+          }, MoreExecutors.directExecutor());
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Future<? extends Page<T>> fetchNextPage(final Page<T> page) {
+      if (page instanceof AsyncPage) {
+        return ((AsyncPage<T>) page).nextPageAsync();
+      }
+      return PrefetchExecutor.INSTANCE.submit(new Callable<Page<T>>() {
+        @Override
+        public Page<T> call() {
+          return page.nextPage();
+        }
+      });
+    }
+
+    private static <T> Page<T> getPage(Future<? extends Page<T>> page) {
+      try {
+        return Uninterruptibles.getUninterruptibly(page);
+      } catch (ExecutionException ex) {
+        throw Throwables.propagate(ex.getCause());
+      }
+    }
+  }
+
+  /**
+   * Holder of the threads used to prefetch pages, created on first use.
+   */
+  private static final class PrefetchExecutor {
+
+    private static final ListeningExecutorService INSTANCE =
+        MoreExecutors.listeningDecorator(Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("page-prefetch-%d")
+            .build()));
+  }
+
   /**
    * Creates a {@code PageImpl} object. In order for the object to be serializable the {@code
    * results} parameter must be serializable.
@@ -90,6 +215,38 @@ public class PageImpl<T> implements Page<T>, Serializable {
     return new PageIterator<>(this);
   }
 
+  /**
+   * Returns an iterator for all values, possibly also in the next pages. While the values of a
+   * page are traversed, up to {@code prefetchDepth} next pages are fetched in the background, so
+   * that the iterator does not wait for a request every time it reaches the end of a page. Pages of
+   * an {@link AsyncPage} are fetched with {@link AsyncPage#nextPageAsync()}, other pages are
+   * fetched from a shared pool of daemon threads. If {@code prefetchDepth} is {@code 0} this
+   * method behaves as {@link #iterateAll()}. Errors fetching a page are thrown by the iterator
+   * when the page is reached.
+   *
+   * @param prefetchDepth the maximum number of pages fetched ahead of the current page
+   * @throws IllegalArgumentException if {@code prefetchDepth} is negative
+   */
+  public Iterator<T> iterateAll(int prefetchDepth) {
+    return iterateAll(this, prefetchDepth);
+  }
+
+  /**
+   * Returns an iterator for all values of {@code page}, possibly also in the next pages, fetching
+   * up to {@code prefetchDepth} next pages in the background. This method can be used with the
+   * pages returned by any listing method, see {@link #iterateAll(int)}.
+   *
+   * @param <T> the value type that the page holds
+   * @param page the first page to iterate
+   * @param prefetchDepth the maximum number of pages fetched ahead of the current page
+   * @throws IllegalArgumentException if {@code prefetchDepth} is negative
+   */
+  public static <T> Iterator<T> iterateAll(Page<T> page, int prefetchDepth) {
+    checkArgument(prefetchDepth >= 0, "Prefetch depth must be >= 0");
+    return prefetchDepth == 0
+        ? page.iterateAll() : new PrefetchingPageIterator<>(page, prefetchDepth);
+  }
+
   @Override
   public String nextPageCursor() {
     return cursor;
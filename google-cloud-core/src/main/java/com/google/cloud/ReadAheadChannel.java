@@ -0,0 +1,33 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud;
+
+/**
+ * A {@link ReadChannel} that can request chunks ahead of the data being consumed.
+ */
+public interface ReadAheadChannel extends ReadChannel {
+
+  /**
+   * Sets the number of chunks that should be requested ahead of the data being consumed. When
+   * {@code readAhead} is greater than {@code 0}, implementations may keep up to {@code readAhead}
+   * reads of {@link #chunkSize(int)} bytes in flight in the background. A value of {@code 0}
+   * disables read-ahead.
+   *
+   * @throws IllegalArgumentException if {@code readAhead} is negative
+   */
+  void readAhead(int readAhead);
+}
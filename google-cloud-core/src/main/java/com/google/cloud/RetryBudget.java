@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.MoreObjects;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket that limits the number of retries to a fraction of the number of operations.
+ * Every operation run with retries deposits {@code retryRatio} tokens in the bucket, up to
+ * {@code maxTokens}, and every retry takes one token. When the bucket is empty failed operations
+ * are not retried. A budget shared by all the operations sent to a service makes sure that, when
+ * the service is unavailable, retries can not increase the load on the service by more than
+ * {@code retryRatio}, plus a burst of {@code maxTokens} retries.
+ *
+ * <p>Example of limiting retries to 10% of the requests, with bursts of up to 100 retries:
+ * <pre> {@code
+ * RetryParams retryParams = RetryParams.builder()
+ *     .retryBudget(RetryBudget.create(0.1, 100))
+ *     .build();
+ * }</pre>
+ *
+ * <p>Budgets are only equal to themselves, as each one holds its own tokens. The state of the
+ * bucket is not shared with deserialized copies of a budget.
+ *
+ * @see RetryParams.Builder#retryBudget(RetryBudget)
+ */
+public final class RetryBudget implements Serializable {
+
+  private static final long serialVersionUID = -3396532432616400521L;
+  private static final long TOKEN = 1000;
+
+  private final double retryRatio;
+  private final int maxTokens;
+  private final AtomicLong tokens;
+
+  private RetryBudget(double retryRatio, int maxTokens) {
+    this.retryRatio = retryRatio;
+    this.maxTokens = maxTokens;
+    this.tokens = new AtomicLong(maxTokens * TOKEN);
+  }
+
+  /**
+   * Creates a retry budget. The bucket is initially full.
+   *
+   * @param retryRatio the number of retries allowed for every operation, on average
+   * @param maxTokens the maximum number of tokens in the bucket, that is the maximum number of
+   *     retries allowed in a burst
+   * @throws IllegalArgumentException if {@code retryRatio} or {@code maxTokens} are negative
+   */
+  public static RetryBudget create(double retryRatio, int maxTokens) {
+    checkArgument(retryRatio >= 0, "retryRatio must not be negative");
+    checkArgument(maxTokens >= 0, "maxTokens must not be negative");
+    return new RetryBudget(retryRatio, maxTokens);
+  }
+
+  /**
+   * Returns the number of retries allowed for every operation, on average.
+   */
+  public double retryRatio() {
+    return retryRatio;
+  }
+
+  /**
+   * Returns the maximum number of tokens in the bucket.
+   */
+  public int maxTokens() {
+    return maxTokens;
+  }
+
+  /**
+   * Returns the number of retries currently allowed by this budget.
+   */
+  public int availableRetries() {
+    return (int) (tokens.get() / TOKEN);
+  }
+
+  /**
+   * Deposits tokens for a new operation. Services that retry operations on their own, rather than
+   * with {@link RetryHelper}, call this method once for every operation.
+   */
+  public void deposit() {
+    long amount = (long) (retryRatio * TOKEN);
+    long max = maxTokens * TOKEN;
+    while (true) {
+      long current = tokens.get();
+      long updated = Math.min(max, current + amount);
+      if (updated == current || tokens.compareAndSet(current, updated)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Takes a token for a retry, returning {@code false} if the bucket is empty. Services that retry
+   * operations on their own, rather than with {@link RetryHelper}, call this method before every
+   * retry and give up if it returns {@code false}.
+   */
+  public boolean tryAcquire() {
+    while (true) {
+      long current = tokens.get();
+      if (current < TOKEN) {
+        return false;
+      }
+      if (tokens.compareAndSet(current, current - TOKEN)) {
+        return true;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("retryRatio", retryRatio)
+        .add("maxTokens", maxTokens)
+        .add("availableRetries", availableRetries())
+        .toString();
+  }
+}
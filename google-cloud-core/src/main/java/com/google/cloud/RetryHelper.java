@@ -25,17 +25,29 @@ import static java.lang.StrictMath.random;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.MoreObjects.ToStringHelper;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import java.io.InterruptedIOException;
 import java.nio.channels.ClosedByInterruptException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Utility class for retrying operations. For more details about the parameters, see
  * {@link RetryParams}. If the request is never successful, a {@link RetriesExhaustedException} will
- * be thrown.
+ * be thrown. The {@code runWithRetriesAsync} methods do not block the calling thread between
+ * attempts: retries are scheduled on a {@link ScheduledExecutorService} and the outcome is
+ * reported by the returned future.
  *
  * @param <V> return value of the closure that is being run with retries
  */
@@ -107,6 +119,22 @@ public class RetryHelper<V> {
     }
   }
 
+  /**
+   * An operation that returns its result asynchronously, retried by
+   * {@link RetryHelper#runWithRetriesAsync(AsyncCallable, RetryParams, ExceptionHandler, Clock,
+   * ScheduledExecutorService)}.
+   *
+   * @param <V> the type of the result of the operation
+   */
+  public interface AsyncCallable<V> {
+
+    /**
+     * Starts the operation, returning a future for its result. Failures can be thrown or reported
+     * by the returned future.
+     */
+    ListenableFuture<V> call() throws Exception;
+  }
+
   /**
    * Thrown when RetryHelper callable has indicate it should not be retried.
    */
@@ -172,6 +200,10 @@ public class RetryHelper<V> {
 
   private V doRetry() throws RetryHelperException {
     long start = clock.millis();
+    RetryBudget budget = params.retryBudget();
+    if (budget != null) {
+      budget.deposit();
+    }
     while (true) {
       attemptNumber++;
       Exception exception;
@@ -197,6 +229,10 @@ public class RetryHelper<V> {
           && clock.millis() - start >= params.totalRetryPeriodMillis()) {
         throw new RetriesExhaustedException(this + ": Too many failures, giving up", exception);
       }
+      if (budget != null && !budget.tryAcquire()) {
+        throw new RetriesExhaustedException(this + ": Retry budget exhausted, giving up",
+            exception);
+      }
       long sleepDurationMillis = getSleepDuration(params, attemptNumber);
       if (log.isLoggable(Level.FINE)) {
         log.fine(this + ": Attempt #" + attemptNumber + " failed [" + exception
@@ -211,8 +247,167 @@ public class RetryHelper<V> {
     }
   }
 
-  @VisibleForTesting
-  static long getSleepDuration(RetryParams retryParams, int attemptsSoFar) {
+  /**
+   * State of an operation retried asynchronously. Every attempt is started by {@link #run()}, and
+   * the next attempt is scheduled when the attempt fails. Cancelling the result future also
+   * cancels the running attempt, or the scheduled retry.
+   */
+  private static final class AsyncRetry<V> implements Runnable {
+
+    /**
+     * The future returned to the caller. When cancelled, it cancels the pending attempt or retry.
+     */
+    private final class RetryFuture extends AbstractFuture<V> {
+
+      @Override
+      protected boolean set(V value) {
+        return super.set(value);
+      }
+
+      @Override
+      protected boolean setException(Throwable throwable) {
+        return super.setException(throwable);
+      }
+
+      @Override
+      public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!super.cancel(mayInterruptIfRunning)) {
+          return false;
+        }
+        Future<?> current = pending;
+        if (current != null) {
+          current.cancel(mayInterruptIfRunning);
+        }
+        return true;
+      }
+
+      boolean interrupted() {
+        return wasInterrupted();
+      }
+    }
+
+    private final AsyncCallable<V> callable;
+    private final RetryParams params;
+    private final ExceptionHandler exceptionHandler;
+    private final Clock clock;
+    private final ScheduledExecutorService executor;
+    private final RetryFuture result = new RetryFuture();
+    private final long start;
+    private volatile int attemptNumber;
+    private volatile Future<?> pending;
+
+    AsyncRetry(AsyncCallable<V> callable, RetryParams params, ExceptionHandler exceptionHandler,
+        Clock clock, ScheduledExecutorService executor) {
+      this.callable = checkNotNull(callable);
+      this.params = checkNotNull(params);
+      this.exceptionHandler = checkNotNull(exceptionHandler);
+      this.clock = checkNotNull(clock);
+      this.executor = checkNotNull(executor);
+      this.start = clock.millis();
+      if (params.retryBudget() != null) {
+        params.retryBudget().deposit();
+      }
+    }
+
+    @Override
+    public void run() {
+      if (result.isDone()) {
+        // the result future was cancelled
+        return;
+      }
+      attemptNumber++;
+      ListenableFuture<V> attempt;
+      try {
+        attempt = checkNotNull(callable.call());
+      } catch (Exception e) {
+        onFailure(e);
+        return;
+      }
+      setPending(attempt);
+      Futures.addCallback(attempt, new FutureCallback<V>() {
+        @Override
+        public void onSuccess(V value) {
+          if (attemptNumber > 1 && log.isLoggable(Level.FINE)) {
+            log.fine(AsyncRetry.this + ": attempt #" + attemptNumber + " succeeded");
+          }
+          result.set(value);
+        }
+
+        @Override
+        public void onFailure(Throwable throwable) {
+          if (throwable instanceof Exception) {
+            AsyncRetry.this.onFailure((Exception) throwable);
+          } else {
+            result.setException(throwable);
+          }
+        }
+      });
+    }
+
+    private void onFailure(Exception exception) {
+      if (result.isDone()) {
+        // the result future was cancelled, the failure may be caused by the cancellation
+        return;
+      }
+      if (!exceptionHandler.shouldRetry(exception)) {
+        result.setException(exception instanceof InterruptedException
+            ? new RetryInterruptedException() : new NonRetriableException(exception));
+        return;
+      }
+      if (attemptNumber >= params.retryMaxAttempts()
+          || attemptNumber >= params.retryMinAttempts()
+          && clock.millis() - start >= params.totalRetryPeriodMillis()) {
+        result.setException(
+            new RetriesExhaustedException(this + ": Too many failures, giving up", exception));
+        return;
+      }
+      RetryBudget budget = params.retryBudget();
+      if (budget != null && !budget.tryAcquire()) {
+        result.setException(new RetriesExhaustedException(
+            this + ": Retry budget exhausted, giving up", exception));
+        return;
+      }
+      long delayMillis = getSleepDuration(params, attemptNumber);
+      if (log.isLoggable(Level.FINE)) {
+        log.fine(this + ": Attempt #" + attemptNumber + " failed [" + exception
+            + "], retrying in " + delayMillis + " ms");
+      }
+      try {
+        setPending(executor.schedule(this, delayMillis, TimeUnit.MILLISECONDS));
+      } catch (RejectedExecutionException e) {
+        result.setException(new NonRetriableException(e));
+      }
+    }
+
+    /**
+     * Records the running attempt or the scheduled retry. If the result future was cancelled in
+     * the meantime, {@code future} is cancelled as well.
+     */
+    private void setPending(Future<?> future) {
+      pending = future;
+      if (result.isCancelled()) {
+        future.cancel(result.interrupted());
+      }
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(RetryHelper.class)
+          .add("params", params)
+          .add("clock", clock)
+          .add("attemptNumber", attemptNumber)
+          .add("callable", callable)
+          .add("exceptionHandler", exceptionHandler)
+          .toString();
+    }
+  }
+
+  /**
+   * Returns the time to wait before the next attempt of an operation that failed
+   * {@code attemptsSoFar} times, as an exponential backoff with jitter configured by
+   * {@code retryParams}.
+   */
+  public static long getSleepDuration(RetryParams retryParams, int attemptsSoFar) {
     long initialDelay = retryParams.initialRetryDelayMillis();
     double backoffFactor = retryParams.retryDelayBackoffFactor();
     long maxDelay = retryParams.maxRetryDelayMillis();
@@ -246,4 +441,45 @@ public class RetryHelper<V> {
       setContext(previousContext);
     }
   }
+
+  /**
+   * Runs {@code callable} with retries, without blocking the calling thread. Every attempt is run
+   * on {@code executor}, retries are scheduled on {@code executor} after the backoff delay. If
+   * all attempts fail the returned future fails with a {@link RetryHelperException}, as thrown by
+   * {@link #runWithRetries(Callable, RetryParams, ExceptionHandler, Clock)}.
+   */
+  public static <V> ListenableFuture<V> runWithRetriesAsync(final Callable<V> callable,
+      RetryParams params, ExceptionHandler exceptionHandler, Clock clock,
+      ScheduledExecutorService executor) {
+    exceptionHandler.verifyCaller(callable);
+    final ListeningExecutorService listeningExecutor = MoreExecutors.listeningDecorator(executor);
+    return runWithRetriesAsync(new AsyncCallable<V>() {
+      @Override
+      public ListenableFuture<V> call() {
+        return listeningExecutor.submit(callable);
+      }
+
+      @Override
+      public String toString() {
+        return callable.toString();
+      }
+    }, params, exceptionHandler, clock, executor);
+  }
+
+  /**
+   * Runs the asynchronous operation {@code callable} with retries, without blocking the calling
+   * thread. The first attempt is started by the calling thread, retries are scheduled on
+   * {@code executor} after the backoff delay. If all attempts fail the returned future fails with
+   * a {@link RetryHelperException}, as thrown by
+   * {@link #runWithRetries(Callable, RetryParams, ExceptionHandler, Clock)}. Cancelling the
+   * returned future prevents further attempts and cancels the running attempt, interrupting it if
+   * {@code mayInterruptIfRunning} is {@code true}.
+   */
+  public static <V> ListenableFuture<V> runWithRetriesAsync(AsyncCallable<V> callable,
+      RetryParams params, ExceptionHandler exceptionHandler, Clock clock,
+      ScheduledExecutorService executor) {
+    AsyncRetry<V> retry = new AsyncRetry<>(callable, params, exceptionHandler, clock, executor);
+    retry.run();
+    return retry.result;
+  }
 }
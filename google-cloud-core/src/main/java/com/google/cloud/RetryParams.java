@@ -34,13 +34,14 @@ import java.util.Objects;
  * to {@code maxRetryDelayMillis}
  * </p>
  * This proceeds until either the request is successful, {@code retryMaxAttempts} are made, or both
- * {@code retryMinAttempts} are made and {@code totalRetryPeriodMillis} have elapsed. To construct
- * {@code RetryParams}, first create a {@link RetryParams.Builder}. The builder is mutable and each
- * of the parameters can be set (any unset parameters will fallback to the defaults). The
- * {@code Builder} can be then used to create an immutable {@code RetryParams} object. For default
- * {@code RetryParams} use {@link #defaultInstance}. Default settings are subject to change release
- * to release. If you require specific settings, explicitly create an instance of
- * {@code RetryParams} with all the required settings.
+ * {@code retryMinAttempts} are made and {@code totalRetryPeriodMillis} have elapsed, or the
+ * optional {@link RetryBudget} is exhausted. To construct {@code RetryParams}, first create a
+ * {@link RetryParams.Builder}. The builder is mutable and each of the parameters can be set (any
+ * unset parameters will fallback to the defaults). The {@code Builder} can be then used to create
+ * an immutable {@code RetryParams} object. For default {@code RetryParams} use
+ * {@link #defaultInstance}. Default settings are subject to change release to release. If you
+ * require specific settings, explicitly create an instance of {@code RetryParams} with all the
+ * required settings.
  *
  * @see RetryHelper
  */
@@ -65,6 +66,7 @@ public final class RetryParams implements Serializable {
   private final long maxRetryDelayMillis;
   private final double retryDelayBackoffFactor;
   private final long totalRetryPeriodMillis;
+  private final RetryBudget retryBudget;
 
   // Some services may have different backoff requirements listed in their SLAs. Be sure to override
   // ServiceOptions.defaultRetryParams() in options subclasses when the service's backoff
@@ -84,6 +86,7 @@ public final class RetryParams implements Serializable {
     private long maxRetryDelayMillis;
     private double retryDelayBackoffFactor;
     private long totalRetryPeriodMillis;
+    private RetryBudget retryBudget;
 
     private Builder() {
       this(null);
@@ -104,6 +107,7 @@ public final class RetryParams implements Serializable {
         maxRetryDelayMillis = retryParams.maxRetryDelayMillis();
         retryDelayBackoffFactor = retryParams.retryDelayBackoffFactor();
         totalRetryPeriodMillis = retryParams.totalRetryPeriodMillis();
+        retryBudget = retryParams.retryBudget();
       }
     }
 
@@ -175,6 +179,18 @@ public final class RetryParams implements Serializable {
       return this;
     }
 
+    /**
+     * Sets the retry budget shared by all the operations that use these parameters. If not set, or
+     * set to {@code null}, retries are only limited by the other parameters.
+     *
+     * @param retryBudget the retryBudget to set
+     * @return the Builder for chaining
+     */
+    public Builder retryBudget(RetryBudget retryBudget) {
+      this.retryBudget = retryBudget;
+      return this;
+    }
+
     /**
      * Create an instance of RetryParams with the parameters set in this builder.
      *
@@ -197,6 +213,7 @@ public final class RetryParams implements Serializable {
     maxRetryDelayMillis = builder.maxRetryDelayMillis;
     retryDelayBackoffFactor = builder.retryDelayBackoffFactor;
     totalRetryPeriodMillis = builder.totalRetryPeriodMillis;
+    retryBudget = builder.retryBudget;
     checkArgument(retryMinAttempts >= 0, "retryMinAttempts must not be negative");
     checkArgument(retryMaxAttempts >= retryMinAttempts,
         "retryMaxAttempts must not be smaller than retryMinAttempts");
@@ -267,10 +284,18 @@ public final class RetryParams implements Serializable {
     return totalRetryPeriodMillis;
   }
 
+  /**
+   * Returns the retry budget, or {@code null} if retries are not limited by a budget. Default value
+   * is {@code null}.
+   */
+  public RetryBudget retryBudget() {
+    return retryBudget;
+  }
+
   @Override
   public int hashCode() {
     return Objects.hash(retryMinAttempts, retryMaxAttempts, initialRetryDelayMillis,
-        maxRetryDelayMillis, retryDelayBackoffFactor, totalRetryPeriodMillis);
+        maxRetryDelayMillis, retryDelayBackoffFactor, totalRetryPeriodMillis, retryBudget);
   }
 
   @Override
@@ -286,7 +311,8 @@ public final class RetryParams implements Serializable {
         && initialRetryDelayMillis == other.initialRetryDelayMillis
         && maxRetryDelayMillis == other.maxRetryDelayMillis
         && retryDelayBackoffFactor == other.retryDelayBackoffFactor
-        && totalRetryPeriodMillis == other.totalRetryPeriodMillis;
+        && totalRetryPeriodMillis == other.totalRetryPeriodMillis
+        && Objects.equals(retryBudget, other.retryBudget);
   }
 
   @Override
@@ -298,6 +324,7 @@ public final class RetryParams implements Serializable {
     toStringHelper.add("maxRetryDelayMillis", maxRetryDelayMillis);
     toStringHelper.add("retryDelayBackoffFactor", retryDelayBackoffFactor);
     toStringHelper.add("totalRetryPeriodMillis", totalRetryPeriodMillis);
+    toStringHelper.add("retryBudget", retryBudget);
     return toStringHelper.toString();
   }
 
@@ -82,6 +82,7 @@ public abstract class ServiceOptions<ServiceT extends Service<OptionsT>, Service
   private final String serviceRpcFactoryClassName;
   private final String serviceFactoryClassName;
   private final Clock clock;
+  private final BufferPool bufferPool;
 
   private transient AuthCredentials authCredentials;
   private transient ServiceRpcFactory<ServiceRpcT, OptionsT> serviceRpcFactory;
@@ -108,6 +109,7 @@ public abstract class ServiceOptions<ServiceT extends Service<OptionsT>, Service
     private ServiceFactory<ServiceT, OptionsT> serviceFactory;
     private ServiceRpcFactory<ServiceRpcT, OptionsT> serviceRpcFactory;
     private Clock clock;
+    private BufferPool bufferPool;
 
     protected Builder() {}
 
@@ -119,6 +121,7 @@ public abstract class ServiceOptions<ServiceT extends Service<OptionsT>, Service
       serviceFactory = options.serviceFactory;
       serviceRpcFactory = options.serviceRpcFactory;
       clock = options.clock;
+      bufferPool = options.bufferPool;
     }
 
     protected abstract ServiceOptions<ServiceT, ServiceRpcT, OptionsT> build();
@@ -148,6 +151,18 @@ public abstract class ServiceOptions<ServiceT extends Service<OptionsT>, Service
       return self();
     }
 
+    /**
+     * Sets the pool of byte arrays used by the service's channels to buffer chunks of data. If no
+     * pool is set {@link BufferPool#defaultInstance()} is used. To disable pooling, supply
+     * {@link BufferPool#noPooling()} here.
+     *
+     * @return the builder
+     */
+    public B bufferPool(BufferPool bufferPool) {
+      this.bufferPool = bufferPool;
+      return self();
+    }
+
     /**
      * Sets project id.
      *
@@ -223,6 +238,7 @@ public abstract class ServiceOptions<ServiceT extends Service<OptionsT>, Service
         getFromServiceLoader(rpcFactoryClass, defaultRpcFactory()));
     serviceRpcFactoryClassName = serviceRpcFactory.getClass().getName();
     clock = firstNonNull(builder.clock, Clock.defaultClock());
+    bufferPool = firstNonNull(builder.bufferPool, BufferPool.defaultInstance());
   }
 
   /**
@@ -439,6 +455,14 @@ public abstract class ServiceOptions<ServiceT extends Service<OptionsT>, Service
     return clock;
   }
 
+  /**
+   * Returns the pool of byte arrays used by the service's channels. By default
+   * {@link BufferPool#defaultInstance()} is used.
+   */
+  public BufferPool bufferPool() {
+    return bufferPool;
+  }
+
   /**
    * Returns the application's name as a string in the format {@code gcloud-java/[version]}.
    */
@@ -462,7 +486,7 @@ public abstract class ServiceOptions<ServiceT extends Service<OptionsT>, Service
 
   protected int baseHashCode() {
     return Objects.hash(projectId, host, authCredentialsState, retryParams, serviceFactoryClassName,
-        serviceRpcFactoryClassName, clock);
+        serviceRpcFactoryClassName, clock, bufferPool);
   }
 
   protected boolean baseEquals(ServiceOptions<?, ?, ?> other) {
@@ -472,7 +496,8 @@ public abstract class ServiceOptions<ServiceT extends Service<OptionsT>, Service
         && Objects.equals(retryParams, other.retryParams)
         && Objects.equals(serviceFactoryClassName, other.serviceFactoryClassName)
         && Objects.equals(serviceRpcFactoryClassName, other.serviceRpcFactoryClassName)
-        && Objects.equals(clock, clock);
+        && Objects.equals(clock, clock)
+        && Objects.equals(bufferPool, other.bufferPool);
   }
 
   private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
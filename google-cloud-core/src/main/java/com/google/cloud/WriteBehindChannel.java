@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud;
+
+/**
+ * A {@link WriteChannel} that can write full chunks to the service in the background.
+ */
+public interface WriteBehindChannel extends WriteChannel {
+
+  /**
+   * Sets the number of chunks that can be written to the service in the background. When
+   * {@code writeBehind} is greater than {@code 0}, implementations may hand full chunks over to a
+   * background thread and let the caller keep writing, as long as no more than {@code writeBehind}
+   * chunks are waiting to be written. Errors that occur while writing a chunk in the background are
+   * thrown by the next call to {@link #write(java.nio.ByteBuffer)} or {@link #close()}, as an
+   * {@link java.io.IOException}, or by the next call to {@link #capture()}. A value of {@code 0}
+   * disables write-behind.
+   *
+   * @throws IllegalArgumentException if {@code writeBehind} is negative
+   */
+  void writeBehind(int writeBehind);
+}
@@ -17,14 +17,18 @@
 package com.google.cloud;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
 
 import org.junit.Test;
 
+import java.util.Iterator;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AsyncPageImplTest {
 
@@ -125,4 +129,44 @@ public class AsyncPageImplTest {
     assertEquals(VALUES1, result.values());
     assertEquals(SOME_VALUES, ImmutableList.copyOf(result.nextPageAsync().get().iterateAll()));
   }
+
+  @Test
+  public void testIterateAllPrefetch() {
+    final AtomicInteger requests = new AtomicInteger();
+    final SettableFuture<AsyncPage<String>> future2 = SettableFuture.create();
+    final SettableFuture<AsyncPage<String>> future3 = SettableFuture.create();
+    AsyncPageImpl<String> result3 = new AsyncPageImpl<>(null, null, VALUES3);
+    AsyncPageImpl.NextPageFetcher<String> fetcher2 = new AsyncPageImpl.NextPageFetcher<String>() {
+      private static final long serialVersionUID = 5340245264349367497L;
+
+      @Override
+      public Future<AsyncPage<String>> nextPage() {
+        requests.incrementAndGet();
+        return future3;
+      }
+    };
+    AsyncPageImpl<String> result2 = new AsyncPageImpl<>(fetcher2, "c2", VALUES2);
+    AsyncPageImpl.NextPageFetcher<String> fetcher1 = new AsyncPageImpl.NextPageFetcher<String>() {
+      private static final long serialVersionUID = -4578916522425282906L;
+
+      @Override
+      public Future<AsyncPage<String>> nextPage() {
+        requests.incrementAndGet();
+        return future2;
+      }
+    };
+    AsyncPageImpl<String> result1 = new AsyncPageImpl<>(fetcher1, "c1", VALUES1);
+    Iterator<String> iterator = result1.iterateAll(2);
+    assertEquals(1, requests.get());
+    assertEquals("1", iterator.next());
+    assertEquals(1, requests.get());
+    future2.set(result2);
+    assertEquals("2", iterator.next());
+    assertEquals(2, requests.get());
+    future3.set(result3);
+    assertEquals(ImmutableList.builder().addAll(VALUES2).addAll(VALUES3).build(),
+        ImmutableList.copyOf(iterator));
+    assertEquals(2, requests.get());
+    assertFalse(iterator.hasNext());
+  }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud;
+
+import com.google.cloud.spi.ServiceRpcFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures allocation rate and throughput of {@link BaseWriteChannel} when streaming objects, with
+ * and without a {@link BufferPool}. Run with the GC profiler to compare allocated bytes per
+ * operation:
+ * <pre>
+ * mvn -pl google-cloud-core test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args="BaseWriteChannelBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BaseWriteChannelBenchmark {
+
+  private static final int CHUNK_SIZE = 8 * 256 * 1024;
+  private static final int WRITE_SIZE = 64 * 1024;
+
+  @Param({"true", "false"})
+  public boolean pooled;
+
+  @Param({"33554432"})
+  public int objectSize;
+
+  private BenchmarkServiceOptions options;
+  private ByteBuffer content;
+
+  private interface BenchmarkService extends Service<BenchmarkServiceOptions> {}
+
+  private interface BenchmarkServiceFactory
+      extends ServiceFactory<BenchmarkService, BenchmarkServiceOptions> {}
+
+  private interface BenchmarkServiceRpcFactory
+      extends ServiceRpcFactory<Object, BenchmarkServiceOptions> {}
+
+  private static class BenchmarkServiceOptions
+      extends ServiceOptions<BenchmarkService, Object, BenchmarkServiceOptions> {
+
+    private static final long serialVersionUID = -2937307536285766716L;
+
+    private static class Builder extends
+        ServiceOptions.Builder<BenchmarkService, Object, BenchmarkServiceOptions, Builder> {
+      private Builder() {}
+
+      private Builder(BenchmarkServiceOptions options) {
+        super(options);
+      }
+
+      @Override
+      protected BenchmarkServiceOptions build() {
+        return new BenchmarkServiceOptions(this);
+      }
+    }
+
+    private BenchmarkServiceOptions(Builder builder) {
+      super(BenchmarkServiceFactory.class, BenchmarkServiceRpcFactory.class, builder);
+    }
+
+    @Override
+    protected BenchmarkServiceFactory defaultServiceFactory() {
+      return null;
+    }
+
+    @Override
+    protected BenchmarkServiceRpcFactory defaultRpcFactory() {
+      return null;
+    }
+
+    @Override
+    protected Set<String> scopes() {
+      return null;
+    }
+
+    @Override
+    public Builder toBuilder() {
+      return new Builder(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof BenchmarkServiceOptions && baseEquals((BenchmarkServiceOptions) obj);
+    }
+
+    @Override
+    public int hashCode() {
+      return baseHashCode();
+    }
+  }
+
+  private static class BenchmarkWriteChannel
+      extends BaseWriteChannel<BenchmarkServiceOptions, Serializable> {
+
+    private final Blackhole blackhole;
+
+    BenchmarkWriteChannel(BenchmarkServiceOptions options, Blackhole blackhole) {
+      super(options, 42L, "uploadId");
+      this.blackhole = blackhole;
+    }
+
+    @Override
+    protected void flushBuffer(int length, boolean last) {
+      blackhole.consume(buffer());
+    }
+
+    @Override
+    protected BaseState.Builder<BenchmarkServiceOptions, Serializable> stateBuilder() {
+      return null;
+    }
+
+    @Override
+    public RestorableState<WriteChannel> capture() {
+      return null;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    options = new BenchmarkServiceOptions.Builder()
+        .projectId("project-id")
+        .bufferPool(pooled ? BufferPool.of(4L * CHUNK_SIZE) : BufferPool.noPooling())
+        .build();
+    content = ByteBuffer.allocate(WRITE_SIZE);
+  }
+
+  @Benchmark
+  public void writeObject(Blackhole blackhole) throws IOException {
+    BenchmarkWriteChannel channel = new BenchmarkWriteChannel(options, blackhole);
+    channel.chunkSize(CHUNK_SIZE);
+    for (int written = 0; written < objectSize; written += WRITE_SIZE) {
+      content.clear();
+      channel.write(content);
+    }
+    channel.close();
+  }
+}
@@ -21,20 +21,33 @@ import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 import com.google.cloud.spi.ServiceRpcFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class BaseWriteChannelTest {
 
@@ -52,6 +65,39 @@ public class BaseWriteChannelTest {
     }
   }
 
+  private static class BackgroundFlushChannel
+      extends BaseWriteBehindChannel<CustomServiceOptions, Serializable> {
+
+    private final List<Integer> flushedPositions = Collections.synchronizedList(
+        new ArrayList<Integer>());
+    private final ByteArrayOutputStream flushedBytes = new ByteArrayOutputStream();
+    private final CountDownLatch flushLatch;
+    private final RuntimeException flushException;
+
+    BackgroundFlushChannel(CountDownLatch flushLatch, RuntimeException flushException) {
+      super(null, ENTITY, UPLOAD_ID);
+      this.flushLatch = flushLatch;
+      this.flushException = flushException;
+    }
+
+    @Override
+    protected void flushBuffer(byte[] buffer, int position, int length, boolean last) {
+      Uninterruptibles.awaitUninterruptibly(flushLatch);
+      if (flushException != null) {
+        throw flushException;
+      }
+      flushedPositions.add(position);
+      synchronized (flushedBytes) {
+        flushedBytes.write(buffer, 0, length);
+      }
+    }
+
+    @Override
+    protected BaseState.Builder<CustomServiceOptions, Serializable> stateBuilder() {
+      return null;
+    }
+  }
+
   private static final Serializable ENTITY = 42L;
   private static final String UPLOAD_ID = "uploadId";
   private static final byte[] CONTENT = {0xD, 0xE, 0xA, 0xD};
@@ -122,7 +168,7 @@ public class BaseWriteChannelTest {
     channel.write(ByteBuffer.wrap(CONTENT));
     assertEquals(CONTENT.length, channel.limit());
     assertEquals(DEFAULT_CHUNK_SIZE, channel.buffer().length);
-    assertArrayEquals(Arrays.copyOf(CONTENT, DEFAULT_CHUNK_SIZE), channel.buffer());
+    assertArrayEquals(CONTENT, Arrays.copyOf(channel.buffer(), CONTENT.length));
   }
 
   @Test
@@ -131,9 +177,98 @@ public class BaseWriteChannelTest {
     channel.write(content);
     assertEquals(DEFAULT_CHUNK_SIZE, channel.position());
     assertEquals(1, channel.limit());
-    byte[] newContent = new byte[DEFAULT_CHUNK_SIZE];
-    newContent[0] = content.get(DEFAULT_CHUNK_SIZE);
-    assertArrayEquals(newContent, channel.buffer());
+    assertEquals(DEFAULT_CHUNK_SIZE, channel.buffer().length);
+    assertEquals(content.get(DEFAULT_CHUNK_SIZE), channel.buffer()[0]);
+  }
+
+  @Test
+  public void testWriteAndFlushReusesBuffer() throws IOException {
+    channel.write(randomBuffer(DEFAULT_CHUNK_SIZE + 1));
+    byte[] buffer = channel.buffer();
+    ByteBuffer content = randomBuffer(DEFAULT_CHUNK_SIZE);
+    channel.write(content);
+    assertSame(buffer, channel.buffer());
+    assertEquals(2 * DEFAULT_CHUNK_SIZE, channel.position());
+    assertEquals(1, channel.limit());
+    assertEquals(content.get(DEFAULT_CHUNK_SIZE - 1), channel.buffer()[0]);
+  }
+
+  @Test
+  public void testWriteBehind() throws IOException {
+    BackgroundFlushChannel writeBehindChannel = new BackgroundFlushChannel(new CountDownLatch(0), null);
+    writeBehindChannel.writeBehind(2);
+    ByteBuffer content = randomBuffer(3 * DEFAULT_CHUNK_SIZE + 42);
+    ByteBuffer toWrite = content.duplicate();
+    while (toWrite.hasRemaining()) {
+      ByteBuffer slice = toWrite.slice();
+      slice.limit(Math.min(MIN_CHUNK_SIZE, slice.remaining()));
+      toWrite.position(toWrite.position() + writeBehindChannel.write(slice));
+    }
+    assertEquals(3 * DEFAULT_CHUNK_SIZE, writeBehindChannel.position());
+    assertEquals(42, writeBehindChannel.limit());
+    writeBehindChannel.close();
+    assertEquals(ImmutableList.of(0, DEFAULT_CHUNK_SIZE, 2 * DEFAULT_CHUNK_SIZE,
+        3 * DEFAULT_CHUNK_SIZE), writeBehindChannel.flushedPositions);
+    assertArrayEquals(content.array(), writeBehindChannel.flushedBytes.toByteArray());
+  }
+
+  @Test
+  public void testWriteBehindBounded() throws Exception {
+    CountDownLatch flushLatch = new CountDownLatch(1);
+    final BackgroundFlushChannel writeBehindChannel = new BackgroundFlushChannel(flushLatch, null);
+    writeBehindChannel.writeBehind(1);
+    writeBehindChannel.write(randomBuffer(DEFAULT_CHUNK_SIZE));
+    assertEquals(DEFAULT_CHUNK_SIZE, writeBehindChannel.position());
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Integer> secondWrite = executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws IOException {
+          return writeBehindChannel.write(randomBuffer(DEFAULT_CHUNK_SIZE));
+        }
+      });
+      Thread.sleep(100);
+      assertFalse(secondWrite.isDone());
+      flushLatch.countDown();
+      assertEquals(DEFAULT_CHUNK_SIZE, secondWrite.get().intValue());
+    } finally {
+      executor.shutdown();
+    }
+    writeBehindChannel.close();
+    assertEquals(ImmutableList.of(0, DEFAULT_CHUNK_SIZE, 2 * DEFAULT_CHUNK_SIZE),
+        writeBehindChannel.flushedPositions);
+  }
+
+  @Test
+  public void testWriteBehindError() throws IOException {
+    RuntimeException exception = new RuntimeException("flush failed");
+    BackgroundFlushChannel writeBehindChannel =
+        new BackgroundFlushChannel(new CountDownLatch(0), exception);
+    writeBehindChannel.writeBehind(2);
+    writeBehindChannel.write(randomBuffer(DEFAULT_CHUNK_SIZE));
+    try {
+      writeBehindChannel.close();
+      fail("Expected close to throw IOException");
+    } catch (IOException ex) {
+      assertSame(exception, ex.getCause());
+    }
+    assertTrue(writeBehindChannel.isOpen());
+    try {
+      writeBehindChannel.capture();
+      fail("Expected capture to throw RuntimeException");
+    } catch (RuntimeException ex) {
+      assertSame(exception, ex);
+    }
+    thrown.expect(IOException.class);
+    thrown.expectMessage("flush failed");
+    writeBehindChannel.write(randomBuffer(42));
+  }
+
+  @Test
+  public void testWriteBehindNegative() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Write-behind must be >= 0");
+    new BackgroundFlushChannel(new CountDownLatch(0), null).writeBehind(-1);
   }
 
   private static ByteBuffer randomBuffer(int size) {
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class BufferPoolTest {
+
+  private static final int BUFFER_SIZE = 1024;
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void testAcquireAndRelease() {
+    BufferPool pool = BufferPool.of(2 * BUFFER_SIZE);
+    byte[] first = pool.acquire(BUFFER_SIZE);
+    byte[] second = pool.acquire(BUFFER_SIZE);
+    assertEquals(BUFFER_SIZE, first.length);
+    assertNotSame(first, second);
+    assertEquals(0, pool.pooledBytes());
+    pool.release(first);
+    assertEquals(BUFFER_SIZE, pool.pooledBytes());
+    assertSame(first, pool.acquire(BUFFER_SIZE));
+    assertEquals(0, pool.pooledBytes());
+  }
+
+  @Test
+  public void testAcquireDifferentSize() {
+    BufferPool pool = BufferPool.of(2 * BUFFER_SIZE);
+    byte[] buffer = pool.acquire(BUFFER_SIZE);
+    pool.release(buffer);
+    byte[] other = pool.acquire(BUFFER_SIZE / 2);
+    assertEquals(BUFFER_SIZE / 2, other.length);
+    assertEquals(BUFFER_SIZE, pool.pooledBytes());
+  }
+
+  @Test
+  public void testReleaseBounded() {
+    BufferPool pool = BufferPool.of(BUFFER_SIZE);
+    byte[] first = pool.acquire(BUFFER_SIZE);
+    byte[] second = pool.acquire(BUFFER_SIZE);
+    byte[] small = pool.acquire(1);
+    pool.release(first);
+    pool.release(second);
+    assertEquals(BUFFER_SIZE, pool.pooledBytes());
+    pool.release(small);
+    assertEquals(BUFFER_SIZE, pool.pooledBytes());
+  }
+
+  @Test
+  public void testReleaseForeignArray() {
+    BufferPool pool = BufferPool.of(2 * BUFFER_SIZE);
+    byte[] foreign = new byte[BUFFER_SIZE];
+    pool.release(foreign);
+    assertEquals(0, pool.pooledBytes());
+    assertNotSame(foreign, pool.acquire(BUFFER_SIZE));
+    byte[] other = BufferPool.of(2 * BUFFER_SIZE).acquire(BUFFER_SIZE);
+    pool.release(other);
+    assertEquals(0, pool.pooledBytes());
+  }
+
+  @Test
+  public void testReleaseTwice() {
+    BufferPool pool = BufferPool.of(2 * BUFFER_SIZE);
+    byte[] buffer = pool.acquire(BUFFER_SIZE);
+    pool.release(buffer);
+    pool.release(buffer);
+    assertEquals(BUFFER_SIZE, pool.pooledBytes());
+    assertSame(buffer, pool.acquire(BUFFER_SIZE));
+    assertNotSame(buffer, pool.acquire(BUFFER_SIZE));
+  }
+
+  @Test
+  public void testNoPooling() {
+    BufferPool pool = BufferPool.noPooling();
+    byte[] buffer = pool.acquire(BUFFER_SIZE);
+    pool.release(buffer);
+    assertEquals(0, pool.pooledBytes());
+    assertNotSame(buffer, pool.acquire(BUFFER_SIZE));
+  }
+
+  @Test
+  public void testDefaultInstance() {
+    assertSame(BufferPool.defaultInstance(), BufferPool.defaultInstance());
+    assertEquals(BufferPool.DEFAULT_MAX_POOLED_BYTES,
+        BufferPool.defaultInstance().maxPooledBytes());
+  }
+
+  @Test
+  public void testEquals() {
+    BufferPool pool = BufferPool.of(BUFFER_SIZE);
+    assertEquals(pool, pool);
+    assertNotEquals(pool, BufferPool.of(BUFFER_SIZE));
+    assertNotEquals(BufferPool.noPooling(), BufferPool.noPooling());
+  }
+
+  @Test
+  public void testNegativeMaxPooledBytes() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Max pooled bytes must be >= 0");
+    BufferPool.of(-1);
+  }
+}
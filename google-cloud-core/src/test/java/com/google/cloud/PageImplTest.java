@@ -17,11 +17,17 @@
 package com.google.cloud;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.google.common.collect.ImmutableList;
 
 import org.junit.Test;
 
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 public class PageImplTest {
 
   private static final ImmutableList<String> VALUES = ImmutableList.of("1", "2");
@@ -60,4 +66,100 @@ public class PageImplTest {
     PageImpl<String> result = new PageImpl<>(fetcher, "c", VALUES);
     assertEquals(ALL_VALUES, ImmutableList.copyOf(result.iterateAll()));
   }
+
+  @Test
+  public void testIterateAllPrefetch() throws InterruptedException {
+    final CountDownLatch fetched = new CountDownLatch(2);
+    final PageImpl<String> lastResult = new PageImpl<>(null, null, ImmutableList.of("5"));
+    final PageImpl<String> nextResult = new PageImpl<>(new PageImpl.NextPageFetcher<String>() {
+      @Override
+      public PageImpl<String> nextPage() {
+        fetched.countDown();
+        return lastResult;
+      }
+    }, "c2", NEXT_VALUES);
+    PageImpl<String> result = new PageImpl<>(new PageImpl.NextPageFetcher<String>() {
+      @Override
+      public PageImpl<String> nextPage() {
+        fetched.countDown();
+        return nextResult;
+      }
+    }, "c1", VALUES);
+    Iterator<String> iterator = result.iterateAll(2);
+    assertEquals("1", iterator.next());
+    assertTrue(fetched.await(10, TimeUnit.SECONDS));
+    assertEquals(ImmutableList.builder().add("2").addAll(NEXT_VALUES).add("5").build(),
+        ImmutableList.copyOf(iterator));
+  }
+
+  @Test
+  public void testIterateAllPrefetchError() {
+    final RuntimeException exception = new RuntimeException();
+    PageImpl<String> result = new PageImpl<>(new PageImpl.NextPageFetcher<String>() {
+      @Override
+      public PageImpl<String> nextPage() {
+        throw exception;
+      }
+    }, "c", VALUES);
+    Iterator<String> iterator = result.iterateAll(3);
+    assertEquals("1", iterator.next());
+    assertEquals("2", iterator.next());
+    try {
+      iterator.hasNext();
+      fail("Expected RuntimeException");
+    } catch (RuntimeException ex) {
+      assertEquals(exception, ex);
+    }
+  }
+
+  @Test
+  public void testIterateAllNoPrefetch() {
+    final PageImpl<String> nextResult = new PageImpl<>(null, "c", NEXT_VALUES);
+    PageImpl.NextPageFetcher<String> fetcher = new PageImpl.NextPageFetcher<String>() {
+      @Override
+      public PageImpl<String> nextPage() {
+        return nextResult;
+      }
+    };
+    PageImpl<String> result = new PageImpl<>(fetcher, "c", VALUES);
+    assertEquals(ALL_VALUES, ImmutableList.copyOf(result.iterateAll(0)));
+  }
+
+  @Test
+  public void testStaticIterateAll() {
+    final Page<String> nextResult = new PageImpl<>(null, "c", NEXT_VALUES);
+    // a page that is not a PageImpl, as returned by a listing method
+    Page<String> result = new Page<String>() {
+      @Override
+      public Iterable<String> values() {
+        return VALUES;
+      }
+
+      @Override
+      public Iterator<String> iterateAll() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public String nextPageCursor() {
+        return "c";
+      }
+
+      @Override
+      public Page<String> nextPage() {
+        return nextResult;
+      }
+    };
+    assertEquals(ALL_VALUES, ImmutableList.copyOf(PageImpl.iterateAll(result, 1)));
+  }
+
+  @Test
+  public void testStaticIterateAllNegativeDepth() {
+    try {
+      PageImpl.iterateAll(new PageImpl<>(null, "c", VALUES), -1);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException ex) {
+      assertEquals("Prefetch depth must be >= 0", ex.getMessage());
+    }
+  }
 }
@@ -18,19 +18,31 @@ package com.google.cloud;
 
 import static java.util.concurrent.Executors.callable;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import com.google.cloud.RetryHelper.AsyncCallable;
 import com.google.cloud.RetryHelper.NonRetriableException;
 import com.google.cloud.RetryHelper.RetriesExhaustedException;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -56,6 +68,18 @@ public class RetryHelperTest {
     private static final long serialVersionUID = -5508018234693709156L;
   }
 
+  private ScheduledExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
   @Test
   public void testTriesWithExceptionHandling() {
     assertNull(RetryHelper.getContext());
@@ -258,4 +282,203 @@ public class RetryHelperTest {
     });
   }
 
+
+  @Test
+  public void testRetryBudget() {
+    RetryParams params = RetryParams.builder().initialRetryDelayMillis(0)
+        .retryMaxAttempts(10)
+        .retryBudget(RetryBudget.create(0, 3))
+        .build();
+    final AtomicInteger timesCalled = new AtomicInteger(0);
+    Callable<Void> failing = callable(new Runnable() {
+      @Override public void run() {
+        timesCalled.incrementAndGet();
+        throw new RuntimeException();
+      }
+    }, null);
+    ExceptionHandler handler = ExceptionHandler.builder().retryOn(RuntimeException.class).build();
+    try {
+      RetryHelper.runWithRetries(failing, params, handler);
+      fail("Expected RetriesExhaustedException");
+    } catch (RetriesExhaustedException expected) {
+      // first attempt plus the 3 retries allowed by the budget
+      assertEquals(4, timesCalled.get());
+    }
+    assertEquals(0, params.retryBudget().availableRetries());
+    timesCalled.set(0);
+    try {
+      RetryHelper.runWithRetries(failing, params, handler);
+      fail("Expected RetriesExhaustedException");
+    } catch (RetriesExhaustedException expected) {
+      assertEquals(1, timesCalled.get());
+    }
+  }
+
+  @Test
+  public void testRetryBudgetDeposit() {
+    RetryBudget budget = RetryBudget.create(0.5, 2);
+    assertTrue(budget.tryAcquire());
+    assertTrue(budget.tryAcquire());
+    assertFalse(budget.tryAcquire());
+    budget.deposit();
+    assertFalse(budget.tryAcquire());
+    budget.deposit();
+    assertEquals(1, budget.availableRetries());
+    for (int i = 0; i < 10; i++) {
+      budget.deposit();
+    }
+    assertEquals(2, budget.availableRetries());
+  }
+
+  @Test
+  public void testRunWithRetriesAsync() throws Exception {
+    RetryParams params = RetryParams.builder().initialRetryDelayMillis(1)
+        .maxRetryDelayMillis(1)
+        .retryMaxAttempts(5)
+        .build();
+    final AtomicInteger timesCalled = new AtomicInteger(0);
+    ListenableFuture<Integer> result = RetryHelper.runWithRetriesAsync(new Callable<Integer>() {
+      @Override public Integer call() throws IOException {
+        if (timesCalled.incrementAndGet() < 3) {
+          throw new IOException();
+        }
+        return timesCalled.get();
+      }
+    }, params, ExceptionHandler.defaultInstance(), Clock.defaultClock(), executor);
+    assertEquals(3, result.get().intValue());
+    assertEquals(3, timesCalled.get());
+  }
+
+  @Test
+  public void testRunWithRetriesAsyncFailedFutures() throws Exception {
+    RetryParams params = RetryParams.builder().initialRetryDelayMillis(1)
+        .maxRetryDelayMillis(1)
+        .retryMaxAttempts(3)
+        .build();
+    final AtomicInteger timesCalled = new AtomicInteger(0);
+    ListenableFuture<Void> result = RetryHelper.runWithRetriesAsync(new AsyncCallable<Void>() {
+      @Override public ListenableFuture<Void> call() {
+        timesCalled.incrementAndGet();
+        return Futures.immediateFailedFuture(new IOException("should be retried"));
+      }
+    }, params, ExceptionHandler.defaultInstance(), Clock.defaultClock(), executor);
+    try {
+      result.get();
+      fail("Expected ExecutionException");
+    } catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof RetriesExhaustedException);
+      assertEquals("should be retried", ex.getCause().getCause().getMessage());
+    }
+    assertEquals(3, timesCalled.get());
+  }
+
+  @Test
+  public void testRunWithRetriesAsyncNonRetriable() throws Exception {
+    RetryParams params = RetryParams.builder().initialRetryDelayMillis(1)
+        .maxRetryDelayMillis(1)
+        .retryMaxAttempts(3)
+        .build();
+    ExceptionHandler handler = ExceptionHandler.builder()
+        .retryOn(IOException.class).abortOn(RuntimeException.class).build();
+    final AtomicInteger timesCalled = new AtomicInteger(0);
+    ListenableFuture<Void> result = RetryHelper.runWithRetriesAsync(new AsyncCallable<Void>() {
+      @Override public ListenableFuture<Void> call() throws IOException {
+        if (timesCalled.incrementAndGet() == 1) {
+          throw new IOException("should be retried");
+        }
+        throw new NullPointerException("Boo!");
+      }
+    }, params, handler, Clock.defaultClock(), executor);
+    try {
+      result.get();
+      fail("Expected ExecutionException");
+    } catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof NonRetriableException);
+      assertEquals("Boo!", ex.getCause().getCause().getMessage());
+    }
+    assertEquals(2, timesCalled.get());
+  }
+
+  @Test
+  public void testRunWithRetriesAsyncRetryBudget() throws Exception {
+    RetryParams params = RetryParams.builder().initialRetryDelayMillis(1)
+        .maxRetryDelayMillis(1)
+        .retryMaxAttempts(10)
+        .retryBudget(RetryBudget.create(0, 1))
+        .build();
+    final AtomicInteger timesCalled = new AtomicInteger(0);
+    ListenableFuture<Void> result = RetryHelper.runWithRetriesAsync(new AsyncCallable<Void>() {
+      @Override public ListenableFuture<Void> call() {
+        timesCalled.incrementAndGet();
+        return Futures.immediateFailedFuture(new IOException());
+      }
+    }, params, ExceptionHandler.defaultInstance(), Clock.defaultClock(), executor);
+    try {
+      result.get();
+      fail("Expected ExecutionException");
+    } catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof RetriesExhaustedException);
+    }
+    assertEquals(2, timesCalled.get());
+  }
+
+  @Test
+  public void testRunWithRetriesAsyncCancelInterruptsAttempt() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    ListenableFuture<Void> result = RetryHelper.runWithRetriesAsync(new Callable<Void>() {
+      @Override public Void call() {
+        started.countDown();
+        try {
+          new CountDownLatch(1).await();
+        } catch (InterruptedException ex) {
+          interrupted.countDown();
+        }
+        return null;
+      }
+    }, RetryParams.noRetries(), ExceptionHandler.defaultInstance(), Clock.defaultClock(),
+        executor);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    assertTrue(result.cancel(true));
+    assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testRunWithRetriesAsyncCancelScheduledRetry() throws Exception {
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+    scheduler.setRemoveOnCancelPolicy(true);
+    RetryParams params = RetryParams.builder().initialRetryDelayMillis(60000)
+        .maxRetryDelayMillis(60000)
+        .retryMaxAttempts(3)
+        .build();
+    final AtomicInteger timesCalled = new AtomicInteger(0);
+    try {
+      ListenableFuture<Void> result = RetryHelper.runWithRetriesAsync(new AsyncCallable<Void>() {
+        @Override public ListenableFuture<Void> call() {
+          timesCalled.incrementAndGet();
+          return Futures.immediateFailedFuture(new IOException("should be retried"));
+        }
+      }, params, ExceptionHandler.defaultInstance(), Clock.defaultClock(), scheduler);
+      assertEquals(1, scheduler.getQueue().size());
+      assertTrue(result.cancel(false));
+      assertTrue(scheduler.getQueue().isEmpty());
+      assertEquals(1, timesCalled.get());
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRunWithRetriesAsyncCancelAttemptFuture() throws Exception {
+    final SettableFuture<Void> attempt = SettableFuture.create();
+    ListenableFuture<Void> result = RetryHelper.runWithRetriesAsync(new AsyncCallable<Void>() {
+      @Override public ListenableFuture<Void> call() {
+        return attempt;
+      }
+    }, RetryParams.defaultInstance(), ExceptionHandler.defaultInstance(), Clock.defaultClock(),
+        executor);
+    assertTrue(result.cancel(true));
+    assertTrue(attempt.isCancelled());
+    assertTrue(result.isCancelled());
+  }
 }
@@ -23,6 +23,8 @@ import static com.google.cloud.RetryParams.DEFAULT_RETRY_MAX_ATTEMPTS;
 import static com.google.cloud.RetryParams.DEFAULT_RETRY_MIN_ATTEMPTS;
 import static com.google.cloud.RetryParams.DEFAULT_TOTAL_RETRY_PERIOD_MILLIS;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import com.google.cloud.RetryParams.Builder;
@@ -62,6 +64,8 @@ public class RetryParamsTest {
     builder.retryMinAttempts(107);
     builder.retryMaxAttempts(108);
     builder.totalRetryPeriodMillis(109);
+    RetryBudget retryBudget = RetryBudget.create(0.1, 110);
+    builder.retryBudget(retryBudget);
     RetryParams params1 = builder.build();
     RetryParams params2 = new RetryParams.Builder(params1).build();
     for (RetryParams params : Arrays.asList(params1, params2)) {
@@ -71,7 +75,20 @@ public class RetryParamsTest {
       assertEquals(107, params.retryMinAttempts());
       assertEquals(108, params.retryMaxAttempts());
       assertEquals(109, params.totalRetryPeriodMillis());
+      assertSame(retryBudget, params.retryBudget());
     }
+    assertEquals(params1, params2);
+    assertEquals(params1.hashCode(), params2.hashCode());
+  }
+
+  @Test
+  public void testRetryBudgetIdentity() {
+    RetryBudget retryBudget = RetryBudget.create(0.1, 10);
+    RetryParams params = RetryParams.builder().retryBudget(retryBudget).build();
+    assertEquals(params, params.toBuilder().build());
+    // budgets with the same settings hold different tokens
+    assertNotEquals(retryBudget, RetryBudget.create(0.1, 10));
+    assertNotEquals(params, RetryParams.builder().retryBudget(RetryBudget.create(0.1, 10)).build());
   }
 
   @Test
@@ -89,6 +106,12 @@ public class RetryParamsTest {
     builder = assertFailure(builder);
     builder.totalRetryPeriodMillis(-1);
     builder = assertFailure(builder);
+    try {
+      RetryBudget.create(-0.1, 10);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
     // verify that it is OK for min and max to be equal
     builder.retryMaxAttempts(RetryParams.defaultInstance().retryMinAttempts());
     builder.maxRetryDelayMillis(RetryParams.defaultInstance().initialRetryDelayMillis());
@@ -16,12 +16,18 @@
 
 package com.google.cloud;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
 import com.google.cloud.MonitoredResourceDescriptor.LabelDescriptor;
 import com.google.cloud.MonitoredResourceDescriptor.LabelDescriptor.ValueType;
 import com.google.cloud.ServiceAccountSigner.SigningException;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import org.junit.Test;
+
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Serializable;
@@ -86,6 +92,16 @@ public class SerializationTest extends BaseSerializationTest {
         LABEL_DESCRIPTOR, MONITORED_RESOURCE_DESCRIPTOR, MONITORED_RESOURCE};
   }
 
+  @Test
+  public void testBufferPool() throws Exception {
+    assertSame(BufferPool.defaultInstance(),
+        serializeAndDeserialize(BufferPool.defaultInstance()));
+    BufferPool pool = BufferPool.of(42);
+    BufferPool copy = serializeAndDeserialize(pool);
+    assertNotSame(pool, copy);
+    assertEquals(pool.maxPooledBytes(), copy.maxPooledBytes());
+  }
+
   @Override
   protected Restorable<?>[] restorableObjects() {
     try {
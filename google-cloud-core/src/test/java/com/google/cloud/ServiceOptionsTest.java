@@ -70,9 +70,11 @@ public class ServiceOptionsTest {
     }
   }
   private static final Clock TEST_CLOCK = new TestClock();
+  private static final BufferPool BUFFER_POOL = BufferPool.of(1024);
   private static final TestServiceOptions OPTIONS =
       TestServiceOptions.builder()
           .authCredentials(authCredentials)
+          .bufferPool(BUFFER_POOL)
           .clock(TEST_CLOCK)
           .host("host")
           .projectId("project-id")
@@ -192,9 +194,11 @@ public class ServiceOptionsTest {
     assertEquals("host", OPTIONS.host());
     assertEquals("project-id", OPTIONS.projectId());
     assertSame(RetryParams.noRetries(), OPTIONS.retryParams());
+    assertSame(BUFFER_POOL, OPTIONS.bufferPool());
     assertSame(Clock.defaultClock(), DEFAULT_OPTIONS.clock());
     assertEquals("https://www.googleapis.com", DEFAULT_OPTIONS.host());
     assertSame(RetryParams.defaultInstance(), DEFAULT_OPTIONS.retryParams());
+    assertSame(BufferPool.defaultInstance(), DEFAULT_OPTIONS.bufferPool());
   }
 
   @Test
@@ -0,0 +1,493 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.logging;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.cloud.MonitoredResource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Filter;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * A logging handler that buffers logs generated with {@link java.util.logging.Logger} and outputs
+ * them to Stackdriver Logging from a dedicated thread.
+ *
+ * <p>{@link #publish(LogRecord)} formats the record on the calling thread and adds the entry to a
+ * bounded, lock-free buffer: publishing threads never wait for each other nor for the Stackdriver
+ * Logging service. A daemon thread drains the buffer and writes entries in batches. A batch is
+ * written as soon as it holds {@code batchSize} entries or about {@code batchBytes} bytes, when its
+ * oldest entry has waited for {@code maxLatencyMillis}, when a log with the flush level is
+ * published, or when {@link #flush()} is called. {@code flush()} waits until all the entries
+ * published before the call are written.
+ *
+ * <p>When the buffer is full, the {@link OverflowPolicy} decides what happens to new entries.
+ * Dropped entries are counted, see {@link #getDroppedCount()}. If a spool directory is set (see
+ * {@link LoggingHandler}), the entries that the overflow policy drops are appended to the spool
+ * instead, and are dropped only if the spool is full.
+ *
+ * <p>Java logging levels are mapped to Stackdriver Logging severities and added as labels as
+ * explained in {@link LoggingHandler}.
+ *
+ * <p><b>Configuration</b>: By default each {@code BufferedLoggingHandler} is initialized using the
+ * following {@code LogManager} configuration properties (that you can set in the
+ * {@code logging.properties} file). If properties are not defined (or have invalid values) then the
+ * specified default values are used.
+ * <ul>
+ * <li>{@code com.google.cloud.logging.BufferedLoggingHandler.log} the log name (defaults to
+ *     {@code java.log}).
+ * <li>{@code com.google.cloud.logging.BufferedLoggingHandler.level} specifies the default level
+ *     for the handler (defaults to {@code Level.INFO}).
+ * <li>{@code com.google.cloud.logging.BufferedLoggingHandler.filter} specifies the name of a
+ *     {@link Filter} class to use (defaults to no filter).
+ * <li>{@code com.google.cloud.logging.BufferedLoggingHandler.formatter} specifies the name of a
+ *     {@link Formatter} class to use (defaults to {@link SimpleFormatter}).
+ * <li>{@code com.google.cloud.logging.BufferedLoggingHandler.flushLevel} specifies the flush log
+ *     level. When a log with this level is published, buffered logs are transmitted to the
+ *     Stackdriver Logging service without waiting for the batch to fill (defaults to
+ *     {@link LoggingLevel#ERROR}).
+ * <li>{@code com.google.cloud.logging.BufferedLoggingHandler.bufferSize} specifies the number of
+ *     entries the buffer can hold, rounded up to a power of two (defaults to 8192).
+ * <li>{@code com.google.cloud.logging.BufferedLoggingHandler.batchSize} specifies the maximum
+ *     number of entries written in a single request (defaults to 1000).
+ * <li>{@code com.google.cloud.logging.BufferedLoggingHandler.batchBytes} specifies the approximate
+ *     maximum size of the entries written in a single request (defaults to 5 MiB).
+ * <li>{@code com.google.cloud.logging.BufferedLoggingHandler.maxLatencyMillis} specifies how long
+ *     an entry can wait for its batch to fill before it's written (defaults to 1000).
+ * <li>{@code com.google.cloud.logging.BufferedLoggingHandler.overflowPolicy} specifies the
+ *     {@link OverflowPolicy} applied when the buffer is full (defaults to
+ *     {@link OverflowPolicy#DROP_NEWEST}).
+ * <li>{@code com.google.cloud.logging.BufferedLoggingHandler.overflowSeverity} specifies the
+ *     lowest {@link Severity} that is never dropped by {@link OverflowPolicy#DROP_BELOW_SEVERITY}
+ *     (defaults to {@link Severity#WARNING}).
+ * <li>{@code com.google.cloud.logging.BufferedLoggingHandler.spoolDirectory} specifies a local
+ *     directory where logs are kept when they can not be written to the Stackdriver Logging
+ *     service, or are dropped by the overflow policy (defaults to no spool).
+ * <li>{@code com.google.cloud.logging.BufferedLoggingHandler.spoolMaxBytes} specifies the maximum
+ *     disk space used by the spool (defaults to 256 MiB).
+ * </ul>
+ *
+ * <p>The {@code flushSize} property of {@link LoggingHandler} is not used, batches are sized by
+ * {@code batchSize} and {@code batchBytes} instead.
+ *
+ * <p>To add a {@code BufferedLoggingHandler} to an existing {@link Logger} and be sure to avoid
+ * infinite recursion when logging, use the {@link #addHandler(Logger, LoggingHandler)} method.
+ * Alternatively you can add the handler via {@code logging.properties}. For example using the
+ * following line:
+ * <pre>
+ * {@code com.example.mypackage.handlers=com.google.cloud.logging.BufferedLoggingHandler}
+ * </pre>
+ */
+public class BufferedLoggingHandler extends LoggingHandler {
+
+  static final int DEFAULT_BUFFER_SIZE = 8192;
+  static final int DEFAULT_BATCH_SIZE = 1000;
+  static final long DEFAULT_BATCH_BYTES = 5L * 1024 * 1024;
+  static final long DEFAULT_MAX_LATENCY_MILLIS = 1000L;
+  static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DROP_NEWEST;
+  static final Severity DEFAULT_OVERFLOW_SEVERITY = Severity.WARNING;
+
+  private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+  // times the drain thread yields, waiting for a claimed slot to be filled, before parking
+  private static final int CLAIMED_SLOT_YIELDS = 16;
+  private static final long CLAIMED_SLOT_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+  private static final long FLUSH_WAIT_MILLIS = 10L;
+  // serialized size of an entry besides its payload and labels, such as severity and field tags
+  private static final long ENTRY_OVERHEAD_BYTES = 32L;
+
+  // states of the drain thread
+  private static final int RUNNING = 0;
+  private static final int IDLE = 1;
+  private static final int WAITING = 2;
+
+  /**
+   * What {@link #publish(LogRecord)} does with an entry when the buffer is full.
+   */
+  public enum OverflowPolicy {
+
+    /**
+     * The publishing thread waits until the buffer has room for the entry.
+     */
+    BLOCK,
+
+    /**
+     * The oldest buffered entry is dropped to make room for the entry.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The entry is dropped.
+     */
+    DROP_NEWEST,
+
+    /**
+     * The entry is dropped if its severity is lower than the configured overflow severity,
+     * otherwise the publishing thread waits until the buffer has room for it.
+     */
+    DROP_BELOW_SEVERITY
+  }
+
+  private final RingBuffer<LogEntry> buffer;
+  private final int batchSize;
+  private final long batchBytes;
+  private final long maxLatencyNanos;
+  private final OverflowPolicy overflowPolicy;
+  private final Severity overflowSeverity;
+  private final Thread drainer;
+  private final Object flushLock = new Object();
+  // entries added to the buffer, and entries written or evicted from it
+  private final AtomicLong buffered = new AtomicLong();
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private volatile int drainerState = RUNNING;
+  // number of buffered entries that wake up a drain thread waiting for its batch to fill
+  private volatile int wakeUpSize;
+  private volatile boolean flushRequested;
+  private volatile boolean closed;
+
+  /**
+   * Creates an handler that publishes messages to Stackdriver Logging.
+   */
+  public BufferedLoggingHandler() {
+    this(null, null, null);
+  }
+
+  /**
+   * Creates a handler that publishes messages to Stackdriver Logging.
+   *
+   * @param log the name of the log to which log entries are written
+   */
+  public BufferedLoggingHandler(String log) {
+    this(log, null, null);
+  }
+
+  /**
+   * Creates a handler that publishes messages to Stackdriver Logging.
+   *
+   * @param log the name of the log to which log entries are written
+   * @param options options for the Stackdriver Logging service
+   */
+  public BufferedLoggingHandler(String log, LoggingOptions options) {
+    this(log, options, null);
+  }
+
+  /**
+   * Creates a handler that publishes messages to Stackdriver Logging.
+   *
+   * @param log the name of the log to which log entries are written
+   * @param options options for the Stackdriver Logging service
+   * @param monitoredResource the monitored resource to which log entries refer
+   */
+  public BufferedLoggingHandler(String log, LoggingOptions options,
+      MonitoredResource monitoredResource) {
+    this(log, options, monitoredResource, new LogConfigHelper(),
+        BufferedLoggingHandler.class.getName());
+  }
+
+  private BufferedLoggingHandler(String log, LoggingOptions options,
+      MonitoredResource monitoredResource, LogConfigHelper helper, String className) {
+    this(log, options, monitoredResource,
+        (int) positive(helper.getLongProperty(className + ".bufferSize", DEFAULT_BUFFER_SIZE),
+            DEFAULT_BUFFER_SIZE),
+        (int) positive(helper.getLongProperty(className + ".batchSize", DEFAULT_BATCH_SIZE),
+            DEFAULT_BATCH_SIZE),
+        positive(helper.getLongProperty(className + ".batchBytes", DEFAULT_BATCH_BYTES),
+            DEFAULT_BATCH_BYTES),
+        positive(helper.getLongProperty(className + ".maxLatencyMillis",
+            DEFAULT_MAX_LATENCY_MILLIS), DEFAULT_MAX_LATENCY_MILLIS),
+        helper.getEnumProperty(className + ".overflowPolicy", OverflowPolicy.class,
+            DEFAULT_OVERFLOW_POLICY),
+        helper.getEnumProperty(className + ".overflowSeverity", Severity.class,
+            DEFAULT_OVERFLOW_SEVERITY));
+  }
+
+  BufferedLoggingHandler(String log, LoggingOptions options, MonitoredResource monitoredResource,
+      int bufferSize, int batchSize, long batchBytes, long maxLatencyMillis,
+      OverflowPolicy overflowPolicy, Severity overflowSeverity) {
+    super(log, options, monitoredResource);
+    checkArgument(batchSize > 0, "batchSize must be positive: %s", batchSize);
+    checkArgument(batchBytes > 0, "batchBytes must be positive: %s", batchBytes);
+    checkArgument(maxLatencyMillis > 0, "maxLatencyMillis must be positive: %s",
+        maxLatencyMillis);
+    this.buffer = new RingBuffer<>(bufferSize);
+    this.batchSize = batchSize;
+    this.batchBytes = batchBytes;
+    this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+    this.overflowPolicy = checkNotNull(overflowPolicy);
+    this.overflowSeverity = checkNotNull(overflowSeverity);
+    this.wakeUpSize = Math.min(batchSize, buffer.capacity() / 2 + 1);
+    this.drainer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        drain();
+      }
+    }, "logging-handler-drainer");
+    drainer.setDaemon(true);
+    drainer.start();
+  }
+
+  private static long positive(long value, long defaultValue) {
+    return value > 0 ? value : defaultValue;
+  }
+
+  /**
+   * Adds the entry for {@code record} to the buffer, without waiting for the entry to be written.
+   * If the buffer is full, the overflow policy is applied.
+   */
+  @Override
+  public void publish(LogRecord record) {
+    // check that the log record should be logged
+    if (closed || !isLoggable(record)) {
+      return;
+    }
+    LogEntry entry = entryFor(record);
+    if (entry == null) {
+      return;
+    }
+    if (offer(entry)) {
+      buffered.incrementAndGet();
+    } else if (!spool(entry)) {
+      dropped.incrementAndGet();
+    }
+    // requested after the entry is added, so that the drain thread does not clear the request
+    // before the entry can be written
+    if (record.getLevel().intValue() >= getFlushLevel().intValue()) {
+      flushRequested = true;
+    }
+    int state = drainerState;
+    if (state == IDLE
+        || (state == WAITING && (flushRequested || buffer.size() >= wakeUpSize))) {
+      wakeUpDrainer();
+    }
+  }
+
+  private boolean offer(LogEntry entry) {
+    if (buffer.offer(entry)) {
+      return true;
+    }
+    switch (overflowPolicy) {
+      case DROP_OLDEST:
+        while (!buffer.offer(entry)) {
+          LogEntry oldest = buffer.poll();
+          if (oldest != null) {
+            if (!spool(oldest)) {
+              dropped.incrementAndGet();
+            }
+            completed.incrementAndGet();
+          }
+        }
+        return true;
+      case DROP_BELOW_SEVERITY:
+        if (entry.getSeverity().compareTo(overflowSeverity) < 0) {
+          return false;
+        }
+        return offerBlocking(entry);
+      case BLOCK:
+        return offerBlocking(entry);
+      case DROP_NEWEST:
+      default:
+        return false;
+    }
+  }
+
+  private boolean offerBlocking(LogEntry entry) {
+    while (!buffer.offer(entry)) {
+      if (closed) {
+        return false;
+      }
+      wakeUpDrainer();
+      LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+    }
+    return true;
+  }
+
+  private void wakeUpDrainer() {
+    drainerState = RUNNING;
+    LockSupport.unpark(drainer);
+  }
+
+  /**
+   * Moves entries from the buffer to batches, and writes them. Runs in the drain thread until the
+   * handler is closed.
+   */
+  private void drain() {
+    List<LogEntry> batch = new ArrayList<>(Math.min(batchSize, buffer.capacity()));
+    long bytes = 0;
+    long deadline = 0;
+    int yields = 0;
+    while (true) {
+      LogEntry entry = buffer.poll();
+      if (entry != null) {
+        yields = 0;
+        if (batch.isEmpty()) {
+          deadline = System.nanoTime() + maxLatencyNanos;
+        }
+        batch.add(entry);
+        bytes += estimatedSize(entry);
+        if (batch.size() >= batchSize || bytes >= batchBytes) {
+          writeBatch(batch);
+          bytes = 0;
+        }
+        continue;
+      }
+      if (!buffer.isEmpty()) {
+        // a producer claimed a slot but did not fill it yet, it may have been descheduled
+        if (yields++ < CLAIMED_SLOT_YIELDS) {
+          Thread.yield();
+        } else {
+          LockSupport.parkNanos(this, CLAIMED_SLOT_PARK_NANOS);
+        }
+        continue;
+      }
+      boolean flushing = flushRequested;
+      boolean stopping = closed;
+      if (!batch.isEmpty() && (flushing || stopping || System.nanoTime() - deadline >= 0)) {
+        writeBatch(batch);
+        bytes = 0;
+        continue;
+      }
+      if (flushing) {
+        flushRequested = false;
+        synchronized (flushLock) {
+          flushLock.notifyAll();
+        }
+        continue;
+      }
+      if (stopping) {
+        return;
+      }
+      if (batch.isEmpty()) {
+        drainerState = IDLE;
+        if (buffer.isEmpty() && !flushRequested && !closed) {
+          LockSupport.park(this);
+        }
+      } else {
+        wakeUpSize = Math.min(batchSize - batch.size(), buffer.capacity() / 2 + 1);
+        drainerState = WAITING;
+        if (buffer.size() < wakeUpSize && !flushRequested && !closed) {
+          LockSupport.parkNanos(this, deadline - System.nanoTime());
+        }
+      }
+      drainerState = RUNNING;
+    }
+  }
+
+  /**
+   * Returns an estimate of the serialized size of {@code entry}, counting one byte per character of
+   * text payloads and labels, and the serialized size of JSON and protobuf payloads.
+   */
+  private static long estimatedSize(LogEntry entry) {
+    long size = ENTRY_OVERHEAD_BYTES;
+    Payload<?> payload = entry.getPayload();
+    if (payload instanceof Payload.StringPayload) {
+      size += ((Payload.StringPayload) payload).getData().length();
+    } else if (payload instanceof Payload.JsonPayload) {
+      size += ((Payload.JsonPayload) payload).getData().getSerializedSize();
+    } else if (payload instanceof Payload.ProtoPayload) {
+      size += ((Payload.ProtoPayload) payload).getData().getSerializedSize();
+    }
+    for (Map.Entry<String, String> label : entry.getLabels().entrySet()) {
+      size += label.getKey().length() + label.getValue().length();
+    }
+    return size;
+  }
+
+  private void writeBatch(List<LogEntry> batch) {
+    try {
+      writeEntries(batch);
+    } catch (RuntimeException ex) {
+      // the error manager failed, the drain thread must keep running
+    } finally {
+      completed.addAndGet(batch.size());
+      batch.clear();
+      synchronized (flushLock) {
+        flushLock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Writes the entries published before this call to Stackdriver Logging, and waits until they are
+   * written.
+   */
+  @Override
+  public void flush() {
+    long target = buffered.get();
+    boolean interrupted = false;
+    synchronized (flushLock) {
+      while (completed.get() < target && drainer.isAlive()) {
+        flushRequested = true;
+        wakeUpDrainer();
+        try {
+          flushLock.wait(FLUSH_WAIT_MILLIS);
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Writes the buffered entries, stops the drain thread and closes the associated {@link Logging}
+   * object. Logs published after this call are ignored.
+   */
+  @Override
+  public void close() throws SecurityException {
+    closed = true;
+    wakeUpDrainer();
+    boolean interrupted = false;
+    while (drainer.isAlive()) {
+      try {
+        drainer.join();
+      } catch (InterruptedException ex) {
+        interrupted = true;
+      }
+    }
+    super.close();
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Returns the number of entries dropped because the buffer, and the spool if any, were full.
+   */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * Returns the number of entries waiting in the buffer.
+   */
+  public int getBufferedCount() {
+    return buffer.size();
+  }
+}
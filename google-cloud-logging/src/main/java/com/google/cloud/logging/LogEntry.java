@@ -75,7 +75,8 @@ public class LogEntry implements Serializable {
     private Severity severity = Severity.DEFAULT;
     private String insertId;
     private HttpRequest httpRequest;
-    private Map<String, String> labels = new HashMap<>();
+    // immutable until a label is added, so that immutable labels are never copied
+    private Map<String, String> labels = ImmutableMap.of();
     private Operation operation;
     private Payload<?> payload;
 
@@ -90,7 +91,7 @@ public class LogEntry implements Serializable {
       this.severity = entry.severity;
       this.insertId = entry.insertId;
       this.httpRequest = entry.httpRequest;
-      this.labels = new HashMap<>(entry.labels);
+      this.labels = entry.labels;
       this.operation = entry.operation;
       this.payload = entry.payload;
     }
@@ -223,7 +224,8 @@ public class LogEntry implements Serializable {
      * about the log entry.
      */
     public Builder setLabels(Map<String, String> labels) {
-      this.labels = new HashMap<>(checkNotNull(labels));
+      checkNotNull(labels);
+      this.labels = labels instanceof ImmutableMap ? labels : new HashMap<>(labels);
       return this;
     }
 
@@ -232,6 +234,9 @@ public class LogEntry implements Serializable {
      * provides additional information about the log entry.
      */
     public Builder addLabel(String key, String value) {
+      if (labels instanceof ImmutableMap) {
+        labels = new HashMap<>(labels);
+      }
       this.labels.put(key, value);
       return this;
     }
@@ -241,7 +246,7 @@ public class LogEntry implements Serializable {
      * provides additional information about the log entry.
      */
     public Builder clearLabels() {
-      this.labels.clear();
+      this.labels = ImmutableMap.of();
       return this;
     }
 
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.logging;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent first-in first-out queue of records, stored in append-only, memory-mapped segment
+ * files of a local directory.
+ *
+ * <p>Each segment file starts with the position of its next unread record, followed by the
+ * records. A record is its length, the CRC32 of its data and its data. Records are appended to the
+ * last segment; when it's full a new segment is created, unless the segments would then take more
+ * than the maximum size of the spool. Segments are deleted once all their records were removed.
+ *
+ * <p>Records survive the process: a spool opened on a directory that already has segments reads
+ * them from their first unread record, and appends to a new segment. A record whose write was
+ * interrupted fails its CRC check, and ends its segment. Records that were read but not removed
+ * when the process stopped are read again.
+ *
+ * <p>A spool holds a lock on its directory until it's closed, so that a directory is used by a
+ * single spool at a time, in this process or in others.
+ */
+final class LogSpool implements Closeable {
+
+  static final int DEFAULT_SEGMENT_BYTES = 4 * 1024 * 1024;
+
+  private static final String SEGMENT_PREFIX = "spool-";
+  private static final String SEGMENT_SUFFIX = ".seg";
+  private static final String LOCK_FILE = "spool.lock";
+  // position of the next unread record
+  private static final int SEGMENT_HEADER_BYTES = 8;
+  // length and CRC32 of the data
+  private static final int RECORD_HEADER_BYTES = 8;
+
+  private final Path directory;
+  private final long maxBytes;
+  private final int segmentBytes;
+  private final FileChannel lockChannel;
+  // oldest segment first, records are appended to the last one if it's writable
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  private long nextSequence;
+  private boolean closed;
+
+  /**
+   * A segment file, mapped in memory.
+   */
+  private static final class Segment {
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private boolean writable;
+    private int readPosition;
+    private int writePosition;
+
+    Segment(Path path, MappedByteBuffer buffer, boolean writable) {
+      this.path = path;
+      this.buffer = buffer;
+      this.writable = writable;
+    }
+
+    boolean isFullyRead() {
+      return readPosition >= writePosition;
+    }
+  }
+
+  private LogSpool(Path directory, long maxBytes, int segmentBytes, FileChannel lockChannel) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.segmentBytes = segmentBytes;
+    this.lockChannel = lockChannel;
+  }
+
+  /**
+   * Opens the spool stored in {@code directory}, creating the directory if needed. Segments take at
+   * most {@code maxBytes} of disk space.
+   *
+   * @throws IOException if the directory can not be read, or if it's locked by another spool
+   */
+  static LogSpool open(Path directory, long maxBytes) throws IOException {
+    return open(directory, maxBytes, DEFAULT_SEGMENT_BYTES);
+  }
+
+  static LogSpool open(Path directory, long maxBytes, int segmentBytes) throws IOException {
+    checkArgument(segmentBytes > SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES,
+        "segmentBytes is too small: %s", segmentBytes);
+    checkArgument(maxBytes >= segmentBytes, "maxBytes must be at least segmentBytes: %s",
+        maxBytes);
+    Files.createDirectories(directory);
+    FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    try {
+      FileLock lock;
+      try {
+        lock = lockChannel.tryLock();
+      } catch (OverlappingFileLockException ex) {
+        // locked by a spool of this process
+        lock = null;
+      }
+      if (lock == null) {
+        throw new IOException("Spool directory " + directory + " is used by another spool");
+      }
+      LogSpool spool = new LogSpool(directory, maxBytes, segmentBytes, lockChannel);
+      spool.recover();
+      return spool;
+    } catch (IOException | RuntimeException ex) {
+      lockChannel.close();
+      throw ex;
+    }
+  }
+
+  private void recover() throws IOException {
+    List<Long> sequences = new ArrayList<>();
+    try (DirectoryStream<Path> files =
+        Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        try {
+          sequences.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+              name.length() - SEGMENT_SUFFIX.length())));
+        } catch (NumberFormatException ex) {
+          // not a segment
+        }
+      }
+    }
+    Collections.sort(sequences);
+    for (long sequence : sequences) {
+      Path path = segmentPath(sequence);
+      Segment segment = new Segment(path, map(path, Files.size(path), false), false);
+      segment.readPosition =
+          (int) Math.max(SEGMENT_HEADER_BYTES, Math.min(segment.buffer.getLong(0),
+              segment.buffer.capacity()));
+      segment.writePosition = segment.readPosition;
+      while (readRecord(segment, segment.writePosition) != null) {
+        segment.writePosition += RECORD_HEADER_BYTES + segment.buffer.getInt(segment.writePosition);
+      }
+      if (segment.isFullyRead()) {
+        Files.deleteIfExists(path);
+      } else {
+        segments.addLast(segment);
+      }
+      nextSequence = sequence + 1;
+    }
+  }
+
+  private Path segmentPath(long sequence) {
+    return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+  }
+
+  private static MappedByteBuffer map(Path path, long size, boolean create) throws IOException {
+    StandardOpenOption[] options = create
+        ? new StandardOpenOption[]{StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+            StandardOpenOption.WRITE}
+        : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE};
+    try (FileChannel channel = FileChannel.open(path, options)) {
+      // the mapping stays valid after the channel is closed
+      return channel.map(MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  /**
+   * Returns the data of the record at {@code position}, or {@code null} if there is no complete
+   * record there.
+   */
+  private static byte[] readRecord(Segment segment, int position) {
+    MappedByteBuffer buffer = segment.buffer;
+    if (position + RECORD_HEADER_BYTES > buffer.capacity()) {
+      return null;
+    }
+    int length = buffer.getInt(position);
+    if (length <= 0 || length > buffer.capacity() - position - RECORD_HEADER_BYTES) {
+      return null;
+    }
+    byte[] data = new byte[length];
+    ByteBuffer source = buffer.duplicate();
+    source.position(position + RECORD_HEADER_BYTES);
+    source.get(data);
+    return crc(data) == buffer.getInt(position + 4) ? data : null;
+  }
+
+  private static int crc(byte[] data) {
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, data.length);
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Appends a record. Returns {@code false} if the record was not appended because the spool is
+   * full, or because the record does not fit in a segment.
+   */
+  synchronized boolean append(byte[] data) throws IOException {
+    checkArgument(data.length > 0, "records must not be empty");
+    if (closed || SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES + data.length > segmentBytes) {
+      return false;
+    }
+    Segment segment = segments.peekLast();
+    if (segment == null || !segment.writable
+        || segment.writePosition + RECORD_HEADER_BYTES + data.length > segmentBytes) {
+      if ((long) (segments.size() + 1) * segmentBytes > maxBytes) {
+        return false;
+      }
+      if (segment != null) {
+        segment.writable = false;
+        deleteReadSegments();
+      }
+      Path path = segmentPath(nextSequence++);
+      segment = new Segment(path, map(path, segmentBytes, true), true);
+      segment.buffer.putLong(0, SEGMENT_HEADER_BYTES);
+      segment.readPosition = SEGMENT_HEADER_BYTES;
+      segment.writePosition = SEGMENT_HEADER_BYTES;
+      segments.addLast(segment);
+    }
+    MappedByteBuffer buffer = segment.buffer;
+    int position = segment.writePosition;
+    ByteBuffer target = buffer.duplicate();
+    target.position(position + RECORD_HEADER_BYTES);
+    target.put(data);
+    buffer.putInt(position + 4, crc(data));
+    // the length is written last, a record with a length is complete
+    buffer.putInt(position, data.length);
+    segment.writePosition += RECORD_HEADER_BYTES + data.length;
+    return true;
+  }
+
+  /**
+   * Returns up to {@code maxRecords} of the oldest records, without removing them. Fewer records
+   * may be returned even if the spool holds more.
+   */
+  synchronized List<byte[]> peek(int maxRecords) throws IOException {
+    if (closed) {
+      return ImmutableList.of();
+    }
+    deleteReadSegments();
+    Segment segment = segments.peekFirst();
+    if (segment == null) {
+      return ImmutableList.of();
+    }
+    ImmutableList.Builder<byte[]> records = ImmutableList.builder();
+    int position = segment.readPosition;
+    for (int i = 0; i < maxRecords && position < segment.writePosition; i++) {
+      byte[] data = readRecord(segment, position);
+      if (data == null) {
+        break;
+      }
+      records.add(data);
+      position += RECORD_HEADER_BYTES + data.length;
+    }
+    return records.build();
+  }
+
+  /**
+   * Removes the {@code count} oldest records, which must have been returned by
+   * {@link #peek(int)}.
+   */
+  synchronized void remove(int count) throws IOException {
+    if (closed) {
+      // the records are read again when the spool is reopened
+      return;
+    }
+    Segment segment = segments.peekFirst();
+    for (int i = 0; i < count && segment != null && !segment.isFullyRead(); i++) {
+      segment.readPosition += RECORD_HEADER_BYTES + segment.buffer.getInt(segment.readPosition);
+    }
+    if (segment == null) {
+      return;
+    }
+    segment.buffer.putLong(0, segment.readPosition);
+    deleteReadSegments();
+  }
+
+  /**
+   * Deletes the oldest segments, as long as all their records were removed and no more records
+   * can be appended to them.
+   */
+  private void deleteReadSegments() throws IOException {
+    while (!segments.isEmpty() && segments.peekFirst().isFullyRead()
+        && !segments.peekFirst().writable) {
+      // the file is unmapped when the buffer is garbage collected
+      Files.deleteIfExists(segments.removeFirst().path);
+    }
+  }
+
+  /**
+   * Returns {@code true} if the spool holds no records.
+   */
+  synchronized boolean isEmpty() {
+    for (Segment segment : segments) {
+      if (!segment.isFullyRead()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes the segments to the storage device, closes the spool and releases the lock on its
+   * directory. Records can no longer be appended, read or removed.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      for (Segment segment : segments) {
+        segment.buffer.force();
+      }
+    } finally {
+      // closing the channel releases the lock
+      lockChannel.close();
+    }
+  }
+}
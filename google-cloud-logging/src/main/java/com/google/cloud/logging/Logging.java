@@ -652,6 +652,11 @@ public interface Logging extends AutoCloseable, Service<LoggingOptions> {
    * entries that do not specify one. Use {@link WriteOption#labels(Map)} to provide some labels
    * to be added to every entry in {@code logEntries}.
    *
+   * <p>Entries are split into as many requests as needed to stay within the request size and entry
+   * count limits of the service, and requests are sent concurrently. If some requests fail, a
+   * {@link LoggingException} is thrown and {@link LoggingException#getFailedEntries()} returns the
+   * entries that were not written.
+   *
    * <p>Example of writing log entries and providing a default log name and monitored resource.
    * <pre> {@code
    * String logName = "my_log_name";
@@ -674,7 +679,8 @@ public interface Logging extends AutoCloseable, Service<LoggingOptions> {
    * {@link WriteOption#resource(MonitoredResource)} to provide a monitored resource for those
    * entries that do not specify one. Use {@link WriteOption#labels(Map)} to provide some labels
    * to be added to every entry in {@code logEntries}. The method returns a {@code Future} object
-   * that can be used to wait for the write operation to be completed.
+   * that can be used to wait for the write operation to be completed. Entries are split into
+   * requests as explained in {@link #write(Iterable, WriteOption...)}.
    *
    * <p>Example of asynchronously writing log entries and providing a default log name and monitored
    * resource.
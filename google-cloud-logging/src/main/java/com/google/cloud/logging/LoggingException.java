@@ -18,8 +18,11 @@ package com.google.cloud.logging;
 
 import com.google.api.gax.grpc.ApiException;
 import com.google.cloud.BaseServiceException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -29,16 +32,50 @@ public final class LoggingException extends BaseServiceException {
 
   private static final long serialVersionUID = 449689219311927047L;
 
+  private final List<LogEntry> failedEntries;
+
   public LoggingException(IOException ex, boolean idempotent) {
     super(ex, idempotent);
+    this.failedEntries = ImmutableList.of();
   }
 
   public LoggingException(ApiException apiException, boolean idempotent) {
     super(apiException, idempotent);
+    this.failedEntries = ImmutableList.of();
+  }
+
+  /**
+   * Creates an exception for a write of which {@code failedEntries} were not written, because of
+   * {@code cause}.
+   */
+  LoggingException(Throwable cause, List<LogEntry> failedEntries) {
+    this(cause, serviceException(cause), failedEntries);
+  }
+
+  private LoggingException(Throwable cause, BaseServiceException serviceException,
+      List<LogEntry> failedEntries) {
+    super(serviceException != null ? serviceException.code() : UNKNOWN_CODE, cause.getMessage(),
+        serviceException != null ? serviceException.reason() : null,
+        serviceException != null && serviceException.idempotent(), cause);
+    this.failedEntries = ImmutableList.copyOf(failedEntries);
+  }
+
+  private static BaseServiceException serviceException(Throwable throwable) {
+    return throwable instanceof BaseServiceException ? (BaseServiceException) throwable : null;
+  }
+
+  /**
+   * Returns the log entries that were not written, if this exception was thrown by a write. If the
+   * entries of the write were split into several requests, only the entries of the failed requests
+   * are returned, the entries of the other requests were written. Returns an empty list for other
+   * failures.
+   */
+  public List<LogEntry> getFailedEntries() {
+    return failedEntries;
   }
 
   @Override
   protected Set<Error> retryableErrors() {
-    return null;
+    return ImmutableSet.of();
   }
 }
@@ -23,7 +23,13 @@ import com.google.cloud.logging.Logging.WriteOption;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.protobuf.InvalidProtocolBufferException;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -80,8 +86,22 @@ import java.util.logging.SimpleFormatter;
  * <li>{@code com.google.cloud.logging.LoggingHandler.flushLevel} specifies the flush log level.
  *     When a log with this level is published, logs are transmitted to the Stackdriver Logging
  *     service (defaults to {@link LoggingLevel#ERROR}).
+ * <li>{@code com.google.cloud.logging.LoggingHandler.spoolDirectory} specifies a local directory
+ *     where logs are kept when they can not be written to the Stackdriver Logging service (defaults
+ *     to no spool, logs that can not be written are lost).
+ * <li>{@code com.google.cloud.logging.LoggingHandler.spoolMaxBytes} specifies the maximum disk
+ *     space used by the spool (defaults to 256 MiB).
  * </ul>
  *
+ * <p>When a spool directory is set, entries whose write fails are appended to memory-mapped files
+ * in that directory instead of being dropped. While the spool holds entries, new entries are
+ * appended to it as well, so that entries are written in order. A background thread writes the
+ * spooled entries to Stackdriver Logging, retrying with exponential backoff until writes succeed
+ * again. Spooled entries survive the process, and are written by the next handler that uses the
+ * same directory. Entries are dropped once the spool reaches its maximum size. A spool directory
+ * is used by one handler at a time: a handler whose spool directory is used by another handler,
+ * in this process or in another one, reports an error and works without a spool.
+ *
  * <p>To add a {@code LoggingHandler} to an existing {@link Logger} and be sure to avoid infinite
  * recursion when logging, use the {@link #addHandler(Logger, LoggingHandler)} method. Alternatively
  * you can add the handler via {@code logging.properties}. For example using the following line:
@@ -96,13 +116,27 @@ public class LoggingHandler extends Handler {
   private static final String[] NO_HANDLERS = new String[0];
   private static final Set<String> EXCLUDED_LOGGERS = ImmutableSet.of("io.grpc", "io.netty",
       "com.google.api.client.http", "sun.net.www.protocol.http");
+  // labels of the predefined levels, keyed by identity as levels with the same value are equal
+  private static final Map<Level, Map<String, String>> LEVEL_LABELS = levelLabels(Level.FINEST,
+      Level.FINER, Level.FINE, Level.CONFIG, Level.INFO, Level.WARNING, Level.SEVERE,
+      LoggingLevel.DEBUG, LoggingLevel.NOTICE, LoggingLevel.ERROR, LoggingLevel.CRITICAL,
+      LoggingLevel.ALERT, LoggingLevel.EMERGENCY);
+  private static final long DEFAULT_SPOOL_MAX_BYTES = 256L * 1024 * 1024;
+  private static final int REPLAY_BATCH_SIZE = 1000;
+  private static final long REPLAY_IDLE_MILLIS = 1000L;
+  private static final long REPLAY_MIN_BACKOFF_MILLIS = 100L;
+  private static final long REPLAY_MAX_BACKOFF_MILLIS = 30000L;
+  private static final long REPLAY_CLOSE_TIMEOUT_MILLIS = 5000L;
 
   private final LoggingOptions options;
   private final List<LogEntry> buffer = new LinkedList<>();
   private final WriteOption[] writeOptions;
   private Logging logging;
-  private Level flushLevel;
+  private volatile Level flushLevel;
   private long flushSize;
+  private volatile LogSpool spool;
+  private Thread replayer;
+  private final Object replayLock = new Object();
 
   /**
    * Creates an handler that publishes messages to Stackdriver Logging.
@@ -149,6 +183,16 @@ public class LoggingHandler extends Handler {
     String logName = firstNonNull(log, helper.getProperty(className + ".log", "java.log"));
     MonitoredResource resource = firstNonNull(monitoredResource, getDefaultResource());
     writeOptions = new WriteOption[]{WriteOption.logName(logName), WriteOption.resource(resource)};
+    String spoolDirectory = helper.getProperty(className + ".spoolDirectory", "");
+    if (!spoolDirectory.isEmpty()) {
+      try {
+        setSpool(LogSpool.open(Paths.get(spoolDirectory),
+            helper.getLongProperty(className + ".spoolMaxBytes", DEFAULT_SPOOL_MAX_BYTES)));
+      } catch (IOException | RuntimeException ex) {
+        // the handler works without a spool, we report the error instead
+        reportError(null, ex, ErrorManager.OPEN_FAILURE);
+      }
+    }
     maskLoggers();
   }
 
@@ -211,7 +255,7 @@ public class LoggingHandler extends Handler {
     return MonitoredResource.of("global", ImmutableMap.of("project_id", options.projectId()));
   }
 
-  private static class LogConfigHelper {
+  static class LogConfigHelper {
 
     private final LogManager manager = LogManager.getLogManager();
 
@@ -241,6 +285,19 @@ public class LoggingHandler extends Handler {
       return defaultValue;
     }
 
+    <E extends Enum<E>> E getEnumProperty(String name, Class<E> enumClass, E defaultValue) {
+      String stringValue = manager.getProperty(name);
+      if (stringValue == null) {
+        return defaultValue;
+      }
+      try {
+        return Enum.valueOf(enumClass, stringValue.trim());
+      } catch (IllegalArgumentException ex) {
+        // If the constant does not exist we fall back to default value
+      }
+      return defaultValue;
+    }
+
     Filter getFilterProperty(String name, Filter defaultValue) {
       String stringFilter = manager.getProperty(name);
       try {
@@ -293,7 +350,10 @@ public class LoggingHandler extends Handler {
     }
   }
 
-  private LogEntry entryFor(LogRecord record) {
+  /**
+   * Returns the log entry for {@code record}, or {@code null} if the record could not be formatted.
+   */
+  LogEntry entryFor(LogRecord record) {
     String payload;
     try {
       payload = getFormatter().format(record);
@@ -303,15 +363,30 @@ public class LoggingHandler extends Handler {
       return null;
     }
     Level level = record.getLevel();
-    Map<String, String> labels = ImmutableMap.of(
-        "levelName", level.getName(),
-        "levelValue", String.valueOf(level.intValue()));
+    Map<String, String> labels = LEVEL_LABELS.get(level);
+    if (labels == null) {
+      labels = labelsFor(level);
+    }
     return LogEntry.newBuilder(Payload.StringPayload.of(payload))
         .setLabels(labels)
         .setSeverity(severityFor(level))
         .build();
   }
 
+  private static Map<String, String> labelsFor(Level level) {
+    return ImmutableMap.of(
+        "levelName", level.getName(),
+        "levelValue", String.valueOf(level.intValue()));
+  }
+
+  private static Map<Level, Map<String, String>> levelLabels(Level... levels) {
+    Map<Level, Map<String, String>> levelLabels = new IdentityHashMap<>();
+    for (Level level : levels) {
+      levelLabels.put(level, labelsFor(level));
+    }
+    return Collections.unmodifiableMap(levelLabels);
+  }
+
   private static Severity severityFor(Level level) {
     if (level instanceof LoggingLevel) {
       return ((LoggingLevel) level).getSeverity();
@@ -351,31 +426,164 @@ public class LoggingHandler extends Handler {
     getLogging().write(entries, options);
   }
 
-  @Override
-  public synchronized void flush() {
+  /**
+   * Writes {@code entries} with this handler's log name and monitored resource. Write failures are
+   * reported to the error manager.
+   */
+  void writeEntries(List<LogEntry> entries) {
+    LogSpool spool = this.spool;
+    if (spool != null && !spool.isEmpty()) {
+      // entries are written in order, after the spooled ones
+      for (LogEntry entry : entries) {
+        spool(entry);
+      }
+      return;
+    }
     try {
-      write(buffer, writeOptions);
+      write(entries, writeOptions);
     } catch (Exception ex) {
       // writing can fail but we should not throw an exception, we report the error instead
       reportError(null, ex, ErrorManager.FLUSH_FAILURE);
+      if (spool != null) {
+        for (LogEntry entry : entries) {
+          spool(entry);
+        }
+      }
+    }
+  }
+
+  /**
+   * Uses {@code spool} to keep the entries that can not be written, and starts writing its entries.
+   */
+  void setSpool(LogSpool spool) {
+    this.spool = spool;
+    replayer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        replay();
+      }
+    }, "logging-handler-replayer");
+    replayer.setDaemon(true);
+    replayer.start();
+  }
+
+  /**
+   * Appends {@code entry} to the spool, to be written later. Entries without a timestamp get the
+   * current time, rather than the time they are written. Returns {@code false} if there is no spool
+   * or it's full.
+   */
+  boolean spool(LogEntry entry) {
+    LogSpool spool = this.spool;
+    if (spool == null) {
+      return false;
+    }
+    if (entry.getTimestamp() == null) {
+      entry = entry.toBuilder().setTimestamp(System.currentTimeMillis()).build();
+    }
+    try {
+      if (spool.append(entry.toPb(options.projectId()).toByteArray())) {
+        synchronized (replayLock) {
+          replayLock.notifyAll();
+        }
+        return true;
+      }
+      reportError("Log spool is full, entry dropped", null, ErrorManager.WRITE_FAILURE);
+    } catch (IOException ex) {
+      reportError(null, ex, ErrorManager.WRITE_FAILURE);
+    }
+    return false;
+  }
+
+  /**
+   * Writes the spooled entries, oldest first, until the handler is closed.
+   */
+  private void replay() {
+    long backoffMillis = REPLAY_MIN_BACKOFF_MILLIS;
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        List<byte[]> records;
+        try {
+          records = spool.peek(REPLAY_BATCH_SIZE);
+        } catch (IOException ex) {
+          reportError(null, ex, ErrorManager.GENERIC_FAILURE);
+          records = ImmutableList.of();
+        }
+        if (records.isEmpty()) {
+          synchronized (replayLock) {
+            replayLock.wait(REPLAY_IDLE_MILLIS);
+          }
+          continue;
+        }
+        List<LogEntry> entries = new ArrayList<>(records.size());
+        for (byte[] record : records) {
+          try {
+            entries.add(LogEntry.fromPb(com.google.logging.v2.LogEntry.parseFrom(record)));
+          } catch (InvalidProtocolBufferException ex) {
+            // a corrupted entry can not be written, we skip it
+            reportError(null, ex, ErrorManager.GENERIC_FAILURE);
+          }
+        }
+        try {
+          if (!entries.isEmpty()) {
+            write(entries, writeOptions);
+          }
+          spool.remove(records.size());
+          backoffMillis = REPLAY_MIN_BACKOFF_MILLIS;
+        } catch (Exception ex) {
+          // the entries stay in the spool, and are written again after a while
+          Thread.sleep(backoffMillis);
+          backoffMillis = Math.min(2 * backoffMillis, REPLAY_MAX_BACKOFF_MILLIS);
+        }
+      }
+    } catch (InterruptedException ex) {
+      // the handler was closed
+    }
+  }
+
+  @Override
+  public synchronized void flush() {
+    try {
+      writeEntries(buffer);
     } finally {
       buffer.clear();
     }
   }
 
   /**
-   * Closes the handler and the associated {@link Logging} object.
+   * Closes the handler and the associated {@link Logging} object. The thread writing the spooled
+   * entries is stopped, entries it could not write stay in the spool.
    */
   @Override
-  public synchronized void close() throws SecurityException {
-    if (logging != null) {
+  public void close() throws SecurityException {
+    Thread replayer;
+    synchronized (this) {
+      replayer = this.replayer;
+      this.replayer = null;
+    }
+    if (replayer != null) {
+      // not waited for under the handler's lock, a write in progress may need it
+      replayer.interrupt();
       try {
-        logging.close();
-      } catch (Exception ex) {
-        // ignore
+        replayer.join(REPLAY_CLOSE_TIMEOUT_MILLIS);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      try {
+        spool.close();
+      } catch (IOException ex) {
+        reportError(null, ex, ErrorManager.CLOSE_FAILURE);
       }
     }
-    logging = null;
+    synchronized (this) {
+      if (logging != null) {
+        try {
+          logging.close();
+        } catch (Exception ex) {
+          // ignore
+        }
+      }
+      logging = null;
+    }
   }
 
   /**
@@ -388,6 +596,13 @@ public class LoggingHandler extends Handler {
     return flushLevel;
   }
 
+  /**
+   * Returns the flush log level.
+   */
+  Level getFlushLevel() {
+    return flushLevel;
+  }
+
   /**
    * Sets the maximum size of the log buffer. Once the maximum size of the buffer is reached, logs
    * are transmitted to the Stackdriver Logging service. If not set, a log is sent to the service as
@@ -39,7 +39,6 @@ import com.google.cloud.logging.spi.v2.MetricsServiceV2Api;
 import com.google.common.base.Function;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.Futures;
@@ -63,18 +62,21 @@ import com.google.logging.v2.ListSinksResponse;
 import com.google.logging.v2.UpdateLogMetricRequest;
 import com.google.logging.v2.UpdateSinkRequest;
 import com.google.logging.v2.WriteLogEntriesRequest;
-import com.google.logging.v2.WriteLogEntriesResponse;
 import com.google.protobuf.Empty;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 class LoggingImpl extends BaseService<LoggingOptions> implements Logging {
 
   private final LoggingRpc rpc;
+  private final WriteBatcher writeBatcher;
   private boolean closed;
+  // most writes, such as those of logging handlers, use the same log name and resource
+  private volatile WriteDestination lastDestination;
 
   private static final Function<Empty, Boolean> EMPTY_TO_BOOLEAN_FUNCTION =
       new Function<Empty, Boolean>() {
@@ -83,17 +85,11 @@ class LoggingImpl extends BaseService<LoggingOptions> implements Logging {
           return input != null;
         }
       };
-  private static final Function<WriteLogEntriesResponse, Void> WRITE_RESPONSE_TO_VOID_FUNCTION =
-      new Function<WriteLogEntriesResponse, Void>() {
-        @Override
-        public Void apply(WriteLogEntriesResponse input) {
-          return null;
-        }
-      };
 
   LoggingImpl(LoggingOptions options) {
     super(options);
     rpc = options.rpc();
+    writeBatcher = new WriteBatcher(rpc);
   }
 
   private static <V> V get(Future<V> future) {
@@ -451,23 +447,60 @@ class LoggingImpl extends BaseService<LoggingOptions> implements Logging {
     return transform(rpc.delete(request), EMPTY_TO_BOOLEAN_FUNCTION);
   }
 
-  private static WriteLogEntriesRequest writeLogEntriesRequest(LoggingOptions serviceOptions,
-      Iterable<LogEntry> logEntries, Map<Option.OptionType, ?> options) {
-    String projectId = serviceOptions.projectId();
+  /**
+   * The log name and monitored resource of a write, converted to their request form.
+   */
+  private static final class WriteDestination {
+
+    private final String logName;
+    private final MonitoredResource resource;
+    private final String logNamePb;
+    private final com.google.api.MonitoredResource resourcePb;
+
+    WriteDestination(String projectId, String logName, MonitoredResource resource) {
+      this.logName = logName;
+      this.resource = resource;
+      this.logNamePb =
+          logName != null ? LoggingServiceV2Api.formatLogName(projectId, logName) : null;
+      this.resourcePb = resource != null ? resource.toPb() : null;
+    }
+
+    boolean matches(String logName, MonitoredResource resource) {
+      return Objects.equals(this.logName, logName) && Objects.equals(this.resource, resource);
+    }
+  }
+
+  /**
+   * Returns the request form of {@code logName} and {@code resource}, reusing the conversion of
+   * the previous write if it had the same destination.
+   */
+  private WriteDestination destination(String logName, MonitoredResource resource) {
+    WriteDestination destination = lastDestination;
+    if (destination == null || !destination.matches(logName, resource)) {
+      destination = new WriteDestination(options().projectId(), logName, resource);
+      lastDestination = destination;
+    }
+    return destination;
+  }
+
+  /**
+   * Returns a request with the log name, resource and labels of {@code options} and no entries.
+   */
+  private WriteLogEntriesRequest writeLogEntriesHeader(Map<Option.OptionType, ?> options) {
     WriteLogEntriesRequest.Builder builder = WriteLogEntriesRequest.newBuilder();
     String logName = LOG_NAME.get(options);
-    if (logName != null) {
-      builder.setLogName(LoggingServiceV2Api.formatLogName(projectId, logName));
-    }
     MonitoredResource resource = RESOURCE.get(options);
-    if (resource != null) {
-      builder.setResource(resource.toPb());
+    WriteDestination destination = destination(logName, resource);
+    if (destination.logNamePb != null) {
+      builder.setLogName(destination.logNamePb);
+    }
+    if (destination.resourcePb != null) {
+      builder.setResource(destination.resourcePb);
     }
     Map<String, String> labels = LABELS.get(options);
     if (labels != null) {
       builder.putAllLabels(labels);
     }
-    builder.addAllEntries(Iterables.transform(logEntries, LogEntry.toPbFunction(projectId)));
     return builder.build();
   }
 
@@ -475,9 +508,14 @@ class LoggingImpl extends BaseService<LoggingOptions> implements Logging {
     get(writeAsync(logEntries, options));
   }
 
+  /**
+   * Writes {@code logEntries}, split into as many requests as needed to stay within the limits of
+   * the service. If some requests fail, the returned future fails with a {@link LoggingException}
+   * that lists the entries that were not written.
+   */
   public Future<Void> writeAsync(Iterable<LogEntry> logEntries, WriteOption... options) {
-    return transform(rpc.write(writeLogEntriesRequest(options(), logEntries, optionMap(options))),
-        WRITE_RESPONSE_TO_VOID_FUNCTION);
+    return writeBatcher.write(writeLogEntriesHeader(optionMap(options)), options().projectId(),
+        logEntries);
   }
 
   private static ListLogEntriesRequest listLogEntriesRequest(LoggingOptions serviceOptions,
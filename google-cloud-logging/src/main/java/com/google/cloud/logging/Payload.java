@@ -93,6 +93,8 @@ public abstract class Payload<T> implements Serializable {
 
     private static final long serialVersionUID = 5747721918608143350L;
 
+    private transient volatile Map<String, Object> dataAsMap;
+
     JsonPayload(Struct jsonData) {
       super(Type.JSON, jsonData);
     }
@@ -106,10 +108,17 @@ public abstract class Payload<T> implements Serializable {
     }
 
     /**
-     * Returns the log entry's JSON data as an unmodifiable map.
+     * Returns the log entry's JSON data as an unmodifiable map. The data is converted on the first
+     * call, the same map is returned afterwards.
      */
     public Map<String, Object> getDataAsMap() {
-      return Structs.asMap(getData());
+      Map<String, Object> map = dataAsMap;
+      if (map == null) {
+        // a race converts the data more than once, with equal results
+        map = Structs.toMap(getData());
+        dataAsMap = map;
+      }
+      return map;
     }
 
     @Override
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.logging;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue backed by an array. Producers and consumers claim slots with a single
+ * compare-and-set on the tail and head counters, and each slot carries a sequence number that
+ * tells whether it is ready to be written or read. No method ever blocks: {@link #offer} fails when
+ * the queue is full and {@link #poll} returns {@code null} when it is empty.
+ *
+ * <p>Any number of threads can offer and poll concurrently. Polling from producer threads is what
+ * allows evicting the oldest element when the queue is full.
+ */
+final class RingBuffer<E> {
+
+  private final int mask;
+  private final AtomicReferenceArray<E> elements;
+  private final AtomicLongArray sequences;
+  // position of the next element to poll
+  private final AtomicLong head = new AtomicLong();
+  // position of the next element to offer
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * Creates a queue that holds at least {@code capacity} elements. The capacity is rounded up to a
+   * power of two.
+   */
+  RingBuffer(int capacity) {
+    checkArgument(capacity > 0 && capacity <= 1 << 30, "invalid capacity: %s", capacity);
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    mask = size - 1;
+    elements = new AtomicReferenceArray<>(size);
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Adds {@code element} at the tail of the queue, returning {@code false} if the queue is full.
+   */
+  boolean offer(E element) {
+    long position = tail.get();
+    while (true) {
+      int index = (int) position & mask;
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements.lazySet(index, element);
+          // publishes the element to consumers
+          sequences.set(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        // the slot still holds the element offered one lap ago
+        return false;
+      } else {
+        // another producer claimed the slot
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Removes and returns the element at the head of the queue, or {@code null} if the queue is
+   * empty.
+   */
+  E poll() {
+    long position = head.get();
+    while (true) {
+      int index = (int) position & mask;
+      long difference = sequences.get(index) - (position + 1);
+      if (difference == 0) {
+        if (head.compareAndSet(position, position + 1)) {
+          E element = elements.get(index);
+          elements.lazySet(index, null);
+          // hands the slot back to producers, for the next lap
+          sequences.set(index, position + mask + 1);
+          return element;
+        }
+        position = head.get();
+      } else if (difference < 0) {
+        // the slot was not written yet
+        return null;
+      } else {
+        // another consumer claimed the slot
+        position = head.get();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of elements in the queue. The value is exact only when no other thread is
+   * offering or polling.
+   */
+  int size() {
+    long size = tail.get() - head.get();
+    return (int) Math.max(0, Math.min(size, mask + 1));
+  }
+
+  boolean isEmpty() {
+    return size() == 0;
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+}
@@ -20,7 +20,6 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.api.client.util.Types;
 import com.google.common.base.Function;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -31,7 +30,10 @@ import com.google.protobuf.Value;
 
 import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -47,12 +49,6 @@ final class Structs {
       return valueToObject(value);
     }
   };
-  private static final Function<Object, Value> OBJECT_TO_VALUE = new Function<Object, Value>() {
-    @Override
-    public Value apply(Object obj) {
-      return objectToValue(obj);
-    }
-  };
 
   private Structs() {}
 
@@ -62,9 +58,11 @@ final class Structs {
    */
   private static final class StructMap extends AbstractMap<String, Object> {
 
+    private final Struct struct;
     private final Set<Entry<String, Object>> entrySet;
 
     private StructMap(Struct struct) {
+      this.struct = struct;
       this.entrySet = new StructSet(struct);
     }
 
@@ -99,15 +97,41 @@ final class Structs {
     public Set<Entry<String, Object>> entrySet() {
       return entrySet;
     }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return struct.getFieldsMap().containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+      // looks the field up rather than converting every entry until the key is found
+      Value value = struct.getFieldsMap().get(key);
+      return value != null ? valueToObject(value) : null;
+    }
   }
 
   /**
-   * Returns an unmodifiable map view of the {@link Struct} parameter.
+   * Returns an unmodifiable map view of the {@link Struct} parameter. Values are converted every
+   * time they are accessed, use {@link #toMap(Struct)} to access them repeatedly.
    */
   static Map<String, Object> asMap(Struct struct) {
     return new StructMap(checkNotNull(struct));
   }
 
+  /**
+   * Returns an unmodifiable map with the content of the {@link Struct} parameter. Unlike
+   * {@link #asMap(Struct)}, all values, including nested structs and lists, are converted once.
+   */
+  static Map<String, Object> toMap(Struct struct) {
+    Map<String, Value> fields = checkNotNull(struct).getFieldsMap();
+    Map<String, Object> map = Maps.newLinkedHashMapWithExpectedSize(fields.size());
+    for (Map.Entry<String, Value> field : fields.entrySet()) {
+      map.put(field.getKey(), toObject(field.getValue()));
+    }
+    return Collections.unmodifiableMap(map);
+  }
+
   /**
    * Creates a new {@link Struct} object given the content of the provided {@code map} parameter.
    *
@@ -115,8 +139,21 @@ final class Structs {
    * Enums are serialized as strings.
    */
   static Struct newStruct(Map<String, ?> map) {
-    Map<String, Value> valueMap = Maps.transformValues(checkNotNull(map), OBJECT_TO_VALUE);
-    return Struct.newBuilder().putAllFields(valueMap).build();
+    Struct.Builder builder = Struct.newBuilder();
+    writeStruct(checkNotNull(map), builder);
+    return builder.build();
+  }
+
+  /**
+   * Adds the content of the provided {@code map} parameter to a {@link Struct} builder, converting
+   * each value, including nested maps and lists, in a single pass.
+   *
+   * @see #newStruct(Map)
+   */
+  static void writeStruct(Map<String, ?> map, Struct.Builder builder) {
+    for (Map.Entry<String, ?> entry : map.entrySet()) {
+      builder.putFields(entry.getKey(), objectToValue(entry.getValue()));
+    }
   }
 
   private static Object valueToObject(Value value) {
@@ -138,12 +175,29 @@ final class Structs {
     }
   }
 
+  private static Object toObject(Value value) {
+    switch (value.getKindCase()) {
+      case STRUCT_VALUE:
+        return toMap(value.getStructValue());
+      case LIST_VALUE:
+        List<Value> values = value.getListValue().getValuesList();
+        List<Object> list = new ArrayList<>(values.size());
+        for (Value element : values) {
+          list.add(toObject(element));
+        }
+        return Collections.unmodifiableList(list);
+      default:
+        return valueToObject(value);
+    }
+  }
+
   @SuppressWarnings("unchecked")
-  private static Value objectToValue(final Object obj) {
+  private static Value objectToValue(Object obj) {
+    // nested values are built before their parent: protobuf's nested builders would notify all
+    // their ancestors of every change
     Value.Builder builder = Value.newBuilder();
     if (obj == null) {
-      builder.setNullValue(NullValue.NULL_VALUE);
-      return builder.build();
+      return builder.setNullValue(NullValue.NULL_VALUE).build();
     }
     Class<?> objClass = obj.getClass();
     if (obj instanceof String) {
@@ -153,13 +207,15 @@ final class Structs {
     } else if (obj instanceof Boolean) {
       builder.setBoolValue((Boolean) obj);
     } else if (obj instanceof Iterable<?> || objClass.isArray()) {
-      builder.setListValue(ListValue.newBuilder()
-          .addAllValues(Iterables.transform(Types.iterableOf(obj), OBJECT_TO_VALUE)));
+      ListValue.Builder listBuilder = ListValue.newBuilder();
+      for (Object element : Types.iterableOf(obj)) {
+        listBuilder.addValues(objectToValue(element));
+      }
+      builder.setListValue(listBuilder);
     } else if (objClass.isEnum()) {
       builder.setStringValue(((Enum<?>) obj).name());
     } else if (obj instanceof Map) {
-      Map<String, Object> map = (Map<String, Object>) obj;
-      builder.setStructValue(newStruct(map));
+      builder.setStructValue(newStruct((Map<String, Object>) obj));
     } else {
       throw new IllegalArgumentException(String.format("Unsupported protobuf value %s", obj));
     }
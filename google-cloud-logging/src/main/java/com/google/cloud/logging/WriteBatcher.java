@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.logging;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.cloud.logging.spi.LoggingRpc;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.JdkFutureAdapters;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.logging.v2.WriteLogEntriesRequest;
+import com.google.logging.v2.WriteLogEntriesResponse;
+import com.google.protobuf.CodedOutputStream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Writes log entries with as few requests as the service limits allow. Entries are added to a
+ * request until the next one would exceed the maximum number of entries or the maximum serialized
+ * size of a request, the size being tracked as entries are encoded. Requests are sent concurrently,
+ * with at most {@code maxConcurrentRequests} in flight.
+ *
+ * <p>If some requests fail, the write fails with a {@link LoggingException} that lists the entries
+ * of the failed requests, see {@link LoggingException#getFailedEntries()}. The entries of the other
+ * requests were written.
+ */
+final class WriteBatcher {
+
+  // limits of the Stackdriver Logging API
+  static final int MAX_REQUEST_ENTRIES = 1000;
+  static final long MAX_REQUEST_BYTES = 10L * 1024 * 1024;
+  static final int MAX_CONCURRENT_REQUESTS = 4;
+
+  private static final Function<WriteLogEntriesResponse, Void> WRITE_RESPONSE_TO_VOID_FUNCTION =
+      new Function<WriteLogEntriesResponse, Void>() {
+        @Override
+        public Void apply(WriteLogEntriesResponse input) {
+          return null;
+        }
+      };
+
+  private final LoggingRpc rpc;
+  private final int maxRequestEntries;
+  private final long maxRequestBytes;
+  private final int maxConcurrentRequests;
+
+  WriteBatcher(LoggingRpc rpc) {
+    this(rpc, MAX_REQUEST_ENTRIES, MAX_REQUEST_BYTES, MAX_CONCURRENT_REQUESTS);
+  }
+
+  WriteBatcher(LoggingRpc rpc, int maxRequestEntries, long maxRequestBytes,
+      int maxConcurrentRequests) {
+    checkArgument(maxRequestEntries > 0, "maxRequestEntries must be positive: %s",
+        maxRequestEntries);
+    checkArgument(maxRequestBytes > 0, "maxRequestBytes must be positive: %s", maxRequestBytes);
+    checkArgument(maxConcurrentRequests > 0, "maxConcurrentRequests must be positive: %s",
+        maxConcurrentRequests);
+    this.rpc = rpc;
+    this.maxRequestEntries = maxRequestEntries;
+    this.maxRequestBytes = maxRequestBytes;
+    this.maxConcurrentRequests = maxConcurrentRequests;
+  }
+
+  /**
+   * A request and the entries it writes.
+   */
+  private static final class Batch {
+
+    private final WriteLogEntriesRequest request;
+    private final List<LogEntry> entries;
+
+    Batch(WriteLogEntriesRequest request, List<LogEntry> entries) {
+      this.request = request;
+      this.entries = entries;
+    }
+  }
+
+  /**
+   * Writes {@code logEntries} with requests that have the log name, resource and labels of
+   * {@code header}.
+   */
+  Future<Void> write(WriteLogEntriesRequest header, String projectId,
+      Iterable<LogEntry> logEntries) {
+    List<Batch> batches = split(header, projectId, logEntries);
+    if (batches.size() == 1) {
+      final Batch batch = batches.get(0);
+      ListenableFuture<Void> result = Futures.transform(
+          JdkFutureAdapters.listenInPoolThread(rpc.write(batch.request)),
+          WRITE_RESPONSE_TO_VOID_FUNCTION);
+      return Futures.catching(result, Throwable.class, new Function<Throwable, Void>() {
+        @Override
+        public Void apply(Throwable cause) {
+          throw new LoggingException(cause, batch.entries);
+        }
+      });
+    }
+    return new Writer(batches).start();
+  }
+
+  /**
+   * Groups the entries in requests that are within the limits. An entry that alone exceeds the
+   * size limit is sent in a request of its own, and left for the service to reject.
+   */
+  private List<Batch> split(WriteLogEntriesRequest header, String projectId,
+      Iterable<LogEntry> logEntries) {
+    long headerBytes = header.getSerializedSize();
+    List<Batch> batches = new ArrayList<>();
+    WriteLogEntriesRequest.Builder builder = header.toBuilder();
+    ImmutableList.Builder<LogEntry> entries = ImmutableList.builder();
+    int count = 0;
+    long bytes = headerBytes;
+    for (LogEntry logEntry : logEntries) {
+      com.google.logging.v2.LogEntry entryPb = logEntry.toPb(projectId);
+      long entryBytes = CodedOutputStream.computeMessageSize(
+          WriteLogEntriesRequest.ENTRIES_FIELD_NUMBER, entryPb);
+      if (count > 0 && (count >= maxRequestEntries || bytes + entryBytes > maxRequestBytes)) {
+        batches.add(new Batch(builder.build(), entries.build()));
+        builder = header.toBuilder();
+        entries = ImmutableList.builder();
+        count = 0;
+        bytes = headerBytes;
+      }
+      builder.addEntries(entryPb);
+      entries.add(logEntry);
+      count++;
+      bytes += entryBytes;
+    }
+    batches.add(new Batch(builder.build(), entries.build()));
+    return batches;
+  }
+
+  /**
+   * Sends the requests of a write, starting the next one as soon as one completes.
+   */
+  private final class Writer {
+
+    private final List<Batch> batches;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger pending;
+    private final AtomicReferenceArray<Throwable> failures;
+    private final SettableFuture<Void> result = SettableFuture.create();
+
+    Writer(List<Batch> batches) {
+      this.batches = batches;
+      this.pending = new AtomicInteger(batches.size());
+      this.failures = new AtomicReferenceArray<>(batches.size());
+    }
+
+    Future<Void> start() {
+      for (int i = 0; i < Math.min(maxConcurrentRequests, batches.size()); i++) {
+        sendNext();
+      }
+      return result;
+    }
+
+    private void sendNext() {
+      final int index = next.getAndIncrement();
+      if (index >= batches.size()) {
+        return;
+      }
+      ListenableFuture<WriteLogEntriesResponse> response;
+      try {
+        response = JdkFutureAdapters.listenInPoolThread(rpc.write(batches.get(index).request));
+      } catch (RuntimeException ex) {
+        response = Futures.immediateFailedFuture(ex);
+      }
+      Futures.addCallback(response, new FutureCallback<WriteLogEntriesResponse>() {
+        @Override
+        public void onSuccess(WriteLogEntriesResponse response) {
+          completed();
+        }
+
+        @Override
+        public void onFailure(Throwable throwable) {
+          failures.set(index, throwable);
+          completed();
+        }
+      });
+    }
+
+    private void completed() {
+      if (pending.decrementAndGet() == 0) {
+        finish();
+      } else {
+        sendNext();
+      }
+    }
+
+    private void finish() {
+      Throwable cause = null;
+      ImmutableList.Builder<LogEntry> failedEntries = ImmutableList.builder();
+      for (int i = 0; i < batches.size(); i++) {
+        Throwable failure = failures.get(i);
+        if (failure != null) {
+          cause = cause != null ? cause : failure;
+          failedEntries.addAll(batches.get(i).entries);
+        }
+      }
+      if (cause == null) {
+        result.set(null);
+      } else {
+        result.setException(new LoggingException(cause, failedEntries.build()));
+      }
+    }
+  }
+}
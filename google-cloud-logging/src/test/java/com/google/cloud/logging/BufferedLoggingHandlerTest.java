@@ -0,0 +1,378 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.cloud.MonitoredResource;
+import com.google.cloud.logging.BufferedLoggingHandler.OverflowPolicy;
+import com.google.cloud.logging.Logging.WriteOption;
+import com.google.cloud.logging.Payload.StringPayload;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+public class BufferedLoggingHandlerTest {
+
+  private static final String LOG_NAME = "java.log";
+  private static final String PROJECT = "project";
+  private static final MonitoredResource DEFAULT_RESOURCE =
+      MonitoredResource.of("global", ImmutableMap.of("project_id", PROJECT));
+  private static final WriteOption[] WRITE_OPTIONS =
+      {WriteOption.logName(LOG_NAME), WriteOption.resource(DEFAULT_RESOURCE)};
+  private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+  private Logging logging;
+  private LoggingOptions options;
+  private BufferedLoggingHandler handler;
+
+  static final class TestFormatter extends Formatter {
+
+    @Override
+    public String format(LogRecord record) {
+      return record.getMessage();
+    }
+  }
+
+  /**
+   * Blocks the write it answers until released.
+   */
+  private static final class BlockingAnswer implements IAnswer<Void> {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    @Override
+    public Void answer() throws Throwable {
+      started.countDown();
+      released.await();
+      return null;
+    }
+  }
+
+  /**
+   * Counts down a latch when the write it answers is made.
+   */
+  private static final class LatchAnswer implements IAnswer<Void> {
+
+    private final CountDownLatch written = new CountDownLatch(1);
+
+    @Override
+    public Void answer() {
+      written.countDown();
+      return null;
+    }
+  }
+
+  @Before
+  public void setUp() {
+    logging = EasyMock.createStrictMock(Logging.class);
+    options = EasyMock.createStrictMock(LoggingOptions.class);
+    EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
+  }
+
+  @After
+  public void tearDown() {
+    if (handler != null) {
+      handler.close();
+    }
+    EasyMock.verify(logging, options);
+  }
+
+  private static LogEntry entry(Level level, String message) {
+    return LogEntry.newBuilder(StringPayload.of(message))
+        .setSeverity(level.intValue() >= Level.WARNING.intValue() ? Severity.WARNING
+            : Severity.INFO)
+        .addLabel("levelName", level.getName())
+        .addLabel("levelValue", String.valueOf(level.intValue()))
+        .build();
+  }
+
+  private static LogEntry entry(String message) {
+    return entry(Level.INFO, message);
+  }
+
+  private void expectWrite(LogEntry... entries) {
+    logging.write(ImmutableList.copyOf(entries), WRITE_OPTIONS);
+    EasyMock.expectLastCall();
+  }
+
+  private void expectClose() throws Exception {
+    logging.close();
+    EasyMock.expectLastCall();
+    EasyMock.replay(options, logging);
+  }
+
+  private BufferedLoggingHandler newHandler(int bufferSize, int batchSize, long batchBytes,
+      long maxLatencyMillis, OverflowPolicy overflowPolicy) {
+    BufferedLoggingHandler handler = new BufferedLoggingHandler(LOG_NAME, options, null,
+        bufferSize, batchSize, batchBytes, maxLatencyMillis, overflowPolicy, Severity.WARNING);
+    handler.setFormatter(new TestFormatter());
+    return handler;
+  }
+
+  private void publish(String message) {
+    handler.publish(new LogRecord(Level.INFO, message));
+  }
+
+  @Test
+  public void testFlush() throws Exception {
+    EasyMock.expect(options.service()).andReturn(logging);
+    expectWrite(entry("a"), entry("b"), entry("c"));
+    expectClose();
+    handler = newHandler(16, 100, Long.MAX_VALUE, NEVER, OverflowPolicy.DROP_NEWEST);
+    publish("a");
+    publish("b");
+    publish("c");
+    handler.flush();
+    assertEquals(0, handler.getBufferedCount());
+  }
+
+  @Test
+  public void testBatchSize() throws Exception {
+    EasyMock.expect(options.service()).andReturn(logging);
+    expectWrite(entry("a"), entry("b"));
+    expectWrite(entry("c"), entry("d"));
+    expectWrite(entry("e"));
+    expectClose();
+    handler = newHandler(16, 2, Long.MAX_VALUE, NEVER, OverflowPolicy.DROP_NEWEST);
+    for (String message : new String[]{"a", "b", "c", "d", "e"}) {
+      publish(message);
+    }
+    handler.flush();
+  }
+
+  @Test
+  public void testBatchBytes() throws Exception {
+    EasyMock.expect(options.service()).andReturn(logging);
+    expectWrite(entry("a"));
+    expectWrite(entry("b"));
+    expectClose();
+    handler = newHandler(16, 100, 1, NEVER, OverflowPolicy.DROP_NEWEST);
+    publish("a");
+    publish("b");
+    handler.flush();
+  }
+
+  @Test
+  public void testMaxLatency() throws Exception {
+    EasyMock.expect(options.service()).andReturn(logging);
+    LatchAnswer answer = new LatchAnswer();
+    logging.write(ImmutableList.of(entry("a")), WRITE_OPTIONS);
+    EasyMock.expectLastCall().andAnswer(answer);
+    expectClose();
+    handler = newHandler(16, 100, Long.MAX_VALUE, 10, OverflowPolicy.DROP_NEWEST);
+    publish("a");
+    assertTrue(answer.written.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testFlushLevel() throws Exception {
+    EasyMock.expect(options.service()).andReturn(logging);
+    LatchAnswer answer = new LatchAnswer();
+    logging.write(ImmutableList.of(entry("a"), entry(Level.WARNING, "b")), WRITE_OPTIONS);
+    EasyMock.expectLastCall().andAnswer(answer);
+    expectClose();
+    handler = newHandler(16, 100, Long.MAX_VALUE, NEVER, OverflowPolicy.DROP_NEWEST);
+    handler.setFlushLevel(Level.WARNING);
+    publish("a");
+    handler.publish(new LogRecord(Level.WARNING, "b"));
+    assertTrue(answer.written.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    EasyMock.expect(options.service()).andReturn(logging);
+    expectWrite(entry("a"), entry("b"));
+    expectClose();
+    handler = newHandler(16, 100, Long.MAX_VALUE, NEVER, OverflowPolicy.DROP_NEWEST);
+    publish("a");
+    publish("b");
+    handler.close();
+    publish("c");
+  }
+
+  private BlockingAnswer expectBlockedWrite() {
+    BlockingAnswer answer = new BlockingAnswer();
+    EasyMock.expect(options.service()).andReturn(logging);
+    logging.write(ImmutableList.of(entry("a")), WRITE_OPTIONS);
+    EasyMock.expectLastCall().andAnswer(answer);
+    return answer;
+  }
+
+  @Test
+  public void testOverflow_dropNewest() throws Exception {
+    BlockingAnswer answer = expectBlockedWrite();
+    expectWrite(entry("b"));
+    expectWrite(entry("c"));
+    expectClose();
+    handler = newHandler(2, 1, Long.MAX_VALUE, NEVER, OverflowPolicy.DROP_NEWEST);
+    publish("a");
+    assertTrue(answer.started.await(10, TimeUnit.SECONDS));
+    publish("b");
+    publish("c");
+    publish("d");
+    assertEquals(1, handler.getDroppedCount());
+    answer.released.countDown();
+    handler.flush();
+  }
+
+  @Test
+  public void testOverflow_dropOldest() throws Exception {
+    BlockingAnswer answer = expectBlockedWrite();
+    expectWrite(entry("c"));
+    expectWrite(entry("d"));
+    expectClose();
+    handler = newHandler(2, 1, Long.MAX_VALUE, NEVER, OverflowPolicy.DROP_OLDEST);
+    publish("a");
+    assertTrue(answer.started.await(10, TimeUnit.SECONDS));
+    publish("b");
+    publish("c");
+    publish("d");
+    assertEquals(1, handler.getDroppedCount());
+    answer.released.countDown();
+    handler.flush();
+  }
+
+  @Test
+  public void testOverflow_dropBelowSeverity() throws Exception {
+    BlockingAnswer answer = expectBlockedWrite();
+    expectWrite(entry("b"));
+    expectWrite(entry("c"));
+    expectWrite(entry(Level.WARNING, "e"));
+    expectClose();
+    handler = newHandler(2, 1, Long.MAX_VALUE, NEVER, OverflowPolicy.DROP_BELOW_SEVERITY);
+    publish("a");
+    assertTrue(answer.started.await(10, TimeUnit.SECONDS));
+    publish("b");
+    publish("c");
+    publish("d");
+    assertEquals(1, handler.getDroppedCount());
+    Thread publisher = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        handler.publish(new LogRecord(Level.WARNING, "e"));
+      }
+    });
+    publisher.start();
+    publisher.join(100);
+    assertTrue(publisher.isAlive());
+    answer.released.countDown();
+    publisher.join();
+    assertEquals(1, handler.getDroppedCount());
+    handler.flush();
+  }
+
+  @Test
+  public void testOverflow_block() throws Exception {
+    BlockingAnswer answer = expectBlockedWrite();
+    expectWrite(entry("b"));
+    expectWrite(entry("c"));
+    expectWrite(entry("d"));
+    expectClose();
+    handler = newHandler(2, 1, Long.MAX_VALUE, NEVER, OverflowPolicy.BLOCK);
+    publish("a");
+    assertTrue(answer.started.await(10, TimeUnit.SECONDS));
+    publish("b");
+    publish("c");
+    Thread publisher = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        publish("d");
+      }
+    });
+    publisher.start();
+    publisher.join(100);
+    assertTrue(publisher.isAlive());
+    answer.released.countDown();
+    publisher.join();
+    assertEquals(0, handler.getDroppedCount());
+    handler.flush();
+  }
+
+  @Test
+  public void testConcurrentPublish() throws Exception {
+    final int threads = 4;
+    final int records = 1000;
+    EasyMock.expect(options.service()).andReturn(logging);
+    final long[] written = new long[1];
+    logging.write(EasyMock.<Iterable<LogEntry>>anyObject(), EasyMock.eq(WRITE_OPTIONS[0]),
+        EasyMock.eq(WRITE_OPTIONS[1]));
+    EasyMock.expectLastCall().andAnswer(new IAnswer<Void>() {
+      @Override
+      public Void answer() {
+        written[0] += ImmutableList.copyOf(
+            (Iterable<?>) EasyMock.getCurrentArguments()[0]).size();
+        return null;
+      }
+    }).anyTimes();
+    expectClose();
+    handler = newHandler(64, 10, Long.MAX_VALUE, NEVER, OverflowPolicy.BLOCK);
+    Thread[] publishers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      publishers[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < records; j++) {
+            publish("message");
+          }
+        }
+      });
+      publishers[i].start();
+    }
+    for (Thread publisher : publishers) {
+      publisher.join();
+    }
+    handler.flush();
+    assertEquals(threads * records, written[0]);
+    assertEquals(0, handler.getDroppedCount());
+  }
+
+  @Test
+  public void testReportFlushError() throws Exception {
+    EasyMock.expect(options.service()).andReturn(logging);
+    RuntimeException ex = new RuntimeException();
+    logging.write(ImmutableList.of(entry("a")), WRITE_OPTIONS);
+    EasyMock.expectLastCall().andThrow(ex);
+    expectWrite(entry("b"));
+    expectClose();
+    ErrorManager errorManager = EasyMock.createStrictMock(ErrorManager.class);
+    errorManager.error(null, ex, ErrorManager.FLUSH_FAILURE);
+    EasyMock.expectLastCall();
+    EasyMock.replay(errorManager);
+    handler = newHandler(16, 100, Long.MAX_VALUE, NEVER, OverflowPolicy.DROP_NEWEST);
+    handler.setErrorManager(errorManager);
+    publish("a");
+    handler.flush();
+    publish("b");
+    handler.flush();
+    EasyMock.verify(errorManager);
+  }
+}
@@ -18,6 +18,7 @@ package com.google.cloud.logging;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import com.google.cloud.MonitoredResource;
 import com.google.cloud.logging.Payload.JsonPayload;
@@ -29,6 +30,7 @@ import com.google.protobuf.Empty;
 
 import org.junit.Test;
 
+import java.util.HashMap;
 import java.util.Map;
 
 public class LogEntryTest {
@@ -285,6 +287,20 @@ public class LogEntryTest {
     compareLogEntry(STRING_ENTRY, logEntry);
   }
 
+  @Test
+  public void testLabels() {
+    Map<String, String> labels = ImmutableMap.of("key1", "value1");
+    LogEntry logEntry = LogEntry.newBuilder(STRING_PAYLOAD).setLabels(labels).build();
+    assertSame(labels, logEntry.getLabels());
+    LogEntry otherEntry = logEntry.toBuilder().addLabel("key2", "value2").build();
+    assertEquals(ImmutableMap.of("key1", "value1"), logEntry.getLabels());
+    assertEquals(ImmutableMap.of("key1", "value1", "key2", "value2"), otherEntry.getLabels());
+    Map<String, String> mutableLabels = new HashMap<>(labels);
+    logEntry = LogEntry.newBuilder(STRING_PAYLOAD).setLabels(mutableLabels).build();
+    mutableLabels.put("key2", "value2");
+    assertEquals(ImmutableMap.of("key1", "value1"), logEntry.getLabels());
+  }
+
   @Test
   public void testToAndFromPb() {
     compareLogEntry(STRING_ENTRY, LogEntry.fromPb(STRING_ENTRY.toPb("project")));
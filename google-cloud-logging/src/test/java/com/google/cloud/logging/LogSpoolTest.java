@@ -0,0 +1,237 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.logging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LogSpoolTest {
+
+  // fits a header and three 4-byte records
+  private static final int SEGMENT_BYTES = 8 + 3 * (8 + 4);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = folder.getRoot().toPath().resolve("spool");
+  }
+
+  private static byte[] record(String data) {
+    return data.getBytes(UTF_8);
+  }
+
+  private static List<String> peek(LogSpool spool, int maxRecords) throws IOException {
+    List<String> records = new ArrayList<>();
+    for (byte[] record : spool.peek(maxRecords)) {
+      records.add(new String(record, UTF_8));
+    }
+    return records;
+  }
+
+  private List<Path> segments() throws IOException {
+    List<Path> segments = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "spool-*.seg")) {
+      for (Path file : files) {
+        segments.add(file);
+      }
+    }
+    return segments;
+  }
+
+  @Test
+  public void testAppendPeekRemove() throws IOException {
+    LogSpool spool = LogSpool.open(directory, 1024, SEGMENT_BYTES);
+    assertTrue(spool.isEmpty());
+    assertTrue(spool.peek(10).isEmpty());
+    assertTrue(spool.append(record("aaaa")));
+    assertTrue(spool.append(record("bbbb")));
+    assertTrue(spool.append(record("cc")));
+    assertFalse(spool.isEmpty());
+    assertEquals(ImmutableList.of("aaaa", "bbbb"), peek(spool, 2));
+    assertEquals(ImmutableList.of("aaaa", "bbbb", "cc"), peek(spool, 10));
+    spool.remove(2);
+    assertEquals(ImmutableList.of("cc"), peek(spool, 10));
+    spool.remove(1);
+    assertTrue(spool.isEmpty());
+    assertTrue(spool.peek(10).isEmpty());
+    spool.close();
+  }
+
+  @Test
+  public void testSegmentRollover() throws IOException {
+    LogSpool spool = LogSpool.open(directory, 1024, SEGMENT_BYTES);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(spool.append(record("rec" + i)));
+    }
+    assertEquals(2, segments().size());
+    // records are read from a segment at a time
+    assertEquals(ImmutableList.of("rec0", "rec1", "rec2"), peek(spool, 10));
+    spool.remove(3);
+    assertEquals(ImmutableList.of("rec3", "rec4"), peek(spool, 10));
+    // the fully read segment is deleted
+    assertEquals(1, segments().size());
+    spool.remove(2);
+    assertTrue(spool.isEmpty());
+    spool.close();
+  }
+
+  @Test
+  public void testAppendWhenFull() throws IOException {
+    LogSpool spool = LogSpool.open(directory, 2 * SEGMENT_BYTES, SEGMENT_BYTES);
+    for (int i = 0; i < 6; i++) {
+      assertTrue(spool.append(record("rec" + i)));
+    }
+    assertFalse(spool.append(record("rec6")));
+    // records that don't fit in a segment are never appended
+    assertFalse(spool.append(new byte[SEGMENT_BYTES]));
+    spool.remove(3);
+    assertTrue(spool.append(record("rec6")));
+    assertEquals(ImmutableList.of("rec3", "rec4", "rec5"), peek(spool, 10));
+    spool.remove(3);
+    assertEquals(ImmutableList.of("rec6"), peek(spool, 10));
+    spool.close();
+  }
+
+  @Test
+  public void testAppendWhenClosed() throws IOException {
+    LogSpool spool = LogSpool.open(directory, 1024, SEGMENT_BYTES);
+    spool.close();
+    assertFalse(spool.append(record("rec0")));
+    assertTrue(spool.isEmpty());
+  }
+
+  @Test
+  public void testOpenLockedDirectory() throws IOException {
+    LogSpool spool = LogSpool.open(directory, 1024, SEGMENT_BYTES);
+    try {
+      LogSpool.open(directory, 1024, SEGMENT_BYTES);
+      fail();
+    } catch (IOException ex) {
+      // expected
+    }
+    spool.close();
+    LogSpool.open(directory, 1024, SEGMENT_BYTES).close();
+  }
+
+  @Test
+  public void testPeekWhenClosed() throws IOException {
+    LogSpool spool = LogSpool.open(directory, 1024, SEGMENT_BYTES);
+    assertTrue(spool.append(record("rec0")));
+    spool.close();
+    assertTrue(peek(spool, 10).isEmpty());
+    spool.remove(1);
+    LogSpool reopened = LogSpool.open(directory, 1024, SEGMENT_BYTES);
+    assertEquals(ImmutableList.of("rec0"), peek(reopened, 10));
+    reopened.close();
+  }
+
+  @Test
+  public void testReopen() throws IOException {
+    LogSpool spool = LogSpool.open(directory, 1024, SEGMENT_BYTES);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(spool.append(record("rec" + i)));
+    }
+    spool.remove(1);
+    spool.close();
+    LogSpool reopened = LogSpool.open(directory, 1024, SEGMENT_BYTES);
+    assertFalse(reopened.isEmpty());
+    assertEquals(ImmutableList.of("rec1", "rec2"), peek(reopened, 10));
+    // records are appended to a new segment
+    assertTrue(reopened.append(record("rec5")));
+    assertEquals(3, segments().size());
+    reopened.remove(2);
+    assertEquals(ImmutableList.of("rec3", "rec4"), peek(reopened, 10));
+    reopened.remove(2);
+    assertEquals(ImmutableList.of("rec5"), peek(reopened, 10));
+    reopened.remove(1);
+    assertTrue(reopened.isEmpty());
+    reopened.close();
+  }
+
+  @Test
+  public void testReopenDeletesReadSegments() throws IOException {
+    LogSpool spool = LogSpool.open(directory, 1024, SEGMENT_BYTES);
+    assertTrue(spool.append(record("rec0")));
+    spool.remove(1);
+    spool.close();
+    assertEquals(1, segments().size());
+    LogSpool reopened = LogSpool.open(directory, 1024, SEGMENT_BYTES);
+    assertTrue(reopened.isEmpty());
+    assertTrue(segments().isEmpty());
+    reopened.close();
+  }
+
+  @Test
+  public void testReopenWithCorruptedRecord() throws IOException {
+    LogSpool spool = LogSpool.open(directory, 1024, SEGMENT_BYTES);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(spool.append(record("rec" + i)));
+    }
+    spool.close();
+    Path segment = segments().get(0);
+    // corrupts the data of the second record
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(record("x")), 8 + 12 + 8);
+    }
+    LogSpool reopened = LogSpool.open(directory, 1024, SEGMENT_BYTES);
+    assertEquals(ImmutableList.of("rec0"), peek(reopened, 10));
+    reopened.remove(1);
+    assertTrue(reopened.isEmpty());
+    reopened.close();
+  }
+
+  @Test
+  public void testReopenWithTornRecord() throws IOException {
+    LogSpool spool = LogSpool.open(directory, 1024, 1024);
+    assertTrue(spool.append(record("rec0")));
+    spool.close();
+    Path segment = segments().get(0);
+    // a length pointing past the end of the segment
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      ByteBuffer length = ByteBuffer.allocate(4);
+      length.putInt(0, 2048);
+      channel.write(length, 8 + 12);
+    }
+    LogSpool reopened = LogSpool.open(directory, 1024, 1024);
+    assertEquals(ImmutableList.of("rec0"), peek(reopened, 10));
+    reopened.close();
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.logging;
+
+import com.google.cloud.AuthCredentials;
+import com.google.cloud.MonitoredResource;
+import com.google.cloud.logging.spi.LoggingRpc;
+import com.google.cloud.logging.spi.LoggingRpcFactory;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.logging.v2.WriteLogEntriesRequest;
+import com.google.logging.v2.WriteLogEntriesResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Measures the cost of publishing a record with {@link LoggingHandler}, from the creation of its
+ * {@link LogEntry} to the encoding of the {@code WriteLogEntriesRequest}. Requests are not sent.
+ * Run with the GC profiler to see the bytes allocated per published record:
+ * <pre>
+ * mvn -pl google-cloud-logging test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args="LoggingHandlerBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LoggingHandlerBenchmark {
+
+  private static final String PROJECT = "project";
+  private static final MonitoredResource RESOURCE =
+      MonitoredResource.of("global", ImmutableMap.of("project_id", PROJECT));
+
+  @Param({"1", "100"})
+  public long flushSize;
+
+  private LoggingHandler handler;
+  private LogRecord record;
+  private WriteLogEntriesRequest lastRequest;
+
+  /**
+   * Formats records as their message, so that the benchmark does not measure formatting.
+   */
+  private static final class MessageFormatter extends Formatter {
+
+    @Override
+    public String format(LogRecord record) {
+      return record.getMessage();
+    }
+  }
+
+  /**
+   * Creates a {@link LoggingRpc} that keeps the last written request and does nothing else.
+   */
+  private LoggingRpc newRpc() {
+    return (LoggingRpc) Proxy.newProxyInstance(LoggingRpc.class.getClassLoader(),
+        new Class<?>[]{LoggingRpc.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+              case "write":
+                lastRequest = (WriteLogEntriesRequest) args[0];
+                return Futures.immediateFuture(WriteLogEntriesResponse.getDefaultInstance());
+              case "close":
+                return null;
+              case "hashCode":
+                return System.identityHashCode(proxy);
+              case "equals":
+                return proxy == args[0];
+              case "toString":
+                return "LoggingRpc";
+              default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+          }
+        });
+  }
+
+  @Setup
+  public void setUp() {
+    final LoggingRpc rpc = newRpc();
+    LoggingOptions options = LoggingOptions.builder()
+        .projectId(PROJECT)
+        .authCredentials(AuthCredentials.noAuth())
+        .serviceRpcFactory(new LoggingRpcFactory() {
+          @Override
+          public LoggingRpc create(LoggingOptions options) {
+            return rpc;
+          }
+        })
+        .build();
+    handler = new LoggingHandler("java.log", options, RESOURCE);
+    handler.setFormatter(new MessageFormatter());
+    handler.setFlushSize(flushSize);
+    handler.setFlushLevel(Level.OFF);
+    record = new LogRecord(Level.INFO, "A log message of a typical length, with some context.");
+  }
+
+  @TearDown
+  public void tearDown() {
+    handler.close();
+  }
+
+  @Benchmark
+  public void publish() {
+    handler.publish(record);
+  }
+
+  @Benchmark
+  public LogEntry entryFor() {
+    return handler.entryFor(record);
+  }
+
+  @Benchmark
+  public com.google.logging.v2.LogEntry entryToPb() {
+    return handler.entryFor(record).toPb(PROJECT);
+  }
+}
@@ -18,6 +18,7 @@ package com.google.cloud.logging;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -26,12 +27,20 @@ import com.google.cloud.logging.Logging.WriteOption;
 import com.google.cloud.logging.Payload.StringPayload;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 
+import org.easymock.Capture;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.ErrorManager;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
@@ -112,6 +121,9 @@ public class LoggingHandlerTest {
       .addLabel("levelValue", String.valueOf(LoggingLevel.EMERGENCY.intValue()))
       .build();
 
+  @Rule
+  public TemporaryFolder spoolFolder = new TemporaryFolder();
+
   private Logging logging;
   private LoggingOptions options;
 
@@ -234,6 +246,50 @@ public class LoggingHandlerTest {
     EasyMock.verify(errorManager);
   }
 
+  @Test
+  public void testSpoolFailedWrites() throws Exception {
+    EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
+    EasyMock.expect(options.service()).andReturn(logging);
+    // spooled entries are encoded with the project id
+    EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
+    RuntimeException ex = new RuntimeException();
+    logging.write(ImmutableList.of(FINEST_ENTRY), WriteOption.logName(LOG_NAME),
+        WriteOption.resource(DEFAULT_RESOURCE));
+    EasyMock.expectLastCall().andThrow(ex);
+    Capture<List<LogEntry>> replayed = Capture.newInstance();
+    final CountDownLatch written = new CountDownLatch(1);
+    logging.write(EasyMock.capture(replayed), EasyMock.eq(WriteOption.logName(LOG_NAME)),
+        EasyMock.eq(WriteOption.resource(DEFAULT_RESOURCE)));
+    EasyMock.expectLastCall().andAnswer(new IAnswer<Void>() {
+      @Override
+      public Void answer() {
+        written.countDown();
+        return null;
+      }
+    });
+    logging.close();
+    EasyMock.expectLastCall();
+    EasyMock.replay(options, logging);
+    ErrorManager errorManager = EasyMock.createStrictMock(ErrorManager.class);
+    errorManager.error(null, ex, ErrorManager.FLUSH_FAILURE);
+    EasyMock.expectLastCall();
+    EasyMock.replay(errorManager);
+    LoggingHandler handler = new LoggingHandler(LOG_NAME, options);
+    handler.setSpool(LogSpool.open(spoolFolder.getRoot().toPath(), 1024 * 1024, 64 * 1024));
+    handler.setLevel(Level.ALL);
+    handler.setErrorManager(errorManager);
+    handler.setFormatter(new TestFormatter());
+    handler.publish(new LogRecord(Level.FINEST, MESSAGE));
+    assertTrue(written.await(10, TimeUnit.SECONDS));
+    handler.close();
+    LogEntry entry = Iterables.getOnlyElement(replayed.getValue());
+    assertNotNull(entry.getTimestamp());
+    assertEquals(FINEST_ENTRY.getPayload(), entry.getPayload());
+    assertEquals(FINEST_ENTRY.getSeverity(), entry.getSeverity());
+    assertEquals(FINEST_ENTRY.getLabels(), entry.getLabels());
+    EasyMock.verify(errorManager);
+  }
+
   @Test
   public void testReportFormatError() {
     EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
@@ -1174,6 +1174,36 @@ public class LoggingImplTest {
         WriteOption.resource(MONITORED_RESOURCE), WriteOption.labels(labels));
   }
 
+  @Test
+  public void testWriteLogEntriesToChangingDestinations() {
+    WriteLogEntriesRequest request = WriteLogEntriesRequest.newBuilder()
+        .setLogName(LOG_NAME_PB)
+        .setResource(MONITORED_RESOURCE.toPb())
+        .addAllEntries(Iterables.transform(ImmutableList.of(LOG_ENTRY1),
+            LogEntry.toPbFunction(PROJECT)))
+        .build();
+    WriteLogEntriesRequest otherRequest = WriteLogEntriesRequest.newBuilder()
+        .setLogName("projects/" + PROJECT + "/logs/otherLog")
+        .addAllEntries(Iterables.transform(ImmutableList.of(LOG_ENTRY1),
+            LogEntry.toPbFunction(PROJECT)))
+        .build();
+    WriteLogEntriesResponse response = WriteLogEntriesResponse.newBuilder().build();
+    EasyMock.expect(loggingRpcMock.write(request)).andReturn(Futures.immediateFuture(response))
+        .times(2);
+    EasyMock.expect(loggingRpcMock.write(otherRequest))
+        .andReturn(Futures.immediateFuture(response));
+    EasyMock.expect(loggingRpcMock.write(request)).andReturn(Futures.immediateFuture(response));
+    EasyMock.replay(rpcFactoryMock, loggingRpcMock);
+    logging = options.service();
+    logging.write(ImmutableList.of(LOG_ENTRY1), WriteOption.logName(LOG_NAME),
+        WriteOption.resource(MONITORED_RESOURCE));
+    logging.write(ImmutableList.of(LOG_ENTRY1), WriteOption.logName(LOG_NAME),
+        WriteOption.resource(MONITORED_RESOURCE));
+    logging.write(ImmutableList.of(LOG_ENTRY1), WriteOption.logName("otherLog"));
+    logging.write(ImmutableList.of(LOG_ENTRY1), WriteOption.logName(LOG_NAME),
+        WriteOption.resource(MONITORED_RESOURCE));
+  }
+
   @Test
   public void testWriteLogEntriesAsync() throws ExecutionException, InterruptedException {
     WriteLogEntriesRequest request = WriteLogEntriesRequest.newBuilder()
@@ -17,6 +17,7 @@
 package com.google.cloud.logging;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.google.cloud.logging.Payload.JsonPayload;
@@ -107,6 +108,7 @@ public class PayloadTest {
     assertEquals(Type.JSON, jsonPayload.getType());
     assertEquals(STRUCT_DATA, jsonPayload.getData());
     assertEquals(JSON_DATA, jsonPayload.getDataAsMap());
+    assertSame(jsonPayload.getDataAsMap(), jsonPayload.getDataAsMap());
   }
 
   @Test
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.logging;
+
+import com.google.api.client.util.Types;
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.NullValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the conversions of {@link Structs} between maps and {@link Struct} objects: encoding in
+ * a single pass against encoding through transformed views, and reading a map converted once with
+ * {@link Structs#toMap(Struct)} against reading the {@link Structs#asMap(Struct)} view. Decoding
+ * benchmarks traverse the whole map {@code reads} times. Payloads are either wide, with many
+ * fields, or deep, with nested maps. Run with the GC profiler to see the bytes
+ * allocated per conversion:
+ * <pre>
+ * mvn -pl google-cloud-logging test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args="StructsBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StructsBenchmark {
+
+  private static final int WIDE_FIELDS = 500;
+  private static final int DEEP_LEVELS = 20;
+
+  @Param({"wide", "deep"})
+  public String shape;
+
+  @Param({"1", "3"})
+  public int reads;
+
+  private Map<String, Object> map;
+  private Struct struct;
+
+  /**
+   * Encodes values through transformed views, as {@link Structs} did before encoding in a single
+   * pass.
+   */
+  private static final Function<Object, Value> VIEW_ENCODER = new Function<Object, Value>() {
+    @Override
+    @SuppressWarnings("unchecked")
+    public Value apply(Object obj) {
+      Value.Builder builder = Value.newBuilder();
+      if (obj == null) {
+        builder.setNullValue(NullValue.NULL_VALUE);
+      } else if (obj instanceof String) {
+        builder.setStringValue((String) obj);
+      } else if (obj instanceof Number) {
+        builder.setNumberValue(((Number) obj).doubleValue());
+      } else if (obj instanceof Boolean) {
+        builder.setBoolValue((Boolean) obj);
+      } else if (obj instanceof Iterable<?>) {
+        builder.setListValue(ListValue.newBuilder()
+            .addAllValues(Iterables.transform(Types.iterableOf(obj), this)));
+      } else {
+        builder.setStructValue(encodeViews((Map<String, Object>) obj));
+      }
+      return builder.build();
+    }
+  };
+
+  private static Struct encodeViews(Map<String, ?> map) {
+    return Struct.newBuilder().putAllFields(Maps.transformValues(map, VIEW_ENCODER)).build();
+  }
+
+  private static Map<String, Object> fields(int count, String prefix) {
+    Map<String, Object> fields = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      fields.put(prefix + "string" + i, "value " + i);
+      fields.put(prefix + "number" + i, i);
+      fields.put(prefix + "boolean" + i, i % 2 == 0);
+    }
+    List<Object> list = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      list.add("element " + i);
+    }
+    fields.put(prefix + "list", list);
+    return fields;
+  }
+
+  @Setup
+  public void setUp() {
+    if ("wide".equals(shape)) {
+      map = fields(WIDE_FIELDS, "");
+    } else {
+      map = fields(2, "level0.");
+      Map<String, Object> parent = map;
+      for (int level = 1; level < DEEP_LEVELS; level++) {
+        Map<String, Object> child = fields(2, "level" + level + ".");
+        parent.put("child", child);
+        parent = child;
+      }
+    }
+    struct = Structs.newStruct(map);
+  }
+
+  /**
+   * Reads every value of {@code map}, including nested ones, and returns the number of values.
+   */
+  private static int traverse(Object value) {
+    if (value instanceof Map) {
+      int count = 0;
+      for (Object nested : ((Map<?, ?>) value).values()) {
+        count += traverse(nested);
+      }
+      return count;
+    } else if (value instanceof List) {
+      int count = 0;
+      for (Object nested : (List<?>) value) {
+        count += traverse(nested);
+      }
+      return count;
+    }
+    return value != null ? 1 : 0;
+  }
+
+  @Benchmark
+  public Struct encode() {
+    return Structs.newStruct(map);
+  }
+
+  @Benchmark
+  public Struct encodeViews() {
+    return encodeViews(map);
+  }
+
+  @Benchmark
+  public int decode() {
+    Map<String, Object> decoded = Structs.toMap(struct);
+    int count = 0;
+    for (int i = 0; i < reads; i++) {
+      count += traverse(decoded);
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int decodeViews() {
+    Map<String, Object> view = Structs.asMap(struct);
+    int count = 0;
+    for (int i = 0; i < reads; i++) {
+      count += traverse(view);
+    }
+    return count;
+  }
+}
@@ -17,6 +17,8 @@
 package com.google.cloud.logging;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import com.google.common.collect.ImmutableList;
@@ -143,6 +145,80 @@ public class StructsTest {
     Structs.asMap(null);
   }
 
+  @Test
+  public void testAsMapGet() {
+    Map<String, Object> map = Structs.asMap(STRUCT);
+    assertEquals(INNER_MAP, map.get("struct"));
+    assertNull(map.get("missing"));
+    assertFalse(map.containsKey("missing"));
+  }
+
+  @Test
+  public void testToMap() {
+    Map<String, Object> map = Structs.toMap(STRUCT);
+    checkMapField(map, "null", null);
+    checkMapField(map, "number", NUMBER);
+    checkMapField(map, "string", STRING);
+    checkMapField(map, "boolean", BOOLEAN);
+    checkMapField(map, "list", LIST);
+    checkMapField(map, "struct", INNER_MAP);
+    assertEquals(MAP, map);
+    assertEquals(Structs.asMap(STRUCT), map);
+  }
+
+  @Test
+  public void testToMapPut() {
+    Map<String, Object> map = Structs.toMap(STRUCT);
+    thrown.expect(UnsupportedOperationException.class);
+    map.put("key", "value");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testToMapPutNested() {
+    Map<String, Object> map = Structs.toMap(STRUCT);
+    thrown.expect(UnsupportedOperationException.class);
+    ((Map<String, Object>) map.get("struct")).put("key", "value");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testToMapAddNested() {
+    Map<String, Object> map = Structs.toMap(STRUCT);
+    thrown.expect(UnsupportedOperationException.class);
+    ((List<Object>) map.get("list")).add("value");
+  }
+
+  @Test
+  public void testToMapEmpty() {
+    Map<String, Object> map = Structs.toMap(Struct.getDefaultInstance());
+    assertTrue(map.isEmpty());
+    assertEquals(EMPTY_MAP, map);
+  }
+
+  @Test
+  public void testToMapNull() {
+    thrown.expect(NullPointerException.class);
+    Structs.toMap(null);
+  }
+
+  @Test
+  public void testWriteStruct() {
+    Struct.Builder builder = Struct.newBuilder().putFields("other", STRING_VALUE);
+    Structs.writeStruct(MAP, builder);
+    Struct struct = builder.build();
+    checkStructField(struct, "other", STRING_VALUE);
+    checkStructField(struct, "struct", STRUCT_VALUE);
+    assertEquals(VALUE_MAP.size() + 1, struct.getFieldsCount());
+  }
+
+  @Test
+  public void testNewStructFromArray() {
+    Struct struct = Structs.newStruct(
+        ImmutableMap.<String, Object>of("list", new Object[] {NUMBER, STRING, BOOLEAN}));
+    checkStructField(struct, "list", LIST_VALUE);
+  }
+
   @Test
   public void testNewStruct() {
     Struct struct = Structs.newStruct(MAP);
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.logging.Payload.StringPayload;
+import com.google.cloud.logging.spi.LoggingRpc;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.logging.v2.WriteLogEntriesRequest;
+import com.google.logging.v2.WriteLogEntriesResponse;
+import com.google.protobuf.CodedOutputStream;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+public class WriteBatcherTest {
+
+  private static final String PROJECT = "project";
+  private static final WriteLogEntriesRequest HEADER = WriteLogEntriesRequest.newBuilder()
+      .setLogName("projects/" + PROJECT + "/logs/log")
+      .build();
+  private static final List<LogEntry> ENTRIES = ImmutableList.of(entry("a"), entry("b"),
+      entry("c"), entry("d"), entry("e"));
+  private static final WriteLogEntriesResponse RESPONSE =
+      WriteLogEntriesResponse.getDefaultInstance();
+
+  private LoggingRpc rpc;
+
+  @Before
+  public void setUp() {
+    rpc = EasyMock.createStrictMock(LoggingRpc.class);
+  }
+
+  @After
+  public void tearDown() {
+    EasyMock.verify(rpc);
+  }
+
+  private static LogEntry entry(String payload) {
+    return LogEntry.of(StringPayload.of(payload));
+  }
+
+  private static WriteLogEntriesRequest request(List<LogEntry> entries) {
+    return HEADER.toBuilder()
+        .addAllEntries(Iterables.transform(entries, LogEntry.toPbFunction(PROJECT)))
+        .build();
+  }
+
+  private static long entryBytes(LogEntry entry) {
+    return CodedOutputStream.computeMessageSize(WriteLogEntriesRequest.ENTRIES_FIELD_NUMBER,
+        entry.toPb(PROJECT));
+  }
+
+  @Test
+  public void testWrite() throws Exception {
+    EasyMock.expect(rpc.write(request(ENTRIES))).andReturn(Futures.immediateFuture(RESPONSE));
+    EasyMock.replay(rpc);
+    WriteBatcher batcher = new WriteBatcher(rpc);
+    batcher.write(HEADER, PROJECT, ENTRIES).get();
+  }
+
+  @Test
+  public void testWrite_splitByCount() throws Exception {
+    EasyMock.expect(rpc.write(request(ENTRIES.subList(0, 2))))
+        .andReturn(Futures.immediateFuture(RESPONSE));
+    EasyMock.expect(rpc.write(request(ENTRIES.subList(2, 4))))
+        .andReturn(Futures.immediateFuture(RESPONSE));
+    EasyMock.expect(rpc.write(request(ENTRIES.subList(4, 5))))
+        .andReturn(Futures.immediateFuture(RESPONSE));
+    EasyMock.replay(rpc);
+    WriteBatcher batcher = new WriteBatcher(rpc, 2, Long.MAX_VALUE, 1);
+    batcher.write(HEADER, PROJECT, ENTRIES).get();
+  }
+
+  @Test
+  public void testWrite_splitBySize() throws Exception {
+    long maxBytes = HEADER.getSerializedSize() + 3 * entryBytes(ENTRIES.get(0));
+    assertEquals(maxBytes, request(ENTRIES.subList(0, 3)).getSerializedSize());
+    EasyMock.expect(rpc.write(request(ENTRIES.subList(0, 3))))
+        .andReturn(Futures.immediateFuture(RESPONSE));
+    EasyMock.expect(rpc.write(request(ENTRIES.subList(3, 5))))
+        .andReturn(Futures.immediateFuture(RESPONSE));
+    EasyMock.replay(rpc);
+    WriteBatcher batcher = new WriteBatcher(rpc, 100, maxBytes, 1);
+    batcher.write(HEADER, PROJECT, ENTRIES).get();
+  }
+
+  @Test
+  public void testWrite_oversizedEntry() throws Exception {
+    LogEntry big = entry("a much longer payload that does not fit in a request");
+    long maxBytes = HEADER.getSerializedSize() + entryBytes(ENTRIES.get(0));
+    EasyMock.expect(rpc.write(request(ImmutableList.of(ENTRIES.get(0)))))
+        .andReturn(Futures.immediateFuture(RESPONSE));
+    EasyMock.expect(rpc.write(request(ImmutableList.of(big))))
+        .andReturn(Futures.immediateFuture(RESPONSE));
+    EasyMock.expect(rpc.write(request(ImmutableList.of(ENTRIES.get(1)))))
+        .andReturn(Futures.immediateFuture(RESPONSE));
+    EasyMock.replay(rpc);
+    WriteBatcher batcher = new WriteBatcher(rpc, 100, maxBytes, 1);
+    batcher.write(HEADER, PROJECT, ImmutableList.of(ENTRIES.get(0), big, ENTRIES.get(1))).get();
+  }
+
+  @Test
+  public void testWrite_partialFailure() throws Exception {
+    LoggingException failure = new LoggingException(new IOException("boom"), false);
+    EasyMock.expect(rpc.write(request(ENTRIES.subList(0, 2))))
+        .andReturn(Futures.immediateFuture(RESPONSE));
+    EasyMock.expect(rpc.write(request(ENTRIES.subList(2, 4))))
+        .andReturn(Futures.<WriteLogEntriesResponse>immediateFailedFuture(failure));
+    EasyMock.expect(rpc.write(request(ENTRIES.subList(4, 5))))
+        .andReturn(Futures.immediateFuture(RESPONSE));
+    EasyMock.replay(rpc);
+    WriteBatcher batcher = new WriteBatcher(rpc, 2, Long.MAX_VALUE, 2);
+    try {
+      batcher.write(HEADER, PROJECT, ENTRIES).get();
+      fail();
+    } catch (ExecutionException ex) {
+      LoggingException exception = (LoggingException) ex.getCause();
+      assertSame(failure, exception.getCause());
+      assertEquals(ENTRIES.subList(2, 4), exception.getFailedEntries());
+    }
+  }
+
+  @Test
+  public void testWrite_singleRequestFailure() throws Exception {
+    LoggingException failure = new LoggingException(new IOException("boom"), false);
+    EasyMock.expect(rpc.write(request(ENTRIES)))
+        .andReturn(Futures.<WriteLogEntriesResponse>immediateFailedFuture(failure));
+    EasyMock.replay(rpc);
+    WriteBatcher batcher = new WriteBatcher(rpc);
+    try {
+      batcher.write(HEADER, PROJECT, ENTRIES).get();
+      fail();
+    } catch (ExecutionException ex) {
+      LoggingException exception = (LoggingException) ex.getCause();
+      assertSame(failure, exception.getCause());
+      assertEquals(ENTRIES, exception.getFailedEntries());
+    }
+  }
+
+  @Test
+  public void testWrite_boundsConcurrentRequests() throws Exception {
+    SettableFuture<WriteLogEntriesResponse> first = SettableFuture.create();
+    SettableFuture<WriteLogEntriesResponse> second = SettableFuture.create();
+    SettableFuture<WriteLogEntriesResponse> third = SettableFuture.create();
+    EasyMock.expect(rpc.write(request(ENTRIES.subList(0, 2)))).andReturn(first);
+    EasyMock.expect(rpc.write(request(ENTRIES.subList(2, 4)))).andReturn(second);
+    EasyMock.replay(rpc);
+    WriteBatcher batcher = new WriteBatcher(rpc, 2, Long.MAX_VALUE, 2);
+    Future<Void> result = batcher.write(HEADER, PROJECT, ENTRIES);
+    EasyMock.verify(rpc);
+    EasyMock.reset(rpc);
+    EasyMock.expect(rpc.write(request(ENTRIES.subList(4, 5)))).andReturn(third);
+    EasyMock.replay(rpc);
+    second.set(RESPONSE);
+    EasyMock.verify(rpc);
+    first.set(RESPONSE);
+    assertFalse(result.isDone());
+    third.set(RESPONSE);
+    assertTrue(result.isDone());
+    result.get();
+  }
+}
@@ -14,142 +14,196 @@
  * limitations under the License.
  */
 
+
 package com.google.cloud.pubsub;
 
 import com.google.cloud.Clock;
 import com.google.cloud.GrpcServiceOptions.ExecutorFactory;
-import com.google.common.base.MoreObjects;
-import com.google.common.collect.LinkedListMultimap;
-import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Multimaps;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Class for an automatic ack deadline renewer. An ack deadline renewer automatically renews the
  * acknowledge deadline of messages added to it (via {@link #add(String, String)} or
  * {@link #add(String, Iterable)}. The acknowledge deadlines of added messages are renewed until the
  * messages are explicitly removed using {@link #remove(String, String)}.
+ *
+ * <p>Deadlines are extended according to the time taken to process the messages of a subscription,
+ * as recorded by {@link #recordProcessingTime(String, long)}: the extension is the 99th percentile
+ * of the last thousand or so processing times, bounded by the minimum and maximum deadlines
+ * accepted by the service.
+ *
+ * <p>Messages are kept in a hashed timing wheel: a message whose deadline must be renewed at tick
+ * {@code t} is linked to the bucket {@code t % WHEEL_SIZE}. The wheel is split in stripes, each
+ * with its own lock, and a message is kept in the stripe of the thread that added it. Messages
+ * are also indexed by subscription and acknowledge id, so that removing a message unlinks it from
+ * its bucket in constant time. A message is indexed before it's linked, and a message removed in
+ * between is never linked. As long as some messages are tracked, a single task visits the
+ * bucket of every tick and renews the deadlines of all due messages of a subscription with a
+ * single request.
  */
 class AckDeadlineRenewer implements AutoCloseable {
 
   private static final int MIN_DEADLINE_MILLIS = 10_000;
+  private static final int MAX_DEADLINE_SECONDS = 600;
+  private static final double DEADLINE_PERCENTILE = 99;
   private static final int DEADLINE_SLACK_MILLIS = 1_000;
   private static final int RENEW_THRESHOLD_MILLIS = 3_000;
-  private static final int NEXT_RENEWAL_THRESHOLD_MILLIS = 1_000;
+  private static final int TICK_MILLIS = 500;
+  private static final int WHEEL_SIZE = 256;
+  private static final int STRIPES = 16;
 
   private final PubSub pubsub;
   private final ScheduledExecutorService executor;
   private final ExecutorFactory<ScheduledExecutorService> executorFactory;
   private final Clock clock;
-  private final Queue<Message> messageQueue;
-  private final Map<MessageId, Long> messageDeadlines;
-  private final Object lock = new Object();
+  private final ConcurrentMap<String, SubscriptionState> subscriptions =
+      new ConcurrentHashMap<>();
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  private final AtomicBoolean ticking = new AtomicBoolean();
+  private final Runnable tickRunnable;
   private final Object futureLock = new Object();
   private Future<?> renewerFuture;
-  private boolean closed;
+  private long scheduledTick;
+  private volatile boolean closed;
+  // only accessed by the tick task
+  private long lastTick = Long.MIN_VALUE;
+
+  /**
+   * The messages tracked for a subscription, indexed by acknowledge id, and the time taken to
+   * process its messages.
+   */
+  private static final class SubscriptionState {
+
+    private final String name;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Distribution processingSeconds = new Distribution(MAX_DEADLINE_SECONDS);
+
+    SubscriptionState(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Returns the extension of the acknowledge deadline of the subscription's messages.
+     */
+    int deadlineMillis() {
+      int seconds = processingSeconds.percentile(DEADLINE_PERCENTILE);
+      return Math.max(MIN_DEADLINE_MILLIS, (int) TimeUnit.SECONDS.toMillis(seconds));
+    }
+  }
+
+  /**
+   * The deadline renewals for a subscription, sent at a tick.
+   */
+  private static final class Renewal {
+
+    private final int deadlineMillis;
+    private final long nextDueTick;
+    private final List<String> ackIds = new ArrayList<>();
+
+    Renewal(int deadlineMillis, long nextDueTick) {
+      this.deadlineMillis = deadlineMillis;
+      this.nextDueTick = nextDueTick;
+    }
+  }
 
   /**
-   * This class holds the identity of a message to renew: subscription and acknowledge id.
+   * A message to renew, identified by subscription and acknowledge id. Entries are linked in a
+   * circular list, with a sentinel entry, per bucket.
    */
-  private static class MessageId {
+  private static final class Entry {
 
-    private final String subscription;
+    private final SubscriptionState subscription;
     private final String ackId;
+    private final Stripe stripe;
+    private long dueTick;
+    // set when the entry is removed or replaced, guarded by the stripe's monitor
+    private boolean removed;
+    private Entry previous;
+    private Entry next;
 
-    MessageId(String subscription, String ackId) {
+    Entry(SubscriptionState subscription, String ackId, Stripe stripe, long dueTick) {
       this.subscription = subscription;
       this.ackId = ackId;
+      this.stripe = stripe;
+      this.dueTick = dueTick;
     }
 
-    String subscription() {
-      return subscription;
+    private Entry() {
+      this(null, null, null, 0);
+      previous = this;
+      next = this;
     }
 
-    String ackId() {
-      return ackId;
+    static Entry sentinel() {
+      return new Entry();
     }
 
-    @Override
-    public boolean equals(Object obj) {
-      if (obj == this) {
-        return true;
-      }
-      if (!(obj instanceof MessageId)) {
-        return false;
-      }
-      MessageId other = (MessageId) obj;
-      return Objects.equals(other.subscription, this.subscription)
-          && Objects.equals(other.ackId, this.ackId);
+    boolean isEmpty() {
+      return next == this;
     }
 
-    @Override
-    public int hashCode() {
-      return Objects.hash(subscription, ackId);
+    void link(Entry entry) {
+      entry.previous = previous;
+      entry.next = this;
+      previous.next = entry;
+      previous = entry;
     }
 
-    @Override
-    public String toString() {
-      return MoreObjects.toStringHelper(this)
-          .add("subscription", subscription)
-          .add("ackId", ackId)
-          .toString();
+    boolean unlink() {
+      if (next == null) {
+        return false;
+      }
+      previous.next = next;
+      next.previous = previous;
+      previous = null;
+      next = null;
+      return true;
     }
   }
 
   /**
-   * This class holds the identity of a message to renew and its expected ack deadline.
+   * A section of the wheel. All accesses to its buckets are guarded by the stripe's monitor.
    */
-  private static final class Message {
+  private static final class Stripe {
 
-    private final MessageId messageId;
-    private final Long deadline;
+    private final Entry[] buckets = new Entry[WHEEL_SIZE];
+    private volatile int size;
 
-    Message(MessageId messageId, Long deadline) {
-      this.messageId = messageId;
-      this.deadline = deadline;
-    }
-
-    MessageId messageId() {
-      return messageId;
+    Stripe() {
+      for (int i = 0; i < WHEEL_SIZE; i++) {
+        buckets[i] = Entry.sentinel();
+      }
     }
 
-    Long expectedDeadline() {
-      return deadline;
+    void link(Entry entry) {
+      buckets[(int) (entry.dueTick % WHEEL_SIZE)].link(entry);
     }
 
-    @Override
-    public boolean equals(Object obj) {
-      if (obj == this) {
-        return true;
-      }
-      if (!(obj instanceof Message)) {
-        return false;
+    /**
+     * Links a new entry to its bucket, unless it was removed since it was indexed.
+     */
+    void add(Entry entry) {
+      if (!entry.removed) {
+        link(entry);
+        size++;
       }
-      Message other = (Message) obj;
-      return Objects.equals(other.messageId, this.messageId)
-          && Objects.equals(other.deadline, this.deadline);
     }
 
-    @Override
-    public int hashCode() {
-      return Objects.hash(messageId, deadline);
-    }
-
-    @Override
-    public String toString() {
-      return MoreObjects.toStringHelper(this)
-          .add("messageId", messageId)
-          .add("expectedDeadline", deadline)
-          .toString();
+    void clear() {
+      for (int i = 0; i < WHEEL_SIZE; i++) {
+        buckets[i] = Entry.sentinel();
+      }
+      size = 0;
     }
   }
 
@@ -159,86 +213,147 @@ class AckDeadlineRenewer implements AutoCloseable {
     this.executorFactory = options.executorFactory();
     this.executor = executorFactory.get();
     this.clock = options.clock();
-    this.messageQueue = new LinkedList<>();
-    this.messageDeadlines = new HashMap<>();
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe();
+    }
+    this.tickRunnable = new Runnable() {
+      @Override
+      public void run() {
+        renewAckDeadlines();
+      }
+    };
   }
 
-  private void unsetAndScheduleNextRenewal() {
-    synchronized (futureLock) {
-      renewerFuture = null;
-      scheduleNextRenewal();
+  /**
+   * Returns the tick at which the deadline of a message, set at {@code millis} to expire after
+   * {@code deadlineMillis}, must be renewed. Deadlines set during the same tick are renewed
+   * together.
+   */
+  private static long dueTick(long millis, int deadlineMillis) {
+    long renewMillis = millis + deadlineMillis - DEADLINE_SLACK_MILLIS - RENEW_THRESHOLD_MILLIS;
+    return renewMillis / TICK_MILLIS + 1;
+  }
+
+  private Stripe currentStripe() {
+    return stripes[(int) (Thread.currentThread().getId() % STRIPES)];
+  }
+
+  private boolean isEmpty() {
+    for (Stripe stripe : stripes) {
+      if (stripe.size > 0) {
+        return false;
+      }
     }
+    return true;
   }
 
-  private void scheduleNextRenewal() {
-    // Schedules next renewal if there are still messages to process and no renewals scheduled that
-    // could handle them, otherwise does nothing
-    Message nextMessage;
-    synchronized (lock) {
-      Message peek = messageQueue.peek();
-      // We remove from the queue messages that were removed from the ack deadline renewer (and
-      // possibly re-added)
-      while (peek != null && (!messageDeadlines.containsKey(peek.messageId())
-          || messageDeadlines.get(peek.messageId()) > peek.expectedDeadline())) {
-        messageQueue.poll();
-        peek = messageQueue.peek();
+  private SubscriptionState subscriptionState(String subscription) {
+    SubscriptionState state = subscriptions.get(subscription);
+    if (state == null) {
+      state = new SubscriptionState(subscription);
+      SubscriptionState existing = subscriptions.putIfAbsent(subscription, state);
+      if (existing != null) {
+        state = existing;
       }
-      nextMessage = peek;
     }
+    return state;
+  }
+
+  private static void unlink(Entry entry) {
+    Stripe stripe = entry.stripe;
+    synchronized (stripe) {
+      entry.removed = true;
+      if (entry.unlink()) {
+        stripe.size--;
+      }
+    }
+  }
+
+  /**
+   * Indexes an entry, before it's linked to its bucket. If the entry is removed before being
+   * linked, {@link #unlink(Entry)} marks it as removed and {@link Stripe#add(Entry)} does not link
+   * it.
+   */
+  private static void index(Entry entry) {
+    Entry previous = entry.subscription.entries.put(entry.ackId, entry);
+    if (previous != null) {
+      // the message was pulled again, its deadline is now renewed according to the new entry
+      unlink(previous);
+    }
+  }
+
+  private void startTicking() {
+    if (!ticking.get() && ticking.compareAndSet(false, true)) {
+      scheduleNextTick();
+    }
+  }
+
+  private void scheduleNextTick() {
     synchronized (futureLock) {
-      if (renewerFuture == null && nextMessage != null) {
-        long delay =
-            (nextMessage.expectedDeadline() - clock.millis()) - NEXT_RENEWAL_THRESHOLD_MILLIS;
-        renewerFuture = executor.schedule(new Runnable() {
-          @Override
-          public void run() {
-            renewAckDeadlines();
-          }
-        }, delay, TimeUnit.MILLISECONDS);
+      if (closed) {
+        return;
       }
+      long now = clock.millis();
+      scheduledTick = now / TICK_MILLIS + 1;
+      renewerFuture = executor.schedule(tickRunnable, scheduledTick * TICK_MILLIS - now,
+          TimeUnit.MILLISECONDS);
     }
   }
 
   private void renewAckDeadlines() {
-    ListMultimap<String, String> messagesToRenewNext = LinkedListMultimap.create();
-    // At every activation we renew all ack deadlines that will expire in the following
-    // RENEW_THRESHOLD_MILLIS
-    long threshold = clock.millis() + RENEW_THRESHOLD_MILLIS;
-    Message message;
-    while ((message = nextMessageToRenew(threshold)) != null) {
-      // If the expected deadline is null the message was removed and we must ignore it, otherwise
-      // we renew its ack deadline
-      if (message.expectedDeadline() != null) {
-        messagesToRenewNext.put(message.messageId().subscription(), message.messageId().ackId());
+    long now;
+    synchronized (futureLock) {
+      // the executor's timer and the clock might disagree, the task must not run before its tick
+      now = Math.max(clock.millis(), scheduledTick * TICK_MILLIS);
+    }
+    long currentTick = now / TICK_MILLIS;
+    Map<SubscriptionState, Renewal> renewals = new LinkedHashMap<>();
+    // If ticks were missed, all buckets are visited once. Ticks are never negative, and neither
+    // are bucket indexes.
+    long firstTick = Math.max(lastTick + 1, Math.max(0, currentTick - WHEEL_SIZE + 1));
+    for (long tick = firstTick; tick <= currentTick; tick++) {
+      int bucket = (int) (tick % WHEEL_SIZE);
+      for (Stripe stripe : stripes) {
+        synchronized (stripe) {
+          Entry sentinel = stripe.buckets[bucket];
+          if (sentinel.isEmpty()) {
+            continue;
+          }
+          // Entries are moved to a new bucket, that could be the same one
+          stripe.buckets[bucket] = Entry.sentinel();
+          Entry entry = sentinel.next;
+          while (entry != sentinel) {
+            Entry next = entry.next;
+            if (entry.dueTick <= currentTick) {
+              Renewal renewal = renewals.get(entry.subscription);
+              if (renewal == null) {
+                int deadlineMillis = entry.subscription.deadlineMillis();
+                renewal = new Renewal(deadlineMillis, dueTick(now, deadlineMillis));
+                renewals.put(entry.subscription, renewal);
+              }
+              renewal.ackIds.add(entry.ackId);
+              entry.dueTick = renewal.nextDueTick;
+            }
+            stripe.link(entry);
+            entry = next;
+          }
+        }
       }
     }
-    for (Map.Entry<String, List<String>> entry : Multimaps.asMap(messagesToRenewNext).entrySet()) {
+    lastTick = currentTick;
+    for (Map.Entry<SubscriptionState, Renewal> entry : renewals.entrySet()) {
       // We send all ack deadline renewals for a subscription
-      pubsub.modifyAckDeadlineAsync(entry.getKey(), MIN_DEADLINE_MILLIS, TimeUnit.MILLISECONDS,
-          entry.getValue());
+      Renewal renewal = entry.getValue();
+      pubsub.modifyAckDeadlineAsync(entry.getKey().name, renewal.deadlineMillis,
+          TimeUnit.MILLISECONDS, renewal.ackIds);
     }
-    unsetAndScheduleNextRenewal();
-  }
-
-  private Message nextMessageToRenew(long threshold) {
-    synchronized (lock) {
-      Message message = messageQueue.peek();
-      // if the queue is empty or the next expected deadline is after threshold we stop
-      if (message == null || message.expectedDeadline() > threshold) {
-        return null;
-      }
-      MessageId messageId = messageQueue.poll().messageId();
-      // Check if the next expected deadline changed. This can happen if the message was removed
-      // from the ack deadline renewer or if it was nacked and then pulled again
-      Long deadline = messageDeadlines.get(messageId);
-      if (deadline == null || deadline > threshold) {
-        // the message was removed (deadline == null) or removed and then added back
-        // (deadline > threshold), we should not renew its deadline (yet)
-        return new Message(messageId, null);
-      } else {
-        // Message deadline must be renewed, we must submit it again to the renewer
-        add(messageId.subscription(), messageId.ackId());
-        return new Message(messageId, deadline);
+    if (!isEmpty()) {
+      scheduleNextTick();
+    } else {
+      ticking.set(false);
+      // messages might have been added after the check
+      if (!isEmpty()) {
+        startTicking();
       }
     }
   }
@@ -253,13 +368,15 @@ class AckDeadlineRenewer implements AutoCloseable {
    * @param ackId the message's acknowledge id
    */
   void add(String subscription, String ackId) {
-    synchronized (lock) {
-      long deadline = clock.millis() + MIN_DEADLINE_MILLIS - DEADLINE_SLACK_MILLIS;
-      Message message = new Message(new MessageId(subscription, ackId), deadline);
-      messageQueue.add(message);
-      messageDeadlines.put(message.messageId(), deadline);
+    Stripe stripe = currentStripe();
+    // Pulled messages get the subscription's deadline, that is at least MIN_DEADLINE_MILLIS
+    Entry entry = new Entry(subscriptionState(subscription), ackId, stripe,
+        dueTick(clock.millis(), MIN_DEADLINE_MILLIS));
+    index(entry);
+    synchronized (stripe) {
+      stripe.add(entry);
     }
-    scheduleNextRenewal();
+    startTicking();
   }
 
   /**
@@ -272,15 +389,21 @@ class AckDeadlineRenewer implements AutoCloseable {
    * @param ackIds the acknowledge ids of the messages
    */
   void add(String subscription, Iterable<String> ackIds) {
-    synchronized (lock) {
-      long deadline = clock.millis() + MIN_DEADLINE_MILLIS - DEADLINE_SLACK_MILLIS;
-      for (String ackId : ackIds) {
-        Message message = new Message(new MessageId(subscription, ackId), deadline);
-        messageQueue.add(message);
-        messageDeadlines.put(message.messageId(), deadline);
+    Stripe stripe = currentStripe();
+    SubscriptionState state = subscriptionState(subscription);
+    long dueTick = dueTick(clock.millis(), MIN_DEADLINE_MILLIS);
+    List<Entry> added = new ArrayList<>();
+    for (String ackId : ackIds) {
+      Entry entry = new Entry(state, ackId, stripe, dueTick);
+      index(entry);
+      added.add(entry);
+    }
+    synchronized (stripe) {
+      for (Entry entry : added) {
+        stripe.add(entry);
       }
     }
-    scheduleNextRenewal();
+    startTicking();
   }
 
   /**
@@ -292,26 +415,45 @@ class AckDeadlineRenewer implements AutoCloseable {
    * @param ackId the message's acknowledge id
    */
   void remove(String subscription, String ackId) {
-    synchronized (lock) {
-      messageDeadlines.remove(new MessageId(subscription, ackId));
+    SubscriptionState state = subscriptions.get(subscription);
+    if (state != null) {
+      Entry entry = state.entries.remove(ackId);
+      if (entry != null) {
+        unlink(entry);
+      }
     }
   }
 
+  /**
+   * Records the time taken to process a message pulled from a subscription. The acknowledge
+   * deadlines of the subscription's messages are extended to cover most processing times.
+   *
+   * @param subscription the subscription from which the message has been pulled
+   * @param millis the time taken to process the message, in milliseconds
+   */
+  void recordProcessingTime(String subscription, long millis) {
+    long seconds = TimeUnit.MILLISECONDS.toSeconds(millis + 999);
+    subscriptionState(subscription).processingSeconds.record(
+        (int) Math.min(seconds, MAX_DEADLINE_SECONDS));
+  }
+
   @Override
   public void close() throws Exception {
     if (closed) {
       return;
     }
-    closed = true;
-    synchronized (lock) {
-      messageDeadlines.clear();
-      messageQueue.clear();
-    }
     synchronized (futureLock) {
+      closed = true;
       if (renewerFuture != null) {
         renewerFuture.cancel(true);
       }
     }
+    subscriptions.clear();
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.clear();
+      }
+    }
     executorFactory.release(executor);
   }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.pubsub;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A histogram of non-negative integer values, up to a maximum value. Larger values are recorded as
+ * the maximum value. Values can be recorded concurrently.
+ *
+ * <p>The histogram only reflects recent values: values are recorded in a window that is replaced
+ * once it holds {@code windowSize} values, and percentiles are computed over the current window
+ * and the previous one, that is over the last {@code windowSize} values at least, and less than
+ * {@code 2 * windowSize} values.
+ */
+final class Distribution {
+
+  static final int DEFAULT_WINDOW_SIZE = 1000;
+
+  private final int maxValue;
+  private final int windowSize;
+  private volatile Window current;
+  private volatile Window previous;
+
+  /**
+   * The values recorded since a window was started.
+   */
+  private static final class Window {
+
+    private final AtomicIntegerArray buckets;
+    private final AtomicLong count = new AtomicLong();
+
+    Window(int maxValue) {
+      buckets = new AtomicIntegerArray(maxValue + 1);
+    }
+
+    /**
+     * Records a value, returning the number of values in the window.
+     */
+    long record(int value) {
+      buckets.incrementAndGet(value);
+      return count.incrementAndGet();
+    }
+  }
+
+  Distribution(int maxValue) {
+    this(maxValue, DEFAULT_WINDOW_SIZE);
+  }
+
+  Distribution(int maxValue, int windowSize) {
+    checkArgument(maxValue > 0, "maxValue must be positive: %s", maxValue);
+    checkArgument(windowSize > 0, "windowSize must be positive: %s", windowSize);
+    this.maxValue = maxValue;
+    this.windowSize = windowSize;
+    this.current = new Window(maxValue);
+    this.previous = new Window(maxValue);
+  }
+
+  /**
+   * Records a value. Negative values are recorded as 0.
+   */
+  void record(int value) {
+    Window window = current;
+    if (window.record(Math.max(0, Math.min(value, maxValue))) == windowSize) {
+      // only the thread that filled the window replaces it
+      synchronized (this) {
+        previous = window;
+        current = new Window(maxValue);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of values the percentiles are computed from.
+   */
+  long count() {
+    synchronized (this) {
+      return previous.count.get() + current.count.get();
+    }
+  }
+
+  /**
+   * Returns the smallest value such that at least {@code percentile} percent of the recent values
+   * are lower or equal to it, or 0 if no value was recorded.
+   *
+   * @throws IllegalArgumentException if {@code percentile} is not in the (0, 100] range
+   */
+  int percentile(double percentile) {
+    checkArgument(percentile > 0 && percentile <= 100, "percentile must be in (0, 100]: %s",
+        percentile);
+    Window previous;
+    Window current;
+    synchronized (this) {
+      previous = this.previous;
+      current = this.current;
+    }
+    long target =
+        (long) Math.ceil((previous.count.get() + current.count.get()) * percentile / 100);
+    long seen = 0;
+    for (int value = 0; value < maxValue; value++) {
+      seen += previous.buckets.get(value) + current.buckets.get(value);
+      if (seen >= target) {
+        return value;
+      }
+    }
+    return maxValue;
+  }
+}
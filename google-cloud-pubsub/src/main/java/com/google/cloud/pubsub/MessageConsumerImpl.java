@@ -18,6 +18,7 @@ package com.google.cloud.pubsub;
 
 import static com.google.cloud.pubsub.spi.v1.SubscriberApi.formatSubscriptionName;
 import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.cloud.GrpcServiceOptions.ExecutorFactory;
 import com.google.cloud.pubsub.PubSub.MessageConsumer;
@@ -30,12 +31,16 @@ import com.google.pubsub.v1.PullResponse;
 
 import io.grpc.internal.SharedResourceHolder;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Default implementation for a message consumer.
@@ -43,16 +48,20 @@ import java.util.concurrent.atomic.AtomicInteger;
 final class MessageConsumerImpl implements MessageConsumer {
 
   private static final int MAX_QUEUED_CALLBACKS = 100;
-  // shared scheduled executor, used to schedule pulls
-  private static final SharedResourceHolder.Resource<ExecutorService> CONSUMER_EXECUTOR =
-      new SharedResourceHolder.Resource<ExecutorService>() {
+  private static final long MAX_QUEUED_BYTES = 100L * 1024L * 1024L;
+  private static final int PARALLEL_PULL_COUNT = 1;
+  private static final int MAX_ACK_BATCH_SIZE = 1000;
+  private static final long ACK_BATCH_DELAY_MILLIS = 100;
+  // shared scheduled executor, used to schedule pulls and to flush acks and nacks
+  private static final SharedResourceHolder.Resource<ScheduledExecutorService> CONSUMER_EXECUTOR =
+      new SharedResourceHolder.Resource<ScheduledExecutorService>() {
         @Override
-        public ExecutorService create() {
-          return Executors.newSingleThreadExecutor();
+        public ScheduledExecutorService create() {
+          return Executors.newSingleThreadScheduledExecutor();
         }
 
         @Override
-        public void close(ExecutorService instance) {
+        public void close(ScheduledExecutorService instance) {
           instance.shutdown();
         }
       };
@@ -63,17 +72,26 @@ final class MessageConsumerImpl implements MessageConsumer {
   private final AckDeadlineRenewer deadlineRenewer;
   private final String subscription;
   private final MessageProcessor messageProcessor;
-  private final ExecutorService consumerExecutor;
+  private final ScheduledExecutorService consumerExecutor;
   private final ExecutorFactory<ExecutorService> executorFactory;
   private final ExecutorService executor;
   private final AtomicInteger queuedCallbacks;
   private final int maxQueuedCallbacks;
+  private final AtomicLong queuedBytes;
+  private final long maxQueuedBytes;
+  private final int maxPullMessages;
   private final Object futureLock = new Object();
-  private final Runnable consumerRunnable;
+  private final List<ConsumerRunnable> pullers;
   private final NextPullPolicy pullPolicy;
+  private final int maxAckBatchSize;
+  private final long ackBatchDelayMillis;
+  private final Object ackLock = new Object();
+  private final Runnable ackFlushRunnable;
   private boolean closed;
-  private Future<?> scheduledFuture;
-  private PullFuture pullerFuture;
+  private boolean acksClosed;
+  private List<String> pendingAcks = new ArrayList<>();
+  private List<String> pendingNacks = new ArrayList<>();
+  private Future<?> ackFlushFuture;
 
   /**
    * Interface for policies according to which the consumer should pull messages.
@@ -122,55 +140,98 @@ final class MessageConsumerImpl implements MessageConsumer {
     }
   }
 
+  /**
+   * Pulls messages with one request at a time. Before sending a request, a puller reserves in
+   * {@code queuedCallbacks} the number of messages it asks for, so that concurrent pulls never
+   * return more than {@code maxQueuedCallbacks} messages. The part of the reservation not used by
+   * the response is then released.
+   */
   class ConsumerRunnable implements Runnable {
 
+    // guarded by futureLock
+    private Future<?> scheduledFuture;
+    private PullFuture pullerFuture;
+
     @Override
     public void run() {
-      if (closed) {
+      synchronized (futureLock) {
+        if (closed) {
+          return;
+        }
+      }
+      // Pullers run on a single thread, other threads can only decrease queuedCallbacks
+      final int maxMessages =
+          Math.min(maxQueuedCallbacks - queuedCallbacks.get(), maxPullMessages);
+      if (maxMessages <= 0) {
+        stopPulling();
+        pullIfNeeded();
         return;
       }
-      pullerFuture = pubsubRpc.pull(createPullRequest());
-      pullerFuture.addCallback(new PullCallback() {
+      queuedCallbacks.addAndGet(maxMessages);
+      PullFuture future = pubsubRpc.pull(createPullRequest(maxMessages));
+      synchronized (futureLock) {
+        pullerFuture = future;
+        if (closed) {
+          future.cancel(true);
+        }
+      }
+      future.addCallback(new PullCallback() {
         @Override
         public void success(PullResponse response) {
           List<com.google.pubsub.v1.ReceivedMessage> messages = response.getReceivedMessagesList();
-          queuedCallbacks.addAndGet(messages.size());
+          queuedCallbacks.addAndGet(messages.size() - maxMessages);
           for (com.google.pubsub.v1.ReceivedMessage message : messages) {
+            int size = message.getMessage().getSerializedSize();
+            queuedBytes.addAndGet(size);
             deadlineRenewer.add(subscription, message.getAckId());
             ReceivedMessage receivedMessage = ReceivedMessage.fromPb(pubsub, subscription, message);
-            executor.execute(ackingRunnable(receivedMessage));
+            executor.execute(ackingRunnable(receivedMessage, size));
           }
-          nextPull();
+          nextPull(ConsumerRunnable.this);
         }
 
         @Override
         public void failure(Throwable error) {
+          queuedCallbacks.addAndGet(-maxMessages);
           if (!(error instanceof CancellationException)) {
-            nextPull();
+            nextPull(ConsumerRunnable.this);
           }
         }
       });
     }
 
-    private PullRequest createPullRequest() {
+    private void stopPulling() {
+      synchronized (futureLock) {
+        scheduledFuture = null;
+      }
+    }
+
+    private PullRequest createPullRequest(int maxMessages) {
       return PullRequest.newBuilder()
           .setSubscription(formatSubscriptionName(pubsubOptions.projectId(), subscription))
-          .setMaxMessages(maxQueuedCallbacks - queuedCallbacks.get())
+          .setMaxMessages(maxMessages)
           .setReturnImmediately(false)
           .build();
     }
 
-    private Runnable ackingRunnable(final ReceivedMessage receivedMessage) {
+    private Runnable ackingRunnable(final ReceivedMessage receivedMessage, final int size) {
       return new Runnable() {
         @Override
         public void run() {
+          boolean processed = false;
+          long startNanos = System.nanoTime();
           try {
             messageProcessor.process(receivedMessage);
-            pubsub.ackAsync(receivedMessage.subscription(), receivedMessage.ackId());
+            processed = true;
           } catch (Exception ex) {
-            pubsub.nackAsync(receivedMessage.subscription(), receivedMessage.ackId());
+            // the message is nacked
           } finally {
+            deadlineRenewer.recordProcessingTime(receivedMessage.subscription(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            // The deadline is no longer renewed once the ack or nack has been handed to the batch.
+            addAckId(receivedMessage.ackId(), processed);
             deadlineRenewer.remove(receivedMessage.subscription(), receivedMessage.ackId());
+            queuedBytes.addAndGet(-size);
             queuedCallbacks.decrementAndGet();
             // We can now pull more messages, according to the next pull policy.
             pullIfNeeded();
@@ -181,6 +242,11 @@ final class MessageConsumerImpl implements MessageConsumer {
   }
 
   private MessageConsumerImpl(Builder builder) {
+    this.maxQueuedBytes = firstNonNull(builder.maxQueuedBytes, MAX_QUEUED_BYTES);
+    int parallelPullCount = firstNonNull(builder.parallelPullCount, PARALLEL_PULL_COUNT);
+    checkArgument(maxQueuedBytes > 0, "maxQueuedBytes must be positive: %s", maxQueuedBytes);
+    checkArgument(parallelPullCount > 0, "parallelPullCount must be positive: %s",
+        parallelPullCount);
     this.pubsubOptions = builder.pubsubOptions;
     this.subscription = builder.subscription;
     this.messageProcessor = builder.messageProcessor;
@@ -193,29 +259,119 @@ final class MessageConsumerImpl implements MessageConsumer {
         builder.executorFactory != null ? builder.executorFactory : new DefaultExecutorFactory();
     this.executor = executorFactory.get();
     this.maxQueuedCallbacks = firstNonNull(builder.maxQueuedCallbacks, MAX_QUEUED_CALLBACKS);
-    this.consumerRunnable = new ConsumerRunnable();
+    this.queuedBytes = new AtomicLong();
+    // Each puller asks for at most a share of the maximum queued messages
+    this.maxPullMessages = Math.max(1, maxQueuedCallbacks / parallelPullCount);
+    this.pullers = new ArrayList<>(parallelPullCount);
+    for (int i = 0; i < parallelPullCount; i++) {
+      pullers.add(new ConsumerRunnable());
+    }
     int nextPullThreshold = builder.nextPullThreshold != null ? builder.nextPullThreshold
         : this.maxQueuedCallbacks / 2;
     this.pullPolicy = new DefaultNextPullPolicy(maxQueuedCallbacks, nextPullThreshold);
-    nextPull();
+    this.maxAckBatchSize = firstNonNull(builder.maxAckBatchSize, MAX_ACK_BATCH_SIZE);
+    this.ackBatchDelayMillis = firstNonNull(builder.ackBatchDelayMillis, ACK_BATCH_DELAY_MILLIS);
+    this.ackFlushRunnable = new Runnable() {
+      @Override
+      public void run() {
+        flushAcks(false);
+      }
+    };
+    synchronized (futureLock) {
+      for (ConsumerRunnable puller : pullers) {
+        puller.scheduledFuture = consumerExecutor.submit(puller);
+      }
+    }
   }
 
+  /**
+   * Adds an ack id to the pending acks, if {@code ack} is {@code true}, or to the pending nacks
+   * otherwise. Pending ids are sent when {@code maxAckBatchSize} of them are pending, when the
+   * oldest of them has been pending for {@code ackBatchDelayMillis} or when the consumer is
+   * closed.
+   */
+  private void addAckId(String ackId, boolean ack) {
+    List<String> acks = null;
+    List<String> nacks = null;
+    synchronized (ackLock) {
+      List<String> pending = ack ? pendingAcks : pendingNacks;
+      pending.add(ackId);
+      if (acksClosed || pending.size() >= maxAckBatchSize) {
+        if (ack) {
+          acks = pendingAcks;
+          pendingAcks = new ArrayList<>();
+        } else {
+          nacks = pendingNacks;
+          pendingNacks = new ArrayList<>();
+        }
+      } else if (ackFlushFuture == null) {
+        ackFlushFuture =
+            consumerExecutor.schedule(ackFlushRunnable, ackBatchDelayMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+    sendAckIds(acks, nacks);
+  }
+
+  /**
+   * Sends all pending acks and nacks. If {@code close} is {@code true}, ids added afterwards are
+   * sent right away.
+   */
+  private void flushAcks(boolean close) {
+    List<String> acks;
+    List<String> nacks;
+    synchronized (ackLock) {
+      if (close) {
+        acksClosed = true;
+        if (ackFlushFuture != null) {
+          ackFlushFuture.cancel(false);
+        }
+      }
+      ackFlushFuture = null;
+      acks = pendingAcks;
+      nacks = pendingNacks;
+      pendingAcks = new ArrayList<>();
+      pendingNacks = new ArrayList<>();
+    }
+    sendAckIds(acks, nacks);
+  }
+
+  private void sendAckIds(List<String> acks, List<String> nacks) {
+    if (acks != null && !acks.isEmpty()) {
+      pubsub.ackAsync(subscription, acks);
+    }
+    if (nacks != null && !nacks.isEmpty()) {
+      pubsub.nackAsync(subscription, nacks);
+    }
+  }
+
+  private boolean queueFull() {
+    return queuedCallbacks.get() >= maxQueuedCallbacks || queuedBytes.get() >= maxQueuedBytes;
+  }
+
+  /**
+   * Restarts a stopped puller, if the queue is not full and the next pull policy allows it.
+   */
   private void pullIfNeeded() {
     synchronized (futureLock) {
-      if (closed || scheduledFuture != null || !pullPolicy.shouldPull(queuedCallbacks.get())) {
+      if (closed || queueFull() || !pullPolicy.shouldPull(queuedCallbacks.get())) {
         return;
       }
-      scheduledFuture = consumerExecutor.submit(consumerRunnable);
+      for (ConsumerRunnable puller : pullers) {
+        if (puller.scheduledFuture == null) {
+          puller.scheduledFuture = consumerExecutor.submit(puller);
+          return;
+        }
+      }
     }
   }
 
-  private void nextPull() {
+  private void nextPull(ConsumerRunnable puller) {
     synchronized (futureLock) {
-      if (closed || queuedCallbacks.get() == maxQueuedCallbacks) {
-        scheduledFuture = null;
+      if (closed || queueFull()) {
+        puller.scheduledFuture = null;
         return;
       }
-      scheduledFuture = consumerExecutor.submit(consumerRunnable);
+      puller.scheduledFuture = consumerExecutor.submit(puller);
     }
   }
 
@@ -226,13 +382,16 @@ final class MessageConsumerImpl implements MessageConsumer {
         return;
       }
       closed = true;
-      if (scheduledFuture != null) {
-        scheduledFuture.cancel(true);
-      }
-      if (pullerFuture != null) {
-        pullerFuture.cancel(true);
+      for (ConsumerRunnable puller : pullers) {
+        if (puller.scheduledFuture != null) {
+          puller.scheduledFuture.cancel(true);
+        }
+        if (puller.pullerFuture != null) {
+          puller.pullerFuture.cancel(true);
+        }
       }
     }
+    flushAcks(true);
     SharedResourceHolder.release(CONSUMER_EXECUTOR, consumerExecutor);
     executorFactory.release(executor);
   }
@@ -245,6 +404,10 @@ final class MessageConsumerImpl implements MessageConsumer {
     private Integer maxQueuedCallbacks;
     private ExecutorFactory<ExecutorService> executorFactory;
     private Integer nextPullThreshold;
+    private Long maxQueuedBytes;
+    private Integer parallelPullCount;
+    private Integer maxAckBatchSize;
+    private Long ackBatchDelayMillis;
 
     Builder(PubSubOptions pubsubOptions, String subscription, AckDeadlineRenewer deadlineRenewer,
         MessageProcessor messageProcessor) {
@@ -262,6 +425,23 @@ final class MessageConsumerImpl implements MessageConsumer {
       return this;
     }
 
+    /**
+     * Sets the maximum serialized size of the messages either being processed or waiting for
+     * processing.
+     */
+    Builder maxQueuedBytes(Long maxQueuedBytes) {
+      this.maxQueuedBytes = maxQueuedBytes;
+      return this;
+    }
+
+    /**
+     * Sets the number of pull requests that can be sent at the same time.
+     */
+    Builder parallelPullCount(Integer parallelPullCount) {
+      this.parallelPullCount = parallelPullCount;
+      return this;
+    }
+
     /**
      * Sets the executor factory, used to manage the executor that will run message processor
      * callbacks message consumer.
@@ -281,6 +461,23 @@ final class MessageConsumerImpl implements MessageConsumer {
       return this;
     }
 
+    /**
+     * Sets the maximum number of acks, or nacks, sent in a single request.
+     */
+    Builder maxAckBatchSize(Integer maxAckBatchSize) {
+      this.maxAckBatchSize = maxAckBatchSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum time, in milliseconds, an ack or nack waits for other ones to be sent
+     * with.
+     */
+    Builder ackBatchDelayMillis(Long ackBatchDelayMillis) {
+      this.ackBatchDelayMillis = ackBatchDelayMillis;
+      return this;
+    }
+
     /**
      * Creates a {@code MessageConsumerImpl} object.
      */
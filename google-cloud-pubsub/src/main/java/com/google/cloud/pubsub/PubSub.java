@@ -88,7 +88,9 @@ public interface PubSub extends AutoCloseable, Service<PubSubOptions> {
 
     enum OptionType implements Option.OptionType {
       EXECUTOR_FACTORY,
-      MAX_QUEUED_CALLBACKS;
+      MAX_QUEUED_CALLBACKS,
+      MAX_QUEUED_BYTES,
+      PARALLEL_PULL_COUNT;
 
       @SuppressWarnings("unchecked")
       <T> T get(Map<Option.OptionType, ?> options) {
@@ -99,6 +101,10 @@ public interface PubSub extends AutoCloseable, Service<PubSubOptions> {
         return get(options);
       }
 
+      Long getLong(Map<Option.OptionType, ?> options) {
+        return get(options);
+      }
+
       ExecutorFactory<ExecutorService> getExecutorFactory(Map<Option.OptionType, ?> options) {
         return get(options);
       }
@@ -119,6 +125,29 @@ public interface PubSub extends AutoCloseable, Service<PubSubOptions> {
       return new PullOption(OptionType.MAX_QUEUED_CALLBACKS, maxQueuedCallbacks);
     }
 
+    /**
+     * Returns an option to specify the maximum serialized size, in bytes, of the messages that can
+     * be queued in the message consumer at any time. The consumer stops pulling when it's
+     * reached, and starts again once enough queued messages are processed. As the number of
+     * messages returned by a pull is not bounded by their size, this limit can be exceeded by the
+     * messages returned by the pulls in progress. If not provided, at most 100 MiB of messages can
+     * be in the queue. The value must be positive.
+     */
+    public static PullOption maxQueuedBytes(long maxQueuedBytes) {
+      return new PullOption(OptionType.MAX_QUEUED_BYTES, maxQueuedBytes);
+    }
+
+    /**
+     * Returns an option to specify the number of pull requests that the message consumer can send
+     * at the same time. Each of them asks for at most a share of
+     * {@link #maxQueuedCallbacks(int)} messages. Several concurrent pulls help keep many
+     * processing threads busy. If not provided, a single pull request is sent at a time. The value
+     * must be positive.
+     */
+    public static PullOption parallelPullCount(int parallelPullCount) {
+      return new PullOption(OptionType.PARALLEL_PULL_COUNT, parallelPullCount);
+    }
+
     /**
      * Returns an option to specify the executor used to execute message processor callbacks. The
      * executor determines the number of messages that can be processed at the same time. If not
@@ -139,6 +168,115 @@ public interface PubSub extends AutoCloseable, Service<PubSubOptions> {
     }
   }
 
+  /**
+   * Class for specifying options for publishing messages with a {@link Publisher}.
+   */
+  final class PublishOption extends Option {
+
+    private static final long serialVersionUID = -4471863187612624322L;
+
+    /**
+     * What a publisher does when publishing a message would exceed its maximum number of
+     * outstanding bytes.
+     */
+    public enum FlowControlBehavior {
+      /**
+       * {@link Publisher#publish(Message)} blocks until enough outstanding messages are published.
+       */
+      BLOCK,
+
+      /**
+       * The {@code Future} returned by {@link Publisher#publish(Message)} fails with a
+       * {@link java.util.concurrent.RejectedExecutionException}.
+       */
+      FAIL
+    }
+
+    enum OptionType implements Option.OptionType {
+      MAX_BATCH_MESSAGES,
+      MAX_BATCH_BYTES,
+      MAX_BATCH_DELAY_MILLIS,
+      MAX_OUTSTANDING_REQUESTS,
+      MAX_OUTSTANDING_BYTES,
+      FLOW_CONTROL_BEHAVIOR;
+
+      @SuppressWarnings("unchecked")
+      <T> T get(Map<Option.OptionType, ?> options) {
+        return (T) options.get(this);
+      }
+
+      Integer getInteger(Map<Option.OptionType, ?> options) {
+        return get(options);
+      }
+
+      Long getLong(Map<Option.OptionType, ?> options) {
+        return get(options);
+      }
+
+      FlowControlBehavior getFlowControlBehavior(Map<Option.OptionType, ?> options) {
+        return get(options);
+      }
+    }
+
+    private PublishOption(Option.OptionType option, Object value) {
+      super(option, value);
+    }
+
+    /**
+     * Returns an option to specify the maximum number of messages sent in a single publish
+     * request. If not provided, at most 100 messages are sent per request.
+     */
+    public static PublishOption maxBatchMessages(int maxBatchMessages) {
+      return new PublishOption(OptionType.MAX_BATCH_MESSAGES, maxBatchMessages);
+    }
+
+    /**
+     * Returns an option to specify the maximum serialized size, in bytes, of the messages sent in
+     * a single publish request. A message larger than this limit is sent on its own. If not
+     * provided, at most 1 MiB of messages are sent per request.
+     */
+    public static PublishOption maxBatchBytes(long maxBatchBytes) {
+      return new PublishOption(OptionType.MAX_BATCH_BYTES, maxBatchBytes);
+    }
+
+    /**
+     * Returns an option to specify how long a message can wait for more messages to be published
+     * in the same request. If not provided, messages wait at most 10 milliseconds.
+     */
+    public static PublishOption maxBatchDelay(long maxBatchDelay, TimeUnit unit) {
+      return new PublishOption(OptionType.MAX_BATCH_DELAY_MILLIS, unit.toMillis(maxBatchDelay));
+    }
+
+    /**
+     * Returns an option to specify the maximum number of publish requests sent at the same time.
+     * Further batches are sent once a request completes. If not provided, at most 10 requests are
+     * sent at the same time.
+     */
+    public static PublishOption maxOutstandingRequests(int maxOutstandingRequests) {
+      return new PublishOption(OptionType.MAX_OUTSTANDING_REQUESTS, maxOutstandingRequests);
+    }
+
+    /**
+     * Returns an option to specify the maximum serialized size, in bytes, of the messages that are
+     * published but not yet sent or acknowledged by the service. When it's reached, the publisher
+     * applies its {@link #flowControlBehavior(FlowControlBehavior)}. A message larger than this
+     * limit is accepted when no other message is outstanding. If not provided, at most 100 MiB of
+     * messages can be outstanding.
+     */
+    public static PublishOption maxOutstandingBytes(long maxOutstandingBytes) {
+      return new PublishOption(OptionType.MAX_OUTSTANDING_BYTES, maxOutstandingBytes);
+    }
+
+    /**
+     * Returns an option to specify what the publisher does when publishing a message would exceed
+     * {@link #maxOutstandingBytes(long)}. If not provided, {@link FlowControlBehavior#BLOCK} is
+     * used.
+     */
+    public static PublishOption flowControlBehavior(FlowControlBehavior behavior) {
+      return new PublishOption(OptionType.FLOW_CONTROL_BEHAVIOR, behavior);
+    }
+  }
+
   /**
    * A callback to process pulled messages. The received message will be ack'ed upon successful
    * return or nack'ed if exception is thrown.
@@ -164,6 +302,37 @@ public interface PubSub extends AutoCloseable, Service<PubSubOptions> {
     void close() throws Exception;
   }
 
+  /**
+   * An interface to publish messages to a topic in batches. Messages are accumulated and sent in
+   * a single request when enough of them are published, or after a maximum delay.
+   *
+   * @see #publisher(String, PublishOption...)
+   */
+  interface Publisher extends AutoCloseable {
+
+    /**
+     * Adds a message to the next batch sent to the topic. This method returns a {@code Future}
+     * object to consume the result. {@link Future#get()} returns the service-generated id for the
+     * published message.
+     *
+     * @throws IllegalStateException if the publisher is closed
+     */
+    Future<String> publish(Message message);
+
+    /**
+     * Sends the messages published so far, without waiting for the batch to fill up or for its
+     * maximum delay.
+     */
+    void flush();
+
+    /**
+     * Sends the messages published so far and waits for all requests to complete, then frees all
+     * resources. Messages can no longer be published.
+     */
+    @Override
+    void close() throws Exception;
+  }
+
   /**
    * Creates a new topic.
    *
@@ -441,6 +610,33 @@ public interface PubSub extends AutoCloseable, Service<PubSubOptions> {
    */
   Future<List<String>> publishAsync(String topic, Iterable<Message> messages);
 
+  /**
+   * Creates a publisher that accumulates messages and publishes them to the provided topic in
+   * batches. A batch is sent when it holds {@link PublishOption#maxBatchMessages(int)} messages or
+   * {@link PublishOption#maxBatchBytes(long)} bytes, or
+   * {@link PublishOption#maxBatchDelay(long, TimeUnit)} after its first message was published.
+   * At most {@link PublishOption#maxOutstandingRequests(int)} requests are sent at the same time,
+   * and {@link PublishOption#maxOutstandingBytes(long)} limits the size of the messages waiting
+   * to be published. Each message's {@code Future} completes with its own id.
+   *
+   * <p>Example of publishing messages in batches.
+   * <pre> {@code
+   * String topicName = "my_topic_name";
+   * PubSub.Publisher publisher = pubsub.publisher(topicName,
+   *     PublishOption.maxBatchDelay(50, TimeUnit.MILLISECONDS));
+   * Future<String> future = publisher.publish(Message.of("payload"));
+   * // ...
+   * String messageId = future.get();
+   * // Send the remaining messages and stop publishing
+   * publisher.close();
+   * }</pre>
+   *
+   * @param topic the topic where messages are published
+   * @param options publishing options
+   * @return a publisher for the provided topic and options
+   */
+  Publisher publisher(String topic, PublishOption... options);
+
   /**
    * Creates a new subscription.
    *
@@ -763,9 +959,11 @@ public interface PubSub extends AutoCloseable, Service<PubSubOptions> {
    * acknowledged or "nacked".
    *
    * <p>The {@link PullOption#maxQueuedCallbacks(int)} option can be used to control the maximum
-   * number of queued messages (messages either being processed or waiting to be processed). The
-   * {@link PullOption#executorFactory(ExecutorFactory)} can be used to provide an executor to run
-   * message processor callbacks.
+   * number of queued messages (messages either being processed or waiting to be processed), and
+   * {@link PullOption#maxQueuedBytes(long)} their maximum size. The
+   * {@link PullOption#parallelPullCount(int)} option can be used to pull messages with several
+   * concurrent requests. The {@link PullOption#executorFactory(ExecutorFactory)} can be used to
+   * provide an executor to run message processor callbacks.
    *
    * <p>Example of continuously pulling messages from a subscription.
    * <pre> {@code
@@ -18,8 +18,16 @@ package com.google.cloud.pubsub;
 
 import static com.google.cloud.pubsub.PubSub.ListOption.OptionType.PAGE_SIZE;
 import static com.google.cloud.pubsub.PubSub.ListOption.OptionType.PAGE_TOKEN;
+import static com.google.cloud.pubsub.PubSub.PublishOption.OptionType.FLOW_CONTROL_BEHAVIOR;
+import static com.google.cloud.pubsub.PubSub.PublishOption.OptionType.MAX_BATCH_BYTES;
+import static com.google.cloud.pubsub.PubSub.PublishOption.OptionType.MAX_BATCH_DELAY_MILLIS;
+import static com.google.cloud.pubsub.PubSub.PublishOption.OptionType.MAX_BATCH_MESSAGES;
+import static com.google.cloud.pubsub.PubSub.PublishOption.OptionType.MAX_OUTSTANDING_BYTES;
+import static com.google.cloud.pubsub.PubSub.PublishOption.OptionType.MAX_OUTSTANDING_REQUESTS;
 import static com.google.cloud.pubsub.PubSub.PullOption.OptionType.EXECUTOR_FACTORY;
+import static com.google.cloud.pubsub.PubSub.PullOption.OptionType.MAX_QUEUED_BYTES;
 import static com.google.cloud.pubsub.PubSub.PullOption.OptionType.MAX_QUEUED_CALLBACKS;
+import static com.google.cloud.pubsub.PubSub.PullOption.OptionType.PARALLEL_PULL_COUNT;
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -340,6 +348,19 @@ class PubSubImpl extends BaseService<PubSubOptions> implements PubSub {
         });
   }
 
+  @Override
+  public Publisher publisher(String topic, PublishOption... options) {
+    Map<Option.OptionType, ?> optionMap = optionMap(options);
+    return PublisherImpl.builder(options(), topic)
+        .maxBatchMessages(MAX_BATCH_MESSAGES.getInteger(optionMap))
+        .maxBatchBytes(MAX_BATCH_BYTES.getLong(optionMap))
+        .maxBatchDelayMillis(MAX_BATCH_DELAY_MILLIS.getLong(optionMap))
+        .maxOutstandingRequests(MAX_OUTSTANDING_REQUESTS.getInteger(optionMap))
+        .maxOutstandingBytes(MAX_OUTSTANDING_BYTES.getLong(optionMap))
+        .flowControlBehavior(FLOW_CONTROL_BEHAVIOR.getFlowControlBehavior(optionMap))
+        .build();
+  }
+
   @Override
   public Subscription create(SubscriptionInfo subscription) {
     return get(createAsync(subscription));
@@ -538,6 +559,8 @@ class PubSubImpl extends BaseService<PubSubOptions> implements PubSub {
     Map<Option.OptionType, ?> optionMap = optionMap(options);
     return MessageConsumerImpl.builder(options(), subscription, ackDeadlineRenewer, callback)
         .maxQueuedCallbacks(MAX_QUEUED_CALLBACKS.getInteger(optionMap))
+        .maxQueuedBytes(MAX_QUEUED_BYTES.getLong(optionMap))
+        .parallelPullCount(PARALLEL_PULL_COUNT.getInteger(optionMap))
         .executorFactory(EXECUTOR_FACTORY.getExecutorFactory(optionMap))
         .build();
   }
@@ -0,0 +1,388 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.pubsub;
+
+import static com.google.cloud.pubsub.spi.v1.PublisherApi.formatTopicName;
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.cloud.GrpcServiceOptions.ExecutorFactory;
+import com.google.cloud.pubsub.PubSub.PublishOption.FlowControlBehavior;
+import com.google.cloud.pubsub.PubSub.Publisher;
+import com.google.cloud.pubsub.spi.PubSubRpc;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.JdkFutureAdapters;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.pubsub.v1.PublishRequest;
+import com.google.pubsub.v1.PublishResponse;
+import com.google.pubsub.v1.PubsubMessage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default implementation for a publisher. Published messages are added to a batch, that is sent
+ * when it's full or when its first message waited long enough. Batches that can not be sent
+ * because too many requests are outstanding are queued, and sent in order as requests complete.
+ */
+final class PublisherImpl implements Publisher {
+
+  static final int MAX_BATCH_MESSAGES = 100;
+  static final long MAX_BATCH_BYTES = 1024 * 1024;
+  static final long MAX_BATCH_DELAY_MILLIS = 10;
+  static final int MAX_OUTSTANDING_REQUESTS = 10;
+  static final long MAX_OUTSTANDING_BYTES = 100 * 1024 * 1024;
+
+  private final PubSubRpc pubsubRpc;
+  private final String topic;
+  private final ExecutorFactory<ScheduledExecutorService> executorFactory;
+  private final ScheduledExecutorService executor;
+  private final int maxBatchMessages;
+  private final long maxBatchBytes;
+  private final long maxBatchDelayMillis;
+  private final int maxOutstandingRequests;
+  private final long maxOutstandingBytes;
+  private final FlowControlBehavior flowControlBehavior;
+  private final Object lock = new Object();
+  private final Runnable flushRunnable = new Runnable() {
+    @Override
+    public void run() {
+      flush();
+    }
+  };
+  // batches ready to be sent, waiting for an outstanding request to complete
+  private final Deque<Batch> readyBatches = new ArrayDeque<>();
+  private Batch batch;
+  private Future<?> flushFuture;
+  private int outstandingRequests;
+  // size of the messages published and not yet acknowledged by the service
+  private long outstandingBytes;
+  private boolean closed;
+
+  /**
+   * Messages sent in a single publish request, and their futures.
+   */
+  private final class Batch {
+
+    private final PublishRequest.Builder request =
+        PublishRequest.newBuilder().setTopic(topic);
+    private final List<SettableFuture<String>> futures = new ArrayList<>();
+    private long bytes;
+
+    void add(PubsubMessage message, int size, SettableFuture<String> future) {
+      request.addMessages(message);
+      futures.add(future);
+      bytes += size;
+    }
+
+    boolean isFull() {
+      return futures.size() >= maxBatchMessages || bytes >= maxBatchBytes;
+    }
+
+    void complete(PublishResponse response) {
+      List<String> ids = response.getMessageIdsList();
+      if (ids.size() != futures.size()) {
+        fail(new IllegalStateException(String.format(
+            "Published %d messages but received %d ids", futures.size(), ids.size())));
+        return;
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        futures.get(i).set(ids.get(i));
+      }
+    }
+
+    void fail(Throwable error) {
+      for (SettableFuture<String> future : futures) {
+        future.setException(error);
+      }
+    }
+  }
+
+  private PublisherImpl(Builder builder) {
+    this.pubsubRpc = builder.pubsubOptions.rpc();
+    this.topic = formatTopicName(builder.pubsubOptions.projectId(), builder.topic);
+    this.maxBatchMessages = firstNonNull(builder.maxBatchMessages, MAX_BATCH_MESSAGES);
+    this.maxBatchBytes = firstNonNull(builder.maxBatchBytes, MAX_BATCH_BYTES);
+    this.maxBatchDelayMillis = firstNonNull(builder.maxBatchDelayMillis, MAX_BATCH_DELAY_MILLIS);
+    this.maxOutstandingRequests =
+        firstNonNull(builder.maxOutstandingRequests, MAX_OUTSTANDING_REQUESTS);
+    this.maxOutstandingBytes = firstNonNull(builder.maxOutstandingBytes, MAX_OUTSTANDING_BYTES);
+    this.flowControlBehavior =
+        firstNonNull(builder.flowControlBehavior, FlowControlBehavior.BLOCK);
+    checkArgument(maxBatchMessages > 0, "maxBatchMessages must be positive: %s",
+        maxBatchMessages);
+    checkArgument(maxBatchBytes > 0, "maxBatchBytes must be positive: %s", maxBatchBytes);
+    checkArgument(maxBatchDelayMillis >= 0, "maxBatchDelay must not be negative: %s",
+        maxBatchDelayMillis);
+    checkArgument(maxOutstandingRequests > 0, "maxOutstandingRequests must be positive: %s",
+        maxOutstandingRequests);
+    checkArgument(maxOutstandingBytes > 0, "maxOutstandingBytes must be positive: %s",
+        maxOutstandingBytes);
+    this.executorFactory = builder.pubsubOptions.executorFactory();
+    this.executor = executorFactory.get();
+  }
+
+  @Override
+  public Future<String> publish(Message message) {
+    PubsubMessage messagePb = message.toPb();
+    int size = messagePb.getSerializedSize();
+    SettableFuture<String> future = SettableFuture.create();
+    boolean added = false;
+    while (!added) {
+      List<Batch> batchesToSend;
+      synchronized (lock) {
+        checkState(!closed, "Publisher is closed");
+        // a message larger than the limit is accepted when nothing else is outstanding
+        if (outstandingBytes == 0 || outstandingBytes + size <= maxOutstandingBytes) {
+          addMessage(messagePb, size, future);
+          if (batch.isFull() || maxBatchDelayMillis == 0) {
+            queueBatch();
+          }
+          batchesToSend = takeBatches();
+          added = true;
+        } else if (flowControlBehavior == FlowControlBehavior.FAIL) {
+          return Futures.immediateFailedFuture(new RejectedExecutionException(String.format(
+              "Publishing %d bytes would exceed %d outstanding bytes", size,
+              maxOutstandingBytes)));
+        } else {
+          // the current batch must be sent for outstanding bytes to decrease
+          batchesToSend = sealBatch();
+          if (batchesToSend.isEmpty()) {
+            try {
+              lock.wait();
+            } catch (InterruptedException ex) {
+              Thread.currentThread().interrupt();
+              return Futures.immediateFailedFuture(ex);
+            }
+          }
+        }
+      }
+      // sending can complete requests on this thread, this must not hold the lock
+      send(batchesToSend);
+    }
+    return future;
+  }
+
+  /**
+   * Adds a message to the current batch, starting a new one if needed. Must be called holding
+   * {@code lock}.
+   */
+  private void addMessage(PubsubMessage messagePb, int size, SettableFuture<String> future) {
+    outstandingBytes += size;
+    if (batch != null && batch.bytes + size > maxBatchBytes) {
+      queueBatch();
+    }
+    if (batch == null) {
+      batch = new Batch();
+      if (maxBatchDelayMillis > 0) {
+        flushFuture =
+            executor.schedule(flushRunnable, maxBatchDelayMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+    batch.add(messagePb, size, future);
+  }
+
+  /**
+   * Queues the current batch, if any, to be sent. Must be called holding {@code lock}.
+   */
+  private void queueBatch() {
+    if (batch != null) {
+      readyBatches.add(batch);
+      batch = null;
+      if (flushFuture != null) {
+        flushFuture.cancel(false);
+        flushFuture = null;
+      }
+    }
+  }
+
+  /**
+   * Queues the current batch, if any, and returns the batches that can be sent. Must be called
+   * holding {@code lock}.
+   */
+  private List<Batch> sealBatch() {
+    queueBatch();
+    return takeBatches();
+  }
+
+  /**
+   * Returns the queued batches that can be sent without exceeding the maximum number of
+   * outstanding requests. Must be called holding {@code lock}.
+   */
+  private List<Batch> takeBatches() {
+    List<Batch> batches = new ArrayList<>();
+    while (outstandingRequests < maxOutstandingRequests && !readyBatches.isEmpty()) {
+      batches.add(readyBatches.poll());
+      outstandingRequests++;
+    }
+    return batches;
+  }
+
+  private void send(List<Batch> batches) {
+    for (final Batch batch : batches) {
+      ListenableFuture<PublishResponse> response;
+      try {
+        Future<PublishResponse> future = pubsubRpc.publish(batch.request.build());
+        response = future instanceof ListenableFuture
+            ? (ListenableFuture<PublishResponse>) future
+            : JdkFutureAdapters.listenInPoolThread(future);
+      } catch (RuntimeException ex) {
+        response = Futures.immediateFailedFuture(ex);
+      }
+      Futures.addCallback(response, new FutureCallback<PublishResponse>() {
+        @Override
+        public void onSuccess(PublishResponse result) {
+          // futures are completed first, so that they are done when close() returns
+          batch.complete(result);
+          completed(batch);
+        }
+
+        @Override
+        public void onFailure(Throwable error) {
+          batch.fail(error);
+          completed(batch);
+        }
+      });
+    }
+  }
+
+  private void completed(Batch batch) {
+    List<Batch> batchesToSend;
+    synchronized (lock) {
+      outstandingRequests--;
+      outstandingBytes -= batch.bytes;
+      batchesToSend = takeBatches();
+      lock.notifyAll();
+    }
+    send(batchesToSend);
+  }
+
+  @Override
+  public void flush() {
+    List<Batch> batchesToSend;
+    synchronized (lock) {
+      batchesToSend = sealBatch();
+    }
+    send(batchesToSend);
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    flush();
+    synchronized (lock) {
+      while (outstandingRequests > 0 || !readyBatches.isEmpty()) {
+        lock.wait();
+      }
+    }
+    executorFactory.release(executor);
+  }
+
+  static final class Builder {
+    private final PubSubOptions pubsubOptions;
+    private final String topic;
+    private Integer maxBatchMessages;
+    private Long maxBatchBytes;
+    private Long maxBatchDelayMillis;
+    private Integer maxOutstandingRequests;
+    private Long maxOutstandingBytes;
+    private FlowControlBehavior flowControlBehavior;
+
+    Builder(PubSubOptions pubsubOptions, String topic) {
+      this.pubsubOptions = pubsubOptions;
+      this.topic = topic;
+    }
+
+    /**
+     * Sets the maximum number of messages sent in a single request.
+     */
+    Builder maxBatchMessages(Integer maxBatchMessages) {
+      this.maxBatchMessages = maxBatchMessages;
+      return this;
+    }
+
+    /**
+     * Sets the maximum serialized size of the messages sent in a single request.
+     */
+    Builder maxBatchBytes(Long maxBatchBytes) {
+      this.maxBatchBytes = maxBatchBytes;
+      return this;
+    }
+
+    /**
+     * Sets how long, in milliseconds, a message can wait for a batch to fill up.
+     */
+    Builder maxBatchDelayMillis(Long maxBatchDelayMillis) {
+      this.maxBatchDelayMillis = maxBatchDelayMillis;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of requests sent at the same time.
+     */
+    Builder maxOutstandingRequests(Integer maxOutstandingRequests) {
+      this.maxOutstandingRequests = maxOutstandingRequests;
+      return this;
+    }
+
+    /**
+     * Sets the maximum serialized size of the messages published but not yet acknowledged by the
+     * service.
+     */
+    Builder maxOutstandingBytes(Long maxOutstandingBytes) {
+      this.maxOutstandingBytes = maxOutstandingBytes;
+      return this;
+    }
+
+    /**
+     * Sets what to do when publishing a message would exceed the maximum outstanding bytes.
+     */
+    Builder flowControlBehavior(FlowControlBehavior flowControlBehavior) {
+      this.flowControlBehavior = flowControlBehavior;
+      return this;
+    }
+
+    /**
+     * Creates a {@code PublisherImpl} object.
+     */
+    PublisherImpl build() {
+      return new PublisherImpl(this);
+    }
+  }
+
+  /**
+   * Returns a builder for {@code PublisherImpl} objects given the service options and the topic
+   * where messages are published.
+   */
+  static Builder builder(PubSubOptions pubsubOptions, String topic) {
+    return new Builder(pubsubOptions, topic);
+  }
+}
@@ -22,6 +22,7 @@ import com.google.cloud.AsyncPage;
 import com.google.cloud.Page;
 import com.google.cloud.Policy;
 import com.google.cloud.pubsub.PubSub.ListOption;
+import com.google.cloud.pubsub.PubSub.PublishOption;
 import com.google.common.base.Function;
 
 import java.io.IOException;
@@ -334,6 +335,26 @@ public class Topic extends TopicInfo {
     return pubsub.publishAsync(getName(), messages);
   }
 
+  /**
+   * Creates a publisher that accumulates messages and publishes them to this topic in batches.
+   *
+   * <p>Example of publishing messages in batches.
+   * <pre> {@code
+   * PubSub.Publisher publisher = topic.publisher();
+   * Future<String> future = publisher.publish(Message.of("payload"));
+   * // ...
+   * String messageId = future.get();
+   * publisher.close();
+   * }</pre>
+   *
+   * @param options publishing options
+   * @return a publisher for this topic and the provided options
+   * @see PubSub#publisher(String, PublishOption...)
+   */
+  public PubSub.Publisher publisher(PublishOption... options) {
+    return pubsub.publisher(getName(), options);
+  }
+
   /**
    * Lists the identities of the subscriptions for this topic. This method returns a {@link Page}
    * object that can be used to consume paginated results. Use {@link ListOption} to specify the
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.pubsub;
+
+import com.google.cloud.AuthCredentials;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures adding and removing messages from an {@link AckDeadlineRenewer} that already tracks
+ * {@code trackedMessages} messages, from many threads at once. Renewal requests are not sent.
+ * <pre>
+ * mvn -pl google-cloud-pubsub test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args="AckDeadlineRenewerBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(8)
+@Fork(1)
+public class AckDeadlineRenewerBenchmark {
+
+  private static final String SUBSCRIPTION = "subscription";
+  private static final int ACK_IDS_PER_THREAD = 1000;
+  private static final int ACK_IDS_PER_REQUEST = 100;
+
+  @Param({"1000000"})
+  public int trackedMessages;
+
+  private final AtomicInteger threads = new AtomicInteger();
+  private AckDeadlineRenewer renewer;
+
+  /**
+   * The acknowledge ids added and removed by a benchmark thread.
+   */
+  @State(Scope.Thread)
+  public static class ThreadAckIds {
+
+    private final List<String> ackIds = new ArrayList<>(ACK_IDS_PER_THREAD);
+    private int next;
+
+    @Setup
+    public void setUp(AckDeadlineRenewerBenchmark benchmark) {
+      int thread = benchmark.threads.incrementAndGet();
+      for (int i = 0; i < ACK_IDS_PER_THREAD; i++) {
+        ackIds.add("thread-" + thread + "-ack-id-" + i);
+      }
+    }
+
+    String nextAckId() {
+      String ackId = ackIds.get(next);
+      next = (next + 1) % ACK_IDS_PER_THREAD;
+      return ackId;
+    }
+
+    List<String> nextAckIds() {
+      int from = next;
+      next = (next + ACK_IDS_PER_REQUEST) % ACK_IDS_PER_THREAD;
+      return ackIds.subList(from, from + ACK_IDS_PER_REQUEST);
+    }
+  }
+
+  /**
+   * Creates a {@link PubSub} service that returns {@code options} and ignores deadline renewals.
+   */
+  private static PubSub newPubSub(final PubSubOptions options) {
+    return (PubSub) Proxy.newProxyInstance(PubSub.class.getClassLoader(),
+        new Class<?>[]{PubSub.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+              case "options":
+                return options;
+              case "modifyAckDeadlineAsync":
+                return null;
+              case "hashCode":
+                return System.identityHashCode(proxy);
+              case "equals":
+                return proxy == args[0];
+              case "toString":
+                return "PubSub";
+              default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+          }
+        });
+  }
+
+  @Setup
+  public void setUp() {
+    PubSubOptions options = PubSubOptions.builder()
+        .projectId("project")
+        .authCredentials(AuthCredentials.noAuth())
+        .build();
+    renewer = new AckDeadlineRenewer(newPubSub(options));
+    List<String> ackIds = new ArrayList<>(ACK_IDS_PER_REQUEST);
+    for (int i = 0; i < trackedMessages; i++) {
+      ackIds.add("tracked-ack-id-" + i);
+      if (ackIds.size() == ACK_IDS_PER_REQUEST) {
+        renewer.add(SUBSCRIPTION, ackIds);
+        ackIds.clear();
+      }
+    }
+    renewer.add(SUBSCRIPTION, ackIds);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    renewer.close();
+  }
+
+  @Benchmark
+  public void addAndRemove(ThreadAckIds ackIds) {
+    String ackId = ackIds.nextAckId();
+    renewer.add(SUBSCRIPTION, ackId);
+    renewer.remove(SUBSCRIPTION, ackId);
+  }
+
+  @Benchmark
+  public void addPulledAndRemove(ThreadAckIds ackIds) {
+    List<String> pulled = ackIds.nextAckIds();
+    renewer.add(SUBSCRIPTION, pulled);
+    for (String ackId : pulled) {
+      renewer.remove(SUBSCRIPTION, ackId);
+    }
+  }
+}
@@ -18,9 +18,11 @@ package com.google.cloud.pubsub;
 
 import static org.junit.Assert.assertTrue;
 
+import com.google.cloud.Clock;
 import com.google.cloud.GrpcServiceOptions.ExecutorFactory;
 import com.google.common.collect.ImmutableList;
 
+import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.easymock.IAnswer;
 import org.junit.After;
@@ -39,6 +41,7 @@ import java.util.concurrent.atomic.AtomicLong;
 public class AckDeadlineRenewerTest {
 
   private static final int MIN_DEADLINE_MILLIS = 10_000;
+  private static final int MAX_DEADLINE_MILLIS = 600_000;
 
   private static final String SUBSCRIPTION1 = "subscription1";
   private static final String SUBSCRIPTION2 = "subscription2";
@@ -69,6 +72,64 @@ public class AckDeadlineRenewerTest {
     ackDeadlineRenewer.close();
   }
 
+  private static final class FakeClock extends Clock {
+
+    private volatile long millis;
+
+    @Override
+    public long millis() {
+      return millis;
+    }
+  }
+
+  /**
+   * An ack deadline renewer whose ticks are run by the test, at the time of a fake clock. Renewals
+   * are expected on {@link #pubsub} before calling {@link #start()}.
+   */
+  private static final class ManualRenewer {
+
+    private final PubSub pubsub = EasyMock.createStrictMock(PubSub.class);
+    private final FakeClock clock = new FakeClock();
+    private final Capture<Runnable> tick = EasyMock.newCapture();
+    private AckDeadlineRenewer renewer;
+
+    @SuppressWarnings("unchecked")
+    ManualRenewer() {
+      ScheduledExecutorService executor = EasyMock.createNiceMock(ScheduledExecutorService.class);
+      ExecutorFactory executorFactory = EasyMock.createNiceMock(ExecutorFactory.class);
+      EasyMock.expect(executorFactory.get()).andReturn(executor);
+      EasyMock.expect(executor.schedule(EasyMock.capture(tick), EasyMock.anyLong(),
+          EasyMock.eq(TimeUnit.MILLISECONDS)))
+          .andReturn(EasyMock.createNiceMock(ScheduledFuture.class)).anyTimes();
+      EasyMock.replay(executor, executorFactory);
+      PubSubOptions options = PubSubOptions.builder()
+          .projectId("projectId")
+          .executorFactory(executorFactory)
+          .clock(clock)
+          .build();
+      EasyMock.expect(pubsub.options()).andReturn(options);
+    }
+
+    AckDeadlineRenewer start() {
+      EasyMock.replay(pubsub);
+      renewer = new AckDeadlineRenewer(pubsub);
+      return renewer;
+    }
+
+    /**
+     * Runs the tick task at {@code millis}.
+     */
+    void tick(long millis) {
+      clock.millis = millis;
+      tick.getValue().run();
+    }
+
+    void close() throws Exception {
+      renewer.close();
+      EasyMock.verify(pubsub);
+    }
+  }
+
   private static IAnswer<Future<Void>> createAnswer(final CountDownLatch latch,
       final AtomicLong renewal) {
     return new IAnswer<Future<Void>>() {
@@ -239,6 +300,35 @@ public class AckDeadlineRenewerTest {
     assertTrue(secondRenewalSub2.get() < (firstRenewalSub2.get() + MIN_DEADLINE_MILLIS));
   }
 
+  @Test
+  public void testAdaptiveDeadline() throws InterruptedException {
+    EasyMock.reset(pubsub);
+    final CountDownLatch latch = new CountDownLatch(2);
+    final AtomicLong renewalSub1 = new AtomicLong();
+    final AtomicLong renewalSub2 = new AtomicLong();
+    EasyMock.expect(pubsub.modifyAckDeadlineAsync(SUBSCRIPTION1, 30_000, TimeUnit.MILLISECONDS,
+        ImmutableList.of(ACK_ID1)))
+        .andAnswer(createAnswer(latch, renewalSub1));
+    EasyMock.expect(pubsub.modifyAckDeadlineAsync(SUBSCRIPTION2, MAX_DEADLINE_MILLIS,
+        TimeUnit.MILLISECONDS, ImmutableList.of(ACK_ID1)))
+        .andAnswer(createAnswer(latch, renewalSub2));
+    EasyMock.replay(pubsub);
+    for (int i = 0; i < 99; i++) {
+      ackDeadlineRenewer.recordProcessingTime(SUBSCRIPTION1, 29_500);
+      ackDeadlineRenewer.recordProcessingTime(SUBSCRIPTION2, 100);
+    }
+    ackDeadlineRenewer.recordProcessingTime(SUBSCRIPTION1, 100);
+    // longer than the maximum deadline
+    ackDeadlineRenewer.recordProcessingTime(SUBSCRIPTION2, 1_000_000);
+    ackDeadlineRenewer.recordProcessingTime(SUBSCRIPTION2, 1_000_000);
+    long addTime = System.currentTimeMillis();
+    ackDeadlineRenewer.add(SUBSCRIPTION1, ACK_ID1);
+    ackDeadlineRenewer.add(SUBSCRIPTION2, ACK_ID1);
+    latch.await();
+    assertTrue(renewalSub1.get() < (addTime + MIN_DEADLINE_MILLIS));
+    assertTrue(renewalSub2.get() < (addTime + MIN_DEADLINE_MILLIS));
+  }
+
   @Test
   @SuppressWarnings("unchecked")
   public void testClose() throws Exception {
@@ -283,4 +373,72 @@ public class AckDeadlineRenewerTest {
     ackDeadlineRenewer.close();
     EasyMock.verify(pubsub, executor, executorFactory, future);
   }
+
+  @Test
+  public void testRemoveBeforeFirstTick() throws Exception {
+    ManualRenewer manual = new ManualRenewer();
+    EasyMock.expect(manual.pubsub.modifyAckDeadlineAsync(SUBSCRIPTION1, MIN_DEADLINE_MILLIS,
+        TimeUnit.MILLISECONDS, ImmutableList.of(ACK_ID2))).andReturn(null);
+    AckDeadlineRenewer renewer = manual.start();
+    renewer.add(SUBSCRIPTION1, ImmutableList.of(ACK_ID1, ACK_ID2));
+    renewer.remove(SUBSCRIPTION1, ACK_ID1);
+    // deadlines set at 0 are renewed at tick 13
+    manual.tick(6_500);
+    manual.close();
+  }
+
+  @Test
+  public void testReAddMessage() throws Exception {
+    ManualRenewer manual = new ManualRenewer();
+    EasyMock.expect(manual.pubsub.modifyAckDeadlineAsync(SUBSCRIPTION1, MIN_DEADLINE_MILLIS,
+        TimeUnit.MILLISECONDS, ImmutableList.of(ACK_ID1))).andReturn(null);
+    AckDeadlineRenewer renewer = manual.start();
+    renewer.add(SUBSCRIPTION1, ACK_ID1);
+    manual.clock.millis = 1_000;
+    // the message was pulled again, its deadline is renewed from the second add only
+    renewer.add(SUBSCRIPTION1, ACK_ID1);
+    manual.tick(6_500);
+    manual.tick(7_500);
+    renewer.remove(SUBSCRIPTION1, ACK_ID1);
+    manual.tick(20_000);
+    manual.close();
+  }
+
+  @Test
+  public void testMissedTicks() throws Exception {
+    ManualRenewer manual = new ManualRenewer();
+    EasyMock.expect(manual.pubsub.modifyAckDeadlineAsync(SUBSCRIPTION1, MIN_DEADLINE_MILLIS,
+        TimeUnit.MILLISECONDS, ImmutableList.of(ACK_ID1, ACK_ID2))).andReturn(null);
+    EasyMock.expect(manual.pubsub.modifyAckDeadlineAsync(SUBSCRIPTION1, MIN_DEADLINE_MILLIS,
+        TimeUnit.MILLISECONDS, ImmutableList.of(ACK_ID1, ACK_ID2))).andReturn(null);
+    AckDeadlineRenewer renewer = manual.start();
+    renewer.add(SUBSCRIPTION1, ACK_ID1);
+    manual.clock.millis = 60_000;
+    renewer.add(SUBSCRIPTION1, ACK_ID2);
+    // the clock jumps by more than a round of the wheel, overdue messages are renewed once
+    manual.tick(1_000_000);
+    // and are renewed again according to the new deadline
+    manual.tick(1_006_000);
+    manual.tick(1_006_500);
+    manual.close();
+  }
+
+  @Test
+  public void testDeadlineBeyondWheelRound() throws Exception {
+    ManualRenewer manual = new ManualRenewer();
+    EasyMock.expect(manual.pubsub.modifyAckDeadlineAsync(SUBSCRIPTION1, MAX_DEADLINE_MILLIS,
+        TimeUnit.MILLISECONDS, ImmutableList.of(ACK_ID1))).andReturn(null);
+    EasyMock.expect(manual.pubsub.modifyAckDeadlineAsync(SUBSCRIPTION1, MAX_DEADLINE_MILLIS,
+        TimeUnit.MILLISECONDS, ImmutableList.of(ACK_ID1))).andReturn(null);
+    AckDeadlineRenewer renewer = manual.start();
+    renewer.recordProcessingTime(SUBSCRIPTION1, MAX_DEADLINE_MILLIS);
+    renewer.add(SUBSCRIPTION1, ACK_ID1);
+    manual.tick(6_500);
+    // the next renewal is at tick 1206, in bucket 182 of the wheel: the bucket is visited at
+    // tick 182 without renewing the message
+    manual.tick(91_000);
+    manual.tick(602_500);
+    manual.tick(603_000);
+    manual.close();
+  }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.pubsub;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class DistributionTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void testEmpty() {
+    Distribution distribution = new Distribution(600);
+    assertEquals(0, distribution.count());
+    assertEquals(0, distribution.percentile(99));
+  }
+
+  @Test
+  public void testPercentile() {
+    Distribution distribution = new Distribution(600);
+    for (int i = 1; i <= 100; i++) {
+      distribution.record(i);
+    }
+    assertEquals(100, distribution.count());
+    assertEquals(50, distribution.percentile(50));
+    assertEquals(99, distribution.percentile(99));
+    assertEquals(100, distribution.percentile(100));
+    assertEquals(1, distribution.percentile(0.5));
+  }
+
+  @Test
+  public void testRecordOutOfRange() {
+    Distribution distribution = new Distribution(600);
+    distribution.record(-1);
+    distribution.record(1000);
+    assertEquals(0, distribution.percentile(50));
+    assertEquals(600, distribution.percentile(100));
+  }
+
+  @Test
+  public void testWindow() {
+    Distribution distribution = new Distribution(600, 10);
+    for (int i = 0; i < 10; i++) {
+      distribution.record(500);
+    }
+    assertEquals(10, distribution.count());
+    assertEquals(500, distribution.percentile(50));
+    for (int i = 0; i < 5; i++) {
+      distribution.record(10);
+    }
+    // values of the previous window are still counted
+    assertEquals(15, distribution.count());
+    assertEquals(500, distribution.percentile(99));
+    assertEquals(10, distribution.percentile(30));
+    for (int i = 0; i < 5; i++) {
+      distribution.record(10);
+    }
+    // the oldest window was discarded
+    assertEquals(10, distribution.count());
+    assertEquals(10, distribution.percentile(99));
+  }
+
+  @Test
+  public void testInvalidWindowSize() {
+    thrown.expect(IllegalArgumentException.class);
+    new Distribution(600, 0);
+  }
+
+  @Test
+  public void testInvalidPercentile() {
+    Distribution distribution = new Distribution(600);
+    thrown.expect(IllegalArgumentException.class);
+    distribution.percentile(0);
+  }
+}
@@ -16,15 +16,20 @@
 
 package com.google.cloud.pubsub;
 
+import static org.junit.Assert.fail;
+
 import com.google.cloud.GrpcServiceOptions.ExecutorFactory;
 import com.google.cloud.pubsub.PubSub.MessageConsumer;
 import com.google.cloud.pubsub.PubSub.MessageProcessor;
 import com.google.cloud.pubsub.spi.PubSubRpc;
 import com.google.cloud.pubsub.spi.PubSubRpc.PullCallback;
 import com.google.cloud.pubsub.spi.PubSubRpc.PullFuture;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ForwardingListenableFuture;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.pubsub.v1.PullRequest;
 import com.google.pubsub.v1.PullResponse;
 
@@ -46,6 +51,8 @@ public class MessageConsumerImplTest {
   private static final String SUBSCRIPTION = "subscription";
   private static final String SUBSCRIPTION_PB = "projects/project/subscriptions/subscription";
   private static final int MAX_QUEUED_CALLBACKS = 42;
+  // longer than the test timeout, pending acks and nacks are only sent at close
+  private static final long ACK_BATCH_DELAY_MILLIS = 120_000L;
   private static final Message MESSAGE1 = Message.of("payload1");
   private static final Message MESSAGE2 = Message.of("payload2");
   private static final String ACK_ID1 = "ack-id1";
@@ -86,7 +93,7 @@ public class MessageConsumerImplTest {
   @Rule
   public Timeout globalTimeout = Timeout.seconds(60);
 
-  static final class TestPullFuture
+  static class TestPullFuture
       extends ForwardingListenableFuture.SimpleForwardingListenableFuture<PullResponse>
       implements PullFuture {
 
@@ -94,6 +101,10 @@ public class MessageConsumerImplTest {
       super(Futures.immediateFuture(response));
     }
 
+    TestPullFuture(ListenableFuture<PullResponse> future) {
+      super(future);
+    }
+
     @Override
     public void addCallback(final PullCallback callback) {
       Futures.addCallback(delegate(), new FutureCallback<PullResponse>() {
@@ -145,6 +156,18 @@ public class MessageConsumerImplTest {
     };
   }
 
+  private static IAnswer<Void> createAnswer(final CountDownLatch awaitLatch,
+      final CountDownLatch latch) {
+    return new IAnswer<Void>() {
+      @Override
+      public Void answer() throws Throwable {
+        awaitLatch.await();
+        latch.countDown();
+        return null;
+      }
+    };
+  }
+
   @Test
   public void testMessageConsumerAck() throws Exception {
     PullRequest request = pullRequest(MAX_QUEUED_CALLBACKS);
@@ -153,8 +176,8 @@ public class MessageConsumerImplTest {
     EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
     EasyMock.expect(pubsub.options()).andReturn(options).times(2);
     final CountDownLatch latch = new CountDownLatch(2);
-    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ACK_ID1)).andReturn(null);
-    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ACK_ID2)).andReturn(null);
+    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ImmutableList.of(ACK_ID1, ACK_ID2)))
+        .andReturn(null);
     EasyMock.replay(pubsub);
     EasyMock.expect(pubsubRpc.pull(request)).andReturn(new TestPullFuture(PULL_RESPONSE));
     EasyMock.expect(pubsubRpc.pull(EasyMock.<PullRequest>anyObject()))
@@ -167,10 +190,13 @@ public class MessageConsumerImplTest {
     EasyMock.expectLastCall().andAnswer(createAnswer(latch));
     renewer.remove(SUBSCRIPTION, ACK_ID2);
     EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    renewer.recordProcessingTime(EasyMock.eq(SUBSCRIPTION), EasyMock.anyLong());
+    EasyMock.expectLastCall().times(2);
     EasyMock.replay(pubsubRpc, options, renewer);
     try (MessageConsumer consumer =
          MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, DO_NOTHING_PROCESSOR)
              .maxQueuedCallbacks(MAX_QUEUED_CALLBACKS)
+             .ackBatchDelayMillis(ACK_BATCH_DELAY_MILLIS)
              .build()) {
       latch.await();
     }
@@ -184,8 +210,8 @@ public class MessageConsumerImplTest {
     EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
     EasyMock.expect(pubsub.options()).andReturn(options).times(2);
     final CountDownLatch latch = new CountDownLatch(2);
-    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ACK_ID1)).andReturn(null);
-    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ACK_ID2)).andReturn(null);
+    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ImmutableList.of(ACK_ID1, ACK_ID2)))
+        .andReturn(null);
     EasyMock.replay(pubsub);
     EasyMock.expect(pubsubRpc.pull(request)).andReturn(new TestPullFuture(PULL_RESPONSE));
     EasyMock.expect(pubsubRpc.pull(EasyMock.<PullRequest>anyObject()))
@@ -198,10 +224,13 @@ public class MessageConsumerImplTest {
     EasyMock.expectLastCall().andAnswer(createAnswer(latch));
     renewer.remove(SUBSCRIPTION, ACK_ID2);
     EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    renewer.recordProcessingTime(EasyMock.eq(SUBSCRIPTION), EasyMock.anyLong());
+    EasyMock.expectLastCall().times(2);
     EasyMock.replay(pubsubRpc, options, renewer);
     try (MessageConsumer consumer =
         MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, THROW_PROCESSOR)
             .maxQueuedCallbacks(MAX_QUEUED_CALLBACKS)
+            .ackBatchDelayMillis(ACK_BATCH_DELAY_MILLIS)
             .build()) {
       latch.await();
     }
@@ -222,16 +251,9 @@ public class MessageConsumerImplTest {
     EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
     final CountDownLatch nextPullLatch = new CountDownLatch(1);
     final CountDownLatch latch = new CountDownLatch(2);
-    EasyMock.expect(pubsub.options()).andReturn(options);
-    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ACK_ID1)).andAnswer(new IAnswer<Future<Void>>() {
-      @Override
-      public Future<Void> answer() throws Throwable {
-        nextPullLatch.await();
-        return null;
-      }
-    });
-    EasyMock.expect(pubsub.options()).andReturn(options);
-    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ACK_ID2)).andReturn(null);
+    EasyMock.expect(pubsub.options()).andReturn(options).times(2);
+    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ImmutableList.of(ACK_ID1, ACK_ID2)))
+        .andReturn(null);
     EasyMock.replay(pubsub);
     EasyMock.expect(pubsubRpc.pull(request1)).andReturn(new TestPullFuture(response1));
     EasyMock.expect(pubsubRpc.pull(request2)).andAnswer(new IAnswer<PullFuture>() {
@@ -246,15 +268,18 @@ public class MessageConsumerImplTest {
     renewer.add(SUBSCRIPTION, ACK_ID1);
     EasyMock.expectLastCall();
     renewer.remove(SUBSCRIPTION, ACK_ID1);
-    EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    EasyMock.expectLastCall().andAnswer(createAnswer(nextPullLatch, latch));
     renewer.add(SUBSCRIPTION, ACK_ID2);
     EasyMock.expectLastCall();
     renewer.remove(SUBSCRIPTION, ACK_ID2);
     EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    renewer.recordProcessingTime(EasyMock.eq(SUBSCRIPTION), EasyMock.anyLong());
+    EasyMock.expectLastCall().times(2);
     EasyMock.replay(pubsubRpc, options, renewer);
     try (MessageConsumer consumer =
         MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, DO_NOTHING_PROCESSOR)
             .maxQueuedCallbacks(MAX_QUEUED_CALLBACKS)
+            .ackBatchDelayMillis(ACK_BATCH_DELAY_MILLIS)
             .build()) {
       latch.await();
     }
@@ -275,16 +300,9 @@ public class MessageConsumerImplTest {
     EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
     final CountDownLatch nextPullLatch = new CountDownLatch(1);
     final CountDownLatch latch = new CountDownLatch(2);
-    EasyMock.expect(pubsub.options()).andReturn(options);
-    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ACK_ID1)).andAnswer(new IAnswer<Future<Void>>() {
-      @Override
-      public Future<Void> answer() throws Throwable {
-        nextPullLatch.await();
-        return null;
-      }
-    });
-    EasyMock.expect(pubsub.options()).andReturn(options);
-    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ACK_ID2)).andReturn(null);
+    EasyMock.expect(pubsub.options()).andReturn(options).times(2);
+    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ImmutableList.of(ACK_ID1, ACK_ID2)))
+        .andReturn(null);
     EasyMock.replay(pubsub);
     EasyMock.expect(pubsubRpc.pull(request1)).andReturn(new TestPullFuture(response1));
     EasyMock.expect(pubsubRpc.pull(request2)).andAnswer(new IAnswer<PullFuture>() {
@@ -299,15 +317,18 @@ public class MessageConsumerImplTest {
     renewer.add(SUBSCRIPTION, ACK_ID1);
     EasyMock.expectLastCall();
     renewer.remove(SUBSCRIPTION, ACK_ID1);
-    EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    EasyMock.expectLastCall().andAnswer(createAnswer(nextPullLatch, latch));
     renewer.add(SUBSCRIPTION, ACK_ID2);
     EasyMock.expectLastCall();
     renewer.remove(SUBSCRIPTION, ACK_ID2);
     EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    renewer.recordProcessingTime(EasyMock.eq(SUBSCRIPTION), EasyMock.anyLong());
+    EasyMock.expectLastCall().times(2);
     EasyMock.replay(pubsubRpc, options, renewer);
     try (MessageConsumer consumer =
         MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, THROW_PROCESSOR)
             .maxQueuedCallbacks(MAX_QUEUED_CALLBACKS)
+            .ackBatchDelayMillis(ACK_BATCH_DELAY_MILLIS)
             .build()) {
       latch.await();
     }
@@ -326,16 +347,9 @@ public class MessageConsumerImplTest {
     EasyMock.expect(pubsub.options()).andReturn(options).times(2);
     final CountDownLatch nextPullLatch = new CountDownLatch(1);
     final CountDownLatch latch = new CountDownLatch(3);
-    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ACK_ID1)).andReturn(null);
-    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ACK_ID2)).andAnswer(new IAnswer<Future<Void>>() {
-      @Override
-      public Future<Void> answer() throws Throwable {
-        nextPullLatch.await();
-        return null;
-      }
-    });
     EasyMock.expect(pubsub.options()).andReturn(options);
-    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ACK_ID1)).andReturn(null);
+    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ImmutableList.of(ACK_ID1, ACK_ID2, ACK_ID1)))
+        .andReturn(null);
     EasyMock.replay(pubsub);
     EasyMock.expect(pubsubRpc.pull(request1)).andReturn(new TestPullFuture(PULL_RESPONSE));
     EasyMock.expect(pubsubRpc.pull(request2)).andAnswer(new IAnswer<PullFuture>() {
@@ -354,15 +368,18 @@ public class MessageConsumerImplTest {
     renewer.remove(SUBSCRIPTION, ACK_ID1);
     EasyMock.expectLastCall().andAnswer(createAnswer(latch));
     renewer.remove(SUBSCRIPTION, ACK_ID2);
-    EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    EasyMock.expectLastCall().andAnswer(createAnswer(nextPullLatch, latch));
     renewer.add(SUBSCRIPTION, ACK_ID1);
     EasyMock.expectLastCall();
     renewer.remove(SUBSCRIPTION, ACK_ID1);
     EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    renewer.recordProcessingTime(EasyMock.eq(SUBSCRIPTION), EasyMock.anyLong());
+    EasyMock.expectLastCall().times(3);
     EasyMock.replay(pubsubRpc, options, renewer);
     try (MessageConsumer consumer =
          MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, DO_NOTHING_PROCESSOR)
              .maxQueuedCallbacks(2)
+             .ackBatchDelayMillis(ACK_BATCH_DELAY_MILLIS)
              .build()) {
       latch.await();
     }
@@ -381,16 +398,9 @@ public class MessageConsumerImplTest {
     EasyMock.expect(pubsub.options()).andReturn(options).times(2);
     final CountDownLatch nextPullLatch = new CountDownLatch(1);
     final CountDownLatch latch = new CountDownLatch(3);
-    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ACK_ID1)).andReturn(null);
-    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ACK_ID2)).andAnswer(new IAnswer<Future<Void>>() {
-      @Override
-      public Future<Void> answer() throws Throwable {
-        nextPullLatch.await();
-        return null;
-      }
-    });
     EasyMock.expect(pubsub.options()).andReturn(options);
-    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ACK_ID1)).andReturn(null);
+    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ImmutableList.of(ACK_ID1, ACK_ID2, ACK_ID1)))
+        .andReturn(null);
     EasyMock.replay(pubsub);
     EasyMock.expect(pubsubRpc.pull(request1)).andReturn(new TestPullFuture(PULL_RESPONSE));
     EasyMock.expect(pubsubRpc.pull(request2)).andAnswer(new IAnswer<PullFuture>() {
@@ -409,20 +419,256 @@ public class MessageConsumerImplTest {
     renewer.remove(SUBSCRIPTION, ACK_ID1);
     EasyMock.expectLastCall().andAnswer(createAnswer(latch));
     renewer.remove(SUBSCRIPTION, ACK_ID2);
-    EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    EasyMock.expectLastCall().andAnswer(createAnswer(nextPullLatch, latch));
     renewer.add(SUBSCRIPTION, ACK_ID1);
     EasyMock.expectLastCall();
     renewer.remove(SUBSCRIPTION, ACK_ID1);
     EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    renewer.recordProcessingTime(EasyMock.eq(SUBSCRIPTION), EasyMock.anyLong());
+    EasyMock.expectLastCall().times(3);
     EasyMock.replay(pubsubRpc, options, renewer);
     try (MessageConsumer consumer =
          MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, THROW_PROCESSOR)
              .maxQueuedCallbacks(2)
+             .ackBatchDelayMillis(ACK_BATCH_DELAY_MILLIS)
              .build()) {
       latch.await();
     }
   }
 
+  @Test
+  public void testMessageConsumerAckBatchSize() throws Exception {
+    PullRequest request = pullRequest(MAX_QUEUED_CALLBACKS);
+    EasyMock.expect(options.rpc()).andReturn(pubsubRpc);
+    EasyMock.expect(options.service()).andReturn(pubsub);
+    EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
+    EasyMock.expect(pubsub.options()).andReturn(options).times(2);
+    final CountDownLatch latch = new CountDownLatch(2);
+    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ImmutableList.of(ACK_ID1, ACK_ID2)))
+        .andReturn(null);
+    EasyMock.replay(pubsub);
+    EasyMock.expect(pubsubRpc.pull(request)).andReturn(new TestPullFuture(PULL_RESPONSE));
+    EasyMock.expect(pubsubRpc.pull(EasyMock.<PullRequest>anyObject()))
+        .andReturn(new TestPullFuture(EMPTY_RESPONSE)).anyTimes();
+    renewer.add(SUBSCRIPTION, ACK_ID1);
+    EasyMock.expectLastCall();
+    renewer.add(SUBSCRIPTION, ACK_ID2);
+    EasyMock.expectLastCall();
+    renewer.remove(SUBSCRIPTION, ACK_ID1);
+    EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    // acks are sent before the deadline of the last one stops being renewed
+    renewer.remove(SUBSCRIPTION, ACK_ID2);
+    EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    renewer.recordProcessingTime(EasyMock.eq(SUBSCRIPTION), EasyMock.anyLong());
+    EasyMock.expectLastCall().times(2);
+    EasyMock.replay(pubsubRpc, options, renewer);
+    try (MessageConsumer consumer =
+        MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, DO_NOTHING_PROCESSOR)
+            .maxQueuedCallbacks(MAX_QUEUED_CALLBACKS)
+            .ackBatchDelayMillis(ACK_BATCH_DELAY_MILLIS)
+            .maxAckBatchSize(2)
+            .build()) {
+      latch.await();
+    }
+  }
+
+  @Test
+  public void testMessageConsumerAckBatchDelay() throws Exception {
+    PullRequest request = pullRequest(MAX_QUEUED_CALLBACKS);
+    PullResponse response = PullResponse.newBuilder()
+        .addReceivedMessages(MESSAGE1_PB)
+        .build();
+    EasyMock.expect(options.rpc()).andReturn(pubsubRpc);
+    EasyMock.expect(options.service()).andReturn(pubsub);
+    EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
+    EasyMock.expect(pubsub.options()).andReturn(options);
+    final CountDownLatch latch = new CountDownLatch(2);
+    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ImmutableList.of(ACK_ID1)))
+        .andAnswer(new IAnswer<Future<Void>>() {
+          @Override
+          public Future<Void> answer() throws Throwable {
+            latch.countDown();
+            return null;
+          }
+        });
+    EasyMock.replay(pubsub);
+    EasyMock.expect(pubsubRpc.pull(request)).andReturn(new TestPullFuture(response));
+    EasyMock.expect(pubsubRpc.pull(EasyMock.<PullRequest>anyObject()))
+        .andReturn(new TestPullFuture(EMPTY_RESPONSE)).anyTimes();
+    renewer.add(SUBSCRIPTION, ACK_ID1);
+    EasyMock.expectLastCall();
+    renewer.remove(SUBSCRIPTION, ACK_ID1);
+    EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    renewer.recordProcessingTime(EasyMock.eq(SUBSCRIPTION), EasyMock.anyLong());
+    EasyMock.expectLastCall();
+    EasyMock.replay(pubsubRpc, options, renewer);
+    try (MessageConsumer consumer =
+        MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, DO_NOTHING_PROCESSOR)
+            .maxQueuedCallbacks(MAX_QUEUED_CALLBACKS)
+            .ackBatchDelayMillis(10L)
+            .build()) {
+      latch.await();
+    }
+  }
+
+  @Test
+  public void testMessageConsumerAckAndNack() throws Exception {
+    PullRequest request = pullRequest(MAX_QUEUED_CALLBACKS);
+    EasyMock.expect(options.rpc()).andReturn(pubsubRpc);
+    EasyMock.expect(options.service()).andReturn(pubsub);
+    EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
+    EasyMock.expect(pubsub.options()).andReturn(options).times(2);
+    final CountDownLatch latch = new CountDownLatch(2);
+    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ImmutableList.of(ACK_ID1))).andReturn(null);
+    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ImmutableList.of(ACK_ID2))).andReturn(null);
+    EasyMock.replay(pubsub);
+    EasyMock.expect(pubsubRpc.pull(request)).andReturn(new TestPullFuture(PULL_RESPONSE));
+    EasyMock.expect(pubsubRpc.pull(EasyMock.<PullRequest>anyObject()))
+        .andReturn(new TestPullFuture(EMPTY_RESPONSE)).anyTimes();
+    renewer.add(SUBSCRIPTION, ACK_ID1);
+    EasyMock.expectLastCall();
+    renewer.add(SUBSCRIPTION, ACK_ID2);
+    EasyMock.expectLastCall();
+    renewer.remove(SUBSCRIPTION, ACK_ID1);
+    EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    renewer.remove(SUBSCRIPTION, ACK_ID2);
+    EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    renewer.recordProcessingTime(EasyMock.eq(SUBSCRIPTION), EasyMock.anyLong());
+    EasyMock.expectLastCall().times(2);
+    EasyMock.replay(pubsubRpc, options, renewer);
+    MessageProcessor processor = new MessageProcessor() {
+      @Override
+      public void process(Message message) throws Exception {
+        if (message.payloadAsString().equals(MESSAGE2.payloadAsString())) {
+          throw new RuntimeException();
+        }
+      }
+    };
+    try (MessageConsumer consumer =
+        MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, processor)
+            .maxQueuedCallbacks(MAX_QUEUED_CALLBACKS)
+            .ackBatchDelayMillis(ACK_BATCH_DELAY_MILLIS)
+            .build()) {
+      latch.await();
+    }
+  }
+
+  @Test
+  public void testMessageConsumerParallelPulls() throws Exception {
+    PullRequest request = pullRequest(MAX_QUEUED_CALLBACKS / 2);
+    EasyMock.expect(options.rpc()).andReturn(pubsubRpc);
+    EasyMock.expect(options.service()).andReturn(pubsub);
+    EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
+    EasyMock.replay(pubsub);
+    final CountDownLatch latch = new CountDownLatch(2);
+    IAnswer<PullFuture> pendingPull = new IAnswer<PullFuture>() {
+      @Override
+      public PullFuture answer() throws Throwable {
+        latch.countDown();
+        return new TestPullFuture(SettableFuture.<PullResponse>create());
+      }
+    };
+    // both pulls are sent before any of them completes
+    EasyMock.expect(pubsubRpc.pull(request)).andAnswer(pendingPull);
+    EasyMock.expect(pubsubRpc.pull(request)).andAnswer(pendingPull);
+    EasyMock.replay(pubsubRpc, options, renewer);
+    try (MessageConsumer consumer =
+        MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, DO_NOTHING_PROCESSOR)
+            .maxQueuedCallbacks(MAX_QUEUED_CALLBACKS)
+            .parallelPullCount(2)
+            .build()) {
+      latch.await();
+    }
+  }
+
+  @Test
+  public void testInvalidParallelPullCount() throws Exception {
+    EasyMock.replay(pubsubRpc, options, renewer, pubsub);
+    for (int parallelPullCount : new int[]{0, -1}) {
+      try {
+        MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, DO_NOTHING_PROCESSOR)
+            .parallelPullCount(parallelPullCount)
+            .build();
+        fail("Expected IllegalArgumentException");
+      } catch (IllegalArgumentException ex) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidMaxQueuedBytes() throws Exception {
+    EasyMock.replay(pubsubRpc, options, renewer, pubsub);
+    for (long maxQueuedBytes : new long[]{0, -1}) {
+      try {
+        MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, DO_NOTHING_PROCESSOR)
+            .maxQueuedBytes(maxQueuedBytes)
+            .build();
+        fail("Expected IllegalArgumentException");
+      } catch (IllegalArgumentException ex) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testMessageConsumerMaxQueuedBytes() throws Exception {
+    PullRequest request = pullRequest(MAX_QUEUED_CALLBACKS);
+    EasyMock.expect(options.rpc()).andReturn(pubsubRpc);
+    EasyMock.expect(options.service()).andReturn(pubsub);
+    EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
+    EasyMock.expect(pubsub.options()).andReturn(options).times(2);
+    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ImmutableList.of(ACK_ID1, ACK_ID2)))
+        .andReturn(null);
+    EasyMock.replay(pubsub);
+    final CountDownLatch pullLatch = new CountDownLatch(1);
+    final CountDownLatch processLatch = new CountDownLatch(1);
+    final CountDownLatch latch = new CountDownLatch(1);
+    EasyMock.expect(pubsubRpc.pull(request)).andReturn(new TestPullFuture(PULL_RESPONSE) {
+      @Override
+      public void addCallback(PullCallback callback) {
+        super.addCallback(callback);
+        // the callback ran, the consumer decided whether to pull again
+        pullLatch.countDown();
+      }
+    });
+    // the consumer only pulls again once all queued bytes are processed
+    EasyMock.expect(pubsubRpc.pull(request)).andAnswer(new IAnswer<PullFuture>() {
+      @Override
+      public PullFuture answer() throws Throwable {
+        latch.countDown();
+        return new TestPullFuture(SettableFuture.<PullResponse>create());
+      }
+    });
+    renewer.add(SUBSCRIPTION, ACK_ID1);
+    EasyMock.expectLastCall();
+    renewer.add(SUBSCRIPTION, ACK_ID2);
+    EasyMock.expectLastCall();
+    renewer.remove(SUBSCRIPTION, ACK_ID1);
+    EasyMock.expectLastCall();
+    renewer.remove(SUBSCRIPTION, ACK_ID2);
+    EasyMock.expectLastCall();
+    renewer.recordProcessingTime(EasyMock.eq(SUBSCRIPTION), EasyMock.anyLong());
+    EasyMock.expectLastCall().times(2);
+    EasyMock.replay(pubsubRpc, options, renewer);
+    MessageProcessor processor = new MessageProcessor() {
+      @Override
+      public void process(Message message) throws Exception {
+        processLatch.await();
+      }
+    };
+    try (MessageConsumer consumer =
+        MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, processor)
+            .maxQueuedCallbacks(MAX_QUEUED_CALLBACKS)
+            .maxQueuedBytes((long) MESSAGE1.toPb().getSerializedSize())
+            .ackBatchDelayMillis(ACK_BATCH_DELAY_MILLIS)
+            .build()) {
+      pullLatch.await();
+      processLatch.countDown();
+      latch.await();
+    }
+  }
+
   @Test
   public void testClose() throws Exception {
     EasyMock.expect(options.rpc()).andReturn(pubsubRpc);
@@ -36,6 +36,7 @@ import com.google.cloud.pubsub.MessageConsumerImplTest.TestPullFuture;
 import com.google.cloud.pubsub.PubSub.ListOption;
 import com.google.cloud.pubsub.PubSub.MessageConsumer;
 import com.google.cloud.pubsub.PubSub.MessageProcessor;
+import com.google.cloud.pubsub.PubSub.PublishOption;
 import com.google.cloud.pubsub.PubSub.PullOption;
 import com.google.cloud.pubsub.spi.PubSubRpc;
 import com.google.cloud.pubsub.spi.PubSubRpc.PullCallback;
@@ -47,6 +48,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.iam.v1.SetIamPolicyRequest;
 import com.google.iam.v1.TestIamPermissionsRequest;
 import com.google.iam.v1.TestIamPermissionsResponse;
@@ -85,6 +87,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class PubSubImplTest {
@@ -541,6 +544,36 @@ public class PubSubImplTest {
     assertEquals(messageId, pubsub.publishAsync(TOPIC, MESSAGE).get());
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPublisher() throws Exception {
+    ExecutorFactory<ScheduledExecutorService> executorFactoryMock =
+        EasyMock.createStrictMock(ExecutorFactory.class);
+    ScheduledExecutorService executorServiceMock =
+        EasyMock.createStrictMock(ScheduledExecutorService.class);
+    EasyMock.expect(executorFactoryMock.get()).andReturn(executorServiceMock);
+    executorFactoryMock.release(executorServiceMock);
+    EasyMock.reset(options);
+    EasyMock.expect(options.rpc()).andReturn(pubsubRpcMock).anyTimes();
+    EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
+    EasyMock.expect(options.executorFactory()).andReturn(executorFactoryMock);
+    EasyMock.replay(options);
+    PublishRequest request = PublishRequest.newBuilder()
+        .setTopic(TOPIC_NAME_PB)
+        .addMessages(MESSAGE.toPb())
+        .build();
+    String messageId = "messageId";
+    PublishResponse response = PublishResponse.newBuilder().addMessageIds(messageId).build();
+    EasyMock.expect(pubsubRpcMock.publish(request)).andReturn(Futures.immediateFuture(response));
+    EasyMock.replay(pubsubRpcMock, renewerMock, executorFactoryMock, executorServiceMock);
+    pubsub = new PubSubImpl(options, renewerMock);
+    try (PubSub.Publisher publisher = pubsub.publisher(TOPIC,
+        PublishOption.maxBatchDelay(0, TimeUnit.MILLISECONDS), PublishOption.maxBatchMessages(1))) {
+      assertEquals(messageId, publisher.publish(MESSAGE).get());
+    }
+    EasyMock.verify(executorFactoryMock, executorServiceMock);
+  }
+
   @Test
   public void testPublishMoreMessages() {
     PublishRequest request = PublishRequest.newBuilder()
@@ -1443,6 +1476,36 @@ public class PubSubImplTest {
     }
   }
 
+  @Test
+  public void testMessageConsumerWithParallelPulls() throws Exception {
+    pubsub = new PubSubImpl(options, renewerMock);
+    EasyMock.reset(options);
+    EasyMock.expect(options.service()).andReturn(pubsub);
+    EasyMock.expect(options.rpc()).andReturn(pubsubRpcMock);
+    EasyMock.expect(options.projectId()).andReturn(PROJECT).times(2);
+    EasyMock.replay(options);
+    PullRequest request = PullRequest.newBuilder()
+        .setSubscription(SUBSCRIPTION_NAME_PB)
+        .setMaxMessages(21)
+        .setReturnImmediately(false)
+        .build();
+    final CountDownLatch latch = new CountDownLatch(2);
+    IAnswer<PullFuture> pendingPull = new IAnswer<PullFuture>() {
+      @Override
+      public PullFuture answer() throws Throwable {
+        latch.countDown();
+        return new TestPullFuture(SettableFuture.<PullResponse>create());
+      }
+    };
+    EasyMock.expect(pubsubRpcMock.pull(request)).andAnswer(pendingPull).times(2);
+    EasyMock.replay(pubsubRpcMock, renewerMock);
+    PullOption[] options = {PullOption.maxQueuedCallbacks(42), PullOption.parallelPullCount(2),
+        PullOption.maxQueuedBytes(1024L)};
+    try (MessageConsumer consumer = pubsub.pullAsync(SUBSCRIPTION, DO_NOTHING, options)) {
+      latch.await();
+    }
+  }
+
   @Test
   public void testAckOneMessage() {
     pubsub = new PubSubImpl(options, renewerMock);
@@ -21,16 +21,22 @@ import static org.junit.Assert.assertSame;
 
 import com.google.cloud.GrpcServiceOptions.ExecutorFactory;
 import com.google.cloud.pubsub.PubSub.ListOption;
+import com.google.cloud.pubsub.PubSub.PublishOption;
+import com.google.cloud.pubsub.PubSub.PublishOption.FlowControlBehavior;
 import com.google.cloud.pubsub.PubSub.PullOption;
 
 import org.easymock.EasyMock;
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
 public class PubSubTest {
 
   private static final int PAGE_SIZE = 42;
   private static final String PAGE_TOKEN = "page token";
   private static final int MAX_QUEUED_CALLBACKS = 42;
+  private static final int MAX_BATCH_MESSAGES = 42;
+  private static final long MAX_BYTES = 4242L;
 
   @Test
   public void testListOption() {
@@ -51,9 +57,40 @@ public class PubSubTest {
     PullOption pullOption = PullOption.maxQueuedCallbacks(MAX_QUEUED_CALLBACKS);
     assertEquals(MAX_QUEUED_CALLBACKS, pullOption.getValue());
     assertEquals(PullOption.OptionType.MAX_QUEUED_CALLBACKS, pullOption.getOptionType());
+    // max queued bytes
+    pullOption = PullOption.maxQueuedBytes(MAX_BYTES);
+    assertEquals(MAX_BYTES, pullOption.getValue());
+    assertEquals(PullOption.OptionType.MAX_QUEUED_BYTES, pullOption.getOptionType());
+    // parallel pull count
+    pullOption = PullOption.parallelPullCount(4);
+    assertEquals(4, pullOption.getValue());
+    assertEquals(PullOption.OptionType.PARALLEL_PULL_COUNT, pullOption.getOptionType());
     ExecutorFactory executorFactory = EasyMock.createStrictMock(ExecutorFactory.class);
     pullOption = PullOption.executorFactory(executorFactory);
     assertSame(executorFactory, pullOption.getValue());
     assertEquals(PullOption.OptionType.EXECUTOR_FACTORY, pullOption.getOptionType());
   }
+
+  @Test
+  public void testPublishOptions() {
+    PublishOption publishOption = PublishOption.maxBatchMessages(MAX_BATCH_MESSAGES);
+    assertEquals(MAX_BATCH_MESSAGES, publishOption.getValue());
+    assertEquals(PublishOption.OptionType.MAX_BATCH_MESSAGES, publishOption.getOptionType());
+    publishOption = PublishOption.maxBatchBytes(MAX_BYTES);
+    assertEquals(MAX_BYTES, publishOption.getValue());
+    assertEquals(PublishOption.OptionType.MAX_BATCH_BYTES, publishOption.getOptionType());
+    publishOption = PublishOption.maxBatchDelay(2, TimeUnit.SECONDS);
+    assertEquals(2000L, publishOption.getValue());
+    assertEquals(PublishOption.OptionType.MAX_BATCH_DELAY_MILLIS, publishOption.getOptionType());
+    publishOption = PublishOption.maxOutstandingRequests(MAX_BATCH_MESSAGES);
+    assertEquals(MAX_BATCH_MESSAGES, publishOption.getValue());
+    assertEquals(PublishOption.OptionType.MAX_OUTSTANDING_REQUESTS,
+        publishOption.getOptionType());
+    publishOption = PublishOption.maxOutstandingBytes(MAX_BYTES);
+    assertEquals(MAX_BYTES, publishOption.getValue());
+    assertEquals(PublishOption.OptionType.MAX_OUTSTANDING_BYTES, publishOption.getOptionType());
+    publishOption = PublishOption.flowControlBehavior(FlowControlBehavior.FAIL);
+    assertEquals(FlowControlBehavior.FAIL, publishOption.getValue());
+    assertEquals(PublishOption.OptionType.FLOW_CONTROL_BEHAVIOR, publishOption.getOptionType());
+  }
 }
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.pubsub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.GrpcServiceOptions.ExecutorFactory;
+import com.google.cloud.pubsub.PubSub.PublishOption.FlowControlBehavior;
+import com.google.cloud.pubsub.spi.PubSubRpc;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.pubsub.v1.PublishRequest;
+import com.google.pubsub.v1.PublishResponse;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class PublisherImplTest {
+
+  private static final String PROJECT = "project";
+  private static final String TOPIC = "topic";
+  private static final String TOPIC_PB = "projects/project/topics/topic";
+  private static final Message MESSAGE1 = Message.of("payload1");
+  private static final Message MESSAGE2 = Message.of("payload2");
+  private static final Message MESSAGE3 = Message.of("payload3");
+  private static final int MESSAGE_BYTES = MESSAGE1.toPb().getSerializedSize();
+  private static final long NO_DELAY = 0L;
+  private static final long LONG_DELAY = TimeUnit.HOURS.toMillis(1);
+
+  private PubSubRpc pubsubRpc;
+  private PubSubOptions options;
+  private ExecutorFactory<ScheduledExecutorService> executorFactory;
+  private ScheduledExecutorService executor;
+
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(60);
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    pubsubRpc = EasyMock.createStrictMock(PubSubRpc.class);
+    options = EasyMock.createMock(PubSubOptions.class);
+    executorFactory = EasyMock.createStrictMock(ExecutorFactory.class);
+    executor = Executors.newSingleThreadScheduledExecutor();
+    EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
+    EasyMock.expect(options.rpc()).andReturn(pubsubRpc).anyTimes();
+    EasyMock.expect(options.executorFactory()).andReturn(executorFactory).anyTimes();
+    EasyMock.expect(executorFactory.get()).andReturn(executor);
+    executorFactory.release(executor);
+    EasyMock.expectLastCall();
+    EasyMock.replay(options, executorFactory);
+  }
+
+  @After
+  public void tearDown() {
+    EasyMock.verify(pubsubRpc, options, executorFactory);
+    executor.shutdownNow();
+  }
+
+  private static PublishRequest request(Message... messages) {
+    PublishRequest.Builder builder = PublishRequest.newBuilder().setTopic(TOPIC_PB);
+    for (Message message : messages) {
+      builder.addMessages(message.toPb());
+    }
+    return builder.build();
+  }
+
+  private static PublishResponse response(String... ids) {
+    PublishResponse.Builder builder = PublishResponse.newBuilder();
+    for (String id : ids) {
+      builder.addMessageIds(id);
+    }
+    return builder.build();
+  }
+
+  @Test
+  public void testBatchByMessageCount() throws Exception {
+    EasyMock.expect(pubsubRpc.publish(request(MESSAGE1, MESSAGE2)))
+        .andReturn(Futures.immediateFuture(response("id1", "id2")));
+    EasyMock.expect(pubsubRpc.publish(request(MESSAGE3)))
+        .andReturn(Futures.immediateFuture(response("id3")));
+    EasyMock.replay(pubsubRpc);
+    PublisherImpl publisher = PublisherImpl.builder(options, TOPIC)
+        .maxBatchMessages(2)
+        .maxBatchDelayMillis(LONG_DELAY)
+        .build();
+    Future<String> future1 = publisher.publish(MESSAGE1);
+    assertFalse(future1.isDone());
+    Future<String> future2 = publisher.publish(MESSAGE2);
+    Future<String> future3 = publisher.publish(MESSAGE3);
+    assertEquals("id1", future1.get());
+    assertEquals("id2", future2.get());
+    assertFalse(future3.isDone());
+    publisher.close();
+    assertEquals("id3", future3.get());
+  }
+
+  @Test
+  public void testBatchByBytes() throws Exception {
+    EasyMock.expect(pubsubRpc.publish(request(MESSAGE1, MESSAGE2)))
+        .andReturn(Futures.immediateFuture(response("id1", "id2")));
+    EasyMock.expect(pubsubRpc.publish(request(MESSAGE3)))
+        .andReturn(Futures.immediateFuture(response("id3")));
+    EasyMock.replay(pubsubRpc);
+    PublisherImpl publisher = PublisherImpl.builder(options, TOPIC)
+        .maxBatchBytes(2L * MESSAGE_BYTES + 1)
+        .maxBatchDelayMillis(LONG_DELAY)
+        .build();
+    Future<String> future1 = publisher.publish(MESSAGE1);
+    Future<String> future2 = publisher.publish(MESSAGE2);
+    assertFalse(future1.isDone());
+    // the third message does not fit in the batch, which is sent
+    Future<String> future3 = publisher.publish(MESSAGE3);
+    assertEquals("id1", future1.get());
+    assertEquals("id2", future2.get());
+    publisher.flush();
+    assertEquals("id3", future3.get());
+    publisher.close();
+  }
+
+  @Test
+  public void testBatchByDelay() throws Exception {
+    EasyMock.expect(pubsubRpc.publish(request(MESSAGE1, MESSAGE2)))
+        .andReturn(Futures.immediateFuture(response("id1", "id2")));
+    EasyMock.replay(pubsubRpc);
+    PublisherImpl publisher = PublisherImpl.builder(options, TOPIC)
+        .maxBatchDelayMillis(100L)
+        .build();
+    Future<String> future1 = publisher.publish(MESSAGE1);
+    Future<String> future2 = publisher.publish(MESSAGE2);
+    assertEquals("id1", future1.get());
+    assertEquals("id2", future2.get());
+    publisher.close();
+  }
+
+  @Test
+  public void testNoDelay() throws Exception {
+    EasyMock.expect(pubsubRpc.publish(request(MESSAGE1)))
+        .andReturn(Futures.immediateFuture(response("id1")));
+    EasyMock.replay(pubsubRpc);
+    PublisherImpl publisher = PublisherImpl.builder(options, TOPIC)
+        .maxBatchDelayMillis(NO_DELAY)
+        .build();
+    assertEquals("id1", publisher.publish(MESSAGE1).get());
+    publisher.close();
+  }
+
+  @Test
+  public void testMaxOutstandingRequests() throws Exception {
+    SettableFuture<PublishResponse> response1 = SettableFuture.create();
+    EasyMock.expect(pubsubRpc.publish(request(MESSAGE1))).andReturn(response1);
+    EasyMock.expect(pubsubRpc.publish(request(MESSAGE2, MESSAGE3)))
+        .andReturn(Futures.immediateFuture(response("id2", "id3")));
+    EasyMock.replay(pubsubRpc);
+    PublisherImpl publisher = PublisherImpl.builder(options, TOPIC)
+        .maxBatchDelayMillis(LONG_DELAY)
+        .maxOutstandingRequests(1)
+        .build();
+    Future<String> future1 = publisher.publish(MESSAGE1);
+    publisher.flush();
+    // the batch waits for the outstanding request to complete
+    Future<String> future2 = publisher.publish(MESSAGE2);
+    Future<String> future3 = publisher.publish(MESSAGE3);
+    publisher.flush();
+    assertFalse(future2.isDone());
+    response1.set(response("id1"));
+    assertEquals("id1", future1.get());
+    assertEquals("id2", future2.get());
+    assertEquals("id3", future3.get());
+    publisher.close();
+  }
+
+  @Test
+  public void testPublishFailure() throws Exception {
+    RuntimeException exception = new RuntimeException();
+    EasyMock.expect(pubsubRpc.publish(request(MESSAGE1, MESSAGE2)))
+        .andReturn(Futures.<PublishResponse>immediateFailedFuture(exception));
+    EasyMock.replay(pubsubRpc);
+    PublisherImpl publisher = PublisherImpl.builder(options, TOPIC)
+        .maxBatchMessages(2)
+        .maxBatchDelayMillis(LONG_DELAY)
+        .build();
+    Future<String> future1 = publisher.publish(MESSAGE1);
+    Future<String> future2 = publisher.publish(MESSAGE2);
+    for (Future<String> future : new Future[]{future1, future2}) {
+      try {
+        future.get();
+        fail("Expected ExecutionException");
+      } catch (ExecutionException ex) {
+        assertSame(exception, ex.getCause());
+      }
+    }
+    publisher.close();
+  }
+
+  @Test
+  public void testFlowControlFail() throws Exception {
+    SettableFuture<PublishResponse> response1 = SettableFuture.create();
+    EasyMock.expect(pubsubRpc.publish(request(MESSAGE1))).andReturn(response1);
+    EasyMock.expect(pubsubRpc.publish(request(MESSAGE3)))
+        .andReturn(Futures.immediateFuture(response("id3")));
+    EasyMock.replay(pubsubRpc);
+    PublisherImpl publisher = PublisherImpl.builder(options, TOPIC)
+        .maxBatchDelayMillis(NO_DELAY)
+        .maxOutstandingBytes((long) MESSAGE_BYTES)
+        .flowControlBehavior(FlowControlBehavior.FAIL)
+        .build();
+    Future<String> future1 = publisher.publish(MESSAGE1);
+    try {
+      publisher.publish(MESSAGE2).get();
+      fail("Expected ExecutionException");
+    } catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof RejectedExecutionException);
+    }
+    response1.set(response("id1"));
+    assertEquals("id1", future1.get());
+    assertEquals("id3", publisher.publish(MESSAGE3).get());
+    publisher.close();
+  }
+
+  @Test
+  public void testFlowControlBlock() throws Exception {
+    SettableFuture<PublishResponse> response1 = SettableFuture.create();
+    EasyMock.expect(pubsubRpc.publish(request(MESSAGE1))).andReturn(response1);
+    EasyMock.expect(pubsubRpc.publish(request(MESSAGE2)))
+        .andReturn(Futures.immediateFuture(response("id2")));
+    EasyMock.replay(pubsubRpc);
+    final PublisherImpl publisher = PublisherImpl.builder(options, TOPIC)
+        .maxBatchDelayMillis(LONG_DELAY)
+        .maxOutstandingBytes((long) MESSAGE_BYTES)
+        .build();
+    Future<String> future1 = publisher.publish(MESSAGE1);
+    final SettableFuture<Future<String>> future2 = SettableFuture.create();
+    Thread publishing = new Thread() {
+      @Override
+      public void run() {
+        future2.set(publisher.publish(MESSAGE2));
+      }
+    };
+    publishing.start();
+    // the blocked thread sends the pending batch
+    while (publishing.getState() != Thread.State.WAITING) {
+      Thread.sleep(10);
+    }
+    assertFalse(future2.isDone());
+    response1.set(response("id1"));
+    assertEquals("id1", future1.get());
+    publishing.join();
+    publisher.flush();
+    assertEquals("id2", future2.get().get());
+    publisher.close();
+  }
+
+  @Test
+  public void testCloseSendsPublishedMessages() throws Exception {
+    final SettableFuture<PublishResponse> response1 = SettableFuture.create();
+    EasyMock.expect(pubsubRpc.publish(request(MESSAGE1))).andReturn(response1);
+    EasyMock.replay(pubsubRpc);
+    final PublisherImpl publisher = PublisherImpl.builder(options, TOPIC)
+        .maxBatchDelayMillis(LONG_DELAY)
+        .build();
+    Future<String> future1 = publisher.publish(MESSAGE1);
+    executor.schedule(new Runnable() {
+      @Override
+      public void run() {
+        response1.set(response("id1"));
+      }
+    }, 100, TimeUnit.MILLISECONDS);
+    publisher.close();
+    assertTrue(future1.isDone());
+    assertEquals("id1", future1.get());
+    try {
+      publisher.publish(MESSAGE2);
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+  }
+}
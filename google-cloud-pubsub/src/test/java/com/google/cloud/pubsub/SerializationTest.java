@@ -21,6 +21,7 @@ import com.google.cloud.BaseSerializationTest;
 import com.google.cloud.GrpcServiceOptions.ExecutorFactory;
 import com.google.cloud.Restorable;
 import com.google.cloud.pubsub.PubSub.ListOption;
+import com.google.cloud.pubsub.PubSub.PublishOption;
 import com.google.cloud.pubsub.PubSub.PullOption;
 
 import java.io.Serializable;
@@ -51,8 +52,14 @@ public class SerializationTest extends BaseSerializationTest {
   private static final ListOption PAGE_TOKEN_OPTION = ListOption.pageToken("cursor");
   private static final ListOption PAGE_SIZE_OPTION = ListOption.pageSize(42);
   private static final PullOption MAX_QUEUED_CALLBACKS_OPTION = PullOption.maxQueuedCallbacks(42);
+  private static final PullOption MAX_QUEUED_BYTES_OPTION = PullOption.maxQueuedBytes(4242L);
+  private static final PullOption PARALLEL_PULL_COUNT_OPTION = PullOption.parallelPullCount(4);
   private static final PullOption EXECUTOR_FACTORY_OPTION =
       PullOption.executorFactory(new TestExecutorFactory());
+  private static final PublishOption MAX_BATCH_MESSAGES_OPTION =
+      PublishOption.maxBatchMessages(42);
+  private static final PublishOption FLOW_CONTROL_BEHAVIOR_OPTION =
+      PublishOption.flowControlBehavior(PublishOption.FlowControlBehavior.FAIL);
 
   public static class TestExecutorFactory
       implements ExecutorFactory<ScheduledExecutorService>, Serializable {
@@ -92,7 +99,9 @@ public class SerializationTest extends BaseSerializationTest {
         .build();
     return new Serializable[]{options, otherOptions, MESSAGE, RECEIVED_MESSAGE, SUBSCRIPTION_INFO,
         SUBSCRIPTION, SUBSCRIPTION_ID, TOPIC_INFO, TOPIC, PAGE_TOKEN_OPTION, PAGE_SIZE_OPTION,
-        MAX_QUEUED_CALLBACKS_OPTION, EXECUTOR_FACTORY_OPTION};
+        MAX_QUEUED_CALLBACKS_OPTION, MAX_QUEUED_BYTES_OPTION, PARALLEL_PULL_COUNT_OPTION,
+        EXECUTOR_FACTORY_OPTION, MAX_BATCH_MESSAGES_OPTION,
+        FLOW_CONTROL_BEHAVIOR_OPTION};
   }
 
   @Override
@@ -35,6 +35,7 @@ import com.google.cloud.PageImpl;
 import com.google.cloud.Policy;
 import com.google.cloud.Role;
 import com.google.cloud.pubsub.PubSub.ListOption;
+import com.google.cloud.pubsub.PubSub.PublishOption;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Futures;
 
@@ -269,6 +270,18 @@ public class TopicTest {
     assertEquals(messageIds, topic.publishAsync(messages).get());
   }
 
+  @Test
+  public void testPublisher() {
+    initializeExpectedTopic(1);
+    expect(pubsub.options()).andReturn(mockOptions);
+    PubSub.Publisher publisher = createStrictMock(PubSub.Publisher.class);
+    PublishOption option = PublishOption.maxBatchMessages(10);
+    expect(pubsub.publisher(NAME, option)).andReturn(publisher);
+    replay(pubsub);
+    initializeTopic();
+    assertSame(publisher, topic.publisher(option));
+  }
+
   @Test
   public void testListSubscriptions() {
     initializeExpectedTopic(1);
@@ -32,6 +32,7 @@ import com.google.cloud.storage.Acl.Entity;
 import com.google.cloud.storage.Storage.BlobTargetOption;
 import com.google.cloud.storage.Storage.BlobWriteOption;
 import com.google.cloud.storage.Storage.CopyRequest;
+import com.google.cloud.storage.Storage.ParallelDownloadOption;
 import com.google.cloud.storage.Storage.SignUrlOption;
 import com.google.cloud.storage.spi.StorageRpc;
 import com.google.cloud.storage.spi.StorageRpc.Tuple;
@@ -41,6 +42,8 @@ import com.google.common.io.BaseEncoding;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.security.Key;
 import java.util.Arrays;
 import java.util.List;
@@ -99,6 +102,8 @@ public class Blob extends BlobInfo {
           return Storage.BlobSourceOption.metagenerationNotMatch(blobInfo.getMetageneration());
         case CUSTOMER_SUPPLIED_KEY:
           return Storage.BlobSourceOption.decryptionKey((String) getValue());
+        case VERIFY_CHECKSUMS:
+          return Storage.BlobSourceOption.verifyChecksums();
         default:
           throw new AssertionError("Unexpected enum value");
       }
@@ -170,6 +175,16 @@ public class Blob extends BlobInfo {
       return new BlobSourceOption(StorageRpc.Option.CUSTOMER_SUPPLIED_KEY, key);
     }
 
+    /**
+     * Returns an option to verify the content read by a {@link ReadChannel} against the checksum
+     * reported by the service.
+     *
+     * @see Storage.BlobSourceOption#verifyChecksums()
+     */
+    public static BlobSourceOption verifyChecksums() {
+      return new BlobSourceOption(StorageRpc.Option.VERIFY_CHECKSUMS, true);
+    }
+
     static Storage.BlobSourceOption[] toSourceOptions(BlobInfo blobInfo,
         BlobSourceOption... options) {
       Storage.BlobSourceOption[] convertedOptions = new Storage.BlobSourceOption[options.length];
@@ -606,7 +621,9 @@ public class Blob extends BlobInfo {
   }
 
   /**
-   * Returns a {@code ReadChannel} object for reading this blob's content.
+   * Returns a {@code ReadChannel} object for reading this blob's content. The returned channel is
+   * a {@link com.google.cloud.ReadAheadChannel}, see
+   * {@link Storage#reader(BlobId, Storage.BlobSourceOption...)} for how to read chunks ahead.
    *
    * <p>Example of reading the blob's content through a reader.
    * <pre> {@code
@@ -627,6 +644,25 @@ public class Blob extends BlobInfo {
     return storage.reader(getBlobId(), toSourceOptions(this, options));
   }
 
+  /**
+   * Downloads this blob's content to {@code path} with a parallel sliced download. See
+   * {@link Storage#parallelDownload(BlobId, FileChannel, ParallelDownloadOption...)} for details.
+   *
+   * <p>Example of downloading the blob's content to a local file.
+   * <pre> {@code
+   * Path path = Paths.get("my_blob");
+   * blob.downloadTo(path, ParallelDownloadOption.verifyCrc32c());
+   * }</pre>
+   *
+   * @param path the local file to write the content to
+   * @param options parallel download options
+   * @return the downloaded {@code Blob}
+   * @throws StorageException upon failure
+   */
+  public Blob downloadTo(Path path, ParallelDownloadOption... options) {
+    return storage.parallelDownload(getBlobId(), path, options);
+  }
+
   /**
    * Returns a {@code WriteChannel} object for writing to this blob. By default any md5 and
    * crc32c values in the current blob are ignored unless requested via the
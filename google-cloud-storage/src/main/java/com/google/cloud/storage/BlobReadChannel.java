@@ -17,29 +17,54 @@
 package com.google.cloud.storage;
 
 import static com.google.cloud.RetryHelper.runWithRetries;
+import static com.google.cloud.RetryHelper.runWithRetriesAsync;
+import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.BufferPool;
+import com.google.cloud.ReadAheadChannel;
 import com.google.cloud.ReadChannel;
 import com.google.cloud.RestorableState;
 import com.google.cloud.RetryHelper;
+import com.google.cloud.storage.spi.HashingStorageRpc;
 import com.google.cloud.storage.spi.StorageRpc;
 import com.google.cloud.storage.spi.StorageRpc.Tuple;
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Default implementation for ReadChannel.
  */
-class BlobReadChannel implements ReadChannel {
+class BlobReadChannel implements ReadAheadChannel {
 
   private static final int DEFAULT_CHUNK_SIZE = 2 * 1024 * 1024;
+  // shared executor, used to issue read-ahead requests
+  private static final ListeningExecutorService READ_AHEAD_EXECUTOR =
+      MoreExecutors.listeningDecorator(Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+          .setDaemon(true).setNameFormat("blob-read-ahead-%d").build()));
+  // shared scheduler, used to retry failed read-ahead requests without holding a thread
+  private static final ScheduledExecutorService READ_AHEAD_RETRY_SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setDaemon(true).setNameFormat("blob-read-ahead-retry-%d").build());
 
   private final StorageOptions serviceOptions;
   private final BlobId blob;
@@ -49,11 +74,18 @@ class BlobReadChannel implements ReadChannel {
   private boolean isOpen;
   private boolean endOfStream;
   private int chunkSize = DEFAULT_CHUNK_SIZE;
+  private int readAhead;
 
   private final StorageRpc storageRpc;
   private final StorageObject storageObject;
+  private final BufferPool bufferPool;
+  private final boolean verifyChecksums;
+  private final Deque<Future<Tuple<StorageObject, byte[]>>> pendingReads = new ArrayDeque<>();
+  private long nextReadPosition;
   private int bufferPos;
   private byte[] buffer;
+  private ContentHasher hasher;
+  private String expectedHash;
 
   BlobReadChannel(StorageOptions serviceOptions, BlobId blob,
       Map<StorageRpc.Option, ?> requestOptions) {
@@ -63,6 +95,10 @@ class BlobReadChannel implements ReadChannel {
     isOpen = true;
     storageRpc = serviceOptions.rpc();
     storageObject = blob.toPb();
+    bufferPool = serviceOptions.bufferPool();
+    verifyChecksums = requestOptions.containsKey(StorageRpc.Option.VERIFY_CHECKSUMS);
+    checkArgument(!verifyChecksums || storageRpc instanceof HashingStorageRpc,
+        "Checksums can only be verified by a StorageRpc that implements HashingStorageRpc");
   }
 
   @Override
@@ -71,7 +107,8 @@ class BlobReadChannel implements ReadChannel {
         .position(position)
         .isOpen(isOpen)
         .endOfStream(endOfStream)
-        .chunkSize(chunkSize);
+        .chunkSize(chunkSize)
+        .readAhead(readAhead);
     if (buffer != null) {
       builder.position(position + bufferPos);
       builder.endOfStream(false);
@@ -87,6 +124,8 @@ class BlobReadChannel implements ReadChannel {
   @Override
   public void close() {
     if (isOpen) {
+      cancelPendingReads();
+      bufferPool.release(buffer);
       buffer = null;
       isOpen = false;
     }
@@ -102,16 +141,105 @@ class BlobReadChannel implements ReadChannel {
   public void seek(long position) throws IOException {
     validateOpen();
     this.position = position;
+    cancelPendingReads();
+    bufferPool.release(buffer);
     buffer = null;
     bufferPos = 0;
     endOfStream = false;
+    hasher = null;
   }
 
   @Override
   public void chunkSize(int chunkSize) {
+    cancelPendingReads();
     this.chunkSize = chunkSize <= 0 ? DEFAULT_CHUNK_SIZE : chunkSize;
   }
 
+  @Override
+  public void readAhead(int readAhead) {
+    checkArgument(readAhead >= 0, "Read-ahead must be >= 0");
+    cancelPendingReads();
+    this.readAhead = readAhead;
+  }
+
+  /**
+   * Reads a chunk of the blob. The returned {@code StorageObject} holds the etag of the blob and,
+   * if checksums are verified, the hashes reported by the service.
+   */
+  private Tuple<StorageObject, byte[]> readChunk(long from, int length) {
+    try {
+      return runWithRetries(chunkReader(from, length), serviceOptions.retryParams(),
+          StorageImpl.EXCEPTION_HANDLER, serviceOptions.clock());
+    } catch (RetryHelper.RetryHelperException e) {
+      throw StorageException.translateAndThrow(e);
+    }
+  }
+
+  private Callable<Tuple<StorageObject, byte[]>> chunkReader(final long from, final int length) {
+    return new Callable<Tuple<StorageObject, byte[]>>() {
+      @Override
+      public Tuple<StorageObject, byte[]> call() {
+        if (verifyChecksums) {
+          return ((HashingStorageRpc) storageRpc)
+              .readWithHashes(storageObject, requestOptions, from, length);
+        }
+        Tuple<String, byte[]> result = storageRpc.read(storageObject, requestOptions, from,
+            length);
+        return Tuple.of(new StorageObject().setEtag(result.x()), result.y());
+      }
+    };
+  }
+
+  /**
+   * Reads a chunk of the blob in the background. Every attempt runs on the read-ahead executor,
+   * while the delays between attempts are handled by the retry scheduler, so that no thread is
+   * blocked while waiting to retry.
+   */
+  private ListenableFuture<Tuple<StorageObject, byte[]>> readChunkAsync(long from, int length) {
+    final Callable<Tuple<StorageObject, byte[]>> reader = chunkReader(from, length);
+    return runWithRetriesAsync(new RetryHelper.AsyncCallable<Tuple<StorageObject, byte[]>>() {
+      @Override
+      public ListenableFuture<Tuple<StorageObject, byte[]>> call() {
+        return READ_AHEAD_EXECUTOR.submit(reader);
+      }
+    }, serviceOptions.retryParams(), StorageImpl.EXCEPTION_HANDLER, serviceOptions.clock(),
+        READ_AHEAD_RETRY_SCHEDULER);
+  }
+
+  private Tuple<StorageObject, byte[]> nextPrefetchedChunk() throws IOException {
+    if (pendingReads.isEmpty()) {
+      nextReadPosition = position;
+      pendingReads.add(readChunkAsync(nextReadPosition, chunkSize));
+      nextReadPosition += chunkSize;
+    }
+    Future<Tuple<StorageObject, byte[]>> future = pendingReads.poll();
+    // keep readAhead chunks in flight while the current one is consumed
+    while (pendingReads.size() < readAhead) {
+      pendingReads.add(readChunkAsync(nextReadPosition, chunkSize));
+      nextReadPosition += chunkSize;
+    }
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      close();
+      Thread.currentThread().interrupt();
+      throw new ClosedByInterruptException();
+    } catch (ExecutionException e) {
+      cancelPendingReads();
+      if (e.getCause() instanceof RetryHelper.RetryHelperException) {
+        throw StorageException.translateAndThrow((RetryHelper.RetryHelperException) e.getCause());
+      }
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private void cancelPendingReads() {
+    for (Future<Tuple<StorageObject, byte[]>> future : pendingReads) {
+      future.cancel(true);
+    }
+    pendingReads.clear();
+  }
+
   @Override
   public int read(ByteBuffer byteBuffer) throws IOException {
     validateOpen();
@@ -119,30 +247,33 @@ class BlobReadChannel implements ReadChannel {
       if (endOfStream) {
         return -1;
       }
-      final int toRead = Math.max(byteBuffer.remaining(), chunkSize);
-      try {
-        Tuple<String, byte[]> result = runWithRetries(new Callable<Tuple<String, byte[]>>() {
-          @Override
-          public Tuple<String, byte[]> call() {
-            return storageRpc.read(storageObject, requestOptions, position, toRead);
-          }
-        }, serviceOptions.retryParams(), StorageImpl.EXCEPTION_HANDLER, serviceOptions.clock());
-        if (result.y().length > 0 && lastEtag != null && !Objects.equals(result.x(), lastEtag)) {
-          StringBuilder messageBuilder = new StringBuilder();
-          messageBuilder.append("Blob ").append(blob).append(" was updated while reading");
-          throw new StorageException(0, messageBuilder.toString());
-        }
-        lastEtag = result.x();
-        buffer = result.y();
-      } catch (RetryHelper.RetryHelperException e) {
-        throw StorageException.translateAndThrow(e);
+      Tuple<StorageObject, byte[]> result;
+      int toRead;
+      if (readAhead > 0) {
+        toRead = chunkSize;
+        result = nextPrefetchedChunk();
+      } else {
+        toRead = Math.max(byteBuffer.remaining(), chunkSize);
+        result = readChunk(position, toRead);
       }
-      if (toRead > buffer.length) {
+      String etag = result.x() != null ? result.x().getEtag() : null;
+      if (result.y().length > 0 && lastEtag != null && !Objects.equals(etag, lastEtag)) {
+        cancelPendingReads();
+        StringBuilder messageBuilder = new StringBuilder();
+        messageBuilder.append("Blob ").append(blob).append(" was updated while reading");
+        throw new StorageException(0, messageBuilder.toString());
+      }
+      lastEtag = etag;
+      updateHash(result.x(), result.y());
+      if (toRead > result.y().length) {
+        cancelPendingReads();
         endOfStream = true;
-        if (buffer.length == 0) {
-          buffer = null;
-          return -1;
-        }
+        verifyHash();
+      }
+      buffer = result.y();
+      if (endOfStream && buffer.length == 0) {
+        buffer = null;
+        return -1;
       }
     }
     int toWrite = Math.min(buffer.length - bufferPos, byteBuffer.remaining());
@@ -150,12 +281,45 @@ class BlobReadChannel implements ReadChannel {
     bufferPos += toWrite;
     if (bufferPos >= buffer.length) {
       position += buffer.length;
+      // the pool ignores arrays it did not hand out to the RPC
+      bufferPool.release(buffer);
       buffer = null;
       bufferPos = 0;
     }
     return toWrite;
   }
 
+  /**
+   * Hashes a chunk of content read at {@link #position}. Content is only hashed if checksums are
+   * verified and the blob has been read sequentially from the start.
+   */
+  private void updateHash(StorageObject metadata, byte[] chunk) {
+    if (verifyChecksums && position == 0) {
+      hasher = null;
+      expectedHash = null;
+      if (metadata != null && metadata.getCrc32c() != null) {
+        hasher = ContentHasher.crc32c();
+        expectedHash = metadata.getCrc32c();
+      } else if (metadata != null && metadata.getMd5Hash() != null) {
+        hasher = ContentHasher.md5();
+        expectedHash = metadata.getMd5Hash();
+      }
+    }
+    if (hasher != null) {
+      hasher.update(chunk, 0, chunk.length);
+    }
+  }
+
+  private void verifyHash() {
+    if (hasher != null) {
+      try {
+        hasher.verify(expectedHash, "the content read from blob " + blob);
+      } finally {
+        hasher = null;
+      }
+    }
+  }
+
   static class StateImpl implements RestorableState<ReadChannel>, Serializable {
 
     private static final long serialVersionUID = 3889420316004453706L;
@@ -168,6 +332,7 @@ class BlobReadChannel implements ReadChannel {
     private final boolean isOpen;
     private final boolean endOfStream;
     private final int chunkSize;
+    private final int readAhead;
 
     StateImpl(Builder builder) {
       this.serviceOptions = builder.serviceOptions;
@@ -178,6 +343,7 @@ class BlobReadChannel implements ReadChannel {
       this.isOpen = builder.isOpen;
       this.endOfStream = builder.endOfStream;
       this.chunkSize = builder.chunkSize;
+      this.readAhead = builder.readAhead;
     }
 
     static class Builder {
@@ -189,6 +355,7 @@ class BlobReadChannel implements ReadChannel {
       private boolean isOpen;
       private boolean endOfStream;
       private int chunkSize;
+      private int readAhead;
 
       private Builder(StorageOptions options, BlobId blob, Map<StorageRpc.Option, ?> reqOptions) {
         this.serviceOptions = options;
@@ -221,6 +388,11 @@ class BlobReadChannel implements ReadChannel {
         return this;
       }
 
+      Builder readAhead(int readAhead) {
+        this.readAhead = readAhead;
+        return this;
+      }
+
       RestorableState<ReadChannel> build() {
         return new StateImpl(this);
       }
@@ -239,13 +411,14 @@ class BlobReadChannel implements ReadChannel {
       channel.isOpen = isOpen;
       channel.endOfStream = endOfStream;
       channel.chunkSize = chunkSize;
+      channel.readAhead = readAhead;
       return channel;
     }
 
     @Override
     public int hashCode() {
       return Objects.hash(serviceOptions, blob, requestOptions, lastEtag, position, isOpen,
-          endOfStream, chunkSize);
+          endOfStream, chunkSize, readAhead);
     }
 
     @Override
@@ -264,7 +437,8 @@ class BlobReadChannel implements ReadChannel {
           && this.position == other.position
           && this.isOpen == other.isOpen
           && this.endOfStream == other.endOfStream
-          && this.chunkSize == other.chunkSize;
+          && this.chunkSize == other.chunkSize
+          && this.readAhead == other.readAhead;
     }
 
     @Override
@@ -17,37 +17,64 @@
 package com.google.cloud.storage;
 
 import static com.google.cloud.RetryHelper.runWithRetries;
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.concurrent.Executors.callable;
 
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.BaseWriteBehindChannel;
 import com.google.cloud.BaseWriteChannel;
 import com.google.cloud.RestorableState;
 import com.google.cloud.RetryHelper;
 import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.spi.HashingStorageRpc;
 import com.google.cloud.storage.spi.StorageRpc;
+import com.google.common.collect.ImmutableMap;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Callable;
 
 /**
  * Write channel implementation to upload Google Cloud Storage blobs.
  */
-class BlobWriteChannel extends BaseWriteChannel<StorageOptions, BlobInfo> {
+class BlobWriteChannel extends BaseWriteBehindChannel<StorageOptions, BlobInfo> {
+
+  private static final Map<StorageRpc.Option, ?> EMPTY_RPC_OPTIONS = ImmutableMap.of();
+
+  // computes the checksum of the uploaded content, null if the content is not verified
+  private final ContentHasher hasher;
 
   BlobWriteChannel(StorageOptions options, BlobInfo blob, Map<StorageRpc.Option, ?> optionsMap) {
-    this(options, blob, open(options, blob, optionsMap));
+    this(options, blob, open(options, blob, optionsMap),
+        optionsMap.containsKey(StorageRpc.Option.VERIFY_CHECKSUMS) ? ContentHasher.crc32c() : null);
   }
 
   BlobWriteChannel(StorageOptions options, BlobInfo blobInfo, String uploadId) {
+    this(options, blobInfo, uploadId, null);
+  }
+
+  private BlobWriteChannel(StorageOptions options, BlobInfo blobInfo, String uploadId,
+      ContentHasher hasher) {
     super(options, blobInfo, uploadId);
+    this.hasher = hasher;
   }
 
   @Override
-  protected void flushBuffer(final int length, final boolean last) {
+  protected void flushBuffer(final byte[] buffer, final int position, final int length,
+      final boolean last) {
+    if (hasher != null) {
+      hasher.update(buffer, 0, length);
+      if (last) {
+        verify(writeLast(buffer, position, length));
+        return;
+      }
+    }
     try {
       runWithRetries(callable(new Runnable() {
         @Override
         public void run() {
-          options().rpc().write(uploadId(), buffer(), 0, position(), length, last);
+          options().rpc().write(uploadId(), buffer, 0, position, length, last);
         }
       }), options().retryParams(), StorageImpl.EXCEPTION_HANDLER, options().clock());
     } catch (RetryHelper.RetryHelperException e) {
@@ -55,17 +82,68 @@ class BlobWriteChannel extends BaseWriteChannel<StorageOptions, BlobInfo> {
     }
   }
 
+  private StorageObject writeLast(final byte[] buffer, final int position, final int length) {
+    try {
+      return runWithRetries(new Callable<StorageObject>() {
+        @Override
+        public StorageObject call() {
+          return ((HashingStorageRpc) options().rpc())
+              .writeWithResponse(uploadId(), buffer, 0, position, length, true);
+        }
+      }, options().retryParams(), StorageImpl.EXCEPTION_HANDLER, options().clock());
+    } catch (RetryHelper.RetryHelperException e) {
+      throw StorageException.translateAndThrow(e);
+    }
+  }
+
+  /**
+   * Compares the checksum of the uploaded content with the one of the created blob. On mismatch
+   * the created generation is deleted, so that corrupted content is not left behind.
+   */
+  private void verify(StorageObject created) {
+    if (created == null || created.getCrc32c() == null) {
+      return;
+    }
+    try {
+      hasher.verify(created.getCrc32c(), "the content uploaded to blob " + entity().getBlobId());
+    } catch (StorageException ex) {
+      try {
+        options().rpc().delete(new StorageObject()
+            .setBucket(created.getBucket())
+            .setName(created.getName())
+            .setGeneration(created.getGeneration()), EMPTY_RPC_OPTIONS);
+      } catch (RuntimeException deleteException) {
+        // the corrupted blob is left behind, the checksum mismatch is reported anyway
+        ex.addSuppressed(deleteException);
+      }
+      throw ex;
+    }
+  }
+
   protected StateImpl.Builder stateBuilder() {
-    return StateImpl.builder(options(), entity(), uploadId());
+    // called once all flushed chunks have been hashed, unflushed content is part of the state
+    return StateImpl.builder(options(), entity(), uploadId())
+        .crc32c(hasher != null ? hasher.crc32cValue() : null);
   }
 
   private static String open(final StorageOptions options, final BlobInfo blob,
-      final Map<StorageRpc.Option, ?> optionsMap) {
+      Map<StorageRpc.Option, ?> optionsMap) {
+    final Map<StorageRpc.Option, ?> openOptions;
+    if (optionsMap.containsKey(StorageRpc.Option.VERIFY_CHECKSUMS)) {
+      checkArgument(options.rpc() instanceof HashingStorageRpc,
+          "Checksums can only be verified by a StorageRpc that implements HashingStorageRpc");
+      // checksums are verified by the channel, the option is not sent to the service
+      Map<StorageRpc.Option, Object> filtered = new HashMap<>(optionsMap);
+      filtered.remove(StorageRpc.Option.VERIFY_CHECKSUMS);
+      openOptions = filtered;
+    } else {
+      openOptions = optionsMap;
+    }
     try {
       return runWithRetries(new Callable<String>() {
         @Override
         public String call() {
-          return options.rpc().open(blob.toPb(), optionsMap);
+          return options.rpc().open(blob.toPb(), openOptions);
         }
       }, options.retryParams(), StorageImpl.EXCEPTION_HANDLER, options.clock());
     } catch (RetryHelper.RetryHelperException e) {
@@ -77,16 +155,30 @@ class BlobWriteChannel extends BaseWriteChannel<StorageOptions, BlobInfo> {
 
     private static final long serialVersionUID = -9028324143780151286L;
 
+    private final Long crc32c;
+
     StateImpl(Builder builder) {
       super(builder);
+      this.crc32c = builder.crc32c;
     }
 
     static class Builder extends BaseWriteChannel.BaseState.Builder<StorageOptions, BlobInfo> {
 
+      private Long crc32c;
+
       private Builder(StorageOptions options, BlobInfo blobInfo, String uploadId) {
         super(options, blobInfo, uploadId);
       }
 
+      /**
+       * Sets the CRC32C checksum of the content flushed so far, {@code null} if the uploaded
+       * content is not verified.
+       */
+      Builder crc32c(Long crc32c) {
+        this.crc32c = crc32c;
+        return this;
+      }
+
       @Override
       public RestorableState<WriteChannel> build() {
         return new StateImpl(this);
@@ -99,9 +191,21 @@ class BlobWriteChannel extends BaseWriteChannel<StorageOptions, BlobInfo> {
 
     @Override
     public WriteChannel restore() {
-      BlobWriteChannel channel = new BlobWriteChannel(serviceOptions, entity, uploadId);
+      BlobWriteChannel channel = new BlobWriteChannel(serviceOptions, entity, uploadId,
+          crc32c != null ? ContentHasher.crc32c(crc32c) : null);
       channel.restore(this);
       return channel;
     }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(super.hashCode(), crc32c);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof StateImpl && super.equals(obj)
+          && Objects.equals(crc32c, ((StateImpl) obj).crc32c);
+    }
   }
 }
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import com.google.cloud.BaseServiceException;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
+
+import java.lang.reflect.Constructor;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Checksum;
+
+/**
+ * Incrementally computes the CRC32C checksum or the MD5 hash of blob content, encoded in base64
+ * as in {@link BlobInfo#getCrc32c()} and {@link BlobInfo#getMd5()}. CRC32C is computed with
+ * {@code java.util.zip.CRC32C}, which is intrinsified on most platforms, when the running JDK
+ * provides it (9 and later), and with a pure Java slicing-by-8 implementation otherwise.
+ */
+abstract class ContentHasher {
+
+  private static final Constructor<? extends Checksum> JDK_CRC32C = jdkCrc32c();
+
+  private final String algorithm;
+
+  private ContentHasher(String algorithm) {
+    this.algorithm = algorithm;
+  }
+
+  /**
+   * Returns a hasher that computes the CRC32C checksum of content.
+   */
+  static ContentHasher crc32c() {
+    return crc32c(newCrc32c());
+  }
+
+  /**
+   * Returns a hasher that continues the CRC32C checksum of some content, given the checksum of
+   * the content seen so far as returned by {@link #crc32cValue()}.
+   */
+  static ContentHasher crc32c(long value) {
+    return crc32c(new Crc32c(value));
+  }
+
+  private static ContentHasher crc32c(final Checksum checksum) {
+    return new ContentHasher("CRC32C") {
+      @Override
+      void update(byte[] bytes, int offset, int length) {
+        checksum.update(bytes, offset, length);
+      }
+
+      @Override
+      long crc32cValue() {
+        return checksum.getValue();
+      }
+
+      @Override
+      String hash() {
+        return BaseEncoding.base64().encode(Ints.toByteArray((int) checksum.getValue()));
+      }
+    };
+  }
+
+  /**
+   * Returns a hasher that computes the MD5 hash of content.
+   */
+  static ContentHasher md5() {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+    return new ContentHasher("MD5") {
+      @Override
+      void update(byte[] bytes, int offset, int length) {
+        digest.update(bytes, offset, length);
+      }
+
+      @Override
+      String hash() {
+        return BaseEncoding.base64().encode(digest.digest());
+      }
+    };
+  }
+
+  /**
+   * Updates the hash with {@code length} bytes of {@code bytes}, starting at {@code offset}.
+   */
+  abstract void update(byte[] bytes, int offset, int length);
+
+  /**
+   * Returns the CRC32C checksum of the content seen so far, without ending the computation.
+   *
+   * @throws UnsupportedOperationException if this hasher does not compute a CRC32C checksum
+   */
+  long crc32cValue() {
+    throw new UnsupportedOperationException(algorithm + " can not be continued");
+  }
+
+  /**
+   * Returns the hash of the content seen so far, encoded in base64. This method can only be called
+   * once.
+   */
+  abstract String hash();
+
+  /**
+   * Throws a {@link StorageException} with reason {@link StorageException#CHECKSUM_MISMATCH} if the
+   * hash of the content seen so far is not {@code expectedHash}.
+   *
+   * @param expectedHash the expected hash, encoded in base64
+   * @param content a description of the hashed content, used in the exception message
+   */
+  void verify(String expectedHash, String content) {
+    String hash = hash();
+    if (!expectedHash.equals(hash)) {
+      throw new StorageException(BaseServiceException.UNKNOWN_CODE, algorithm + " of " + content
+          + " is " + hash + " but " + expectedHash + " was expected",
+          StorageException.CHECKSUM_MISMATCH, null);
+    }
+  }
+
+  static Checksum newCrc32c() {
+    if (JDK_CRC32C != null) {
+      try {
+        return JDK_CRC32C.newInstance();
+      } catch (ReflectiveOperationException ex) {
+        // fall through to the pure Java implementation
+      }
+    }
+    return new Crc32c();
+  }
+
+  private static Constructor<? extends Checksum> jdkCrc32c() {
+    try {
+      return Class.forName("java.util.zip.CRC32C").asSubclass(Checksum.class).getConstructor();
+    } catch (ReflectiveOperationException | RuntimeException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * CRC32C (Castagnoli) checksum, computed 8 bytes at a time.
+   */
+  static final class Crc32c implements Checksum {
+
+    private static final int[][] TABLES = new int[8][256];
+
+    static {
+      for (int i = 0; i < 256; i++) {
+        int crc = i;
+        for (int j = 0; j < 8; j++) {
+          crc = (crc >>> 1) ^ (0x82F63B78 & -(crc & 1));
+        }
+        TABLES[0][i] = crc;
+      }
+      for (int i = 0; i < 256; i++) {
+        for (int t = 1; t < 8; t++) {
+          int previous = TABLES[t - 1][i];
+          TABLES[t][i] = (previous >>> 8) ^ TABLES[0][previous & 0xFF];
+        }
+      }
+    }
+
+    private int crc;
+
+    Crc32c() {
+      reset();
+    }
+
+    Crc32c(long value) {
+      crc = ~(int) value;
+    }
+
+    @Override
+    public void update(int b) {
+      crc = (crc >>> 8) ^ TABLES[0][(crc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+      int value = crc;
+      int index = offset;
+      int end = offset + length;
+      int[] t0 = TABLES[0];
+      int[] t1 = TABLES[1];
+      int[] t2 = TABLES[2];
+      int[] t3 = TABLES[3];
+      int[] t4 = TABLES[4];
+      int[] t5 = TABLES[5];
+      int[] t6 = TABLES[6];
+      int[] t7 = TABLES[7];
+      for (; end - index >= 8; index += 8) {
+        value ^= (bytes[index] & 0xFF)
+            | (bytes[index + 1] & 0xFF) << 8
+            | (bytes[index + 2] & 0xFF) << 16
+            | (bytes[index + 3] & 0xFF) << 24;
+        value = t7[value & 0xFF]
+            ^ t6[(value >>> 8) & 0xFF]
+            ^ t5[(value >>> 16) & 0xFF]
+            ^ t4[value >>> 24]
+            ^ t3[bytes[index + 4] & 0xFF]
+            ^ t2[bytes[index + 5] & 0xFF]
+            ^ t1[bytes[index + 6] & 0xFF]
+            ^ t0[bytes[index + 7] & 0xFF];
+      }
+      for (; index < end; index++) {
+        value = (value >>> 8) ^ t0[(value ^ bytes[index]) & 0xFF];
+      }
+      crc = value;
+    }
+
+    @Override
+    public long getValue() {
+      return ~crc & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+      crc = 0xFFFFFFFF;
+    }
+  }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.cloud.BaseServiceException;
+import com.google.cloud.BufferPool;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.Storage.BlobTargetOption;
+import com.google.cloud.storage.Storage.ComposeRequest;
+import com.google.cloud.storage.Storage.ParallelUploadOption;
+import com.google.cloud.storage.spi.StorageRpc;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads content to a blob by uploading parts of it concurrently as temporary blobs and composing
+ * them into the target blob.
+ */
+final class ParallelCompositeUpload {
+
+  static final int DEFAULT_PARALLELISM = 8;
+  static final long DEFAULT_PART_SIZE = 32L * 1024 * 1024;
+  static final int MAX_COMPOSE_SOURCES = 32;
+  private static final int READ_BUFFER_SIZE = 2 * 1024 * 1024;
+
+  private final StorageImpl storage;
+  private final BlobInfo target;
+  private final int parallelism;
+  private final long partSize;
+  private final String temporaryPrefix;
+  private final List<BlobTargetOption> targetOptions;
+  private final BlobTargetOption[] temporaryOptions;
+  private final AtomicInteger temporaryCount = new AtomicInteger();
+  private final List<BlobId> temporaries = Collections.synchronizedList(new ArrayList<BlobId>());
+  private final ParallelTasks tasks;
+
+  @SuppressWarnings("unchecked")
+  ParallelCompositeUpload(StorageImpl storage, BlobInfo target, ParallelUploadOption... options) {
+    EnumMap<ParallelUploadOption.Option, Object> optionMap =
+        Maps.newEnumMap(ParallelUploadOption.Option.class);
+    for (ParallelUploadOption option : options) {
+      optionMap.put(option.getOption(), option.getValue());
+    }
+    this.storage = storage;
+    this.target = target.toBuilder().setMd5(null).setCrc32c(null).build();
+    this.parallelism = (Integer) firstNonNull(
+        optionMap.get(ParallelUploadOption.Option.PARALLELISM), DEFAULT_PARALLELISM);
+    this.partSize = (Long) firstNonNull(
+        optionMap.get(ParallelUploadOption.Option.PART_SIZE), DEFAULT_PART_SIZE);
+    this.temporaryPrefix = (String) firstNonNull(
+        optionMap.get(ParallelUploadOption.Option.TEMPORARY_PREFIX),
+        target.getName() + ".parallel-upload-" + UUID.randomUUID() + "-");
+    this.targetOptions = (List<BlobTargetOption>) firstNonNull(
+        optionMap.get(ParallelUploadOption.Option.TARGET_OPTIONS),
+        ImmutableList.<BlobTargetOption>of());
+    List<BlobTargetOption> encryptionOptions = new ArrayList<>();
+    for (BlobTargetOption option : targetOptions) {
+      if (option.getRpcOption() == StorageRpc.Option.CUSTOMER_SUPPLIED_KEY) {
+        encryptionOptions.add(option);
+      }
+    }
+    this.temporaryOptions =
+        encryptionOptions.toArray(new BlobTargetOption[encryptionOptions.size()]);
+    this.tasks = new ParallelTasks(parallelism, "parallel-upload-%d");
+  }
+
+  /**
+   * Uploads the content of {@code channel}, from position {@code 0} to its current size.
+   */
+  Blob upload(final FileChannel channel) {
+    try {
+      long size = channel.size();
+      List<Future<BlobInfo>> parts = new ArrayList<>();
+      for (long offset = 0; offset < size; offset += partSize) {
+        final long partOffset = offset;
+        final long partLength = Math.min(partSize, size - offset);
+        parts.add(tasks.submit(new Callable<BlobInfo>() {
+          @Override
+          public BlobInfo call() throws IOException {
+            return uploadPart(channel, partOffset, partLength);
+          }
+        }));
+      }
+      return compose(tasks.getAll(parts));
+    } catch (IOException ex) {
+      throw new StorageException(BaseServiceException.UNKNOWN_CODE, "Error reading content", ex);
+    } finally {
+      cleanUp();
+    }
+  }
+
+  /**
+   * Uploads the content of {@code content}, reading it sequentially and holding in memory at most
+   * {@code parallelism + 1} parts at once.
+   */
+  Blob upload(InputStream content) {
+    checkArgument(partSize <= Integer.MAX_VALUE,
+        "Part size must be <= %s when uploading from an input stream", Integer.MAX_VALUE);
+    final Semaphore inFlight = new Semaphore(parallelism);
+    try {
+      List<Future<BlobInfo>> parts = new ArrayList<>();
+      while (!tasks.isAborted()) {
+        final byte[] part = new byte[(int) partSize];
+        final int length = ByteStreams.read(content, part, 0, part.length);
+        if (length == 0) {
+          break;
+        }
+        inFlight.acquireUninterruptibly();
+        parts.add(tasks.submit(new Callable<BlobInfo>() {
+          @Override
+          public BlobInfo call() throws IOException {
+            try {
+              return uploadPart(ByteBuffer.wrap(part, 0, length));
+            } finally {
+              inFlight.release();
+            }
+          }
+        }));
+        if (length < part.length) {
+          break;
+        }
+      }
+      return compose(tasks.getAll(parts));
+    } catch (IOException ex) {
+      throw new StorageException(BaseServiceException.UNKNOWN_CODE, "Error reading content", ex);
+    } finally {
+      cleanUp();
+    }
+  }
+
+  private BlobInfo newTemporary() {
+    BlobInfo temporary = BlobInfo.newBuilder(target.getBucket(),
+        temporaryPrefix + temporaryCount.getAndIncrement())
+        .setContentType(target.getContentType())
+        .build();
+    temporaries.add(temporary.getBlobId());
+    return temporary;
+  }
+
+  /**
+   * Uploads {@code length} bytes of {@code channel}, starting at {@code offset}, to a new temporary
+   * blob. Parts are read with positional reads, so that several parts can be read concurrently.
+   * If the upload is aborted the writer is not closed, so that no partial blob is created.
+   */
+  private BlobInfo uploadPart(FileChannel channel, long offset, long length) throws IOException {
+    BlobInfo part = newTemporary();
+    BufferPool bufferPool = storage.options().bufferPool();
+    byte[] array = bufferPool.acquire(READ_BUFFER_SIZE);
+    try {
+      WriteChannel writer = storage.writer(part, temporaryOptions);
+      ByteBuffer buffer = ByteBuffer.wrap(array);
+      long position = offset;
+      long end = offset + length;
+      while (position < end) {
+        tasks.checkNotAborted();
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), end - position));
+        while (buffer.hasRemaining()) {
+          int read = channel.read(buffer, position + buffer.position());
+          if (read < 0) {
+            throw new EOFException("Unexpected end of content at position "
+                + (position + buffer.position()));
+          }
+        }
+        position += buffer.position();
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          writer.write(buffer);
+        }
+      }
+      tasks.checkNotAborted();
+      writer.close();
+    } finally {
+      bufferPool.release(array);
+    }
+    return part;
+  }
+
+  private BlobInfo uploadPart(ByteBuffer content) throws IOException {
+    BlobInfo part = newTemporary();
+    WriteChannel writer = storage.writer(part, temporaryOptions);
+    while (content.hasRemaining()) {
+      tasks.checkNotAborted();
+      writer.write(content);
+    }
+    tasks.checkNotAborted();
+    writer.close();
+    return part;
+  }
+
+  /**
+   * Composes {@code sources} into the target blob. If there are more than
+   * {@link #MAX_COMPOSE_SOURCES} sources, they are first composed concurrently into intermediate
+   * temporary blobs, level by level.
+   */
+  private Blob compose(List<BlobInfo> sources) throws IOException {
+    if (sources.isEmpty()) {
+      return storage.create(target, new byte[0],
+          targetOptions.toArray(new BlobTargetOption[targetOptions.size()]));
+    }
+    while (sources.size() > MAX_COMPOSE_SOURCES) {
+      List<Future<BlobInfo>> composed = new ArrayList<>();
+      for (final List<BlobInfo> group : Lists.partition(sources, MAX_COMPOSE_SOURCES)) {
+        composed.add(tasks.submit(new Callable<BlobInfo>() {
+          @Override
+          public BlobInfo call() {
+            BlobInfo temporary = newTemporary();
+            storage.compose(composeRequest(group, temporary, Arrays.asList(temporaryOptions)));
+            return temporary;
+          }
+        }));
+      }
+      sources = tasks.getAll(composed);
+    }
+    return storage.compose(composeRequest(sources, target, targetOptions));
+  }
+
+  private static ComposeRequest composeRequest(List<BlobInfo> sources, BlobInfo target,
+      List<BlobTargetOption> targetOptions) {
+    ComposeRequest.Builder builder = ComposeRequest.newBuilder()
+        .setTarget(target)
+        .setTargetOptions(targetOptions);
+    for (BlobInfo source : sources) {
+      builder.addSource(source.getName());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Waits for running tasks to complete or abort and deletes all temporary blobs.
+   */
+  private void cleanUp() {
+    tasks.shutdown();
+    List<BlobId> toDelete;
+    synchronized (temporaries) {
+      toDelete = new ArrayList<>(temporaries);
+    }
+    if (!toDelete.isEmpty()) {
+      try {
+        storage.delete(toDelete);
+      } catch (RuntimeException ex) {
+        // temporary blobs that could not be deleted are left behind, the upload result stands
+      }
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import static com.google.cloud.RetryHelper.runWithRetries;
+import static com.google.common.base.MoreObjects.firstNonNull;
+
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.BaseServiceException;
+import com.google.cloud.BufferPool;
+import com.google.cloud.RetryHelper.RetryHelperException;
+import com.google.cloud.storage.Storage.BlobSourceOption;
+import com.google.cloud.storage.Storage.ParallelDownloadOption;
+import com.google.cloud.storage.Storage.ProgressListener;
+import com.google.cloud.storage.spi.StorageRpc;
+import com.google.cloud.storage.spi.StorageRpc.Tuple;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads a blob to a file channel by fetching disjoint slices of it concurrently and writing
+ * each slice at its own offset.
+ */
+final class ParallelDownload {
+
+  static final int DEFAULT_PARALLELISM = 8;
+  static final int DEFAULT_SLICE_SIZE = 8 * 1024 * 1024;
+  private static final int VERIFY_BUFFER_SIZE = 2 * 1024 * 1024;
+
+  private final StorageImpl storage;
+  private final BlobId blob;
+  private final int parallelism;
+  private final int sliceSize;
+  private final boolean verifyCrc32c;
+  private final ProgressListener listener;
+  private final Map<StorageRpc.Option, ?> requestOptions;
+  private final StorageRpc storageRpc;
+  private final BufferPool bufferPool;
+  private final ParallelTasks tasks;
+  private String etag;
+  private long downloadedBytes;
+
+  @SuppressWarnings("unchecked")
+  ParallelDownload(StorageImpl storage, BlobId blob, ParallelDownloadOption... options) {
+    EnumMap<ParallelDownloadOption.Option, Object> optionMap =
+        Maps.newEnumMap(ParallelDownloadOption.Option.class);
+    for (ParallelDownloadOption option : options) {
+      optionMap.put(option.getOption(), option.getValue());
+    }
+    this.storage = storage;
+    this.blob = blob;
+    this.parallelism = (Integer) firstNonNull(
+        optionMap.get(ParallelDownloadOption.Option.PARALLELISM), DEFAULT_PARALLELISM);
+    this.sliceSize = (Integer) firstNonNull(
+        optionMap.get(ParallelDownloadOption.Option.SLICE_SIZE), DEFAULT_SLICE_SIZE);
+    this.verifyCrc32c = optionMap.containsKey(ParallelDownloadOption.Option.VERIFY_CRC32C);
+    this.listener = (ProgressListener) optionMap.get(
+        ParallelDownloadOption.Option.PROGRESS_LISTENER);
+    List<BlobSourceOption> sourceOptions = (List<BlobSourceOption>) firstNonNull(
+        optionMap.get(ParallelDownloadOption.Option.SOURCE_OPTIONS),
+        ImmutableList.<BlobSourceOption>of());
+    this.requestOptions = StorageImpl.optionMap(blob,
+        sourceOptions.toArray(new BlobSourceOption[sourceOptions.size()]));
+    this.storageRpc = storage.options().rpc();
+    this.bufferPool = storage.options().bufferPool();
+    this.tasks = new ParallelTasks(parallelism, "parallel-download-%d");
+  }
+
+  Blob download(final FileChannel channel) {
+    try {
+      StorageObject metadata = getMetadata();
+      // pin the generation, so that all slices are read from the same content
+      final StorageObject source = new StorageObject()
+          .setBucket(metadata.getBucket())
+          .setName(metadata.getName())
+          .setGeneration(metadata.getGeneration());
+      final long size = metadata.getSize().longValue();
+      if (channel.size() > size) {
+        channel.truncate(size);
+      }
+      if (size > 0) {
+        channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+      }
+      List<Future<Void>> slices = new ArrayList<>();
+      for (long offset = 0; offset < size; offset += sliceSize) {
+        final long sliceOffset = offset;
+        final long sliceEnd = Math.min(offset + sliceSize, size);
+        slices.add(tasks.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            downloadSlice(channel, source, sliceOffset, sliceEnd, size);
+            return null;
+          }
+        }));
+      }
+      tasks.getAll(slices);
+      if (verifyCrc32c && metadata.getCrc32c() != null) {
+        verifyCrc32c(channel, size, metadata.getCrc32c());
+      }
+      return Blob.fromPb(storage, metadata);
+    } catch (IOException ex) {
+      throw new StorageException(BaseServiceException.UNKNOWN_CODE,
+          "Error writing content of blob " + blob, ex);
+    } finally {
+      tasks.shutdown();
+    }
+  }
+
+  private StorageObject getMetadata() {
+    final StorageObject storageObject = blob.toPb();
+    StorageObject metadata;
+    try {
+      metadata = runWithRetries(new Callable<StorageObject>() {
+        @Override
+        public StorageObject call() {
+          return storageRpc.get(storageObject, requestOptions);
+        }
+      }, storage.options().retryParams(), StorageImpl.EXCEPTION_HANDLER,
+          storage.options().clock());
+    } catch (RetryHelperException e) {
+      throw StorageException.translateAndThrow(e);
+    }
+    if (metadata == null) {
+      throw new StorageException(404, "Blob " + blob + " not found");
+    }
+    return metadata;
+  }
+
+  /**
+   * Fetches the bytes of the blob in {@code [offset, end)} and writes them to {@code channel} at
+   * the same offset. The bytes returned by the read request are written as they are, without
+   * copying.
+   */
+  private void downloadSlice(FileChannel channel, final StorageObject source, long offset,
+      long end, long size) throws IOException {
+    long position = offset;
+    while (position < end) {
+      tasks.checkNotAborted();
+      final long readPosition = position;
+      final int length = (int) (end - position);
+      Tuple<String, byte[]> result;
+      try {
+        result = runWithRetries(new Callable<Tuple<String, byte[]>>() {
+          @Override
+          public Tuple<String, byte[]> call() {
+            return storageRpc.read(source, requestOptions, readPosition, length);
+          }
+        }, storage.options().retryParams(), StorageImpl.EXCEPTION_HANDLER,
+            storage.options().clock());
+      } catch (RetryHelperException e) {
+        throw StorageException.translateAndThrow(e);
+      }
+      checkEtag(result.x());
+      byte[] bytes = result.y();
+      if (bytes.length == 0) {
+        throw new EOFException("Unexpected end of blob " + blob + " at position " + position);
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, Math.min(bytes.length, length));
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+      // the pool ignores arrays it did not hand out to the RPC
+      bufferPool.release(bytes);
+      reportProgress(buffer.limit(), size);
+    }
+  }
+
+  private synchronized void checkEtag(String sliceEtag) {
+    if (etag == null) {
+      etag = sliceEtag;
+    } else if (sliceEtag != null && !etag.equals(sliceEtag)) {
+      throw new StorageException(0, "Blob " + blob + " was updated while reading");
+    }
+  }
+
+  private synchronized void reportProgress(int bytes, long size) {
+    downloadedBytes += bytes;
+    if (listener != null) {
+      listener.progress(downloadedBytes, size);
+    }
+  }
+
+  private void verifyCrc32c(FileChannel channel, long size, String expectedCrc32c)
+      throws IOException {
+    ContentHasher hasher = ContentHasher.crc32c();
+    byte[] array = bufferPool.acquire(VERIFY_BUFFER_SIZE);
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(array);
+      long position = 0;
+      while (position < size) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), size - position));
+        int read = channel.read(buffer, position);
+        if (read < 0) {
+          throw new EOFException("Unexpected end of file at position " + position);
+        }
+        hasher.update(array, 0, read);
+        position += read;
+      }
+    } finally {
+      bufferPool.release(array);
+    }
+    hasher.verify(expectedCrc32c, "the content downloaded from blob " + blob);
+  }
+}
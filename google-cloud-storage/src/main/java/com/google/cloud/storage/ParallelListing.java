@@ -0,0 +1,364 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+
+import com.google.cloud.BaseServiceException;
+import com.google.cloud.Page;
+import com.google.cloud.storage.Storage.BlobListOption;
+import com.google.cloud.storage.Storage.ParallelListOption;
+import com.google.cloud.storage.spi.StorageRpc;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An iterator over the blobs of a bucket, listed concurrently by prefix. Blobs are listed by
+ * background threads into a bounded buffer, from which they are returned by {@link #next()}.
+ * The iterator must be closed if it is not consumed to its end, to stop listing.
+ *
+ * <p>The blobs directly under the listing prefix are listed in directory mode, and all the blobs
+ * in every directory found this way are listed concurrently as separate shards. In ordered mode
+ * directory mode results are sorted by name, so that every shard takes the place of its directory
+ * in the global order. Each shard has its own buffer, and shards are only started when they are
+ * among the next {@code parallelism} shards to be returned, so that the shard being returned is
+ * always being listed.
+ *
+ * @see Storage#parallelList(String, ParallelListOption...)
+ */
+public final class ParallelListing implements Iterator<Blob>, AutoCloseable {
+
+  static final int DEFAULT_PARALLELISM = 8;
+  static final int DEFAULT_BUFFER_SIZE = 10_000;
+  private static final long POLL_INTERVAL_MILLIS = 100;
+  private static final Object END = new Object();
+  private static final Comparator<Blob> NAME_COMPARATOR = new Comparator<Blob>() {
+    @Override
+    public int compare(Blob first, Blob second) {
+      return first.getName().compareTo(second.getName());
+    }
+  };
+
+  private final Storage storage;
+  private final String bucket;
+  private final String prefix;
+  private final List<BlobListOption> listOptions;
+  private final boolean ordered;
+  private final int shardBufferSize;
+  private final ExecutorService executor;
+  private final BlockingQueue<Object> queue;
+  private final Semaphore window;
+  private final AtomicInteger running = new AtomicInteger(1);
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+  private volatile boolean closed;
+  private BlockingQueue<Object> shard;
+  private Blob next;
+  private boolean done;
+
+  @SuppressWarnings("unchecked")
+  ParallelListing(Storage storage, String bucket, ParallelListOption... options) {
+    EnumMap<ParallelListOption.Option, Object> optionMap =
+        new EnumMap<>(ParallelListOption.Option.class);
+    for (ParallelListOption option : options) {
+      optionMap.put(option.getOption(), option.getValue());
+    }
+    int parallelism = (Integer) firstNonNull(
+        optionMap.get(ParallelListOption.Option.PARALLELISM), DEFAULT_PARALLELISM);
+    int bufferSize = (Integer) firstNonNull(
+        optionMap.get(ParallelListOption.Option.BUFFER_SIZE), DEFAULT_BUFFER_SIZE);
+    String listPrefix = "";
+    List<BlobListOption> otherOptions = new ArrayList<>();
+    for (BlobListOption option : (List<BlobListOption>) firstNonNull(
+        optionMap.get(ParallelListOption.Option.LIST_OPTIONS), ImmutableList.<BlobListOption>of())) {
+      if (option.getRpcOption() == StorageRpc.Option.PREFIX) {
+        listPrefix = (String) option.getValue();
+      } else {
+        otherOptions.add(option);
+      }
+    }
+    this.storage = storage;
+    this.bucket = bucket;
+    this.prefix = listPrefix;
+    this.listOptions = otherOptions;
+    this.ordered = optionMap.containsKey(ParallelListOption.Option.ORDERED);
+    this.shardBufferSize = Math.max(1, bufferSize / parallelism);
+    this.queue = new ArrayBlockingQueue<>(ordered ? shardBufferSize : bufferSize);
+    this.window = new Semaphore(parallelism);
+    // one more thread lists the directory mode results, so that every started shard has a thread
+    this.executor = Executors.newFixedThreadPool(parallelism + 1, new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("parallel-list-%d")
+        .build());
+    executor.execute(new Task() {
+      @Override
+      void run(BlockingQueue<Object> target) {
+        listDirectory(target);
+      }
+    });
+  }
+
+  /**
+   * A listing task. Failures abort the listing, and the end of the results is recorded in the
+   * task's target queue: in ordered mode every task has its own queue, otherwise all tasks share
+   * {@link #queue} and the end is recorded by the last task that completes.
+   */
+  private abstract class Task implements Runnable {
+
+    private final BlockingQueue<Object> target;
+
+    Task() {
+      this(queue);
+    }
+
+    Task(BlockingQueue<Object> target) {
+      this.target = target;
+    }
+
+    abstract void run(BlockingQueue<Object> target);
+
+    @Override
+    public final void run() {
+      try {
+        run(target);
+      } catch (RuntimeException | Error ex) {
+        failure.compareAndSet(null, ex);
+      } finally {
+        if (ordered || running.decrementAndGet() == 0) {
+          put(target, END);
+        }
+      }
+    }
+  }
+
+  private void listDirectory(BlockingQueue<Object> target) {
+    List<BlobListOption> options = new ArrayList<>(listOptions);
+    options.add(BlobListOption.prefix(prefix));
+    options.add(BlobListOption.currentDirectory());
+    Set<String> directories = new HashSet<>();
+    Page<Blob> page = storage.list(bucket, options.toArray(new BlobListOption[options.size()]));
+    while (page != null && !isAborted()) {
+      List<Blob> blobs = Lists.newArrayList(page.values());
+      if (ordered) {
+        // blobs and directories are returned in two separate lists
+        Collections.sort(blobs, NAME_COMPARATOR);
+      }
+      for (Blob blob : blobs) {
+        if (!blob.isDirectory()) {
+          put(target, blob);
+        } else if (directories.add(blob.getName()) && !startShard(blob.getName(), target)) {
+          return;
+        }
+      }
+      page = page.nextPage();
+    }
+  }
+
+  private boolean startShard(final String directory, BlockingQueue<Object> target) {
+    if (ordered) {
+      if (!acquireWindow()) {
+        return false;
+      }
+      BlockingQueue<Object> shardQueue = new ArrayBlockingQueue<>(shardBufferSize);
+      executor.execute(new Task(shardQueue) {
+        @Override
+        void run(BlockingQueue<Object> target) {
+          listShard(directory, target);
+        }
+      });
+      return put(target, shardQueue);
+    }
+    running.incrementAndGet();
+    executor.execute(new Task() {
+      @Override
+      void run(BlockingQueue<Object> target) {
+        listShard(directory, target);
+      }
+    });
+    return true;
+  }
+
+  private void listShard(String directory, BlockingQueue<Object> target) {
+    List<BlobListOption> options = new ArrayList<>(listOptions);
+    options.add(BlobListOption.prefix(directory));
+    Page<Blob> page = storage.list(bucket, options.toArray(new BlobListOption[options.size()]));
+    while (page != null && !isAborted()) {
+      for (Blob blob : page.values()) {
+        if (!put(target, blob)) {
+          return;
+        }
+      }
+      page = page.nextPage();
+    }
+  }
+
+  private boolean isAborted() {
+    return closed || failure.get() != null;
+  }
+
+  /**
+   * Adds {@code element} to {@code target}, waiting for space to become available. Returns
+   * {@code false} if listing was aborted while waiting.
+   */
+  private boolean put(BlockingQueue<Object> target, Object element) {
+    try {
+      while (!isAborted()) {
+        if (target.offer(element, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+  private boolean acquireWindow() {
+    try {
+      while (!isAborted()) {
+        if (window.tryAcquire(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+  /**
+   * Takes the next element from {@code source}, throwing the listing failure if any.
+   */
+  private Object take(BlockingQueue<Object> source) {
+    try {
+      while (true) {
+        throwIfFailed();
+        Object element = source.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        if (element != null) {
+          return element;
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new StorageException(BaseServiceException.UNKNOWN_CODE,
+          "Interrupted while waiting for blobs to be listed", ex);
+    }
+  }
+
+  private void throwIfFailed() {
+    Throwable throwable = failure.get();
+    if (throwable != null) {
+      close();
+      Throwables.propagateIfPossible(throwable);
+      throw new StorageException(BaseServiceException.UNKNOWN_CODE, throwable.getMessage(),
+          throwable);
+    }
+  }
+
+  private Blob computeNext() {
+    while (true) {
+      if (shard != null) {
+        Object element = take(shard);
+        if (element != END) {
+          return (Blob) element;
+        }
+        shard = null;
+        window.release();
+        continue;
+      }
+      Object element = take(queue);
+      if (element == END) {
+        throwIfFailed();
+        close();
+        return null;
+      } else if (element instanceof Blob) {
+        return (Blob) element;
+      }
+      @SuppressWarnings("unchecked")
+      BlockingQueue<Object> shardQueue = (BlockingQueue<Object>) element;
+      shard = shardQueue;
+    }
+  }
+
+  /**
+   * Returns {@code true} if there are more blobs, waiting for them to be listed if needed.
+   *
+   * @throws StorageException if listing failed
+   * @throws IllegalStateException if this iterator was closed before reaching its end
+   */
+  @Override
+  public boolean hasNext() {
+    if (next == null && !done) {
+      if (closed) {
+        throw new IllegalStateException("Parallel listing is closed");
+      }
+      next = computeNext();
+      done = next == null;
+    }
+    return next != null;
+  }
+
+  /**
+   * Returns the next blob, waiting for it to be listed if needed.
+   *
+   * @throws StorageException if listing failed
+   * @throws IllegalStateException if this iterator was closed before reaching its end
+   */
+  @Override
+  public Blob next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Blob blob = next;
+    next = null;
+    return blob;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Stops listing and releases the threads used by this iterator.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+
+import com.google.cloud.BaseServiceException;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A group of tasks run concurrently on behalf of a single parallel transfer. The first task that
+ * fails aborts the whole group: tasks that did not start yet are cancelled and running tasks are
+ * expected to call {@link #checkNotAborted()} regularly. Tasks are never interrupted, as
+ * interrupting a thread blocked on a file channel closes the channel.
+ */
+final class ParallelTasks {
+
+  private final ExecutorService executor;
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+  private volatile boolean aborted;
+
+  ParallelTasks(int parallelism, String threadNameFormat) {
+    this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat(threadNameFormat)
+        .build());
+  }
+
+  /**
+   * Submits {@code task}. If the task fails, its failure is recorded and the group is aborted.
+   */
+  <T> Future<T> submit(final Callable<T> task) {
+    return executor.submit(new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        try {
+          return task.call();
+        } catch (Exception ex) {
+          failure.compareAndSet(null, ex);
+          aborted = true;
+          throw ex;
+        }
+      }
+    });
+  }
+
+  boolean isAborted() {
+    return aborted;
+  }
+
+  /**
+   * Throws {@link CancellationException} if the group was aborted.
+   */
+  void checkNotAborted() {
+    if (aborted) {
+      throw new CancellationException("Transfer aborted");
+    }
+  }
+
+  /**
+   * Waits for all {@code futures} and returns their results. If any of them fails, the group is
+   * aborted and the failure that caused it is rethrown, rather than the cancellations it caused.
+   *
+   * @throws IOException if the first failed task threw {@code IOException}
+   * @throws StorageException if the first failed task threw {@code StorageException} or the
+   *     calling thread was interrupted
+   */
+  <T> List<T> getAll(List<Future<T>> futures) throws IOException {
+    List<T> results = new ArrayList<>(futures.size());
+    try {
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } catch (InterruptedException ex) {
+      aborted = true;
+      Thread.currentThread().interrupt();
+      throw new StorageException(BaseServiceException.UNKNOWN_CODE, "Transfer interrupted", ex);
+    } catch (ExecutionException ex) {
+      aborted = true;
+      Throwable cause = firstNonNull(failure.get(), ex.getCause());
+      Throwables.propagateIfInstanceOf(cause, IOException.class);
+      throw Throwables.propagate(cause);
+    } finally {
+      for (Future<T> future : futures) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Waits for running tasks to terminate. No task can be submitted afterwards.
+   */
+  void shutdown() {
+    executor.shutdown();
+    boolean interrupted = false;
+    while (!executor.isTerminated()) {
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException ex) {
+        interrupted = true;
+        aborted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -25,10 +25,13 @@ import com.google.cloud.AuthCredentials.ServiceAccountAuthCredentials;
 import com.google.cloud.FieldSelector;
 import com.google.cloud.FieldSelector.Helper;
 import com.google.cloud.Page;
+import com.google.cloud.PageImpl;
+import com.google.cloud.ReadAheadChannel;
 import com.google.cloud.ReadChannel;
 import com.google.cloud.Service;
 import com.google.cloud.ServiceAccountSigner;
 import com.google.cloud.ServiceAccountSigner.SigningException;
+import com.google.cloud.WriteBehindChannel;
 import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.Acl.Entity;
 import com.google.cloud.storage.spi.StorageRpc;
@@ -41,6 +44,8 @@ import com.google.common.io.BaseEncoding;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.security.Key;
 import java.util.Arrays;
 import java.util.Collections;
@@ -380,7 +385,8 @@ public interface Storage extends Service<StorageOptions> {
 
     enum Option {
       PREDEFINED_ACL, IF_GENERATION_MATCH, IF_GENERATION_NOT_MATCH, IF_METAGENERATION_MATCH,
-      IF_METAGENERATION_NOT_MATCH, IF_MD5_MATCH, IF_CRC32C_MATCH, CUSTOMER_SUPPLIED_KEY;
+      IF_METAGENERATION_NOT_MATCH, IF_MD5_MATCH, IF_CRC32C_MATCH, CUSTOMER_SUPPLIED_KEY,
+      VERIFY_CHECKSUMS;
 
       StorageRpc.Option toRpcOption() {
         return StorageRpc.Option.valueOf(this.name());
@@ -497,6 +503,19 @@ public interface Storage extends Service<StorageOptions> {
     public static BlobWriteOption encryptionKey(String key) {
       return new BlobWriteOption(Option.CUSTOMER_SUPPLIED_KEY, key);
     }
+
+    /**
+     * Returns an option to verify the content uploaded by a {@link WriteChannel}. If this option
+     * is used the channel computes the CRC32C checksum of the content while it is written and,
+     * when the upload is finalized, compares it with the checksum of the created blob. On mismatch
+     * the created blob generation is deleted and a {@link StorageException} with reason
+     * {@link StorageException#CHECKSUM_MISMATCH} is thrown. The checksum of the content written
+     * so far is part of the state captured by the channel, so that restored channels keep
+     * verifying the uploaded content.
+     */
+    public static BlobWriteOption verifyChecksums() {
+      return new BlobWriteOption(Option.VERIFY_CHECKSUMS, true);
+    }
   }
 
   /**
@@ -582,6 +601,19 @@ public interface Storage extends Service<StorageOptions> {
     public static BlobSourceOption decryptionKey(String key) {
       return new BlobSourceOption(StorageRpc.Option.CUSTOMER_SUPPLIED_KEY, key);
     }
+
+    /**
+     * Returns an option to verify the content read by a {@link ReadChannel}. If this option is
+     * used and the blob is read sequentially from the start, the channel computes the CRC32C
+     * checksum of the content while it is read (or its MD5 hash, if the service reports no
+     * CRC32C checksum for the blob) and, at the end of the stream, compares it with the one
+     * reported by the service. On mismatch a {@link StorageException} with reason
+     * {@link StorageException#CHECKSUM_MISMATCH} is thrown. Seeking to a position other than
+     * {@code 0} disables verification.
+     */
+    public static BlobSourceOption verifyChecksums() {
+      return new BlobSourceOption(StorageRpc.Option.VERIFY_CHECKSUMS, true);
+    }
   }
 
   /**
@@ -841,6 +873,352 @@ public interface Storage extends Service<StorageOptions> {
     }
   }
 
+  /**
+   * Class for specifying parallel upload options.
+   *
+   * @see Storage#parallelUpload(BlobInfo, FileChannel, ParallelUploadOption...)
+   */
+  class ParallelUploadOption implements Serializable {
+
+    private static final long serialVersionUID = -1538604582960311213L;
+
+    private final Option option;
+    private final Object value;
+
+    enum Option {
+      PARALLELISM, PART_SIZE, TEMPORARY_PREFIX, TARGET_OPTIONS
+    }
+
+    private ParallelUploadOption(Option option, Object value) {
+      this.option = option;
+      this.value = value;
+    }
+
+    Option getOption() {
+      return option;
+    }
+
+    Object getValue() {
+      return value;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(option, value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (!(obj instanceof ParallelUploadOption)) {
+        return false;
+      }
+      ParallelUploadOption other = (ParallelUploadOption) obj;
+      return Objects.equals(option, other.option) && Objects.equals(value, other.value);
+    }
+
+    /**
+     * Returns an option to set the maximum number of parts that are uploaded concurrently. If not
+     * set, 8 parts are uploaded concurrently.
+     */
+    public static ParallelUploadOption parallelism(int parallelism) {
+      checkArgument(parallelism > 0, "Parallelism must be > 0");
+      return new ParallelUploadOption(Option.PARALLELISM, parallelism);
+    }
+
+    /**
+     * Returns an option to set the size, in bytes, of the parts the content is split into. If not
+     * set, parts of 32 MiB are used. When uploading from an {@link InputStream}, up to
+     * {@code parallelism + 1} parts are held in memory at once.
+     */
+    public static ParallelUploadOption partSize(long partSize) {
+      checkArgument(partSize > 0, "Part size must be > 0");
+      return new ParallelUploadOption(Option.PART_SIZE, partSize);
+    }
+
+    /**
+     * Returns an option to set the name prefix of the temporary blobs created for the upload.
+     * Temporary blobs are created in the target bucket and their names are made of the prefix
+     * followed by a sequence number. If not set, a unique prefix starting with the target blob's
+     * name is used.
+     */
+    public static ParallelUploadOption temporaryPrefix(String prefix) {
+      return new ParallelUploadOption(Option.TEMPORARY_PREFIX, checkNotNull(prefix));
+    }
+
+    /**
+     * Returns an option to set the options used to create the target blob. A customer-supplied
+     * encryption key, if provided, is also used for the temporary blobs.
+     */
+    public static ParallelUploadOption targetOptions(BlobTargetOption... options) {
+      return new ParallelUploadOption(Option.TARGET_OPTIONS, ImmutableList.copyOf(options));
+    }
+  }
+
+  /**
+   * A listener notified of the progress of a transfer.
+   */
+  interface ProgressListener {
+
+    /**
+     * Called every time some data has been transferred. Calls are made by the threads performing
+     * the transfer, one at a time.
+     *
+     * @param transferredBytes the number of bytes transferred so far
+     * @param totalBytes the total number of bytes to transfer
+     */
+    void progress(long transferredBytes, long totalBytes);
+  }
+
+  /**
+   * Class for specifying parallel download options.
+   *
+   * @see Storage#parallelDownload(BlobId, FileChannel, ParallelDownloadOption...)
+   */
+  class ParallelDownloadOption implements Serializable {
+
+    private static final long serialVersionUID = 5473961204584592237L;
+
+    private final Option option;
+    private final Object value;
+
+    enum Option {
+      PARALLELISM, SLICE_SIZE, VERIFY_CRC32C, PROGRESS_LISTENER, SOURCE_OPTIONS
+    }
+
+    private ParallelDownloadOption(Option option, Object value) {
+      this.option = option;
+      this.value = value;
+    }
+
+    Option getOption() {
+      return option;
+    }
+
+    Object getValue() {
+      return value;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(option, value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (!(obj instanceof ParallelDownloadOption)) {
+        return false;
+      }
+      ParallelDownloadOption other = (ParallelDownloadOption) obj;
+      return Objects.equals(option, other.option) && Objects.equals(value, other.value);
+    }
+
+    /**
+     * Returns an option to set the maximum number of slices that are downloaded concurrently. If
+     * not set, 8 slices are downloaded concurrently.
+     */
+    public static ParallelDownloadOption parallelism(int parallelism) {
+      checkArgument(parallelism > 0, "Parallelism must be > 0");
+      return new ParallelDownloadOption(Option.PARALLELISM, parallelism);
+    }
+
+    /**
+     * Returns an option to set the size, in bytes, of the slices the blob is split into. If not
+     * set, slices of 8 MiB are used. Each slice is fetched with a single request and held in memory
+     * until it is written, so up to {@code parallelism} slices are held in memory at once.
+     */
+    public static ParallelDownloadOption sliceSize(int sliceSize) {
+      checkArgument(sliceSize > 0, "Slice size must be > 0");
+      return new ParallelDownloadOption(Option.SLICE_SIZE, sliceSize);
+    }
+
+    /**
+     * Returns an option to verify the CRC32C checksum of the downloaded content against the blob's
+     * CRC32C once all slices are written. Verification reads the downloaded content back from the
+     * local file.
+     */
+    public static ParallelDownloadOption verifyCrc32c() {
+      return new ParallelDownloadOption(Option.VERIFY_CRC32C, true);
+    }
+
+    /**
+     * Returns an option to set a listener notified every time a slice is written.
+     */
+    public static ParallelDownloadOption progressListener(ProgressListener listener) {
+      return new ParallelDownloadOption(Option.PROGRESS_LISTENER, checkNotNull(listener));
+    }
+
+    /**
+     * Returns an option to set the options used to read the blob.
+     */
+    public static ParallelDownloadOption sourceOptions(BlobSourceOption... options) {
+      return new ParallelDownloadOption(Option.SOURCE_OPTIONS, ImmutableList.copyOf(options));
+    }
+  }
+
+  /**
+   * Class for specifying bulk executor options.
+   *
+   * @see Storage#bulkExecutor(BulkOption...)
+   */
+  class BulkOption implements Serializable {
+
+    private static final long serialVersionUID = 2361467413093766413L;
+
+    private final Option option;
+    private final Object value;
+
+    enum Option {
+      BATCH_SIZE, MAX_IN_FLIGHT_BATCHES
+    }
+
+    private BulkOption(Option option, Object value) {
+      this.option = option;
+      this.value = value;
+    }
+
+    Option getOption() {
+      return option;
+    }
+
+    Object getValue() {
+      return value;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(option, value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (!(obj instanceof BulkOption)) {
+        return false;
+      }
+      BulkOption other = (BulkOption) obj;
+      return Objects.equals(option, other.option) && Objects.equals(value, other.value);
+    }
+
+    /**
+     * Returns an option to set the maximum number of operations sent in a single batch request.
+     * Must be between 1 and 100, the maximum allowed by the service. If not set, 100 is used.
+     */
+    public static BulkOption batchSize(int batchSize) {
+      checkArgument(batchSize > 0 && batchSize <= StorageBulkExecutor.MAX_BATCH_SIZE,
+          "Batch size must be between 1 and %s", StorageBulkExecutor.MAX_BATCH_SIZE);
+      return new BulkOption(Option.BATCH_SIZE, batchSize);
+    }
+
+    /**
+     * Returns an option to set the maximum number of batch requests in flight at once. When this
+     * many batches are in flight, adding an operation that completes a new batch blocks until one
+     * of them is done. If not set, 4 batches can be in flight at once.
+     */
+    public static BulkOption maxInFlightBatches(int maxInFlightBatches) {
+      checkArgument(maxInFlightBatches > 0, "Maximum number of in-flight batches must be > 0");
+      return new BulkOption(Option.MAX_IN_FLIGHT_BATCHES, maxInFlightBatches);
+    }
+  }
+
+  /**
+   * Class for specifying parallel list options.
+   *
+   * @see Storage#parallelList(String, ParallelListOption...)
+   */
+  class ParallelListOption implements Serializable {
+
+    private static final long serialVersionUID = -1626447391263539532L;
+
+    private final Option option;
+    private final Object value;
+
+    enum Option {
+      PARALLELISM, BUFFER_SIZE, ORDERED, LIST_OPTIONS
+    }
+
+    private ParallelListOption(Option option, Object value) {
+      this.option = option;
+      this.value = value;
+    }
+
+    Option getOption() {
+      return option;
+    }
+
+    Object getValue() {
+      return value;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(option, value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (!(obj instanceof ParallelListOption)) {
+        return false;
+      }
+      ParallelListOption other = (ParallelListOption) obj;
+      return Objects.equals(option, other.option) && Objects.equals(value, other.value);
+    }
+
+    /**
+     * Returns an option to set the maximum number of prefixes that are listed concurrently. If not
+     * set, 8 prefixes are listed concurrently.
+     */
+    public static ParallelListOption parallelism(int parallelism) {
+      checkArgument(parallelism > 0, "Parallelism must be > 0");
+      return new ParallelListOption(Option.PARALLELISM, parallelism);
+    }
+
+    /**
+     * Returns an option to set the maximum number of blobs that are listed but not yet returned by
+     * the iterator. Listing pauses when this many blobs are buffered. If not set, up to 10000 blobs
+     * are buffered.
+     */
+    public static ParallelListOption bufferSize(int bufferSize) {
+      checkArgument(bufferSize > 0, "Buffer size must be > 0");
+      return new ParallelListOption(Option.BUFFER_SIZE, bufferSize);
+    }
+
+    /**
+     * Returns an option to return blobs in lexicographic order of their names, as
+     * {@link Storage#list(String, BlobListOption...)} does. Prefixes are still listed concurrently,
+     * but a prefix is only started when it is among the next {@link #parallelism(int)} prefixes
+     * to be returned. If not set, blobs are returned in no particular order.
+     */
+    public static ParallelListOption ordered() {
+      return new ParallelListOption(Option.ORDERED, true);
+    }
+
+    /**
+     * Returns an option to set the options used to list blobs. {@link BlobListOption#prefix(String)}
+     * restricts listing to the blobs whose names begin with the prefix.
+     * {@link BlobListOption#currentDirectory()} and {@link BlobListOption#pageToken(String)} are
+     * not supported.
+     */
+    public static ParallelListOption listOptions(BlobListOption... options) {
+      for (BlobListOption option : options) {
+        checkArgument(option.getRpcOption() != StorageRpc.Option.DELIMITER
+            && option.getRpcOption() != StorageRpc.Option.PAGE_TOKEN,
+            "Option %s is not supported by parallel listing", option.getRpcOption().value());
+      }
+      return new ParallelListOption(Option.LIST_OPTIONS, ImmutableList.copyOf(options));
+    }
+  }
+
   /**
    * A class to contain all information needed for a Google Cloud Storage Compose operation.
    *
@@ -1551,6 +1929,92 @@ public interface Storage extends Service<StorageOptions> {
    */
   Blob create(BlobInfo blobInfo, InputStream content, BlobWriteOption... options);
 
+  /**
+   * Creates a new blob by uploading the content of {@code path} with a parallel composite upload.
+   * The file is split into parts that are uploaded concurrently as temporary blobs, which are then
+   * composed into the target blob. Temporary blobs are deleted once the upload completes or fails.
+   * See {@link #parallelUpload(BlobInfo, FileChannel, ParallelUploadOption...)} for details.
+   *
+   * <p>Example of uploading a large file with a parallel composite upload.
+   * <pre> {@code
+   * String bucketName = "my_unique_bucket";
+   * String blobName = "my_blob_name";
+   * Path path = Paths.get("my_large_file");
+   * BlobInfo blobInfo = BlobInfo.newBuilder(bucketName, blobName).build();
+   * Blob blob = storage.parallelUpload(blobInfo, path, ParallelUploadOption.parallelism(16));
+   * }</pre>
+   *
+   * @return a {@code Blob} with complete information
+   * @throws StorageException upon failure or if {@code path} could not be read
+   */
+  Blob parallelUpload(BlobInfo blobInfo, Path path, ParallelUploadOption... options);
+
+  /**
+   * Creates a new blob by uploading the content of {@code channel} with a parallel composite
+   * upload. The content, from position {@code 0} to the size of the channel, is split into parts
+   * of {@link ParallelUploadOption#partSize(long)} bytes. Parts are read with positional reads and
+   * up to {@link ParallelUploadOption#parallelism(int)} of them are uploaded concurrently as
+   * temporary blobs in the target bucket. Parts are then composed into the target blob, using
+   * intermediate composite blobs if there are more than 32 parts. Temporary blobs are deleted
+   * once the upload completes or fails. The channel is not closed.
+   *
+   * <p>Composite blobs have no MD5 hash, any md5 and crc32c values in the given {@code blobInfo}
+   * are ignored.
+   *
+   * @return a {@code Blob} with complete information
+   * @throws StorageException upon failure or if {@code channel} could not be read
+   * @see <a href="https://cloud.google.com/storage/docs/composite-objects">Composite Objects</a>
+   */
+  Blob parallelUpload(BlobInfo blobInfo, FileChannel channel, ParallelUploadOption... options);
+
+  /**
+   * Creates a new blob by uploading the content of {@code content} with a parallel composite
+   * upload. The stream is read sequentially into parts of
+   * {@link ParallelUploadOption#partSize(long)} bytes, that are uploaded concurrently as temporary
+   * blobs while the next parts are read. See
+   * {@link #parallelUpload(BlobInfo, FileChannel, ParallelUploadOption...)} for details. The
+   * stream is not closed.
+   *
+   * @return a {@code Blob} with complete information
+   * @throws StorageException upon failure or if {@code content} could not be read
+   */
+  Blob parallelUpload(BlobInfo blobInfo, InputStream content, ParallelUploadOption... options);
+
+  /**
+   * Downloads the content of a blob to the file at {@code path} with a parallel sliced download.
+   * The file is created if it does not exist. See
+   * {@link #parallelDownload(BlobId, FileChannel, ParallelDownloadOption...)} for details.
+   *
+   * <p>Example of downloading a large blob to a file.
+   * <pre> {@code
+   * String bucketName = "my_unique_bucket";
+   * String blobName = "my_blob_name";
+   * Path path = Paths.get("my_large_file");
+   * Blob blob = storage.parallelDownload(BlobId.of(bucketName, blobName), path,
+   *     ParallelDownloadOption.parallelism(16), ParallelDownloadOption.verifyCrc32c());
+   * }</pre>
+   *
+   * @return the downloaded blob
+   * @throws StorageException upon failure or if {@code path} could not be written
+   */
+  Blob parallelDownload(BlobId blob, Path path, ParallelDownloadOption... options);
+
+  /**
+   * Downloads the content of a blob to {@code channel} with a parallel sliced download. The blob
+   * is split into disjoint slices of {@link ParallelDownloadOption#sliceSize(int)} bytes and up to
+   * {@link ParallelDownloadOption#parallelism(int)} of them are fetched concurrently. Each slice is
+   * written at its own offset with positional writes, after the channel has been resized to the
+   * size of the blob. All slices are read from the same generation of the blob and their etags
+   * must match. The channel is not closed. If the download fails, the content of the channel is
+   * undefined.
+   *
+   * @return the downloaded blob
+   * @throws StorageException upon failure, if the blob does not exist, if it was updated while
+   *     reading, if its CRC32C does not match the downloaded content (when requested with
+   *     {@link ParallelDownloadOption#verifyCrc32c()}) or if {@code channel} could not be written
+   */
+  Blob parallelDownload(BlobId blob, FileChannel channel, ParallelDownloadOption... options);
+
   /**
    * Returns the requested bucket or {@code null} if not found.
    *
@@ -1619,6 +2083,9 @@ public interface Storage extends Service<StorageOptions> {
   /**
    * Lists the project's buckets.
    *
+   * <p>Use {@link PageImpl#iterateAll(Page, int)} to fetch the next pages in the background while
+   * the values of a page are traversed.
+   *
    * <p>Example of listing buckets, specifying the page size and a name prefix.
    * <pre> {@code
    * String prefix = "bucket_";
@@ -1639,6 +2106,9 @@ public interface Storage extends Service<StorageOptions> {
    * Lists the bucket's blobs. If the {@link BlobListOption#currentDirectory()} option is provided,
    * results are returned in a directory-like mode.
    *
+   * <p>Use {@link PageImpl#iterateAll(Page, int)} to fetch the next pages in the background while
+   * the values of a page are traversed.
+   *
    * <p>Example of listing blobs in a provided directory.
    * <pre> {@code
    * String bucketName = "my_unique_bucket";
@@ -1656,6 +2126,33 @@ public interface Storage extends Service<StorageOptions> {
    */
   Page<Blob> list(String bucket, BlobListOption... options);
 
+  /**
+   * Lists the bucket's blobs, listing several prefixes concurrently. The keyspace is sharded by
+   * the '/' delimiter: the blobs directly under the listing prefix are listed first, in directory
+   * mode, and then all the blobs in every directory found are listed as a separate shard. Up to
+   * {@link ParallelListOption#parallelism(int)} shards are listed at once. Blobs are returned by
+   * the iterator as soon as they are listed, in no particular order unless
+   * {@link ParallelListOption#ordered()} is set. Listing can not be parallelized for blobs whose
+   * names, after the listing prefix, do not contain '/'.
+   *
+   * <p>The returned iterator must be closed if it is not consumed to its end, to stop listing.
+   *
+   * <p>Example of listing all the blobs in a bucket.
+   * <pre> {@code
+   * String bucketName = "my_unique_bucket";
+   * try (ParallelListing blobs = storage.parallelList(bucketName,
+   *     ParallelListOption.parallelism(32))) {
+   *   while (blobs.hasNext()) {
+   *     Blob blob = blobs.next();
+   *     // do something with the blob
+   *   }
+   * }
+   * }</pre>
+   *
+   * @throws StorageException upon failure, from the methods of the returned iterator
+   */
+  ParallelListing parallelList(String bucket, ParallelListOption... options);
+
   /**
    * Updates bucket information.
    *
@@ -1940,11 +2437,46 @@ public interface Storage extends Service<StorageOptions> {
    */
   StorageBatch batch();
 
+  /**
+   * Creates a new bulk executor. A bulk executor accepts any number of delete, update and get
+   * operations, groups them into batch requests of up to 100 operations and keeps several batch
+   * requests in flight. Operations that fail with a retryable error are retried individually,
+   * according to the service's {@link com.google.cloud.RetryParams}. Results are reported through
+   * the returned {@link StorageBatchResult} objects. Operations are only guaranteed to be sent
+   * after {@link StorageBulkExecutor#flush()} or {@link StorageBulkExecutor#close()} is called.
+   *
+   * <p>Example of deleting all the blobs in a bucket.
+   * <pre> {@code
+   * String bucketName = "my_unique_bucket";
+   * try (StorageBulkExecutor executor = storage.bulkExecutor()) {
+   *   for (Blob blob : storage.list(bucketName).iterateAll()) {
+   *     executor.delete(blob.getBlobId()).notify(
+   *         new BatchResult.Callback<Boolean, StorageException>() {
+   *       public void success(Boolean result) {
+   *         // deleted successfully, or not found if result is false
+   *       }
+   *
+   *       public void error(StorageException exception) {
+   *         // delete failed
+   *       }
+   *     });
+   *   }
+   * }
+   * }</pre>
+   *
+   * @param options bulk executor options
+   */
+  StorageBulkExecutor bulkExecutor(BulkOption... options);
+
   /**
    * Returns a channel for reading the blob's content. The blob's latest generation is read. If the
    * blob changes while reading (i.e. {@link BlobInfo#etag()} changes), subsequent calls to
    * {@code blobReadChannel.read(ByteBuffer)} may throw {@link StorageException}.
    *
+   * <p>By default a chunk is fetched only once the previous one has been consumed. The returned
+   * channel is a {@link ReadAheadChannel}: cast it and use {@link ReadAheadChannel#readAhead(int)}
+   * to keep several ranged reads in flight while data is being consumed.
+   *
    * <p>Example of reading a blob's content through a reader.
    * <pre> {@code
    * String bucketName = "my_unique_bucket";
@@ -1975,6 +2507,17 @@ public interface Storage extends Service<StorageOptions> {
    * {@code blobReadChannel.read(ByteBuffer)} calls will throw {@link StorageException} if the
    * blob`s generation differs from the expected one.
    *
+   * <p>By default a chunk is fetched only once the previous one has been consumed. The returned
+   * channel is a {@link ReadAheadChannel}: cast it and use {@link ReadAheadChannel#readAhead(int)}
+   * to keep several ranged reads in flight while data is being consumed. The blob's etag is
+   * checked for consistency across all of them.
+   *
+   * <p>Example of reading a blob's content keeping two chunks in flight.
+   * <pre> {@code
+   * ReadAheadChannel reader = (ReadAheadChannel) storage.reader(blobId);
+   * reader.readAhead(2);
+   * }</pre>
+   *
    * <p>Example of reading a blob's content through a reader.
    * <pre> {@code
    * String bucketName = "my_unique_bucket";
@@ -1999,6 +2542,10 @@ public interface Storage extends Service<StorageOptions> {
    * values in the given {@code blobInfo} are ignored unless requested via the
    * {@code BlobWriteOption.md5Match} and {@code BlobWriteOption.crc32cMatch} options.
    *
+   * <p>By default each chunk is uploaded by the thread that fills it. The returned channel is a
+   * {@link WriteBehindChannel}, use {@link WriteBehindChannel#writeBehind(int)} to upload full
+   * chunks in the background while the next ones are being written.
+   *
    * <p>Example of writing a blob's content through a writer.
    * <pre> {@code
    * String bucketName = "my_unique_bucket";
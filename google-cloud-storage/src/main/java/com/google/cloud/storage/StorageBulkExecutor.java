@@ -0,0 +1,441 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.BaseServiceException;
+import com.google.cloud.Clock;
+import com.google.cloud.RetryBudget;
+import com.google.cloud.RetryHelper;
+import com.google.cloud.RetryParams;
+import com.google.cloud.storage.Storage.BlobGetOption;
+import com.google.cloud.storage.Storage.BlobSourceOption;
+import com.google.cloud.storage.Storage.BlobTargetOption;
+import com.google.cloud.storage.Storage.BulkOption;
+import com.google.cloud.storage.spi.RpcBatch;
+import com.google.cloud.storage.spi.StorageRpc;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes any number of operations on Google Cloud Storage by grouping them into batch requests.
+ * Operations are buffered until a full batch is available, then the batch is submitted from a
+ * background thread. Up to a configurable number of batches are in flight at once: when that limit
+ * is reached, adding an operation that completes a new batch blocks until the batch can be sent.
+ * Operations added by result callbacks never block, their batches are sent once a batch in flight
+ * is done. Operations that fail with a retryable error are retried in a later batch request,
+ * together with the other failed operations of their batch only, according to the service's
+ * {@link RetryParams}, retry budget included. Results are reported through the returned
+ * {@link StorageBatchResult} objects, whose callbacks are invoked from background threads.
+ *
+ * <p>Example of updating the content type of many blobs:
+ * <pre>{@code
+ * try (StorageBulkExecutor executor = storage.bulkExecutor()) {
+ *   for (BlobId blobId : blobIds) {
+ *     executor.update(BlobInfo.newBuilder(blobId).setContentType("text/plain").build());
+ *   }
+ * }
+ * }</pre>
+ *
+ * @see Storage#bulkExecutor(BulkOption...)
+ */
+public class StorageBulkExecutor implements AutoCloseable {
+
+  static final int MAX_BATCH_SIZE = 100;
+  static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 4;
+
+  private final StorageOptions options;
+  private final StorageRpc storageRpc;
+  private final RetryParams retryParams;
+  private final Clock clock;
+  private final int batchSize;
+  private final int maxInFlightBatches;
+  private final ScheduledExecutorService executor;
+  // set on the threads of executor, whose callers must never block waiting for a batch
+  private final ThreadLocal<Boolean> batchThread = new ThreadLocal<>();
+  // full batches waiting for one of the maxInFlightBatches slots, guarded by this
+  private final Deque<List<Request<?>>> queued = new ArrayDeque<>();
+  private List<Request<?>> pending = new ArrayList<>();
+  private int inFlight;
+  private boolean closed;
+
+  StorageBulkExecutor(StorageOptions options, BulkOption... bulkOptions) {
+    EnumMap<BulkOption.Option, Object> optionMap = new EnumMap<>(BulkOption.Option.class);
+    for (BulkOption option : bulkOptions) {
+      optionMap.put(option.getOption(), option.getValue());
+    }
+    this.options = options;
+    this.storageRpc = options.rpc();
+    this.retryParams = options.retryParams();
+    this.clock = options.clock();
+    this.batchSize =
+        (Integer) firstNonNull(optionMap.get(BulkOption.Option.BATCH_SIZE), MAX_BATCH_SIZE);
+    this.maxInFlightBatches = (Integer) firstNonNull(
+        optionMap.get(BulkOption.Option.MAX_IN_FLIGHT_BATCHES), DEFAULT_MAX_IN_FLIGHT_BATCHES);
+    this.executor = Executors.newScheduledThreadPool(maxInFlightBatches, new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("storage-bulk-%d")
+        .build());
+  }
+
+  /**
+   * Adds a request representing the "delete blob" operation. Calling {@link
+   * StorageBatchResult#get()} on the return value yields {@code true} upon successful deletion,
+   * {@code false} if the blob was not found, or throws a {@link StorageException} if the operation
+   * failed.
+   *
+   * @throws IllegalStateException if this executor was closed
+   */
+  public StorageBatchResult<Boolean> delete(String bucket, String blob,
+      BlobSourceOption... options) {
+    return delete(BlobId.of(bucket, blob), options);
+  }
+
+  /**
+   * Adds a request representing the "delete blob" operation. Calling {@link
+   * StorageBatchResult#get()} on the return value yields {@code true} upon successful deletion,
+   * {@code false} if the blob was not found, or throws a {@link StorageException} if the operation
+   * failed.
+   *
+   * @throws IllegalStateException if this executor was closed
+   */
+  public StorageBatchResult<Boolean> delete(BlobId blob, BlobSourceOption... options) {
+    StorageBatchResult<Boolean> result = new StorageBatchResult<>();
+    final StorageObject storageObject = blob.toPb();
+    final Map<StorageRpc.Option, ?> optionMap = StorageImpl.optionMap(blob, options);
+    add(new Request<Void>(result, StorageBatch.createDeleteCallback(result)) {
+      @Override
+      void addTo(RpcBatch batch, RpcBatch.Callback<Void> callback) {
+        batch.addDelete(storageObject, callback, optionMap);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Adds a request representing the "update blob" operation. The {@code options} can be used in
+   * the same way as for {@link Storage#update(BlobInfo, BlobTargetOption...)}. Calling
+   * {@link StorageBatchResult#get()} on the return value yields the updated {@link Blob} if
+   * successful, or throws a {@link StorageException} if the operation failed.
+   *
+   * @throws IllegalStateException if this executor was closed
+   */
+  public StorageBatchResult<Blob> update(BlobInfo blobInfo, BlobTargetOption... options) {
+    StorageBatchResult<Blob> result = new StorageBatchResult<>();
+    final StorageObject storageObject = blobInfo.toPb();
+    final Map<StorageRpc.Option, ?> optionMap = StorageImpl.optionMap(blobInfo, options);
+    add(new Request<StorageObject>(result,
+        StorageBatch.createUpdateCallback(this.options, result)) {
+      @Override
+      void addTo(RpcBatch batch, RpcBatch.Callback<StorageObject> callback) {
+        batch.addPatch(storageObject, callback, optionMap);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Adds a request representing the "get blob" operation. The {@code options} can be used in the
+   * same way as for {@link Storage#get(BlobId, BlobGetOption...)}. Calling
+   * {@link StorageBatchResult#get()} on the return value yields the requested {@link Blob} if
+   * successful, {@code null} if no such blob exists, or throws a {@link StorageException} if the
+   * operation failed.
+   *
+   * @throws IllegalStateException if this executor was closed
+   */
+  public StorageBatchResult<Blob> get(String bucket, String blob, BlobGetOption... options) {
+    return get(BlobId.of(bucket, blob), options);
+  }
+
+  /**
+   * Adds a request representing the "get blob" operation. The {@code options} can be used in the
+   * same way as for {@link Storage#get(BlobId, BlobGetOption...)}. Calling
+   * {@link StorageBatchResult#get()} on the return value yields the requested {@link Blob} if
+   * successful, {@code null} if no such blob exists, or throws a {@link StorageException} if the
+   * operation failed.
+   *
+   * @throws IllegalStateException if this executor was closed
+   */
+  public StorageBatchResult<Blob> get(BlobId blob, BlobGetOption... options) {
+    StorageBatchResult<Blob> result = new StorageBatchResult<>();
+    final StorageObject storageObject = blob.toPb();
+    final Map<StorageRpc.Option, ?> optionMap = StorageImpl.optionMap(blob, options);
+    add(new Request<StorageObject>(result, StorageBatch.createGetCallback(this.options, result)) {
+      @Override
+      void addTo(RpcBatch batch, RpcBatch.Callback<StorageObject> callback) {
+        batch.addGet(storageObject, callback, optionMap);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Submits all pending operations and waits until all batch requests in flight are done, retries
+   * included. When this method returns, the results of all operations added before the call are
+   * available.
+   *
+   * @throws IllegalStateException if called from a result callback
+   */
+  public synchronized void flush() {
+    checkState(batchThread.get() == null, "Bulk executor can not be flushed from a callback");
+    boolean interrupted = false;
+    // operations added by result callbacks in the meantime are submitted as well
+    for (submitPending(); inFlight > 0 || !queued.isEmpty(); submitPending()) {
+      try {
+        wait();
+      } catch (InterruptedException ex) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Submits all pending operations, waits until they are done and releases the threads used by
+   * this executor. Operations can not be added after this method is called.
+   *
+   * @throws IllegalStateException if called from a result callback
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    try {
+      flush();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private synchronized void add(Request<?> request) {
+    checkState(!closed, "Bulk executor is closed");
+    RetryBudget budget = retryParams.retryBudget();
+    if (budget != null) {
+      budget.deposit();
+    }
+    pending.add(request);
+    if (pending.size() >= batchSize) {
+      submitPending();
+      // wait, releasing the lock, until the batch is sent. Batch threads must not wait, the batch
+      // they are running could never complete
+      boolean interrupted = false;
+      while (batchThread.get() == null && !queued.isEmpty()) {
+        try {
+          wait();
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Queues pending operations as a batch and sends queued batches. Must be called while holding
+   * this executor's lock.
+   */
+  private void submitPending() {
+    if (!pending.isEmpty()) {
+      queued.add(pending);
+      pending = new ArrayList<>();
+    }
+    sendQueued();
+  }
+
+  /**
+   * Sends queued batches while fewer than the maximum number of batches are in flight. Must be
+   * called while holding this executor's lock.
+   */
+  private void sendQueued() {
+    while (inFlight < maxInFlightBatches && !queued.isEmpty()) {
+      List<Request<?>> requests = queued.poll();
+      inFlight++;
+      try {
+        executor.execute(new Batch(requests));
+      } catch (RejectedExecutionException ex) {
+        inFlight--;
+        throw ex;
+      }
+    }
+  }
+
+  private synchronized void batchDone() {
+    inFlight--;
+    sendQueued();
+    notifyAll();
+  }
+
+  /**
+   * Submits a list of operations as a batch request and then, until no attempts are left,
+   * schedules a new batch request for the operations that failed with a retryable error. The
+   * batch holds one of the in flight slots until all its operations are done.
+   */
+  private final class Batch implements Runnable {
+
+    private final long start = clock.millis();
+    private List<Request<?>> requests;
+    private int attemptNumber;
+
+    Batch(List<Request<?>> requests) {
+      this.requests = requests;
+    }
+
+    @Override
+    public void run() {
+      batchThread.set(Boolean.TRUE);
+      boolean done = true;
+      try {
+        Attempt attempt = new Attempt(++attemptNumber, start);
+        attempt.submit(requests);
+        requests = attempt.retries;
+        if (!requests.isEmpty()) {
+          executor.schedule(this, RetryHelper.getSleepDuration(retryParams, attemptNumber),
+              TimeUnit.MILLISECONDS);
+          done = false;
+        }
+      } catch (RejectedExecutionException ex) {
+        StorageException exception = new StorageException(BaseServiceException.UNKNOWN_CODE,
+            "Bulk executor was shut down before retrying", ex);
+        for (Request<?> request : requests) {
+          request.result.error(exception);
+        }
+      } finally {
+        if (done) {
+          batchDone();
+        }
+      }
+    }
+  }
+
+  /**
+   * A single batch request for a set of operations.
+   */
+  private final class Attempt {
+
+    private final int number;
+    private final long start;
+    private final Set<Request<?>> answered = new HashSet<>();
+    private final List<Request<?>> retries = new ArrayList<>();
+
+    Attempt(int number, long start) {
+      this.number = number;
+      this.start = start;
+    }
+
+    void submit(List<Request<?>> requests) {
+      RpcBatch batch = storageRpc.createBatch();
+      for (Request<?> request : requests) {
+        request.addTo(batch, this);
+      }
+      try {
+        batch.submit();
+      } catch (RuntimeException ex) {
+        StorageException exception = ex instanceof StorageException ? (StorageException) ex
+            : new StorageException(BaseServiceException.UNKNOWN_CODE, ex.getMessage(), ex);
+        for (Request<?> request : requests) {
+          if (answered.add(request)) {
+            fail(request, exception);
+          }
+        }
+      }
+    }
+
+    /**
+     * Schedules {@code request} for retry if {@code exception} is retryable, attempts are left
+     * and the retry budget allows it, or reports {@code exception} otherwise. Returns {@code true}
+     * if the request will be retried.
+     */
+    boolean retry(Request<?> request, StorageException exception) {
+      RetryBudget budget = retryParams.retryBudget();
+      if (StorageImpl.EXCEPTION_HANDLER.shouldRetry(exception)
+          && number < retryParams.retryMaxAttempts()
+          && (number < retryParams.retryMinAttempts()
+              || clock.millis() - start < retryParams.totalRetryPeriodMillis())
+          && (budget == null || budget.tryAcquire())) {
+        retries.add(request);
+        return true;
+      }
+      return false;
+    }
+
+    private void fail(Request<?> request, StorageException exception) {
+      if (!retry(request, exception)) {
+        request.result.error(exception);
+      }
+    }
+  }
+
+  /**
+   * An operation and the callback that reports its final outcome.
+   *
+   * @param <R> the type of the RPC response
+   */
+  private abstract static class Request<R> {
+
+    private final StorageBatchResult<?> result;
+    private final RpcBatch.Callback<R> callback;
+
+    Request(StorageBatchResult<?> result, RpcBatch.Callback<R> callback) {
+      this.result = result;
+      this.callback = callback;
+    }
+
+    abstract void addTo(RpcBatch batch, RpcBatch.Callback<R> callback);
+
+    void addTo(RpcBatch batch, final Attempt attempt) {
+      addTo(batch, new RpcBatch.Callback<R>() {
+        @Override
+        public void onSuccess(R response) {
+          attempt.answered.add(Request.this);
+          callback.onSuccess(response);
+        }
+
+        @Override
+        public void onFailure(GoogleJsonError googleJsonError) {
+          attempt.answered.add(Request.this);
+          if (!attempt.retry(Request.this, new StorageException(googleJsonError))) {
+            callback.onFailure(googleJsonError);
+          }
+        }
+      });
+    }
+  }
+}
@@ -45,12 +45,25 @@ public final class StorageException extends BaseServiceException {
 
   private static final long serialVersionUID = -4168430271327813063L;
 
+  /**
+   * The reason of exceptions thrown when the checksum of content read or written through a channel
+   * does not match the checksum reported by the service.
+   *
+   * @see Storage.BlobSourceOption#verifyChecksums()
+   * @see Storage.BlobWriteOption#verifyChecksums()
+   */
+  public static final String CHECKSUM_MISMATCH = "checksumMismatch";
+
   public StorageException(int code, String message) {
     this(code, message, null);
   }
 
   public StorageException(int code, String message, Throwable cause) {
-    super(code, message, null, true, cause);
+    this(code, message, null, cause);
+  }
+
+  public StorageException(int code, String message, String reason, Throwable cause) {
+    super(code, message, reason, true, cause);
   }
 
   public StorageException(IOException exception) {
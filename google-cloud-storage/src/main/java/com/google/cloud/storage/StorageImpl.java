@@ -35,6 +35,7 @@ import com.google.api.services.storage.model.BucketAccessControl;
 import com.google.api.services.storage.model.ObjectAccessControl;
 import com.google.api.services.storage.model.StorageObject;
 import com.google.cloud.BaseService;
+import com.google.cloud.BaseServiceException;
 import com.google.cloud.BatchResult;
 import com.google.cloud.Page;
 import com.google.cloud.PageImpl;
@@ -58,11 +59,15 @@ import com.google.common.net.UrlEscapers;
 import com.google.common.primitives.Ints;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
@@ -152,6 +157,43 @@ final class StorageImpl extends BaseService<StorageOptions> implements Storage {
     }
   }
 
+  @Override
+  public Blob parallelUpload(BlobInfo blobInfo, Path path, ParallelUploadOption... options) {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return parallelUpload(blobInfo, channel, options);
+    } catch (IOException ex) {
+      throw new StorageException(BaseServiceException.UNKNOWN_CODE, "Error reading " + path, ex);
+    }
+  }
+
+  @Override
+  public Blob parallelUpload(BlobInfo blobInfo, FileChannel channel,
+      ParallelUploadOption... options) {
+    return new ParallelCompositeUpload(this, blobInfo, options).upload(channel);
+  }
+
+  @Override
+  public Blob parallelUpload(BlobInfo blobInfo, InputStream content,
+      ParallelUploadOption... options) {
+    return new ParallelCompositeUpload(this, blobInfo, options).upload(content);
+  }
+
+  @Override
+  public Blob parallelDownload(BlobId blob, Path path, ParallelDownloadOption... options) {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+      return parallelDownload(blob, channel, options);
+    } catch (IOException ex) {
+      throw new StorageException(BaseServiceException.UNKNOWN_CODE, "Error writing " + path, ex);
+    }
+  }
+
+  @Override
+  public Blob parallelDownload(BlobId blob, FileChannel channel,
+      ParallelDownloadOption... options) {
+    return new ParallelDownload(this, blob, options).download(channel);
+  }
+
   @Override
   public Bucket get(String bucket, BucketGetOption... options) {
     final com.google.api.services.storage.model.Bucket bucketPb = BucketInfo.of(bucket).toPb();
@@ -248,6 +290,11 @@ final class StorageImpl extends BaseService<StorageOptions> implements Storage {
     return listBlobs(bucket, options(), optionMap(options));
   }
 
+  @Override
+  public ParallelListing parallelList(String bucket, ParallelListOption... options) {
+    return new ParallelListing(this, bucket, options);
+  }
+
   private static Page<Bucket> listBuckets(final StorageOptions serviceOptions,
       final Map<StorageRpc.Option, ?> optionsMap) {
     try {
@@ -460,6 +507,11 @@ final class StorageImpl extends BaseService<StorageOptions> implements Storage {
     return new StorageBatch(this.options());
   }
 
+  @Override
+  public StorageBulkExecutor bulkExecutor(BulkOption... options) {
+    return new StorageBulkExecutor(this.options(), options);
+  }
+
   @Override
   public ReadChannel reader(String bucket, String blob, BlobSourceOption... options) {
     Map<StorageRpc.Option, ?> optionsMap = optionMap(options);
@@ -478,7 +530,7 @@ final class StorageImpl extends BaseService<StorageOptions> implements Storage {
     return writer(targetOptions.x(), targetOptions.y());
   }
 
-  private BlobWriteChannel writer(BlobInfo blobInfo, BlobTargetOption... options) {
+  BlobWriteChannel writer(BlobInfo blobInfo, BlobTargetOption... options) {
     final Map<StorageRpc.Option, ?> optionsMap = optionMap(blobInfo, options);
     return new BlobWriteChannel(options(), blobInfo, optionsMap);
   }
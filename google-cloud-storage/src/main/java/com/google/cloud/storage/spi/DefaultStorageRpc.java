@@ -68,6 +68,7 @@ import com.google.api.services.storage.model.ObjectAccessControl;
 import com.google.api.services.storage.model.Objects;
 import com.google.api.services.storage.model.StorageObject;
 import com.google.cloud.BaseServiceException;
+import com.google.cloud.BufferPool;
 import com.google.cloud.storage.StorageException;
 import com.google.cloud.storage.StorageOptions;
 import com.google.common.base.Function;
@@ -84,11 +85,12 @@ import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-public class DefaultStorageRpc implements StorageRpc {
+public class DefaultStorageRpc implements HashingStorageRpc {
 
   public static final String DEFAULT_PROJECTION = "full";
   private static final String ENCRYPTION_KEY_PREFIX = "x-goog-encryption-";
@@ -108,6 +110,33 @@ public class DefaultStorageRpc implements StorageRpc {
         .build();
   }
 
+  /**
+   * A {@link ByteArrayOutputStream} whose initial buffer is taken from a {@link BufferPool}. If
+   * exactly as many bytes as the initial buffer size are written, {@link #toByteArray()} returns
+   * the pooled buffer itself instead of a copy.
+   */
+  private static class PooledByteArrayOutputStream extends ByteArrayOutputStream {
+
+    private final BufferPool bufferPool;
+
+    PooledByteArrayOutputStream(BufferPool bufferPool, int size) {
+      super(0);
+      this.bufferPool = bufferPool;
+      this.buf = bufferPool.acquire(size);
+    }
+
+    @Override
+    public synchronized byte[] toByteArray() {
+      if (count == buf.length) {
+        return buf;
+      }
+      byte[] result = Arrays.copyOf(buf, count);
+      bufferPool.release(buf);
+      buf = result;
+      return result;
+    }
+  }
+
   private class DefaultRpcBatch implements RpcBatch {
 
     // Batch size is limited as, due to some current service implementation details, the service
@@ -489,6 +518,13 @@ public class DefaultStorageRpc implements StorageRpc {
   @Override
   public Tuple<String, byte[]> read(StorageObject from, Map<Option, ?> options, long position,
       int bytes) {
+    Tuple<StorageObject, byte[]> result = readWithHashes(from, options, position, bytes);
+    return Tuple.of(result.x() != null ? result.x().getEtag() : null, result.y());
+  }
+
+  @Override
+  public Tuple<StorageObject, byte[]> readWithHashes(StorageObject from, Map<Option, ?> options,
+      long position, int bytes) {
     try {
       Get req = storage.objects()
           .get(from.getBucket(), from.getName())
@@ -503,7 +539,8 @@ public class DefaultStorageRpc implements StorageRpc {
       HttpHeaders requestHeaders = req.getRequestHeaders();
       requestHeaders.setRange(range.toString());
       setEncryptionHeaders(requestHeaders, ENCRYPTION_KEY_PREFIX, options);
-      ByteArrayOutputStream output = new ByteArrayOutputStream(bytes);
+      PooledByteArrayOutputStream output =
+          new PooledByteArrayOutputStream(this.options.bufferPool(), bytes);
       HttpResponse httpResponse = req.executeMedia();
       // todo(mziccard) remove when
       // https://github.com/GoogleCloudPlatform/google-cloud-java/issues/982 is fixed
@@ -522,8 +559,7 @@ public class DefaultStorageRpc implements StorageRpc {
       } else {
         httpResponse.download(output);
       }
-      String etag = req.getLastResponseHeaders().getETag();
-      return Tuple.of(etag, output.toByteArray());
+      return Tuple.of(responseObject(req.getLastResponseHeaders()), output.toByteArray());
     } catch (IOException ex) {
       StorageException serviceException = translate(ex);
       if (serviceException.code() == SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
@@ -533,16 +569,65 @@ public class DefaultStorageRpc implements StorageRpc {
     }
   }
 
+  /**
+   * Returns a {@code StorageObject} holding the etag, generation and hashes of an object, as
+   * reported by the headers of a media download response.
+   */
+  private static StorageObject responseObject(HttpHeaders headers) {
+    StorageObject object = new StorageObject().setEtag(headers.getETag());
+    String generation = headers.getFirstHeaderStringValue("x-goog-generation");
+    if (generation != null) {
+      object.setGeneration(Long.valueOf(generation));
+    }
+    List<String> hashHeaders = headers.getHeaderStringValues("x-goog-hash");
+    for (String hashHeader : hashHeaders) {
+      for (String value : hashHeader.split(",")) {
+        String hash = value.trim();
+        if (hash.startsWith("crc32c=")) {
+          object.setCrc32c(hash.substring("crc32c=".length()));
+        } else if (hash.startsWith("md5=")) {
+          object.setMd5Hash(hash.substring("md5=".length()));
+        }
+      }
+    }
+    return object;
+  }
+
   @Override
   public void write(String uploadId, byte[] toWrite, int toWriteOffset, long destOffset, int length,
       boolean last) {
+    writeChunk(uploadId, toWrite, toWriteOffset, destOffset, length, last);
+  }
+
+  @Override
+  public StorageObject writeWithResponse(String uploadId, byte[] toWrite, int toWriteOffset,
+      long destOffset, int length, boolean last) {
+    HttpResponse response = writeChunk(uploadId, toWrite, toWriteOffset, destOffset, length, last);
+    if (!last) {
+      return null;
+    }
+    try {
+      return response.parseAs(StorageObject.class);
+    } catch (IOException ex) {
+      throw translate(ex);
+    }
+  }
+
+  /**
+   * Writes a chunk of a resumable upload and returns the service's response, or {@code null} if
+   * nothing had to be written.
+   */
+  private HttpResponse writeChunk(String uploadId, byte[] toWrite, int toWriteOffset,
+      long destOffset, int length, boolean last) {
     try {
       if (length == 0 && !last) {
-        return;
+        return null;
       }
       GenericUrl url = new GenericUrl(uploadId);
       HttpRequest httpRequest = storage.getRequestFactory().buildPutRequest(url,
           new ByteArrayContent(null, toWrite, toWriteOffset, length));
+      // the response to the last chunk holds the uploaded object's metadata
+      httpRequest.setParser(storage.getObjectParser());
       long limit = destOffset + length;
       StringBuilder range = new StringBuilder("bytes ");
       if (length == 0) {
@@ -560,8 +645,9 @@ public class DefaultStorageRpc implements StorageRpc {
       int code;
       String message;
       IOException exception = null;
+      HttpResponse response = null;
       try {
-        HttpResponse response = httpRequest.execute();
+        response = httpRequest.execute();
         code = response.getStatusCode();
         message = response.getStatusMessage();
       } catch (HttpResponseException ex) {
@@ -578,6 +664,7 @@ public class DefaultStorageRpc implements StorageRpc {
         error.setMessage(message);
         throw translate(error);
       }
+      return response;
     } catch (IOException ex) {
       throw translate(ex);
     }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.spi;
+
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.storage.StorageException;
+
+import java.util.Map;
+
+/**
+ * A {@link StorageRpc} that also returns the metadata reported by the service when reading and
+ * writing objects. Read and write channels need it to verify the checksums of the content they
+ * transfer.
+ */
+public interface HashingStorageRpc extends StorageRpc {
+
+  /**
+   * Reads the given amount of bytes from a storage object at the given position. Together with
+   * the bytes this method returns a {@code StorageObject} holding the etag, the generation and the
+   * CRC32C and MD5 hashes of the whole object, as reported by the service. Values not reported by
+   * the service are {@code null}.
+   *
+   * @throws StorageException upon failure
+   */
+  Tuple<StorageObject, byte[]> readWithHashes(StorageObject from, Map<Option, ?> options,
+      long position, int bytes);
+
+  /**
+   * Writes the provided bytes to a storage object at the provided location. If {@code last} is
+   * {@code true} returns the storage object created by the upload, otherwise returns {@code null}.
+   *
+   * @throws StorageException upon failure
+   */
+  StorageObject writeWithResponse(String uploadId, byte[] toWrite, int toWriteOffset,
+      long destOffset, int length, boolean last);
+}
@@ -47,7 +47,8 @@ public interface StorageRpc {
     DELIMITER("delimiter"),
     VERSIONS("versions"),
     FIELDS("fields"),
-    CUSTOMER_SUPPLIED_KEY("customerSuppliedKey");
+    CUSTOMER_SUPPLIED_KEY("customerSuppliedKey"),
+    VERIFY_CHECKSUMS("verifyChecksums");
 
     private final String value;
 
@@ -23,16 +23,26 @@ import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.BufferPool;
 import com.google.cloud.ReadChannel;
 import com.google.cloud.RestorableState;
 import com.google.cloud.RetryParams;
+import com.google.cloud.storage.spi.HashingStorageRpc;
 import com.google.cloud.storage.spi.StorageRpc;
 import com.google.cloud.storage.spi.StorageRpcFactory;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
 
+import org.easymock.IAnswer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -43,6 +53,8 @@ import java.nio.channels.ClosedChannelException;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class BlobReadChannelTest {
 
@@ -50,19 +62,22 @@ public class BlobReadChannelTest {
   private static final String BLOB_NAME = "n";
   private static final BlobId BLOB_ID = BlobId.of(BUCKET_NAME, BLOB_NAME, -1L);
   private static final Map<StorageRpc.Option, ?> EMPTY_RPC_OPTIONS = ImmutableMap.of();
+  private static final Map<StorageRpc.Option, ?> VERIFY_RPC_OPTIONS =
+      ImmutableMap.of(StorageRpc.Option.VERIFY_CHECKSUMS, true);
   private static final int DEFAULT_CHUNK_SIZE = 2 * 1024 * 1024;
   private static final int CUSTOM_CHUNK_SIZE = 2 * 1024 * 1024;
+  private static final int READ_AHEAD_CHUNK_SIZE = 1024;
   private static final Random RANDOM = new Random();
 
   private StorageOptions options;
   private StorageRpcFactory rpcFactoryMock;
-  private StorageRpc storageRpcMock;
+  private HashingStorageRpc storageRpcMock;
   private BlobReadChannel reader;
 
   @Before
   public void setUp() {
     rpcFactoryMock = createMock(StorageRpcFactory.class);
-    storageRpcMock = createMock(StorageRpc.class);
+    storageRpcMock = createMock(HashingStorageRpc.class);
     expect(rpcFactoryMock.create(anyObject(StorageOptions.class))).andReturn(storageRpcMock);
     replay(rpcFactoryMock);
     options = StorageOptions.builder()
@@ -147,6 +162,40 @@ public class BlobReadChannelTest {
     assertArrayEquals(result, readBuffer.array());
   }
 
+  @Test
+  public void testReadReleasesBuffer() throws IOException {
+    BufferPool bufferPool = BufferPool.of(DEFAULT_CHUNK_SIZE);
+    options = options.toBuilder().bufferPool(bufferPool).build();
+    reader = new BlobReadChannel(options, BLOB_ID, EMPTY_RPC_OPTIONS);
+    byte[] result = bufferPool.acquire(DEFAULT_CHUNK_SIZE);
+    System.arraycopy(randomByteArray(DEFAULT_CHUNK_SIZE), 0, result, 0, DEFAULT_CHUNK_SIZE);
+    byte[] expected = result.clone();
+    ByteBuffer readBuffer = ByteBuffer.allocate(DEFAULT_CHUNK_SIZE);
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, 0, DEFAULT_CHUNK_SIZE))
+        .andReturn(StorageRpc.Tuple.of("etag", result));
+    replay(storageRpcMock);
+    reader.read(readBuffer);
+    assertArrayEquals(expected, readBuffer.array());
+    assertEquals(DEFAULT_CHUNK_SIZE, bufferPool.pooledBytes());
+    assertSame(result, bufferPool.acquire(DEFAULT_CHUNK_SIZE));
+  }
+
+  @Test
+  public void testReadDoesNotPoolRpcOwnedBuffer() throws IOException {
+    BufferPool bufferPool = BufferPool.of(DEFAULT_CHUNK_SIZE);
+    options = options.toBuilder().bufferPool(bufferPool).build();
+    reader = new BlobReadChannel(options, BLOB_ID, EMPTY_RPC_OPTIONS);
+    byte[] result = randomByteArray(DEFAULT_CHUNK_SIZE);
+    ByteBuffer readBuffer = ByteBuffer.allocate(DEFAULT_CHUNK_SIZE);
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, 0, DEFAULT_CHUNK_SIZE))
+        .andReturn(StorageRpc.Tuple.of("etag", result));
+    replay(storageRpcMock);
+    reader.read(readBuffer);
+    assertArrayEquals(result, readBuffer.array());
+    assertEquals(0, bufferPool.pooledBytes());
+    assertNotSame(result, bufferPool.acquire(DEFAULT_CHUNK_SIZE));
+  }
+
   @Test
   public void testClose() {
     replay(storageRpcMock);
@@ -195,6 +244,209 @@ public class BlobReadChannelTest {
     }
   }
 
+  @Test
+  public void testReadAhead() throws IOException {
+    reader = new BlobReadChannel(options, BLOB_ID, EMPTY_RPC_OPTIONS);
+    reader.chunkSize(READ_AHEAD_CHUNK_SIZE);
+    reader.readAhead(2);
+    byte[] firstResult = randomByteArray(READ_AHEAD_CHUNK_SIZE);
+    byte[] secondResult = randomByteArray(READ_AHEAD_CHUNK_SIZE / 2);
+    ByteBuffer readBuffer = ByteBuffer.allocate(2 * READ_AHEAD_CHUNK_SIZE);
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, 0, READ_AHEAD_CHUNK_SIZE))
+        .andReturn(StorageRpc.Tuple.of("etag", firstResult));
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, READ_AHEAD_CHUNK_SIZE,
+        READ_AHEAD_CHUNK_SIZE)).andReturn(StorageRpc.Tuple.of("etag", secondResult));
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, 2 * READ_AHEAD_CHUNK_SIZE,
+        READ_AHEAD_CHUNK_SIZE)).andReturn(StorageRpc.Tuple.of("etag", new byte[0])).anyTimes();
+    replay(storageRpcMock);
+    assertEquals(READ_AHEAD_CHUNK_SIZE, reader.read(readBuffer));
+    assertEquals(READ_AHEAD_CHUNK_SIZE / 2, reader.read(readBuffer));
+    assertEquals(-1, reader.read(readBuffer));
+    assertArrayEquals(firstResult, Arrays.copyOf(readBuffer.array(), READ_AHEAD_CHUNK_SIZE));
+    assertArrayEquals(secondResult, Arrays.copyOfRange(readBuffer.array(),
+        READ_AHEAD_CHUNK_SIZE, READ_AHEAD_CHUNK_SIZE + secondResult.length));
+  }
+
+  @Test
+  public void testReadAheadInFlightWhileConsuming() throws Exception {
+    reader = new BlobReadChannel(options, BLOB_ID, EMPTY_RPC_OPTIONS);
+    reader.chunkSize(READ_AHEAD_CHUNK_SIZE);
+    reader.readAhead(1);
+    byte[] firstResult = randomByteArray(READ_AHEAD_CHUNK_SIZE);
+    final byte[] secondResult = randomByteArray(READ_AHEAD_CHUNK_SIZE / 2);
+    final CountDownLatch secondRequested = new CountDownLatch(1);
+    ByteBuffer readBuffer = ByteBuffer.allocate(READ_AHEAD_CHUNK_SIZE / 2);
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, 0, READ_AHEAD_CHUNK_SIZE))
+        .andReturn(StorageRpc.Tuple.of("etag", firstResult));
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, READ_AHEAD_CHUNK_SIZE,
+        READ_AHEAD_CHUNK_SIZE)).andAnswer(new IAnswer<StorageRpc.Tuple<String, byte[]>>() {
+          @Override
+          public StorageRpc.Tuple<String, byte[]> answer() {
+            secondRequested.countDown();
+            return StorageRpc.Tuple.of("etag", secondResult);
+          }
+        });
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, 2 * READ_AHEAD_CHUNK_SIZE,
+        READ_AHEAD_CHUNK_SIZE)).andReturn(StorageRpc.Tuple.of("etag", new byte[0])).anyTimes();
+    replay(storageRpcMock);
+    assertEquals(READ_AHEAD_CHUNK_SIZE / 2, reader.read(readBuffer));
+    // the first chunk is only half consumed, the second one must already be requested
+    assertTrue(secondRequested.await(10, TimeUnit.SECONDS));
+    assertArrayEquals(Arrays.copyOf(firstResult, READ_AHEAD_CHUNK_SIZE / 2),
+        readBuffer.array());
+    readBuffer.clear();
+    assertEquals(READ_AHEAD_CHUNK_SIZE / 2, reader.read(readBuffer));
+    readBuffer.clear();
+    assertEquals(READ_AHEAD_CHUNK_SIZE / 2, reader.read(readBuffer));
+    assertArrayEquals(secondResult, readBuffer.array());
+  }
+
+  @Test
+  public void testReadAheadGenerationChanged() throws IOException {
+    BlobId blobId = BlobId.of(BUCKET_NAME, BLOB_NAME);
+    reader = new BlobReadChannel(options, blobId, EMPTY_RPC_OPTIONS);
+    reader.chunkSize(READ_AHEAD_CHUNK_SIZE);
+    reader.readAhead(2);
+    byte[] firstResult = randomByteArray(READ_AHEAD_CHUNK_SIZE);
+    byte[] secondResult = randomByteArray(READ_AHEAD_CHUNK_SIZE);
+    ByteBuffer firstReadBuffer = ByteBuffer.allocate(READ_AHEAD_CHUNK_SIZE);
+    ByteBuffer secondReadBuffer = ByteBuffer.allocate(READ_AHEAD_CHUNK_SIZE);
+    expect(storageRpcMock.read(blobId.toPb(), EMPTY_RPC_OPTIONS, 0, READ_AHEAD_CHUNK_SIZE))
+        .andReturn(StorageRpc.Tuple.of("etag1", firstResult));
+    expect(storageRpcMock.read(blobId.toPb(), EMPTY_RPC_OPTIONS, READ_AHEAD_CHUNK_SIZE,
+        READ_AHEAD_CHUNK_SIZE)).andReturn(StorageRpc.Tuple.of("etag2", secondResult));
+    expect(storageRpcMock.read(blobId.toPb(), EMPTY_RPC_OPTIONS, 2 * READ_AHEAD_CHUNK_SIZE,
+        READ_AHEAD_CHUNK_SIZE)).andReturn(StorageRpc.Tuple.of("etag2", new byte[0])).anyTimes();
+    replay(storageRpcMock);
+    reader.read(firstReadBuffer);
+    try {
+      reader.read(secondReadBuffer);
+      fail("Expected ReadChannel read to throw StorageException");
+    } catch (StorageException ex) {
+      StringBuilder messageBuilder = new StringBuilder();
+      messageBuilder.append("Blob ").append(blobId).append(" was updated while reading");
+      assertEquals(messageBuilder.toString(), ex.getMessage());
+    }
+  }
+
+  @Test
+  public void testReadAheadRetries() throws IOException {
+    StorageOptions retryOptions = options.toBuilder()
+        .retryParams(RetryParams.builder()
+            .retryMaxAttempts(3)
+            .initialRetryDelayMillis(1)
+            .maxRetryDelayMillis(1)
+            .build())
+        .build();
+    reader = new BlobReadChannel(retryOptions, BLOB_ID, EMPTY_RPC_OPTIONS);
+    reader.chunkSize(READ_AHEAD_CHUNK_SIZE);
+    reader.readAhead(1);
+    byte[] result = randomByteArray(READ_AHEAD_CHUNK_SIZE / 2);
+    ByteBuffer readBuffer = ByteBuffer.allocate(READ_AHEAD_CHUNK_SIZE);
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, 0, READ_AHEAD_CHUNK_SIZE))
+        .andThrow(new StorageException(503, "Service unavailable")).times(2);
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, 0, READ_AHEAD_CHUNK_SIZE))
+        .andReturn(StorageRpc.Tuple.of("etag", result));
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, READ_AHEAD_CHUNK_SIZE,
+        READ_AHEAD_CHUNK_SIZE)).andReturn(StorageRpc.Tuple.of("etag", new byte[0])).anyTimes();
+    replay(storageRpcMock);
+    assertEquals(result.length, reader.read(readBuffer));
+    assertArrayEquals(result, Arrays.copyOf(readBuffer.array(), result.length));
+  }
+
+  @Test
+  public void testReadAheadFailure() throws IOException {
+    reader = new BlobReadChannel(options, BLOB_ID, EMPTY_RPC_OPTIONS);
+    reader.chunkSize(READ_AHEAD_CHUNK_SIZE);
+    reader.readAhead(1);
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, 0, READ_AHEAD_CHUNK_SIZE))
+        .andThrow(new StorageException(503, "Service unavailable"));
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, READ_AHEAD_CHUNK_SIZE,
+        READ_AHEAD_CHUNK_SIZE)).andReturn(StorageRpc.Tuple.of("etag", new byte[0])).anyTimes();
+    replay(storageRpcMock);
+    try {
+      reader.read(ByteBuffer.allocate(READ_AHEAD_CHUNK_SIZE));
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertEquals(503, ex.code());
+    }
+  }
+
+  @Test
+  public void testReadAheadNegative() {
+    replay(storageRpcMock);
+    reader = new BlobReadChannel(options, BLOB_ID, EMPTY_RPC_OPTIONS);
+    try {
+      reader.readAhead(-1);
+      fail("Expected BlobReadChannel readAhead to throw IllegalArgumentException");
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testReadVerifiesCrc32c() throws IOException {
+    reader = new BlobReadChannel(options, BLOB_ID, VERIFY_RPC_OPTIONS);
+    byte[] result = randomByteArray(1000);
+    StorageObject metadata = new StorageObject().setEtag("etag").setCrc32c(crc32c(result));
+    ByteBuffer readBuffer = ByteBuffer.allocate(DEFAULT_CHUNK_SIZE);
+    expect(storageRpcMock.readWithHashes(BLOB_ID.toPb(), VERIFY_RPC_OPTIONS, 0,
+        DEFAULT_CHUNK_SIZE)).andReturn(StorageRpc.Tuple.of(metadata, result));
+    replay(storageRpcMock);
+    assertEquals(result.length, reader.read(readBuffer));
+    assertEquals(-1, reader.read(readBuffer));
+    assertArrayEquals(result, Arrays.copyOf(readBuffer.array(), result.length));
+  }
+
+  @Test
+  public void testReadVerifiesMd5() throws IOException {
+    reader = new BlobReadChannel(options, BLOB_ID, VERIFY_RPC_OPTIONS);
+    reader.chunkSize(READ_AHEAD_CHUNK_SIZE);
+    byte[] result = randomByteArray(READ_AHEAD_CHUNK_SIZE + 42);
+    StorageObject metadata = new StorageObject().setEtag("etag")
+        .setMd5Hash(BaseEncoding.base64().encode(Hashing.md5().hashBytes(result).asBytes()));
+    expect(storageRpcMock.readWithHashes(BLOB_ID.toPb(), VERIFY_RPC_OPTIONS, 0,
+        READ_AHEAD_CHUNK_SIZE)).andReturn(StorageRpc.Tuple.of(metadata,
+            Arrays.copyOf(result, READ_AHEAD_CHUNK_SIZE)));
+    expect(storageRpcMock.readWithHashes(BLOB_ID.toPb(), VERIFY_RPC_OPTIONS,
+        READ_AHEAD_CHUNK_SIZE, READ_AHEAD_CHUNK_SIZE)).andReturn(StorageRpc.Tuple.of(metadata,
+            Arrays.copyOfRange(result, READ_AHEAD_CHUNK_SIZE, result.length)));
+    replay(storageRpcMock);
+    ByteBuffer readBuffer = ByteBuffer.allocate(READ_AHEAD_CHUNK_SIZE);
+    assertEquals(READ_AHEAD_CHUNK_SIZE, reader.read(readBuffer));
+    readBuffer.clear();
+    assertEquals(42, reader.read(readBuffer));
+  }
+
+  @Test
+  public void testReadChecksumMismatch() throws IOException {
+    reader = new BlobReadChannel(options, BLOB_ID, VERIFY_RPC_OPTIONS);
+    byte[] result = randomByteArray(1000);
+    StorageObject metadata = new StorageObject().setEtag("etag").setCrc32c(crc32c(new byte[0]));
+    expect(storageRpcMock.readWithHashes(BLOB_ID.toPb(), VERIFY_RPC_OPTIONS, 0,
+        DEFAULT_CHUNK_SIZE)).andReturn(StorageRpc.Tuple.of(metadata, result));
+    replay(storageRpcMock);
+    try {
+      reader.read(ByteBuffer.allocate(DEFAULT_CHUNK_SIZE));
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertEquals(StorageException.CHECKSUM_MISMATCH, ex.reason());
+      assertFalse(ex.retryable());
+    }
+  }
+
+  @Test
+  public void testReadSeekDisablesVerification() throws IOException {
+    reader = new BlobReadChannel(options, BLOB_ID, VERIFY_RPC_OPTIONS);
+    reader.seek(10);
+    byte[] result = randomByteArray(1000);
+    StorageObject metadata = new StorageObject().setEtag("etag").setCrc32c(crc32c(new byte[0]));
+    expect(storageRpcMock.readWithHashes(BLOB_ID.toPb(), VERIFY_RPC_OPTIONS, 10,
+        DEFAULT_CHUNK_SIZE)).andReturn(StorageRpc.Tuple.of(metadata, result));
+    replay(storageRpcMock);
+    assertEquals(result.length, reader.read(ByteBuffer.allocate(DEFAULT_CHUNK_SIZE)));
+  }
+
   @Test
   public void testSaveAndRestore() throws IOException {
     byte[] firstResult = randomByteArray(DEFAULT_CHUNK_SIZE);
@@ -229,6 +481,11 @@ public class BlobReadChannelTest {
     assertEquals(state.toString(), secondState.toString());
   }
 
+  private static String crc32c(byte[] content) {
+    return BaseEncoding.base64().encode(
+        Ints.toByteArray(Hashing.crc32c().hashBytes(content).asInt()));
+  }
+
   private static byte[] randomByteArray(int size) {
     byte[] byteArray = new byte[size];
     RANDOM.nextBytes(byteArray);
@@ -38,6 +38,7 @@ import com.google.cloud.storage.Acl.User;
 import com.google.cloud.storage.Blob.BlobSourceOption;
 import com.google.cloud.storage.Storage.BlobWriteOption;
 import com.google.cloud.storage.Storage.CopyRequest;
+import com.google.cloud.storage.Storage.ParallelDownloadOption;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.BaseEncoding;
@@ -48,6 +49,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.Key;
 import java.util.List;
 import java.util.Map;
@@ -320,6 +323,18 @@ public class BlobTest {
     assertSame(channel, blob.reader());
   }
 
+  @Test
+  public void testDownloadTo() throws Exception {
+    initializeExpectedBlob(2);
+    Path path = Paths.get("blob");
+    ParallelDownloadOption option = ParallelDownloadOption.verifyCrc32c();
+    expect(storage.options()).andReturn(mockOptions);
+    expect(storage.parallelDownload(BLOB_INFO.getBlobId(), path, option)).andReturn(expectedBlob);
+    replay(storage);
+    initializeBlob();
+    assertSame(expectedBlob, blob.downloadTo(path, option));
+  }
+
   @Test
   public void testReaderWithDecryptionKey() throws Exception {
     initializeExpectedBlob(2);
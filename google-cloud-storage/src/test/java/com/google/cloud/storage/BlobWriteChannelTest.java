@@ -30,11 +30,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.BufferPool;
 import com.google.cloud.RestorableState;
 import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.spi.HashingStorageRpc;
 import com.google.cloud.storage.spi.StorageRpc;
 import com.google.cloud.storage.spi.StorageRpcFactory;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
 
 import org.easymock.Capture;
 import org.easymock.CaptureType;
@@ -58,6 +65,8 @@ public class BlobWriteChannelTest {
   private static final String UPLOAD_ID = "uploadid";
   private static final BlobInfo BLOB_INFO = BlobInfo.builder(BUCKET_NAME, BLOB_NAME).build();
   private static final Map<StorageRpc.Option, ?> EMPTY_RPC_OPTIONS = ImmutableMap.of();
+  private static final Map<StorageRpc.Option, ?> VERIFY_RPC_OPTIONS =
+      ImmutableMap.of(StorageRpc.Option.VERIFY_CHECKSUMS, true);
   private static final int MIN_CHUNK_SIZE = 256 * 1024;
   private static final int DEFAULT_CHUNK_SIZE = 8 * MIN_CHUNK_SIZE;
   private static final int CUSTOM_CHUNK_SIZE = 4 * MIN_CHUNK_SIZE;
@@ -68,13 +77,13 @@ public class BlobWriteChannelTest {
 
   private StorageOptions options;
   private StorageRpcFactory rpcFactoryMock;
-  private StorageRpc storageRpcMock;
+  private HashingStorageRpc storageRpcMock;
   private BlobWriteChannel writer;
 
   @Before
   public void setUp() {
     rpcFactoryMock = createMock(StorageRpcFactory.class);
-    storageRpcMock = createMock(StorageRpc.class);
+    storageRpcMock = createMock(HashingStorageRpc.class);
     expect(rpcFactoryMock.create(anyObject(StorageOptions.class))).andReturn(storageRpcMock);
     replay(rpcFactoryMock);
     options = StorageOptions.builder()
@@ -226,6 +235,187 @@ public class BlobWriteChannelTest {
     assertEquals(new Long(DEFAULT_CHUNK_SIZE), capturedPosition.getValues().get(1));
   }
 
+  @Test
+  public void testWriteBehind() throws IOException {
+    options = options.toBuilder().bufferPool(BufferPool.noPooling()).build();
+    expect(storageRpcMock.open(BLOB_INFO.toPb(), EMPTY_RPC_OPTIONS)).andReturn(UPLOAD_ID);
+    Capture<byte[]> capturedBuffer = Capture.newInstance(CaptureType.ALL);
+    Capture<Long> capturedPosition = Capture.newInstance(CaptureType.ALL);
+    storageRpcMock.write(eq(UPLOAD_ID), capture(capturedBuffer), eq(0),
+        captureLong(capturedPosition), eq(DEFAULT_CHUNK_SIZE), eq(false));
+    expectLastCall().times(2);
+    storageRpcMock.write(eq(UPLOAD_ID), capture(capturedBuffer), eq(0),
+        eq(2L * DEFAULT_CHUNK_SIZE), eq(42), eq(true));
+    replay(storageRpcMock);
+    ByteBuffer buffer1 = randomBuffer(DEFAULT_CHUNK_SIZE);
+    ByteBuffer buffer2 = randomBuffer(DEFAULT_CHUNK_SIZE);
+    ByteBuffer buffer3 = randomBuffer(42);
+    writer = new BlobWriteChannel(options, BLOB_INFO, EMPTY_RPC_OPTIONS);
+    writer.writeBehind(2);
+    assertEquals(DEFAULT_CHUNK_SIZE, writer.write(buffer1));
+    assertEquals(DEFAULT_CHUNK_SIZE, writer.write(buffer2));
+    assertEquals(42, writer.write(buffer3));
+    writer.close();
+    assertArrayEquals(buffer1.array(), capturedBuffer.getValues().get(0));
+    assertArrayEquals(buffer2.array(), capturedBuffer.getValues().get(1));
+    assertArrayEquals(buffer3.array(), Arrays.copyOf(capturedBuffer.getValues().get(2), 42));
+    assertEquals(ImmutableList.of(0L, (long) DEFAULT_CHUNK_SIZE), capturedPosition.getValues());
+  }
+
+  @Test
+  public void testWriteBehindSaveAndRestore() throws IOException {
+    options = options.toBuilder().bufferPool(BufferPool.noPooling()).build();
+    expect(storageRpcMock.open(BLOB_INFO.toPb(), EMPTY_RPC_OPTIONS)).andReturn(UPLOAD_ID);
+    Capture<byte[]> capturedBuffer = Capture.newInstance(CaptureType.ALL);
+    Capture<Long> capturedPosition = Capture.newInstance(CaptureType.ALL);
+    storageRpcMock.write(eq(UPLOAD_ID), capture(capturedBuffer), eq(0),
+        captureLong(capturedPosition), eq(DEFAULT_CHUNK_SIZE), eq(false));
+    expectLastCall().times(3);
+    replay(storageRpcMock);
+    ByteBuffer buffer1 = randomBuffer(DEFAULT_CHUNK_SIZE);
+    ByteBuffer buffer2 = randomBuffer(DEFAULT_CHUNK_SIZE);
+    ByteBuffer buffer3 = randomBuffer(DEFAULT_CHUNK_SIZE);
+    writer = new BlobWriteChannel(options, BLOB_INFO, EMPTY_RPC_OPTIONS);
+    writer.writeBehind(2);
+    assertEquals(DEFAULT_CHUNK_SIZE, writer.write(buffer1));
+    assertEquals(DEFAULT_CHUNK_SIZE, writer.write(buffer2));
+    RestorableState<WriteChannel> writerState = writer.capture();
+    // capture waits for all chunks written in the background
+    assertEquals(2, capturedBuffer.getValues().size());
+    RestorableState<WriteChannel> expectedWriterState =
+        BlobWriteChannel.StateImpl.builder(options, BLOB_INFO, UPLOAD_ID)
+            .buffer(new byte[0])
+            .chunkSize(DEFAULT_CHUNK_SIZE)
+            .isOpen(true)
+            .position(2 * DEFAULT_CHUNK_SIZE)
+            .writeBehind(2)
+            .build();
+    assertEquals(expectedWriterState, writerState);
+    WriteChannel restoredWriter = writerState.restore();
+    assertEquals(DEFAULT_CHUNK_SIZE, restoredWriter.write(buffer3));
+    RestorableState<WriteChannel> restoredState = restoredWriter.capture();
+    assertEquals(3, capturedBuffer.getValues().size());
+    assertArrayEquals(buffer1.array(), capturedBuffer.getValues().get(0));
+    assertArrayEquals(buffer2.array(), capturedBuffer.getValues().get(1));
+    assertArrayEquals(buffer3.array(), capturedBuffer.getValues().get(2));
+    assertEquals(ImmutableList.of(0L, (long) DEFAULT_CHUNK_SIZE, 2L * DEFAULT_CHUNK_SIZE),
+        capturedPosition.getValues());
+    assertEquals(
+        BlobWriteChannel.StateImpl.builder(options, BLOB_INFO, UPLOAD_ID)
+            .buffer(new byte[0])
+            .chunkSize(DEFAULT_CHUNK_SIZE)
+            .isOpen(true)
+            .position(3 * DEFAULT_CHUNK_SIZE)
+            .writeBehind(2)
+            .build(),
+        restoredState);
+  }
+
+  @Test
+  public void testWriteVerifiesChecksum() throws IOException {
+    expect(storageRpcMock.open(BLOB_INFO.toPb(), EMPTY_RPC_OPTIONS)).andReturn(UPLOAD_ID);
+    ByteBuffer buffer = randomBuffer(DEFAULT_CHUNK_SIZE + 42);
+    Capture<byte[]> capturedBuffer = Capture.newInstance();
+    storageRpcMock.write(eq(UPLOAD_ID), capture(capturedBuffer), eq(0), eq(0L),
+        eq(DEFAULT_CHUNK_SIZE), eq(false));
+    StorageObject created = BLOB_INFO.toPb().setGeneration(42L).setCrc32c(crc32c(buffer.array()));
+    expect(storageRpcMock.writeWithResponse(eq(UPLOAD_ID), anyObject(byte[].class), eq(0),
+        eq((long) DEFAULT_CHUNK_SIZE), eq(42), eq(true))).andReturn(created);
+    replay(storageRpcMock);
+    writer = new BlobWriteChannel(options, BLOB_INFO, VERIFY_RPC_OPTIONS);
+    writer.write(buffer);
+    writer.close();
+    assertTrue(!writer.isOpen());
+  }
+
+  @Test
+  public void testWriteChecksumMismatch() throws IOException {
+    expect(storageRpcMock.open(BLOB_INFO.toPb(), EMPTY_RPC_OPTIONS)).andReturn(UPLOAD_ID);
+    StorageObject created = BLOB_INFO.toPb().setGeneration(42L).setCrc32c(crc32c(new byte[0]));
+    expect(storageRpcMock.writeWithResponse(eq(UPLOAD_ID), anyObject(byte[].class), eq(0),
+        eq(0L), eq(MIN_CHUNK_SIZE), eq(true))).andReturn(created);
+    StorageObject corrupted =
+        new StorageObject().setBucket(BUCKET_NAME).setName(BLOB_NAME).setGeneration(42L);
+    expect(storageRpcMock.delete(corrupted, EMPTY_RPC_OPTIONS)).andReturn(true);
+    replay(storageRpcMock);
+    writer = new BlobWriteChannel(options, BLOB_INFO, VERIFY_RPC_OPTIONS);
+    writer.write(randomBuffer(MIN_CHUNK_SIZE));
+    try {
+      writer.close();
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertEquals(StorageException.CHECKSUM_MISMATCH, ex.reason());
+    }
+  }
+
+  @Test
+  public void testWriteChecksumMismatchDeleteFails() throws IOException {
+    expect(storageRpcMock.open(BLOB_INFO.toPb(), EMPTY_RPC_OPTIONS)).andReturn(UPLOAD_ID);
+    StorageObject created = BLOB_INFO.toPb().setGeneration(42L).setCrc32c(crc32c(new byte[0]));
+    expect(storageRpcMock.writeWithResponse(eq(UPLOAD_ID), anyObject(byte[].class), eq(0),
+        eq(0L), eq(MIN_CHUNK_SIZE), eq(true))).andReturn(created);
+    StorageException deleteException = new StorageException(500, "delete failed");
+    StorageObject corrupted =
+        new StorageObject().setBucket(BUCKET_NAME).setName(BLOB_NAME).setGeneration(42L);
+    expect(storageRpcMock.delete(corrupted, EMPTY_RPC_OPTIONS)).andThrow(deleteException);
+    replay(storageRpcMock);
+    writer = new BlobWriteChannel(options, BLOB_INFO, VERIFY_RPC_OPTIONS);
+    writer.write(randomBuffer(MIN_CHUNK_SIZE));
+    try {
+      writer.close();
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertEquals(StorageException.CHECKSUM_MISMATCH, ex.reason());
+      assertArrayEquals(new Throwable[]{deleteException}, ex.getSuppressed());
+    }
+  }
+
+  @Test
+  public void testSaveAndRestoreVerifiesChecksum() throws IOException {
+    expect(storageRpcMock.open(BLOB_INFO.toPb(), EMPTY_RPC_OPTIONS)).andReturn(UPLOAD_ID);
+    ByteBuffer buffer1 = randomBuffer(DEFAULT_CHUNK_SIZE + 42);
+    ByteBuffer buffer2 = randomBuffer(42);
+    storageRpcMock.write(eq(UPLOAD_ID), anyObject(byte[].class), eq(0), eq(0L),
+        eq(DEFAULT_CHUNK_SIZE), eq(false));
+    byte[] content = new byte[DEFAULT_CHUNK_SIZE + 84];
+    System.arraycopy(buffer1.array(), 0, content, 0, DEFAULT_CHUNK_SIZE + 42);
+    System.arraycopy(buffer2.array(), 0, content, DEFAULT_CHUNK_SIZE + 42, 42);
+    StorageObject created = BLOB_INFO.toPb().setGeneration(42L).setCrc32c(crc32c(content));
+    expect(storageRpcMock.writeWithResponse(eq(UPLOAD_ID), anyObject(byte[].class), eq(0),
+        eq((long) DEFAULT_CHUNK_SIZE), eq(84), eq(true))).andReturn(created).times(2);
+    StorageObject corrupted =
+        new StorageObject().setBucket(BUCKET_NAME).setName(BLOB_NAME).setGeneration(42L);
+    expect(storageRpcMock.delete(corrupted, EMPTY_RPC_OPTIONS)).andReturn(true);
+    replay(storageRpcMock);
+    writer = new BlobWriteChannel(options, BLOB_INFO, VERIFY_RPC_OPTIONS);
+    writer.write(buffer1);
+    RestorableState<WriteChannel> writerState = writer.capture();
+    WriteChannel restoredWriter = writerState.restore();
+    restoredWriter.write(buffer2);
+    restoredWriter.close();
+    // the second restored channel writes different content, verification must fail
+    restoredWriter = writerState.restore();
+    restoredWriter.write(randomBuffer(42));
+    try {
+      restoredWriter.close();
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertEquals(StorageException.CHECKSUM_MISMATCH, ex.reason());
+    }
+  }
+
+  @Test
+  public void testVerifyChecksumsRequiresHashingRpc() {
+    rpcFactoryMock = createMock(StorageRpcFactory.class);
+    StorageRpc plainRpcMock = createMock(StorageRpc.class);
+    expect(rpcFactoryMock.create(anyObject(StorageOptions.class))).andReturn(plainRpcMock);
+    replay(rpcFactoryMock, plainRpcMock, storageRpcMock);
+    StorageOptions plainOptions = options.toBuilder().serviceRpcFactory(rpcFactoryMock).build();
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Checksums can only be verified by a StorageRpc that implements");
+    new BlobWriteChannel(plainOptions, BLOB_INFO, VERIFY_RPC_OPTIONS);
+  }
+
   @Test
   public void testSaveAndRestoreClosed() throws IOException {
     expect(storageRpcMock.open(BLOB_INFO.toPb(), EMPTY_RPC_OPTIONS)).andReturn(UPLOAD_ID);
@@ -262,6 +452,11 @@ public class BlobWriteChannelTest {
     assertEquals(state.toString(), state2.toString());
   }
 
+  private static String crc32c(byte[] content) {
+    return BaseEncoding.base64().encode(
+        Ints.toByteArray(Hashing.crc32c().hashBytes(content).asInt()));
+  }
+
   private static ByteBuffer randomBuffer(int size) {
     byte[] byteArray = new byte[size];
     RANDOM.nextBytes(byteArray);
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.zip.Checksum;
+
+public class ContentHasherTest {
+
+  private static final Random RANDOM = new Random();
+  private static final byte[] CONTENT = randomByteArray(100_000);
+
+  @Test
+  public void testCrc32cKnownValue() {
+    Checksum checksum = new ContentHasher.Crc32c();
+    byte[] bytes = "123456789".getBytes(UTF_8);
+    checksum.update(bytes, 0, bytes.length);
+    assertEquals(0xE3069283L, checksum.getValue());
+    checksum.reset();
+    for (byte b : bytes) {
+      checksum.update(b);
+    }
+    assertEquals(0xE3069283L, checksum.getValue());
+  }
+
+  @Test
+  public void testCrc32cMatchesReference() {
+    for (int length : new int[] {0, 1, 7, 8, 9, 63, 1000, CONTENT.length - 3}) {
+      Checksum checksum = new ContentHasher.Crc32c();
+      checksum.update(CONTENT, 3, length);
+      assertEquals(Hashing.crc32c().hashBytes(CONTENT, 3, length).asInt(),
+          (int) checksum.getValue());
+    }
+  }
+
+  @Test
+  public void testNewCrc32c() {
+    Checksum checksum = ContentHasher.newCrc32c();
+    checksum.update(CONTENT, 0, CONTENT.length);
+    assertEquals(Hashing.crc32c().hashBytes(CONTENT).asInt(), (int) checksum.getValue());
+  }
+
+  @Test
+  public void testCrc32cHasher() {
+    ContentHasher hasher = ContentHasher.crc32c();
+    hasher.update(CONTENT, 0, 10);
+    hasher.update(CONTENT, 10, CONTENT.length - 10);
+    assertEquals(BaseEncoding.base64().encode(
+        Ints.toByteArray(Hashing.crc32c().hashBytes(CONTENT).asInt())), hasher.hash());
+  }
+
+  @Test
+  public void testMd5Hasher() {
+    ContentHasher hasher = ContentHasher.md5();
+    hasher.update(CONTENT, 0, 10);
+    hasher.update(CONTENT, 10, CONTENT.length - 10);
+    assertEquals(BaseEncoding.base64().encode(Hashing.md5().hashBytes(CONTENT).asBytes()),
+        hasher.hash());
+  }
+
+  @Test
+  public void testVerify() {
+    ContentHasher hasher = ContentHasher.crc32c();
+    hasher.update(CONTENT, 0, CONTENT.length);
+    hasher.verify(BaseEncoding.base64().encode(
+        Ints.toByteArray(Hashing.crc32c().hashBytes(CONTENT).asInt())), "content");
+  }
+
+  @Test
+  public void testVerifyMismatch() {
+    ContentHasher hasher = ContentHasher.md5();
+    hasher.update(CONTENT, 0, CONTENT.length);
+    try {
+      hasher.verify(BaseEncoding.base64().encode(new byte[16]), "content");
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertEquals(StorageException.CHECKSUM_MISMATCH, ex.reason());
+      assertFalse(ex.retryable());
+    }
+  }
+
+  private static byte[] randomByteArray(int size) {
+    byte[] byteArray = new byte[size];
+    RANDOM.nextBytes(byteArray);
+    return byteArray;
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import static org.easymock.EasyMock.anyBoolean;
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.RetryParams;
+import com.google.cloud.storage.Storage.BlobTargetOption;
+import com.google.cloud.storage.Storage.ParallelUploadOption;
+import com.google.cloud.storage.spi.RpcBatch;
+import com.google.cloud.storage.spi.StorageRpc;
+import com.google.cloud.storage.spi.StorageRpcFactory;
+import com.google.common.collect.ImmutableMap;
+
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ParallelCompositeUploadTest {
+
+  private static final String BUCKET_NAME = "b";
+  private static final String BLOB_NAME = "n";
+  private static final String PREFIX = "n.tmp-";
+  private static final BlobInfo BLOB_INFO =
+      BlobInfo.newBuilder(BUCKET_NAME, BLOB_NAME).setContentType("text/plain").build();
+  private static final Map<StorageRpc.Option, ?> EMPTY_RPC_OPTIONS = ImmutableMap.of();
+  private static final Random RANDOM = new Random();
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private StorageRpcFactory rpcFactoryMock;
+  private StorageRpc storageRpcMock;
+  private RpcBatch batchMock;
+  private StorageImpl storage;
+  private final Map<String, ByteArrayOutputStream> uploads = new ConcurrentHashMap<>();
+  private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+  private final List<String> composeTargets = new CopyOnWriteArrayList<>();
+  private final Set<String> deleted = Collections.synchronizedSet(new HashSet<String>());
+
+  @Before
+  public void setUp() {
+    rpcFactoryMock = createMock(StorageRpcFactory.class);
+    storageRpcMock = createMock(StorageRpc.class);
+    batchMock = createMock(RpcBatch.class);
+    expect(rpcFactoryMock.create(anyObject(StorageOptions.class))).andReturn(storageRpcMock);
+    replay(rpcFactoryMock);
+    storage = (StorageImpl) StorageOptions.builder()
+        .projectId("projectId")
+        .serviceRpcFactory(rpcFactoryMock)
+        .retryParams(RetryParams.noRetries())
+        .build()
+        .service();
+  }
+
+  @After
+  public void tearDown() {
+    verify(rpcFactoryMock, storageRpcMock);
+  }
+
+  private void expectUploads() {
+    expect(storageRpcMock.open(anyObject(StorageObject.class), eq(EMPTY_RPC_OPTIONS)))
+        .andAnswer(new IAnswer<String>() {
+          @Override
+          public String answer() {
+            String name = ((StorageObject) getCurrentArguments()[0]).getName();
+            uploads.put(name, new ByteArrayOutputStream());
+            return name;
+          }
+        }).anyTimes();
+    storageRpcMock.write(anyString(), anyObject(byte[].class), anyInt(), anyLong(), anyInt(),
+        anyBoolean());
+    expectLastCall().andAnswer(new IAnswer<Void>() {
+      @Override
+      public Void answer() {
+        Object[] args = getCurrentArguments();
+        String name = (String) args[0];
+        ByteArrayOutputStream upload = uploads.get(name);
+        synchronized (upload) {
+          assertEquals(upload.size(), ((Long) args[3]).intValue());
+          upload.write((byte[]) args[1], (Integer) args[2], (Integer) args[4]);
+        }
+        if ((Boolean) args[5]) {
+          blobs.put(name, upload.toByteArray());
+        }
+        return null;
+      }
+    }).anyTimes();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void expectComposes() {
+    expect(storageRpcMock.compose(anyObject(Iterable.class), anyObject(StorageObject.class),
+        anyObject(Map.class))).andAnswer(new IAnswer<StorageObject>() {
+          @Override
+          public StorageObject answer() throws IOException {
+            Object[] args = getCurrentArguments();
+            assertTrue(((Iterable<?>) args[0]).iterator().hasNext());
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            int sources = 0;
+            for (StorageObject source : (Iterable<StorageObject>) args[0]) {
+              content.write(blobs.get(source.getName()));
+              sources++;
+            }
+            assertTrue(sources <= ParallelCompositeUpload.MAX_COMPOSE_SOURCES);
+            StorageObject target = (StorageObject) args[1];
+            assertEquals("text/plain", target.getContentType());
+            blobs.put(target.getName(), content.toByteArray());
+            composeTargets.add(target.getName());
+            return target;
+          }
+        }).anyTimes();
+  }
+
+  private void expectDeletes() {
+    expect(storageRpcMock.createBatch()).andReturn(batchMock);
+    batchMock.addDelete(anyObject(StorageObject.class), anyObject(RpcBatch.Callback.class),
+        eq(EMPTY_RPC_OPTIONS));
+    expectLastCall().andAnswer(new IAnswer<Void>() {
+      @Override
+      public Void answer() {
+        deleted.add(((StorageObject) getCurrentArguments()[0]).getName());
+        return null;
+      }
+    }).anyTimes();
+    batchMock.submit();
+    replay(batchMock);
+  }
+
+  private Set<String> temporaryNames(int count) {
+    Set<String> names = new HashSet<>();
+    for (int i = 0; i < count; i++) {
+      names.add(PREFIX + i);
+    }
+    return names;
+  }
+
+  @Test
+  public void testUploadFile() throws IOException {
+    expectUploads();
+    expectComposes();
+    expectDeletes();
+    replay(storageRpcMock);
+    byte[] content = randomByteArray(4500);
+    Path path = folder.newFile().toPath();
+    Files.write(path, content);
+    Blob blob = storage.parallelUpload(BLOB_INFO, path, ParallelUploadOption.partSize(1000),
+        ParallelUploadOption.parallelism(3), ParallelUploadOption.temporaryPrefix(PREFIX));
+    assertEquals(BLOB_INFO.getBlobId(), blob.getBlobId());
+    assertArrayEquals(content, blobs.get(BLOB_NAME));
+    assertEquals(Arrays.asList(BLOB_NAME), composeTargets);
+    assertEquals(temporaryNames(5), deleted);
+    verify(batchMock);
+  }
+
+  @Test
+  public void testUploadMultiLevelCompose() throws IOException {
+    expectUploads();
+    expectComposes();
+    expectDeletes();
+    replay(storageRpcMock);
+    byte[] content = randomByteArray(70 * 10 + 5);
+    Path path = folder.newFile().toPath();
+    Files.write(path, content);
+    Blob blob = storage.parallelUpload(BLOB_INFO, path, ParallelUploadOption.partSize(10),
+        ParallelUploadOption.temporaryPrefix(PREFIX));
+    assertEquals(BLOB_INFO.getBlobId(), blob.getBlobId());
+    assertArrayEquals(content, blobs.get(BLOB_NAME));
+    // 71 parts are composed into 3 intermediate blobs, then into the target
+    assertEquals(4, composeTargets.size());
+    assertEquals(BLOB_NAME, composeTargets.get(3));
+    assertEquals(temporaryNames(74), deleted);
+    verify(batchMock);
+  }
+
+  @Test
+  public void testUploadInputStream() {
+    expectUploads();
+    expectComposes();
+    expectDeletes();
+    replay(storageRpcMock);
+    byte[] content = randomByteArray(2048);
+    InputStream stream = new ByteArrayInputStream(content);
+    Blob blob = storage.parallelUpload(BLOB_INFO, stream, ParallelUploadOption.partSize(512),
+        ParallelUploadOption.parallelism(2), ParallelUploadOption.temporaryPrefix(PREFIX));
+    assertEquals(BLOB_INFO.getBlobId(), blob.getBlobId());
+    assertArrayEquals(content, blobs.get(BLOB_NAME));
+    assertEquals(temporaryNames(4), deleted);
+    verify(batchMock);
+  }
+
+  @Test
+  public void testUploadEmpty() {
+    StorageObject target = BLOB_INFO.toPb();
+    expect(storageRpcMock.create(anyObject(StorageObject.class), anyObject(InputStream.class),
+        eq(ImmutableMap.of(StorageRpc.Option.IF_GENERATION_MATCH, 0L)))).andReturn(target);
+    replay(storageRpcMock);
+    Blob blob = storage.parallelUpload(BLOB_INFO, new ByteArrayInputStream(new byte[0]),
+        ParallelUploadOption.targetOptions(BlobTargetOption.doesNotExist()));
+    assertEquals(BLOB_INFO.getBlobId(), blob.getBlobId());
+  }
+
+  @Test
+  public void testUploadPartFailure() throws IOException {
+    StorageException exception = new StorageException(400, "Bad request");
+    expect(storageRpcMock.open(anyObject(StorageObject.class), eq(EMPTY_RPC_OPTIONS)))
+        .andReturn("uploadId").anyTimes();
+    storageRpcMock.write(anyString(), anyObject(byte[].class), anyInt(), anyLong(), anyInt(),
+        anyBoolean());
+    expectLastCall().andThrow(exception).anyTimes();
+    expectDeletes();
+    replay(storageRpcMock);
+    Path path = folder.newFile().toPath();
+    Files.write(path, randomByteArray(3000));
+    try {
+      storage.parallelUpload(BLOB_INFO, path, ParallelUploadOption.partSize(1000),
+          ParallelUploadOption.temporaryPrefix(PREFIX));
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertSame(exception, ex);
+    }
+    assertFalse(deleted.isEmpty());
+    assertTrue(temporaryNames(3).containsAll(deleted));
+    verify(batchMock);
+  }
+
+  @Test
+  public void testUploadMissingFile() {
+    replay(storageRpcMock);
+    Path path = folder.getRoot().toPath().resolve("missing");
+    try {
+      storage.parallelUpload(BLOB_INFO, path);
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertTrue(ex.getCause() instanceof IOException);
+    }
+  }
+
+  private static byte[] randomByteArray(int size) {
+    byte[] byteArray = new byte[size];
+    RANDOM.nextBytes(byteArray);
+    return byteArray;
+  }
+}
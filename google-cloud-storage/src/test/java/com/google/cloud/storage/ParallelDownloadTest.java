@@ -0,0 +1,272 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.RetryParams;
+import com.google.cloud.storage.Storage.ParallelDownloadOption;
+import com.google.cloud.storage.Storage.ProgressListener;
+import com.google.cloud.storage.spi.StorageRpc;
+import com.google.cloud.storage.spi.StorageRpc.Tuple;
+import com.google.cloud.storage.spi.StorageRpcFactory;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
+
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ParallelDownloadTest {
+
+  private static final String BUCKET_NAME = "b";
+  private static final String BLOB_NAME = "n";
+  private static final Long GENERATION = 42L;
+  private static final BlobId BLOB_ID = BlobId.of(BUCKET_NAME, BLOB_NAME);
+  private static final Map<StorageRpc.Option, ?> EMPTY_RPC_OPTIONS = ImmutableMap.of();
+  private static final Random RANDOM = new Random();
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private StorageRpcFactory rpcFactoryMock;
+  private StorageRpc storageRpcMock;
+  private StorageImpl storage;
+
+  @Before
+  public void setUp() {
+    rpcFactoryMock = createMock(StorageRpcFactory.class);
+    storageRpcMock = createMock(StorageRpc.class);
+    expect(rpcFactoryMock.create(anyObject(StorageOptions.class))).andReturn(storageRpcMock);
+    replay(rpcFactoryMock);
+    storage = (StorageImpl) StorageOptions.builder()
+        .projectId("projectId")
+        .serviceRpcFactory(rpcFactoryMock)
+        .retryParams(RetryParams.noRetries())
+        .build()
+        .service();
+  }
+
+  @After
+  public void tearDown() {
+    verify(rpcFactoryMock, storageRpcMock);
+  }
+
+  private static StorageObject metadata(byte[] content) {
+    return new StorageObject()
+        .setBucket(BUCKET_NAME)
+        .setName(BLOB_NAME)
+        .setGeneration(GENERATION)
+        .setSize(BigInteger.valueOf(content.length))
+        .setCrc32c(crc32c(content));
+  }
+
+  private static String crc32c(byte[] content) {
+    return BaseEncoding.base64().encode(
+        Ints.toByteArray(Hashing.crc32c().hashBytes(content).asInt()));
+  }
+
+  private void expectGet(StorageObject metadata) {
+    expect(storageRpcMock.get(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS)).andReturn(metadata);
+  }
+
+  /**
+   * Serves reads of {@code content}, returning at most {@code maxReadSize} bytes per request and
+   * the etag returned by {@code etags}.
+   */
+  private void expectReads(final byte[] content, final int maxReadSize, final String... etags) {
+    final AtomicInteger reads = new AtomicInteger();
+    expect(storageRpcMock.read(anyObject(StorageObject.class), eq(EMPTY_RPC_OPTIONS), anyLong(),
+        anyInt())).andAnswer(new IAnswer<Tuple<String, byte[]>>() {
+          @Override
+          public Tuple<String, byte[]> answer() {
+            Object[] args = getCurrentArguments();
+            StorageObject source = (StorageObject) args[0];
+            assertEquals(GENERATION, source.getGeneration());
+            int position = ((Long) args[2]).intValue();
+            int length = Math.min((Integer) args[3], maxReadSize);
+            String etag = etags[Math.min(reads.getAndIncrement(), etags.length - 1)];
+            return Tuple.of(etag, Arrays.copyOfRange(content, position,
+                Math.min(position + length, content.length)));
+          }
+        }).anyTimes();
+  }
+
+  @Test
+  public void testDownload() throws IOException {
+    byte[] content = randomByteArray(4500);
+    expectGet(metadata(content));
+    expectReads(content, Integer.MAX_VALUE, "etag");
+    replay(storageRpcMock);
+    Path path = folder.newFile().toPath();
+    Blob blob = storage.parallelDownload(BLOB_ID, path, ParallelDownloadOption.sliceSize(1000),
+        ParallelDownloadOption.parallelism(3), ParallelDownloadOption.verifyCrc32c());
+    assertEquals(BLOB_ID.getName(), blob.getName());
+    assertEquals(GENERATION, blob.getGeneration());
+    assertArrayEquals(content, Files.readAllBytes(path));
+  }
+
+  @Test
+  public void testDownloadShortReads() throws IOException {
+    byte[] content = randomByteArray(4500);
+    expectGet(metadata(content));
+    expectReads(content, 300, "etag");
+    replay(storageRpcMock);
+    Path path = folder.newFile().toPath();
+    storage.parallelDownload(BLOB_ID, path, ParallelDownloadOption.sliceSize(1000));
+    assertArrayEquals(content, Files.readAllBytes(path));
+  }
+
+  @Test
+  public void testDownloadTruncatesExistingFile() throws IOException {
+    byte[] content = randomByteArray(100);
+    expectGet(metadata(content));
+    expectReads(content, Integer.MAX_VALUE, "etag");
+    replay(storageRpcMock);
+    Path path = folder.newFile().toPath();
+    Files.write(path, randomByteArray(1000));
+    storage.parallelDownload(BLOB_ID, path);
+    assertArrayEquals(content, Files.readAllBytes(path));
+  }
+
+  @Test
+  public void testDownloadEmpty() throws IOException {
+    expectGet(metadata(new byte[0]));
+    replay(storageRpcMock);
+    Path path = folder.getRoot().toPath().resolve("empty");
+    storage.parallelDownload(BLOB_ID, path, ParallelDownloadOption.verifyCrc32c());
+    assertEquals(0, Files.size(path));
+  }
+
+  @Test
+  public void testDownloadProgress() throws IOException {
+    final byte[] content = randomByteArray(2500);
+    expectGet(metadata(content));
+    expectReads(content, Integer.MAX_VALUE, "etag");
+    replay(storageRpcMock);
+    final AtomicLong lastProgress = new AtomicLong();
+    final AtomicInteger notifications = new AtomicInteger();
+    ProgressListener listener = new ProgressListener() {
+      @Override
+      public void progress(long transferredBytes, long totalBytes) {
+        assertEquals(content.length, totalBytes);
+        assertTrue(transferredBytes > lastProgress.get());
+        lastProgress.set(transferredBytes);
+        notifications.incrementAndGet();
+      }
+    };
+    storage.parallelDownload(BLOB_ID, folder.newFile().toPath(),
+        ParallelDownloadOption.sliceSize(1000), ParallelDownloadOption.progressListener(listener));
+    assertEquals(content.length, lastProgress.get());
+    assertEquals(3, notifications.get());
+  }
+
+  @Test
+  public void testDownloadBlobUpdated() throws IOException {
+    byte[] content = randomByteArray(3000);
+    expectGet(metadata(content));
+    expectReads(content, Integer.MAX_VALUE, "etag1", "etag2");
+    replay(storageRpcMock);
+    try {
+      storage.parallelDownload(BLOB_ID, folder.newFile().toPath(),
+          ParallelDownloadOption.sliceSize(1000), ParallelDownloadOption.parallelism(1));
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertTrue(ex.getMessage().contains("was updated"));
+    }
+  }
+
+  @Test
+  public void testDownloadCrc32cMismatch() throws IOException {
+    byte[] content = randomByteArray(3000);
+    expectGet(metadata(content).setCrc32c(crc32c(new byte[0])));
+    expectReads(content, Integer.MAX_VALUE, "etag");
+    replay(storageRpcMock);
+    try {
+      storage.parallelDownload(BLOB_ID, folder.newFile().toPath(),
+          ParallelDownloadOption.verifyCrc32c());
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertEquals(StorageException.CHECKSUM_MISMATCH, ex.reason());
+    }
+  }
+
+  @Test
+  public void testDownloadSliceFailure() throws IOException {
+    StorageException exception = new StorageException(400, "Bad request");
+    byte[] content = randomByteArray(3000);
+    expectGet(metadata(content));
+    expect(storageRpcMock.read(anyObject(StorageObject.class), eq(EMPTY_RPC_OPTIONS), anyLong(),
+        anyInt())).andThrow(exception).anyTimes();
+    replay(storageRpcMock);
+    try {
+      storage.parallelDownload(BLOB_ID, folder.newFile().toPath(),
+          ParallelDownloadOption.sliceSize(1000));
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertEquals(exception, ex);
+    }
+  }
+
+  @Test
+  public void testDownloadNotFound() throws IOException {
+    expectGet(null);
+    replay(storageRpcMock);
+    try {
+      storage.parallelDownload(BLOB_ID, folder.newFile().toPath());
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertEquals(404, ex.code());
+      assertNull(ex.getCause());
+    }
+  }
+
+  private static byte[] randomByteArray(int size) {
+    byte[] byteArray = new byte[size];
+    RANDOM.nextBytes(byteArray);
+    return byteArray;
+  }
+}
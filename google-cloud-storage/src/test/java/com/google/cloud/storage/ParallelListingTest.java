@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.RetryParams;
+import com.google.cloud.storage.Storage.BlobListOption;
+import com.google.cloud.storage.Storage.ParallelListOption;
+import com.google.cloud.storage.spi.StorageRpc;
+import com.google.cloud.storage.spi.StorageRpc.Tuple;
+import com.google.cloud.storage.spi.StorageRpcFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+public class ParallelListingTest {
+
+  private static final String BUCKET_NAME = "b";
+  private static final List<String> NAMES = ImmutableList.of("a.txt", "a/1", "a/2", "a/b/3", "a0",
+      "b/1", "b/c/2", "c", "d/1", "d/2", "d/3", "e/1");
+
+  private StorageRpcFactory rpcFactoryMock;
+  private StorageRpc storageRpcMock;
+  private Storage storage;
+
+  @Before
+  public void setUp() {
+    rpcFactoryMock = createMock(StorageRpcFactory.class);
+    storageRpcMock = createMock(StorageRpc.class);
+    expect(rpcFactoryMock.create(anyObject(StorageOptions.class))).andReturn(storageRpcMock);
+    replay(rpcFactoryMock);
+    storage = StorageOptions.builder()
+        .projectId("projectId")
+        .serviceRpcFactory(rpcFactoryMock)
+        .retryParams(RetryParams.noRetries())
+        .build()
+        .service();
+  }
+
+  @After
+  public void tearDown() {
+    verify(rpcFactoryMock, storageRpcMock);
+  }
+
+  /**
+   * Serves list requests for {@code names}, returning blobs before directories in every page as
+   * the service does. Requests for {@code failingPrefix} fail.
+   */
+  private void expectList(final List<String> names, final String failingPrefix) {
+    expect(storageRpcMock.list(eq(BUCKET_NAME), anyObject(Map.class))).andAnswer(
+        new IAnswer<Tuple<String, Iterable<StorageObject>>>() {
+          @Override
+          public Tuple<String, Iterable<StorageObject>> answer() {
+            Map<?, ?> options = (Map<?, ?>) getCurrentArguments()[1];
+            String prefix = options.containsKey(StorageRpc.Option.PREFIX)
+                ? (String) options.get(StorageRpc.Option.PREFIX) : "";
+            if (prefix.equals(failingPrefix)) {
+              throw new StorageException(400, "Bad request");
+            }
+            boolean directoryMode = options.containsKey(StorageRpc.Option.DELIMITER);
+            TreeSet<String> entries = new TreeSet<>();
+            for (String name : names) {
+              if (name.startsWith(prefix)) {
+                int delimiter = name.indexOf('/', prefix.length());
+                entries.add(directoryMode && delimiter >= 0
+                    ? name.substring(0, delimiter + 1) : name);
+              }
+            }
+            List<String> sorted = new ArrayList<>(entries);
+            int start = options.containsKey(StorageRpc.Option.PAGE_TOKEN)
+                ? Integer.parseInt((String) options.get(StorageRpc.Option.PAGE_TOKEN)) : 0;
+            int pageSize = options.containsKey(StorageRpc.Option.MAX_RESULTS)
+                ? ((Long) options.get(StorageRpc.Option.MAX_RESULTS)).intValue() : 1000;
+            int end = Math.min(sorted.size(), start + pageSize);
+            List<StorageObject> blobs = new ArrayList<>();
+            List<StorageObject> directories = new ArrayList<>();
+            for (String entry : sorted.subList(start, end)) {
+              if (entry.endsWith("/") && directoryMode) {
+                directories.add(new StorageObject().set("isDirectory", true)
+                    .setBucket(BUCKET_NAME).setName(entry).setSize(BigInteger.ZERO));
+              } else {
+                blobs.add(new StorageObject().setBucket(BUCKET_NAME).setName(entry));
+              }
+            }
+            blobs.addAll(directories);
+            return Tuple.<String, Iterable<StorageObject>>of(
+                end < sorted.size() ? Integer.toString(end) : null, blobs);
+          }
+        }).anyTimes();
+    replay(storageRpcMock);
+  }
+
+  private static List<String> names(ParallelListing listing) {
+    List<String> names = new ArrayList<>();
+    while (listing.hasNext()) {
+      names.add(listing.next().getName());
+    }
+    return names;
+  }
+
+  @Test
+  public void testList() {
+    expectList(NAMES, null);
+    List<String> names;
+    try (ParallelListing listing = storage.parallelList(BUCKET_NAME,
+        ParallelListOption.parallelism(3),
+        ParallelListOption.listOptions(BlobListOption.pageSize(2)))) {
+      names = names(listing);
+    }
+    assertEquals(NAMES.size(), names.size());
+    assertEquals(new HashSet<>(NAMES), new HashSet<>(names));
+  }
+
+  @Test
+  public void testListOrdered() {
+    expectList(NAMES, null);
+    try (ParallelListing listing = storage.parallelList(BUCKET_NAME,
+        ParallelListOption.parallelism(2), ParallelListOption.bufferSize(2),
+        ParallelListOption.ordered(),
+        ParallelListOption.listOptions(BlobListOption.pageSize(2)))) {
+      assertEquals(NAMES, names(listing));
+    }
+  }
+
+  @Test
+  public void testListOrderedManyShards() {
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      for (int j = 0; j < 5; j++) {
+        names.add(String.format("%02d/%d", i, j));
+      }
+      names.add(String.format("%02d.txt", i));
+    }
+    names = Ordering.natural().sortedCopy(names);
+    expectList(names, null);
+    try (ParallelListing listing = storage.parallelList(BUCKET_NAME,
+        ParallelListOption.parallelism(4), ParallelListOption.bufferSize(4),
+        ParallelListOption.ordered(),
+        ParallelListOption.listOptions(BlobListOption.pageSize(3)))) {
+      assertEquals(names, names(listing));
+    }
+  }
+
+  @Test
+  public void testListWithPrefix() {
+    expectList(NAMES, null);
+    try (ParallelListing listing = storage.parallelList(BUCKET_NAME, ParallelListOption.ordered(),
+        ParallelListOption.listOptions(BlobListOption.prefix("a/")))) {
+      assertEquals(ImmutableList.of("a/1", "a/2", "a/b/3"), names(listing));
+    }
+  }
+
+  @Test
+  public void testListEmpty() {
+    expectList(ImmutableList.<String>of(), null);
+    try (ParallelListing listing = storage.parallelList(BUCKET_NAME)) {
+      assertEquals(ImmutableList.of(), names(listing));
+    }
+  }
+
+  @Test
+  public void testListFailure() {
+    expectList(NAMES, "d/");
+    try (ParallelListing listing = storage.parallelList(BUCKET_NAME)) {
+      names(listing);
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertEquals(400, ex.code());
+    }
+  }
+
+  @Test
+  public void testClose() {
+    expectList(NAMES, null);
+    ParallelListing listing = storage.parallelList(BUCKET_NAME, ParallelListOption.bufferSize(1),
+        ParallelListOption.listOptions(BlobListOption.pageSize(1)));
+    assertTrue(listing.hasNext());
+    listing.next();
+    listing.close();
+    try {
+      listing.hasNext();
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testUnsupportedListOptions() {
+    replay(storageRpcMock);
+    try {
+      ParallelListOption.listOptions(BlobListOption.currentDirectory());
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
+    try {
+      ParallelListOption.listOptions(BlobListOption.pageToken("token"));
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.BatchResult;
+import com.google.cloud.RetryBudget;
+import com.google.cloud.RetryParams;
+import com.google.cloud.storage.Storage.BulkOption;
+import com.google.cloud.storage.spi.RpcBatch;
+import com.google.cloud.storage.spi.StorageRpc;
+import com.google.cloud.storage.spi.StorageRpcFactory;
+
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class StorageBulkExecutorTest {
+
+  private static final String BUCKET_NAME = "b";
+  private static final RetryParams RETRY_PARAMS = RetryParams.builder()
+      .retryMaxAttempts(3)
+      .initialRetryDelayMillis(1)
+      .maxRetryDelayMillis(1)
+      .build();
+
+  private StorageRpcFactory rpcFactoryMock;
+  private StorageRpc storageRpcMock;
+  private Storage storage;
+  private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+  private final Map<String, List<Integer>> errors = new ConcurrentHashMap<>();
+
+  /**
+   * A batch that answers each operation with the next error code configured for its blob in
+   * {@link #errors}, or with success if there is none.
+   */
+  private class FakeBatch implements RpcBatch {
+
+    private final List<Runnable> operations = new ArrayList<>();
+
+    private void add(final StorageObject storageObject, final Callback<StorageObject> callback) {
+      operations.add(new Runnable() {
+        @Override
+        public void run() {
+          List<Integer> codes = errors.get(storageObject.getName());
+          Integer code = codes == null ? null : codes.isEmpty() ? null : codes.remove(0);
+          if (code == null) {
+            callback.onSuccess(storageObject);
+          } else {
+            callback.onFailure(new GoogleJsonError().set("code", code));
+          }
+        }
+      });
+    }
+
+    @Override
+    public void addDelete(StorageObject storageObject, final Callback<Void> callback,
+        Map<StorageRpc.Option, ?> options) {
+      add(storageObject, new Callback<StorageObject>() {
+        @Override
+        public void onSuccess(StorageObject response) {
+          callback.onSuccess(null);
+        }
+
+        @Override
+        public void onFailure(GoogleJsonError googleJsonError) {
+          callback.onFailure(googleJsonError);
+        }
+      });
+    }
+
+    @Override
+    public void addPatch(StorageObject storageObject, Callback<StorageObject> callback,
+        Map<StorageRpc.Option, ?> options) {
+      add(storageObject, callback);
+    }
+
+    @Override
+    public void addGet(StorageObject storageObject, Callback<StorageObject> callback,
+        Map<StorageRpc.Option, ?> options) {
+      add(storageObject, callback);
+    }
+
+    @Override
+    public void submit() {
+      batchSizes.add(operations.size());
+      for (Runnable operation : operations) {
+        operation.run();
+      }
+    }
+  }
+
+  @Before
+  public void setUp() {
+    rpcFactoryMock = createMock(StorageRpcFactory.class);
+    storageRpcMock = createMock(StorageRpc.class);
+    expect(rpcFactoryMock.create(anyObject(StorageOptions.class))).andReturn(storageRpcMock)
+        .anyTimes();
+    replay(rpcFactoryMock);
+    storage = StorageOptions.builder()
+        .projectId("projectId")
+        .serviceRpcFactory(rpcFactoryMock)
+        .retryParams(RETRY_PARAMS)
+        .build()
+        .service();
+  }
+
+  @After
+  public void tearDown() {
+    verify(rpcFactoryMock, storageRpcMock);
+  }
+
+  private void expectBatches() {
+    expect(storageRpcMock.createBatch()).andAnswer(new IAnswer<RpcBatch>() {
+      @Override
+      public RpcBatch answer() {
+        return new FakeBatch();
+      }
+    }).anyTimes();
+    replay(storageRpcMock);
+  }
+
+  private void setErrors(String blobName, Integer... codes) {
+    errors.put(blobName, Collections.synchronizedList(new LinkedList<>(Arrays.asList(codes))));
+  }
+
+  @Test
+  public void testBatching() {
+    expectBatches();
+    List<StorageBatchResult<Boolean>> results = new ArrayList<>();
+    try (StorageBulkExecutor executor = storage.bulkExecutor(BulkOption.batchSize(10),
+        BulkOption.maxInFlightBatches(2))) {
+      for (int i = 0; i < 25; i++) {
+        results.add(executor.delete(BUCKET_NAME, "n" + i));
+      }
+    }
+    for (StorageBatchResult<Boolean> result : results) {
+      assertTrue(result.get());
+    }
+    List<Integer> sizes = new ArrayList<>(batchSizes);
+    Collections.sort(sizes);
+    assertEquals(Arrays.asList(5, 10, 10), sizes);
+  }
+
+  @Test
+  public void testFlush() {
+    expectBatches();
+    StorageBulkExecutor executor = storage.bulkExecutor();
+    StorageBatchResult<Blob> result = executor.get(BlobId.of(BUCKET_NAME, "n1"));
+    assertTrue(batchSizes.isEmpty());
+    executor.flush();
+    assertEquals("n1", result.get().getName());
+    assertEquals(Collections.singletonList(1), batchSizes);
+    executor.close();
+    try {
+      executor.get(BlobId.of(BUCKET_NAME, "n2"));
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testRetryFailedOperationsOnly() {
+    expectBatches();
+    setErrors("n1", 503, 500);
+    setErrors("n2", 429);
+    StorageBatchResult<Blob> first;
+    StorageBatchResult<Blob> second;
+    StorageBatchResult<Blob> third;
+    try (StorageBulkExecutor executor = storage.bulkExecutor()) {
+      first = executor.update(BlobInfo.newBuilder(BUCKET_NAME, "n1").build());
+      second = executor.update(BlobInfo.newBuilder(BUCKET_NAME, "n2").build());
+      third = executor.update(BlobInfo.newBuilder(BUCKET_NAME, "n3").build());
+    }
+    assertEquals("n1", first.get().getName());
+    assertEquals("n2", second.get().getName());
+    assertEquals("n3", third.get().getName());
+    assertEquals(Arrays.asList(3, 2, 1), batchSizes);
+  }
+
+  @Test
+  public void testRetryAttemptsExhausted() {
+    expectBatches();
+    setErrors("n1", 503, 503, 503, 503);
+    StorageBatchResult<Boolean> result;
+    try (StorageBulkExecutor executor = storage.bulkExecutor()) {
+      result = executor.delete(BUCKET_NAME, "n1");
+    }
+    try {
+      result.get();
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertEquals(503, ex.code());
+    }
+    assertEquals(Arrays.asList(1, 1, 1), batchSizes);
+  }
+
+  @Test
+  public void testRetryBudgetExhausted() {
+    expectBatches();
+    setErrors("n1", 503, 503);
+    Storage budgetStorage = storage.options().toBuilder()
+        .retryParams(RETRY_PARAMS.toBuilder().retryBudget(RetryBudget.create(0, 1)).build())
+        .build()
+        .service();
+    StorageBatchResult<Boolean> result;
+    try (StorageBulkExecutor executor = budgetStorage.bulkExecutor()) {
+      result = executor.delete(BUCKET_NAME, "n1");
+    }
+    try {
+      result.get();
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertEquals(503, ex.code());
+    }
+    assertEquals(Arrays.asList(1, 1), batchSizes);
+  }
+
+  @Test(timeout = 10000)
+  public void testAddFromCallback() {
+    expectBatches();
+    final List<StorageBatchResult<Boolean>> results =
+        Collections.synchronizedList(new ArrayList<StorageBatchResult<Boolean>>());
+    try (final StorageBulkExecutor executor = storage.bulkExecutor(BulkOption.batchSize(2),
+        BulkOption.maxInFlightBatches(1))) {
+      StorageBatchResult<Boolean> first = executor.delete(BUCKET_NAME, "n1");
+      first.notify(new BatchResult.Callback<Boolean, StorageException>() {
+        @Override
+        public void success(Boolean deleted) {
+          // completes a batch while the only in flight slot is taken by the running batch
+          results.add(executor.delete(BUCKET_NAME, "n3"));
+          results.add(executor.delete(BUCKET_NAME, "n4"));
+        }
+
+        @Override
+        public void error(StorageException exception) {}
+      });
+      results.add(first);
+      results.add(executor.delete(BUCKET_NAME, "n2"));
+      executor.flush();
+    }
+    assertEquals(4, results.size());
+    for (StorageBatchResult<Boolean> result : results) {
+      assertTrue(result.get());
+    }
+    assertEquals(Arrays.asList(2, 2), batchSizes);
+  }
+
+  @Test
+  public void testNonRetryableError() {
+    expectBatches();
+    setErrors("n1", 403);
+    setErrors("n2", 404);
+    setErrors("n3", 404);
+    StorageBatchResult<Blob> forbidden;
+    StorageBatchResult<Boolean> deleted;
+    StorageBatchResult<Blob> notFound;
+    try (StorageBulkExecutor executor = storage.bulkExecutor()) {
+      forbidden = executor.get(BUCKET_NAME, "n1");
+      deleted = executor.delete(BUCKET_NAME, "n2");
+      notFound = executor.get(BUCKET_NAME, "n3");
+    }
+    try {
+      forbidden.get();
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertEquals(403, ex.code());
+    }
+    assertFalse(deleted.get());
+    assertNull(notFound.get());
+    assertEquals(Collections.singletonList(3), batchSizes);
+  }
+
+  @Test
+  public void testSubmitFailure() {
+    final StorageException exception = new StorageException(503, "Service unavailable");
+    expect(storageRpcMock.createBatch()).andReturn(new FakeBatch() {
+      @Override
+      public void submit() {
+        throw exception;
+      }
+    });
+    expectBatches();
+    StorageBatchResult<Boolean> result;
+    try (StorageBulkExecutor executor = storage.bulkExecutor()) {
+      result = executor.delete(BUCKET_NAME, "n1");
+    }
+    assertTrue(result.get());
+  }
+
+  @Test
+  public void testInvalidOptions() {
+    replay(storageRpcMock);
+    try {
+      BulkOption.batchSize(101);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
+    try {
+      BulkOption.maxInFlightBatches(0);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.spi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.Json;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.AuthCredentials;
+import com.google.cloud.HttpServiceOptions.HttpTransportFactory;
+import com.google.cloud.storage.StorageOptions;
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DefaultStorageRpcTest {
+
+  private static final String UPLOAD_ID = "http://localhost/upload/uploadId";
+  private static final byte[] CONTENT = {0xD, 0xE, 0xA, 0xD};
+  private static final String OBJECT_JSON =
+      "{\"bucket\":\"b\",\"name\":\"n\",\"crc32c\":\"AAAAAA==\",\"generation\":\"42\"}";
+
+  private MockLowLevelHttpRequest request;
+  private MockLowLevelHttpResponse response;
+  private DefaultStorageRpc rpc;
+
+  @Before
+  public void setUp() {
+    response = new MockLowLevelHttpResponse();
+    request = new MockLowLevelHttpRequest().setResponse(response);
+    final HttpTransport transport = new MockHttpTransport.Builder()
+        .setLowLevelHttpRequest(request)
+        .build();
+    StorageOptions options = StorageOptions.builder()
+        .projectId("projectId")
+        .authCredentials(AuthCredentials.noAuth())
+        .httpTransportFactory(new HttpTransportFactory() {
+          @Override
+          public HttpTransport create() {
+            return transport;
+          }
+        })
+        .build();
+    rpc = new DefaultStorageRpc(options);
+  }
+
+  @Test
+  public void testWriteWithResponse() {
+    response.setStatusCode(200).setContentType(Json.MEDIA_TYPE).setContent(OBJECT_JSON);
+    StorageObject object = rpc.writeWithResponse(UPLOAD_ID, CONTENT, 0, 8, CONTENT.length, true);
+    assertEquals(ImmutableList.of("bytes 8-11/12"), request.getHeaderValues("Content-Range"));
+    assertEquals("b", object.getBucket());
+    assertEquals("n", object.getName());
+    assertEquals("AAAAAA==", object.getCrc32c());
+    assertEquals(Long.valueOf(42L), object.getGeneration());
+  }
+
+  @Test
+  public void testWriteWithResponseNotLast() {
+    response.setStatusCode(308);
+    assertNull(rpc.writeWithResponse(UPLOAD_ID, CONTENT, 0, 0, CONTENT.length, false));
+    assertEquals(ImmutableList.of("bytes 0-3/*"), request.getHeaderValues("Content-Range"));
+  }
+
+  @Test
+  public void testWriteLastDoesNotParseResponse() {
+    response.setStatusCode(200).setContentType("text/plain").setContent("not an object");
+    rpc.write(UPLOAD_ID, CONTENT, 0, 0, CONTENT.length, true);
+    assertEquals(ImmutableList.of("bytes 0-3/4"), request.getHeaderValues("Content-Range"));
+  }
+}